@@ -0,0 +1,175 @@
+package asl.sensor.benchmark;
+
+import asl.sensor.experiment.AzimuthExperiment;
+import asl.sensor.experiment.NoiseExperiment;
+import asl.sensor.experiment.RandomizedExperiment;
+import asl.sensor.experiment.StepExperiment;
+import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmarks of full experiment runs, from loaded (but not yet trimmed or resampled)
+ * data to finished plots, on synthetic data written to and read back from miniSEED during setup.
+ * Each run is given a fresh copy of the loaded data, since experiments trim and resample it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExperimentBenchmark {
+
+  private File dataFolder;
+  private DataStore noiseData;
+  private DataStore randomCalData;
+  private DataStore stepCalData;
+  private DataStore azimuthData;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    dataFolder = Files.createTempDirectory("sensor-benchmark").toFile();
+    noiseData = createNoiseData();
+    randomCalData = createRandomCalData();
+    stepCalData = createStepCalData();
+    azimuthData = createAzimuthData();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    File[] files = dataFolder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dataFolder.delete();
+  }
+
+  private String write(String name, int sps, double[] data) throws Exception {
+    return SyntheticSeed.write(new File(dataFolder, name + ".seed"), name, sps, data, 1E6);
+  }
+
+  /**
+   * Three sensors with the same response recording the same ground motion, each with its own
+   * self-noise (two hours of 20Hz data)
+   */
+  private DataStore createNoiseData() throws Exception {
+    int sps = 20;
+    InstrumentResponse response = InstrumentResponse.loadEmbeddedResponse("STS2gen3_Q330HR");
+    double[] ground = SyntheticSeed.whiteNoise(10L, 2 * 60 * 60 * sps);
+    double[] signal = SyntheticSeed.throughResponse(ground, response, sps);
+    DataStore dataStore = new DataStore();
+    for (int i = 0; i < 3; ++i) {
+      String name = "XX_NOIS_" + i + "0_BHZ";
+      double[] output = SyntheticSeed.addNoise(signal, 0.01, 11L + i);
+      dataStore.setBlock(i, write(name, sps, output), name);
+      dataStore.setResponse(i, response);
+    }
+    return dataStore;
+  }
+
+  /**
+   * High-frequency random calibration: white noise input and the sensor's output (15 minutes of
+   * 40Hz data)
+   */
+  private DataStore createRandomCalData() throws Exception {
+    int sps = 40;
+    InstrumentResponse response = InstrumentResponse.loadEmbeddedResponse("STS2gen3_Q330HR");
+    double[] cal = SyntheticSeed.whiteNoise(20L, 15 * 60 * sps);
+    double[] output = SyntheticSeed.addNoise(
+        SyntheticSeed.calibrationOutput(cal, response, sps), 0.01, 21L);
+    DataStore dataStore = new DataStore();
+    dataStore.setBlock(0, write("XX_RAND_00_BC0", sps, cal), "XX_RAND_00_BC0");
+    dataStore.setBlock(1, write("XX_RAND_00_BHZ", sps, output), "XX_RAND_00_BHZ");
+    dataStore.setResponse(1, response);
+    return dataStore;
+  }
+
+  /**
+   * Step calibration: a step input and the sensor's output (40 minutes of 10Hz data)
+   */
+  private DataStore createStepCalData() throws Exception {
+    int sps = 10;
+    InstrumentResponse response = InstrumentResponse.loadEmbeddedResponse("STS1T5_Q330HR");
+    double[] cal = SyntheticSeed.step(40 * 60 * sps);
+    double[] output = SyntheticSeed.addNoise(
+        SyntheticSeed.stepOutput(cal, response, sps), 1E-3, 30L);
+    DataStore dataStore = new DataStore();
+    dataStore.setBlock(0, write("XX_STEP_00_BC0", sps, cal), "XX_STEP_00_BC0");
+    dataStore.setBlock(1, write("XX_STEP_00_BHZ", sps, output), "XX_STEP_00_BHZ");
+    dataStore.setResponse(1, response);
+    return dataStore;
+  }
+
+  /**
+   * Test sensor's horizontal components rotated 15 degrees from a north-facing reference, each
+   * with its own self-noise (three hours of 10Hz data)
+   */
+  private DataStore createAzimuthData() throws Exception {
+    int sps = 10;
+    int length = 3 * 60 * 60 * sps;
+    double[] north = SyntheticSeed.whiteNoise(40L, length);
+    double[] east = SyntheticSeed.whiteNoise(41L, length);
+    double angle = Math.toRadians(15.);
+    double[] testNorth = new double[length];
+    double[] testEast = new double[length];
+    for (int i = 0; i < length; ++i) {
+      testNorth[i] = north[i] * Math.cos(angle) + east[i] * Math.sin(angle);
+      testEast[i] = east[i] * Math.cos(angle) - north[i] * Math.sin(angle);
+    }
+    DataStore dataStore = new DataStore();
+    dataStore.setBlock(0, write("XX_AZIM_00_BH1", sps,
+        SyntheticSeed.addNoise(testNorth, 0.05, 42L)), "XX_AZIM_00_BH1");
+    dataStore.setBlock(1, write("XX_AZIM_00_BH2", sps,
+        SyntheticSeed.addNoise(testEast, 0.05, 43L)), "XX_AZIM_00_BH2");
+    dataStore.setBlock(2, write("XX_AZIM_10_BHN", sps,
+        SyntheticSeed.addNoise(north, 0.05, 44L)), "XX_AZIM_10_BHN");
+    return dataStore;
+  }
+
+  @Benchmark
+  public NoiseExperiment noiseExperiment() {
+    NoiseExperiment experiment = new NoiseExperiment();
+    experiment.runExperimentOnData(new DataStore(noiseData));
+    return experiment;
+  }
+
+  @Benchmark
+  public RandomizedExperiment randomizedExperiment() {
+    RandomizedExperiment experiment = new RandomizedExperiment();
+    experiment.setLowFrequencyCalibration(false);
+    experiment.runExperimentOnData(new DataStore(randomCalData));
+    return experiment;
+  }
+
+  @Benchmark
+  public StepExperiment stepExperiment() {
+    StepExperiment experiment = new StepExperiment();
+    experiment.runExperimentOnData(new DataStore(stepCalData));
+    return experiment;
+  }
+
+  @Benchmark
+  public AzimuthExperiment azimuthExperiment() {
+    AzimuthExperiment experiment = new AzimuthExperiment();
+    experiment.runExperimentOnData(new DataStore(azimuthData));
+    return experiment;
+  }
+
+}
@@ -0,0 +1,122 @@
+package asl.sensor.benchmark;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.TimeSeriesUtils;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.complex.Complex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the numeric routines that most of the experiments spend their time in: the
+ * Welch PSD, decimation, evaluating a response curve, and assembling a block's data from its
+ * miniSEED records. The input is two hours of synthetic 20Hz data written to and read back from
+ * miniSEED during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NumericBenchmark {
+
+  private static final int SPS = 20;
+  private static final int LENGTH = 2 * 60 * 60 * SPS;
+
+  private File dataFolder;
+  private long interval;
+  private double[] data;
+  private double[] otherData;
+  private double[] frequencies;
+  private InstrumentResponse response;
+  private DataBlock block;
+  private DataBlock decimatedBlock;
+  private long trimStart;
+  private long trimEnd;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    dataFolder = Files.createTempDirectory("sensor-benchmark").toFile();
+    response = InstrumentResponse.loadEmbeddedResponse("STS2gen3_Q330HR");
+    double[] ground = SyntheticSeed.whiteNoise(1L, LENGTH);
+    double[] output = SyntheticSeed.throughResponse(ground, response, SPS);
+    double[] otherOutput = SyntheticSeed.addNoise(output, 0.1, 2L);
+    String name = "XX_BNCH_00_BHZ";
+    String otherName = "XX_BNCH_10_BHZ";
+    String path =
+        SyntheticSeed.write(new File(dataFolder, name + ".seed"), name, SPS, output, 1E6);
+    String otherPath = SyntheticSeed.write(
+        new File(dataFolder, otherName + ".seed"), otherName, SPS, otherOutput, 1E6);
+
+    block = TimeSeriesUtils.getTimeSeries(path, name);
+    interval = block.getInterval();
+    data = block.getData().clone();
+    otherData = TimeSeriesUtils.getTimeSeries(otherPath, otherName).getData().clone();
+    frequencies = FFTResult.spectralCalc(data, data, interval).getFreqs();
+
+    decimatedBlock = TimeSeriesUtils.getTimeSeries(path, name);
+    decimatedBlock.resample(TimeSeriesUtils.ONE_HZ_INTERVAL);
+    // trimming off the first sample forces the block to reassemble its data on each call
+    trimStart = block.getStartTime() + interval;
+    trimEnd = block.getEndTime();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    File[] files = dataFolder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dataFolder.delete();
+  }
+
+  @Benchmark
+  public FFTResult spectralCalc() {
+    return FFTResult.spectralCalc(data, data, interval);
+  }
+
+  @Benchmark
+  public FFTResult crossSpectralCalc() {
+    return FFTResult.spectralCalc(data, otherData, interval);
+  }
+
+  @Benchmark
+  public double[] decimate() {
+    return TimeSeriesUtils.decimate(data, interval, TimeSeriesUtils.ONE_HZ_INTERVAL);
+  }
+
+  @Benchmark
+  public Complex[] applyResponseToInput() {
+    return response.applyResponseToInput(frequencies);
+  }
+
+  @Benchmark
+  public double[] getData() {
+    block.trim(trimStart, trimEnd);
+    return block.getData();
+  }
+
+  @Benchmark
+  public double[] getDataDecimated() {
+    decimatedBlock.trim(trimStart, trimEnd);
+    return decimatedBlock.getData();
+  }
+
+}
@@ -0,0 +1,228 @@
+package asl.sensor.benchmark;
+
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.FFTResult;
+import edu.sc.seis.seisFile.mseed.Blockette1000;
+import edu.sc.seis.seisFile.mseed.Btime;
+import edu.sc.seis.seisFile.mseed.DataHeader;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Random;
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Generates deterministic synthetic data for the benchmarks and writes it out as miniSEED, so that
+ * the benchmarks load data through the same code path as real data without depending on the test
+ * data submodule. All random data comes from seeded generators, so every run of a benchmark
+ * processes exactly the same input.
+ *
+ * Data is written as uncompressed 32-bit integers in 4096-byte records.
+ */
+final class SyntheticSeed {
+
+  /**
+   * Start time of all generated data (2018-01-01T00:00:00Z), in epoch milliseconds
+   */
+  static final long START_MILLIS = 1514764800000L;
+
+  private static final int RECORD_LENGTH = 4096;
+  private static final int RECORD_LENGTH_EXPONENT = 12;
+  private static final int DATA_OFFSET = 64;
+  private static final int SAMPLES_PER_RECORD = (RECORD_LENGTH - DATA_OFFSET) / 4;
+  private static final byte INT32_ENCODING = 3;
+  private static final byte BIG_ENDIAN = 1;
+
+  private SyntheticSeed() {
+  }
+
+  /**
+   * Generate white gaussian noise
+   *
+   * @param seed Seed of the random number generator
+   * @param length Number of points to generate
+   * @return Noise with unit variance
+   */
+  static double[] whiteNoise(long seed, int length) {
+    Random random = new Random(seed);
+    double[] noise = new double[length];
+    for (int i = 0; i < length; ++i) {
+      noise[i] = random.nextGaussian();
+    }
+    return noise;
+  }
+
+  /**
+   * Generate a step calibration signal: zero for the first eighth of the data, then on until the
+   * halfway point, then off again
+   *
+   * @param length Number of points to generate
+   * @return Step signal
+   */
+  static double[] step(int length) {
+    double[] step = new double[length];
+    for (int i = length / 8; i < length / 2; ++i) {
+      step[i] = 1.;
+    }
+    return step;
+  }
+
+  /**
+   * Filter data through an instrument response in the frequency domain, giving what a sensor with
+   * that response would record for the input
+   *
+   * @param input Input to the sensor
+   * @param response Response of the sensor
+   * @param sps Sample rate of the data
+   * @return Sensor output
+   */
+  static double[] throughResponse(double[] input, InstrumentResponse response, double sps) {
+    return throughResponse(input, response, sps, false);
+  }
+
+  /**
+   * Generate the output of a sensor for a random calibration. The calibration coil drives the
+   * mass with a force, so the output is the input filtered by the response and integrated once.
+   *
+   * @param cal Calibration input
+   * @param response Response of the sensor
+   * @param sps Sample rate of the data
+   * @return Sensor output
+   */
+  static double[] calibrationOutput(double[] cal, InstrumentResponse response, double sps) {
+    return throughResponse(cal, response, sps, true);
+  }
+
+  private static double[] throughResponse(double[] input, InstrumentResponse response,
+      double sps, boolean integrate) {
+    FFTResult inputFFT = FFTResult.singleSidedFFT(input.clone(), sps, false);
+    Complex[] spectrum = inputFFT.getFFT();
+    double[] freqs = inputFFT.getFreqs();
+    Complex[] responseCurve = response.applyResponseToInput(freqs);
+    Complex[] output = new Complex[spectrum.length];
+    output[0] = Complex.ZERO;
+    for (int i = 1; i < spectrum.length; ++i) {
+      output[i] = spectrum[i].multiply(responseCurve[i]);
+      if (integrate) {
+        output[i] = output[i].divide(new Complex(0., 2 * Math.PI * freqs[i]));
+      }
+    }
+    return FFTResult.singleSidedInverseFFT(output, input.length);
+  }
+
+  /**
+   * Generate the output of a sensor for a step calibration, using the sensor's main pole pair
+   * (the first pole in the response and its conjugate), as the step calibration models it. The
+   * calibration coil drives the mass with a force, so the output is the step filtered by
+   * s / ((s - p1) * (s - p2)).
+   *
+   * @param step Step calibration input
+   * @param response Response of the sensor
+   * @param sps Sample rate of the data
+   * @return Sensor output
+   */
+  static double[] stepOutput(double[] step, InstrumentResponse response, double sps) {
+    FFTResult stepFFT = FFTResult.singleSidedFFT(step.clone(), sps, false);
+    Complex[] spectrum = stepFFT.getFFT();
+    double[] freqs = stepFFT.getFreqs();
+    Complex p1 = response.getPoles().get(0);
+    Complex p2 = p1.conjugate();
+    Complex[] output = new Complex[spectrum.length];
+    output[0] = Complex.ZERO;
+    for (int i = 1; i < spectrum.length; ++i) {
+      Complex s = new Complex(0., 2 * Math.PI * freqs[i]);
+      output[i] = spectrum[i].multiply(s).divide(s.subtract(p1).multiply(s.subtract(p2)));
+    }
+    return FFTResult.singleSidedInverseFFT(output, step.length);
+  }
+
+  /**
+   * Add independent white noise to a signal, scaled relative to the signal's RMS amplitude
+   *
+   * @param signal Signal to add noise to
+   * @param relativeLevel Ratio of the noise's RMS amplitude to the signal's
+   * @param seed Seed of the random number generator
+   * @return New array with the noisy signal
+   */
+  static double[] addNoise(double[] signal, double relativeLevel, long seed) {
+    double sumSquares = 0.;
+    for (double value : signal) {
+      sumSquares += value * value;
+    }
+    double level = relativeLevel * Math.sqrt(sumSquares / signal.length);
+    double[] noise = whiteNoise(seed, signal.length);
+    double[] result = new double[signal.length];
+    for (int i = 0; i < signal.length; ++i) {
+      result[i] = signal[i] + level * noise[i];
+    }
+    return result;
+  }
+
+  /**
+   * Write data out as miniSEED, scaled so that its largest value is the given number of counts
+   *
+   * @param file File to write to
+   * @param name SNCL of the data, as network_station_location_channel (i.e., XX_BNCH_00_BHZ)
+   * @param sps Sample rate of the data, which must be a whole number
+   * @param data Data to write
+   * @param peakCounts Largest absolute value of the data once scaled
+   * @return Path of the file written
+   * @throws IOException If the file can't be written
+   */
+  static String write(File file, String name, int sps, double[] data, double peakCounts)
+      throws IOException {
+    String[] sncl = name.split("_");
+    double peak = 0.;
+    for (double value : data) {
+      peak = Math.max(peak, Math.abs(value));
+    }
+    double scale = peak > 0. ? peakCounts / peak : 1.;
+    // records start on whole milliseconds, as that's the precision data is read back with
+    long recordMillis = SAMPLES_PER_RECORD * 1000L / sps;
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      int sequence = 1;
+      for (int start = 0; start < data.length; start += SAMPLES_PER_RECORD, ++sequence) {
+        int samples = Math.min(SAMPLES_PER_RECORD, data.length - start);
+        DataHeader header = new DataHeader(sequence, 'D', false);
+        header.setNetworkCode(sncl[0]);
+        header.setStationIdentifier(sncl[1]);
+        header.setLocationIdentifier(sncl[2]);
+        header.setChannelIdentifier(sncl[3]);
+        header.setNumSamples((short) samples);
+        header.setSampleRateFactor((short) sps);
+        header.setSampleRateMultiplier((short) 1);
+        long recordStart = START_MILLIS + (start / SAMPLES_PER_RECORD) * recordMillis;
+        header.setStartBtime(new Btime(new Date(recordStart)));
+
+        ByteBuffer samplesBytes = ByteBuffer.allocate(samples * 4);
+        for (int i = start; i < start + samples; ++i) {
+          samplesBytes.putInt((int) Math.round(data[i] * scale));
+        }
+
+        try {
+          DataRecord record = new DataRecord(header);
+          Blockette1000 blockette = new Blockette1000();
+          blockette.setEncodingFormat(INT32_ENCODING);
+          blockette.setWordOrder(BIG_ENDIAN);
+          blockette.setDataRecordLength((byte) RECORD_LENGTH_EXPONENT);
+          record.addBlockette(blockette);
+          record.setRecordSize(RECORD_LENGTH);
+          record.setData(samplesBytes.array());
+          record.write(out);
+        } catch (SeedFormatException e) {
+          throw new IOException("Could not build miniSEED record for " + name, e);
+        }
+      }
+    }
+    return file.getAbsolutePath();
+  }
+
+}
@@ -1,6 +1,7 @@
 package asl.sensor;
 
 import asl.sensor.output.CalResult;
+import asl.sensor.output.FitResultStore;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
@@ -29,11 +30,13 @@ import org.jfree.chart.plot.XYPlot;
 import org.jfree.data.xy.XYSeriesCollection;
 import asl.sensor.experiment.RandomizedExperiment;
 import asl.sensor.experiment.SineExperiment;
+import asl.sensor.experiment.SolverBudget;
 import asl.sensor.experiment.StepExperiment;
 import asl.sensor.gui.ExperimentPanel;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.CancellationToken;
 import asl.sensor.utils.ReportingUtils;
 import asl.sensor.utils.TimeSeriesUtils;
 import edu.iris.dmc.seedcodec.CodecException;
@@ -52,8 +55,67 @@ import py4j.Py4JNetworkException;
  */
 public class CalProcessingServer {
 
+  private FitResultStore fitResultStore;
+  private SolverBudget solverBudget;
+  private long requestTimeoutMillis;
 
   public CalProcessingServer() {
+    fitResultStore = null;
+    solverBudget = SolverBudget.UNLIMITED;
+    requestTimeoutMillis = 0L;
+  }
+
+  /**
+   * Set a limit on how long the calculation for each request may run. Unlike the solver budget,
+   * which returns the best fit found so far, a request that runs out of time is abandoned: its
+   * calculation stops at the next check for cancellation and the request throws a
+   * java.util.concurrent.CancellationException.
+   *
+   * @param timeoutMillis Maximum time for each request's calculation, in milliseconds, or zero (or
+   * negative) for no limit
+   */
+  public void setRequestTimeout(long timeoutMillis) {
+    requestTimeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * Get a token to cancel a request's calculation once the request timeout has passed
+   *
+   * @return Token with the request timeout as its deadline, or no deadline if there is no timeout
+   */
+  private CancellationToken newRequestToken() {
+    if (requestTimeoutMillis > 0) {
+      return CancellationToken.withTimeout(requestTimeoutMillis);
+    }
+    return new CancellationToken();
+  }
+
+  /**
+   * Set limits on how long the randomized and step cal solvers may run. When a limit is reached
+   * the solver stops and the best fit found so far is returned; the result's solver convergence
+   * reason is then BUDGET_EXHAUSTED. Limits that are zero (or negative) are not enforced.
+   *
+   * @param maxWallTimeMillis Maximum time each solve may run for, in milliseconds
+   * @param maxIterations Maximum number of solver iterations
+   * @param maxEvaluations Maximum number of evaluations of the response model
+   */
+  public void setSolverBudget(long maxWallTimeMillis, int maxIterations, int maxEvaluations) {
+    solverBudget = new SolverBudget(maxWallTimeMillis, maxIterations, maxEvaluations);
+  }
+
+  /**
+   * Set a library file of previous randomized and step cal results. When set, solvers start from
+   * the previous fit of the same sensor (or sensor model) and add their results to the library.
+   * The library file can be shared between multiple servers and the GUI.
+   *
+   * @param filename Full path of library file, or null (or empty) to start from nominal responses
+   */
+  public void setFitResultLibrary(String filename) {
+    if (filename == null || filename.isEmpty()) {
+      fitResultStore = null;
+    } else {
+      fitResultStore = new FitResultStore(filename);
+    }
   }
 
   /**
@@ -272,12 +334,14 @@ public class CalProcessingServer {
   /**
    * Acquire data and run sine calibration solver over it.
    * Returns the experiment (all data kept locally to maintain thread safety)
+   * The result's estimated signal frequency is given in samples per period; the fitted frequency
+   * in Hz and the phase of the output relative to the calibration signal are also included.
    *
    * @param calFileName Filename of calibration signal
    * @param outFileName Filename of sensor output
    * @param startDate ISO-861 formatted datetime string with timezone offset; start of data window
    * @param endDate ISO-861 formatted datetime string with timezone offset; end of data window
-   * @return Data from running the experiment (plots and amplitude estimations)
+   * @return Data from running the experiment (plots, amplitude, frequency and phase estimations)
    * @throws IOException If a string does not refer to a valid accessible file
    */
   public CalResult runSine(String calFileName, String outFileName, String startDate,
@@ -304,6 +368,8 @@ public class CalProcessingServer {
    * Acquire data and run sine calibration solver over it.
    * Used to handle calibrations that cross day boundaries.
    * Returns the experiment (all data kept locally to maintain thread safety)
+   * The result's estimated signal frequency is given in samples per period; the fitted frequency
+   * in Hz and the phase of the output relative to the calibration signal are also included.
    *
    * @param calFileNameD1 Filename of calibration signal (day 1)
    * @param calFileNameD2 Filename of calibration signal (day 2)
@@ -311,7 +377,7 @@ public class CalProcessingServer {
    * @param outFileNameD2 Filename of sensor output (day 2)
    * @param startDate ISO-861 formatted datetime string with timezone offset; start of data window
    * @param endDate ISO-861 formatted datetime string with timezone offset; end of data window
-   * @return Data from running the experiment (plots and amplitude estimations)
+   * @return Data from running the experiment (plots, amplitude, frequency and phase estimations)
    * @throws IOException If a string does not refer to a valid accessible file
    */
   public CalResult runSine(String calFileNameD1, String calFileNameD2, String outFileNameD1,
@@ -339,11 +405,13 @@ public class CalProcessingServer {
 
   private CalResult runExpGetDataSine(DataStore ds) throws IOException {
     SineExperiment sine = new SineExperiment();
-    sine.runExperimentOnData(ds);
+    sine.runExperimentOnData(ds, newRequestToken());
     List<XYSeriesCollection> plots = sine.getData();
     double calAmplitude = sine.getCalAmplitude();
     double outAmplitude = sine.getOutAmplitude();
     double estFreq = sine.getEstSineFreq();
+    double fitFreq = sine.getFittedFrequency();
+    double phase = sine.getPhaseDifference();
     double ratio = calAmplitude / outAmplitude;
 
     DateAxis timeAxis = new DateAxis();
@@ -373,12 +441,15 @@ public class CalProcessingServer {
       ImageIO.write(images[i], "png", out);
       pngByteArrays[i] = out.toByteArray();
     }
-    return CalResult.buildSineCalData(pngByteArrays, calAmplitude, outAmplitude, estFreq, ratio);
+    return CalResult.buildSineCalData(pngByteArrays, calAmplitude, outAmplitude, estFreq, fitFreq,
+        phase, ratio);
   }
 
   private CalResult runExpGetDataStep(DataStore ds) throws IOException {
     StepExperiment step = new StepExperiment();
-    step.runExperimentOnData(ds);
+    step.setFitResultStore(fitResultStore);
+    step.setSolverBudget(solverBudget);
+    step.runExperimentOnData(ds, newRequestToken());
     double[] fitParams = step.getFitParams();
     double[] initParams = step.getInitParams();
     List<XYSeriesCollection> plots = step.getData();
@@ -430,7 +501,9 @@ public class CalProcessingServer {
       pngByteArrays[i] = out.toByteArray();
     }
 
-    return CalResult.buildStepCalData(pngByteArrays, fitParams, initParams);
+    CalResult result = CalResult.buildStepCalData(pngByteArrays, fitParams, initParams);
+    result.addSolverTelemetry(step.getSolverTelemetry());
+    return result;
   }
 
   private CalResult runExpGetDataRand(DataStore dataStore, boolean isLowFrequency)
@@ -439,7 +512,9 @@ public class CalProcessingServer {
     RandomizedExperiment randomExperiment = new RandomizedExperiment();
 
     randomExperiment.setLowFrequencyCalibration(isLowFrequency);
-    randomExperiment.runExperimentOnData(dataStore);
+    randomExperiment.setFitResultStore(fitResultStore);
+    randomExperiment.setSolverBudget(solverBudget);
+    randomExperiment.runExperimentOnData(dataStore, newRequestToken());
 
     Complex[] fitZerosComplex = randomExperiment.getFitResponse().getZeros()
         .toArray(new Complex[]{});
@@ -574,8 +649,10 @@ public class CalProcessingServer {
       pngByteArrays[i] = out.toByteArray();
     }
 
-    return CalResult.buildRandomCalData(fitPoles, fitZeros, initialPoles, initialZeros,
-        pngByteArrays);
+    CalResult result = CalResult.buildRandomCalData(fitPoles, fitZeros, initialPoles,
+        initialZeros, pngByteArrays);
+    result.addSolverTelemetry(randomExperiment.getSolverTelemetry());
+    return result;
 
   }
 
@@ -1,27 +1,35 @@
 package asl.sensor;
 
 import asl.sensor.experiment.AzimuthExperiment;
+import asl.sensor.experiment.CoherenceExperiment;
 import asl.sensor.experiment.Experiment;
 import asl.sensor.experiment.GainExperiment;
 import asl.sensor.experiment.GainSixExperiment;
 import asl.sensor.experiment.NoiseExperiment;
 import asl.sensor.experiment.NoiseNineExperiment;
 import asl.sensor.experiment.OrthogonalExperiment;
+import asl.sensor.experiment.PSDDistributionExperiment;
 import asl.sensor.experiment.RandomizedExperiment;
 import asl.sensor.experiment.ResponseExperiment;
+import asl.sensor.experiment.RollingNoiseExperiment;
 import asl.sensor.experiment.SineExperiment;
+import asl.sensor.experiment.SpectrogramExperiment;
 import asl.sensor.experiment.SpectrumExperiment;
 import asl.sensor.experiment.StepExperiment;
 import asl.sensor.gui.AzimuthPanel;
+import asl.sensor.gui.CoherencePanel;
 import asl.sensor.gui.ExperimentPanel;
 import asl.sensor.gui.GainPanel;
 import asl.sensor.gui.GainSixPanel;
 import asl.sensor.gui.NoiseNinePanel;
 import asl.sensor.gui.NoisePanel;
 import asl.sensor.gui.OrthogonalPanel;
+import asl.sensor.gui.PSDDistributionPanel;
 import asl.sensor.gui.RandomizedPanel;
 import asl.sensor.gui.ResponsePanel;
+import asl.sensor.gui.RollingNoisePanel;
 import asl.sensor.gui.SinePanel;
+import asl.sensor.gui.SpectrogramPanel;
 import asl.sensor.gui.SpectrumPanel;
 import asl.sensor.gui.StepPanel;
 
@@ -61,6 +69,28 @@ public enum ExperimentFactory {
       return new NoiseNinePanel(this);
     }
   },
+  NOISE_ROLLING("Self-noise (rolling windows)") {
+    @Override
+    public Experiment createExperiment() {
+      return new RollingNoiseExperiment();
+    }
+
+    @Override
+    public ExperimentPanel createPanel() {
+      return new RollingNoisePanel(this);
+    }
+  },
+  COHERENCE("Coherence") {
+    @Override
+    public Experiment createExperiment() {
+      return new CoherenceExperiment();
+    }
+
+    @Override
+    public ExperimentPanel createPanel() {
+      return new CoherencePanel(this);
+    }
+  },
   GAIN("Relative gain") {
     @Override
     public Experiment createExperiment() {
@@ -149,6 +179,28 @@ public enum ExperimentFactory {
       return new SpectrumPanel(this);
     }
   },
+  PSD_DISTRIBUTION("PSD distribution (PDF)") {
+    @Override
+    public Experiment createExperiment() {
+      return new PSDDistributionExperiment();
+    }
+
+    @Override
+    public ExperimentPanel createPanel() {
+      return new PSDDistributionPanel(this);
+    }
+  },
+  SPECTROGRAM("Spectrogram") {
+    @Override
+    public Experiment createExperiment() {
+      return new SpectrogramExperiment();
+    }
+
+    @Override
+    public ExperimentPanel createPanel() {
+      return new SpectrogramPanel(this);
+    }
+  },
   RESPONSE("Response") {
     @Override
     public Experiment createExperiment() {
@@ -0,0 +1,212 @@
+package asl.sensor.experiment;
+
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.NumericUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Chooses the frequencies at which to plot a set of response curves, and evaluates the responses
+ * at those frequencies. Most of a response curve is flat (on log-log axes), so rather than
+ * evaluating a dense fixed grid, this starts from a coarse log-spaced grid (plus the corner
+ * frequencies of each response's poles and zeros) and halves intervals, in log frequency, only
+ * where the curves bend: an interval is split if the value at its midpoint differs from the line
+ * between its ends by more than a plotting tolerance, in magnitude (dB) or in unwrapped phase, or
+ * if the phase changes too much across it (i.e., near a phase wrap). All the responses share the
+ * same frequencies, so an interval is split if any of the curves needs it.
+ */
+final class AdaptiveResponseSampler {
+
+  // points per decade of the starting grid
+  private static final int COARSE_POINTS_PER_DECADE = 40;
+  // smallest interval split, in decades; this is the spacing of the dense grid previously used
+  private static final double MIN_LOG_STEP = Math.log10(200. / .0001) / 100000;
+  // largest difference from a straight line between neighboring points (on the plotted scales)
+  private static final double MAGNITUDE_TOLERANCE = 0.02; // 10 * log10 units
+  private static final double PHASE_TOLERANCE = Math.toRadians(0.2);
+  // largest change in phase allowed between neighboring points
+  private static final double MAX_PHASE_STEP = Math.toRadians(15.);
+
+  private final List<InstrumentResponse> responses;
+  // evaluated response curves, keyed by log10 of frequency
+  private final TreeMap<Double, Complex[]> samples;
+  private final double[] frequencies;
+  private final Complex[][] results;
+
+  /**
+   * Choose frequencies over the given range and evaluate the responses at them
+   *
+   * @param responses Responses to be plotted together
+   * @param lowFreq Lowest frequency to plot (Hz)
+   * @param highFreq Highest frequency to plot (Hz)
+   */
+  AdaptiveResponseSampler(List<InstrumentResponse> responses, double lowFreq, double highFreq) {
+    this.responses = responses;
+    samples = new TreeMap<>();
+
+    double lowLog = Math.log10(lowFreq);
+    double highLog = Math.log10(highFreq);
+    int coarseCount = (int) Math.ceil((highLog - lowLog) * COARSE_POINTS_PER_DECADE);
+    List<Double> startingPoints = new ArrayList<>();
+    for (int i = 0; i <= coarseCount; ++i) {
+      startingPoints.add(lowLog + (highLog - lowLog) * i / coarseCount);
+    }
+    // narrow resonances could fall between the coarse points, so include the corners explicitly
+    for (InstrumentResponse response : responses) {
+      double factor = response.getTransferFunction().getFunction();
+      List<Complex> roots = new ArrayList<>(response.getPoles());
+      roots.addAll(response.getZeros());
+      for (Complex root : roots) {
+        double corner = Math.log10(root.abs() / factor);
+        if (corner > lowLog && corner < highLog) {
+          startingPoints.add(corner);
+        }
+      }
+    }
+    evaluate(startingPoints);
+
+    List<Double> toCheck = new ArrayList<>(samples.keySet());
+    toCheck.remove(toCheck.size() - 1);
+    while (!toCheck.isEmpty()) {
+      toCheck = refine(toCheck);
+    }
+
+    frequencies = new double[samples.size()];
+    results = new Complex[responses.size()][samples.size()];
+    int i = 0;
+    for (Map.Entry<Double, Complex[]> sample : samples.entrySet()) {
+      frequencies[i] = Math.pow(10, sample.getKey());
+      for (int r = 0; r < responses.size(); ++r) {
+        results[r][i] = sample.getValue()[r];
+      }
+      ++i;
+    }
+  }
+
+  /**
+   * Get the frequencies the responses were evaluated at
+   *
+   * @return Frequencies in ascending order (Hz)
+   */
+  double[] getFrequencies() {
+    return frequencies;
+  }
+
+  /**
+   * Get a response curve evaluated at the chosen frequencies
+   *
+   * @param responseIndex Index of the response in the list given at construction
+   * @return Response (velocity units) at each frequency
+   */
+  Complex[] getResult(int responseIndex) {
+    return results[responseIndex];
+  }
+
+  /**
+   * Evaluate all the responses at the given points (in one call per response) and add them
+   *
+   * @param logFrequencies Points to evaluate, as log10 of frequency
+   */
+  private void evaluate(List<Double> logFrequencies) {
+    double[] freqs = new double[logFrequencies.size()];
+    for (int i = 0; i < freqs.length; ++i) {
+      freqs[i] = Math.pow(10, logFrequencies.get(i));
+    }
+    Complex[][] evaluated = new Complex[responses.size()][];
+    for (int r = 0; r < responses.size(); ++r) {
+      evaluated[r] = responses.get(r).applyResponseToInput(freqs);
+    }
+    for (int i = 0; i < freqs.length; ++i) {
+      Complex[] values = new Complex[responses.size()];
+      for (int r = 0; r < responses.size(); ++r) {
+        values[r] = evaluated[r][i];
+      }
+      samples.put(logFrequencies.get(i), values);
+    }
+  }
+
+  /**
+   * Split the intervals starting at the given points, keeping the midpoint of each, and find
+   * which of the halves need to be split again
+   *
+   * @param intervalStarts Lower ends of the intervals to split (keys of existing samples)
+   * @return Lower ends of the halves that are not yet close enough to straight lines
+   */
+  private List<Double> refine(List<Double> intervalStarts) {
+    List<Double> lowerEnds = new ArrayList<>();
+    List<Double> midpoints = new ArrayList<>();
+    for (double lower : intervalStarts) {
+      double upper = samples.higherKey(lower);
+      if (upper - lower < 2 * MIN_LOG_STEP) {
+        continue;
+      }
+      lowerEnds.add(lower);
+      midpoints.add((lower + upper) / 2);
+    }
+    evaluate(midpoints);
+
+    List<Double> nextLevel = new ArrayList<>();
+    for (int i = 0; i < midpoints.size(); ++i) {
+      double lower = lowerEnds.get(i);
+      double midpoint = midpoints.get(i);
+      double upper = samples.higherKey(midpoint);
+      Complex[] lowerValues = samples.get(lower);
+      Complex[] midValues = samples.get(midpoint);
+      Complex[] upperValues = samples.get(upper);
+      boolean lowerHalfBends = false;
+      boolean upperHalfBends = false;
+      for (int r = 0; r < responses.size(); ++r) {
+        if (bends(lowerValues[r], midValues[r], upperValues[r])) {
+          // the curve isn't straight over this interval; check both halves again
+          lowerHalfBends = true;
+          upperHalfBends = true;
+          break;
+        }
+        lowerHalfBends |= phaseStepTooLarge(lowerValues[r], midValues[r]);
+        upperHalfBends |= phaseStepTooLarge(midValues[r], upperValues[r]);
+      }
+      if (lowerHalfBends) {
+        nextLevel.add(lower);
+      }
+      if (upperHalfBends) {
+        nextLevel.add(midpoint);
+      }
+    }
+    return nextLevel;
+  }
+
+  /**
+   * Check whether a response over an interval differs too much from the line between its ends
+   *
+   * @param lower Response at the lower end of the interval
+   * @param mid Response at the interval's midpoint (in log frequency)
+   * @param upper Response at the upper end of the interval
+   * @return True if the midpoint is too far from the line on the plot, or the phase changes too
+   * much over the interval
+   */
+  private static boolean bends(Complex lower, Complex mid, Complex upper) {
+    double lowerMagnitude = 10 * Math.log10(lower.abs());
+    double midMagnitude = 10 * Math.log10(mid.abs());
+    double upperMagnitude = 10 * Math.log10(upper.abs());
+    double magnitudeError = midMagnitude - (lowerMagnitude + upperMagnitude) / 2;
+    // phases are unwrapped the same way as when plotted
+    double lowerPhase = NumericUtils.atanc(lower);
+    double midPhase = NumericUtils.unwrap(NumericUtils.atanc(mid), lowerPhase);
+    double upperPhase = NumericUtils.unwrap(NumericUtils.atanc(upper), midPhase);
+    double phaseError = midPhase - (lowerPhase + upperPhase) / 2;
+    // comparisons are false for NaN (i.e., a response of zero), which can't be plotted anyway
+    return Math.abs(magnitudeError) > MAGNITUDE_TOLERANCE
+        || Math.abs(phaseError) > PHASE_TOLERANCE
+        || Math.abs(upperPhase - lowerPhase) > MAX_PHASE_STEP;
+  }
+
+  private static boolean phaseStepTooLarge(Complex lower, Complex upper) {
+    double lowerPhase = NumericUtils.atanc(lower);
+    double upperPhase = NumericUtils.unwrap(NumericUtils.atanc(upper), lowerPhase);
+    return Math.abs(upperPhase - lowerPhase) > MAX_PHASE_STEP;
+  }
+
+}
@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
@@ -14,12 +15,12 @@ import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunctio
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import org.apache.commons.math3.util.Pair;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
+import asl.sensor.utils.CancellationToken;
 import asl.sensor.utils.FFTResult;
 import asl.sensor.utils.NumericUtils;
 import asl.sensor.utils.TimeSeriesUtils;
@@ -44,12 +45,16 @@ import asl.sensor.utils.TimeSeriesUtils;
  */
 public class AzimuthExperiment extends Experiment {
 
-  private double offset = 0.;
-
   /**
-   * Cache correlation estimates during windowing
+   * Length of each correlation window (ms)
+   */
+  private static final long WINDOW_LENGTH = 2000L * TimeSeriesUtils.ONE_HZ_INTERVAL;
+  /**
+   * Distance between the starts of consecutive correlation windows (ms)
    */
-  private double latestCorrelation = 0.;
+  private static final long WINDOW_SPACING = WINDOW_LENGTH / 4L;
+
+  private double offset = 0.;
 
   /**
    * Angle offset radians
@@ -77,10 +82,35 @@ public class AzimuthExperiment extends Experiment {
    * True if there is enough points in range for estimation.
    */
   private boolean enoughPts;
+  /**
+   * Record of the solve for the initial estimate over the full data range
+   */
+  private SolverTelemetry solverTelemetry;
+  /**
+   * Records of the solves over each correlation window, in window order
+   */
+  private List<SolverTelemetry> windowSolverTelemetry;
+  /**
+   * Limits on the solves; the time limit is shared by the initial estimate and all windows
+   */
+  private SolverBudget solverBudget;
+  /**
+   * True if any solve ran out of budget, or windows were skipped because time ran out
+   */
+  private boolean budgetExhausted;
+  /**
+   * True if each correlation window is fit independently (and in parallel) rather than damped
+   * toward the best fit of the windows before it
+   */
+  private boolean parallelWindows;
 
   public AzimuthExperiment() {
     super();
     simpleCalc = false;
+    parallelWindows = false;
+    solverTelemetry = new SolverTelemetry("Azimuth initial estimate");
+    windowSolverTelemetry = new ArrayList<>();
+    solverBudget = SolverBudget.UNLIMITED;
   }
 
   private String getAzimuthResults() {
@@ -95,6 +125,9 @@ public class AzimuthExperiment extends Experiment {
     if (!enoughPts) {
       angleStr.append(" | WARNING: SMALL RANGE");
     }
+    if (budgetExhausted) {
+      angleStr.append(" | WARNING: SOLVER BUDGET EXHAUSTED");
+    }
     return angleStr.toString();
   }
 
@@ -127,8 +160,28 @@ public class AzimuthExperiment extends Experiment {
    */
   static double getAzimuth(double[] north, double[] east, double[] reference,
       long interval, long start, long end) {
+    return getAzimuth(north, east, reference, interval, start, end, new PreprocessingMemo());
+  }
+
+  /**
+   * Get the azimuth of the reference data relative to the north and east data, as in
+   * {@link #getAzimuth(double[], double[], double[], long, long, long)}, sharing preprocessed
+   * data with other calculations in the same run through the given memo.
+   *
+   * @param north timeseries data from presumed north-facing test sensor
+   * @param east timeseries data from presumed east-facing test sensor
+   * @param reference timeseries data from known north-facing sensor
+   * @param interval sampling interval of data
+   * @param start start time of data
+   * @param end end time of data
+   * @param memo Memo of preprocessed data for the calling experiment's run
+   * @return Fit angle (radians)
+   */
+  static double getAzimuth(double[] north, double[] east, double[] reference,
+      long interval, long start, long end, PreprocessingMemo memo) {
     AzimuthExperiment azimuthExperiment = new AzimuthExperiment();
     azimuthExperiment.setSimple(false); // don't do the faster angle calculation
+    azimuthExperiment.sharePreprocessingMemo(memo);
     azimuthExperiment.alternateEntryPoint(north, east, reference, interval, start, end);
     return azimuthExperiment.getFitAngleRad();
   }
@@ -169,9 +222,10 @@ public class AzimuthExperiment extends Experiment {
     dataNames.add("R");
 
     xySeriesData = new ArrayList<>();
+    resetPreprocessingMemo();
 
-    backendHelper(testNorth.clone(), testEast.clone(), referenceNorth.clone(),
-        interval, start, end);
+    // inputs aren't modified, and passing them as-is lets the memo recognize shared data
+    backendHelper(testNorth, testEast, referenceNorth, interval, start, end);
   }
 
   @Override
@@ -218,21 +272,32 @@ public class AzimuthExperiment extends Experiment {
     double tau = NumericUtils.TAU; // 2 pi
 
     enoughPts = false;
+    budgetExhausted = false;
+    windowSolverTelemetry = new ArrayList<>();
+
+    // the same data is often used by several solves in one run (i.e., the first sensor's north
+    // and east data in the 9-input self-noise), so the preprocessing is shared through the memo
+    PreprocessingMemo memo = getPreprocessingMemo();
 
     // does nothing if the data is already 1Hz sample rate
-    testNorth = TimeSeriesUtils.decimate(testNorth, interval, TimeSeriesUtils.ONE_HZ_INTERVAL);
-    testEast = TimeSeriesUtils.decimate(testEast, interval, TimeSeriesUtils.ONE_HZ_INTERVAL);
-    refNorth = TimeSeriesUtils.decimate(refNorth, interval, TimeSeriesUtils.ONE_HZ_INTERVAL);
+    final long sourceInterval = interval;
+    String decimation = "decimate " + sourceInterval + " to " + TimeSeriesUtils.ONE_HZ_INTERVAL;
+    testNorth = memo.derive(testNorth, decimation, data ->
+        TimeSeriesUtils.decimate(data, sourceInterval, TimeSeriesUtils.ONE_HZ_INTERVAL));
+    testEast = memo.derive(testEast, decimation, data ->
+        TimeSeriesUtils.decimate(data, sourceInterval, TimeSeriesUtils.ONE_HZ_INTERVAL));
+    refNorth = memo.derive(refNorth, decimation, data ->
+        TimeSeriesUtils.decimate(data, sourceInterval, TimeSeriesUtils.ONE_HZ_INTERVAL));
     // update the actual sample rate if data was above 1Hz sampling
     interval = Math.max(interval, TimeSeriesUtils.ONE_HZ_INTERVAL);
 
-    double[] initTestNorth = TimeSeriesUtils.demean(testNorth);
-    double[] initTestEast = TimeSeriesUtils.demean(testEast);
-    double[] initRefNorth = TimeSeriesUtils.demean(refNorth);
+    double[] initTestNorth = memo.derive(testNorth, "demean", TimeSeriesUtils::demean);
+    double[] initTestEast = memo.derive(testEast, "demean", TimeSeriesUtils::demean);
+    double[] initRefNorth = memo.derive(refNorth, "demean", TimeSeriesUtils::demean);
 
-    initTestNorth = TimeSeriesUtils.detrend(initTestNorth);
-    initTestEast = TimeSeriesUtils.detrend(initTestEast);
-    initRefNorth = TimeSeriesUtils.detrend(initRefNorth);
+    initTestNorth = memo.derive(initTestNorth, "detrend", TimeSeriesUtils::detrend);
+    initTestEast = memo.derive(initTestEast, "detrend", TimeSeriesUtils::detrend);
+    initRefNorth = memo.derive(initRefNorth, "detrend", TimeSeriesUtils::detrend);
 
     // should there be a normalization step here?
 
@@ -241,9 +306,12 @@ public class AzimuthExperiment extends Experiment {
     double low = 1. / 8; // filter from 8 seconds interval
     double high = 1. / 3; // up to 3 seconds interval
 
-    initTestNorth = FFTResult.bandFilter(initTestNorth, samplesPerSecond, low, high);
-    initTestEast = FFTResult.bandFilter(initTestEast, samplesPerSecond, low, high);
-    initRefNorth = FFTResult.bandFilter(initRefNorth, samplesPerSecond, low, high);
+    String filter = "band-pass " + low + " to " + high + " Hz at " + samplesPerSecond + " sps";
+    UnaryOperator<double[]> bandFilter =
+        data -> FFTResult.bandFilter(data, samplesPerSecond, low, high);
+    initTestNorth = memo.derive(initTestNorth, filter, bandFilter);
+    initTestEast = memo.derive(initTestEast, filter, bandFilter);
+    initRefNorth = memo.derive(initRefNorth, filter, bandFilter);
 
     // enforce length constraint -- all data must be the same length
     double[][] data = matchArrayLengths(initTestNorth, initTestEast, initRefNorth);
@@ -258,18 +326,22 @@ public class AzimuthExperiment extends Experiment {
 
     LeastSquaresProblem findAngleY = new LeastSquaresBuilder().
         start(new double[]{initAngle}).
-        model(jacobian).
+        model(solverTelemetry.instrument(jacobian)).
+        checker(solverTelemetry.getCostRecorder()).
         target(new double[]{1}).
         maxEvaluations(Integer.MAX_VALUE).
         maxIterations(Integer.MAX_VALUE).
         lazyEvaluation(false).
         build();
 
-    LeastSquaresOptimizer optimizer = new LevenbergMarquardtOptimizer().
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
         withCostRelativeTolerance(1E-8).
         withParameterRelativeTolerance(1E-5);
 
-    LeastSquaresOptimizer.Optimum optimumY = optimizer.optimize(findAngleY);
+    long solveStartTime = System.nanoTime();
+    solverTelemetry.setBudget(solverBudget);
+    LeastSquaresOptimizer.Optimum optimumY = solverTelemetry.optimize(optimizer, findAngleY);
+    budgetExhausted = solverTelemetry.isBudgetExhausted();
     RealVector angleVector = optimumY.getPoint();
     double bestGuessAngle = angleVector.getEntry(0);
     bestGuessAngle = ((bestGuessAngle % NumericUtils.TAU) + NumericUtils.TAU)
@@ -297,71 +369,86 @@ public class AzimuthExperiment extends Experiment {
         new LinkedHashMap<>();
     List<Double> sortedCorrelation = new ArrayList<>();
 
-    // want (correlation-1+damping) to be as close to 0 as possible
-    RealVector target = MatrixUtils.createRealVector(new double[]{0});
-
     // the best correlation and azimuth angle producing that correlation
     // for the purpose of providing damped estimates
     // (improves susceptibility to noise)
     double bestCorr = jacobian.value(angleVector).getFirst().getEntry(0);
     double bestTheta = bestGuessAngle;
-    final long twoThouSecs = 2000L * TimeSeriesUtils.ONE_HZ_INTERVAL;
-    // 1000 ms per second, range length
-    final long fiveHundredSecs = twoThouSecs / 4L; // distance between windows
-    int numWindows = (int) ((timeRange - twoThouSecs) / fiveHundredSecs);
+    int numWindows = (int) ((timeRange - WINDOW_LENGTH) / WINDOW_SPACING);
+    // the data has already been band-passed over its full length, so each window's statistics
+    // (after removing its linear trend) can be read from running sums without copying the window
+    RotationMomentAccumulator windowMoments =
+        new RotationMomentAccumulator(initRefNorth, initTestNorth, initTestEast);
+    final long windowInterval = interval;
     // look at 2000s windows, sliding over 500s of data at a time
-    for (int i = 0; i < numWindows; ++i) {
-      fireStateChange("Fitting angle over data in window " + (i + 1) + " of " + numWindows);
-
-      // get start and end indices from given times
-      long wdStart = fiveHundredSecs * i; // start of 500s-sliding window
-      long wdEnd = wdStart + twoThouSecs; // end of window (2000s long)
-
-      int startIdx = (int) (wdStart / interval);
-      int endIdx = (int) (wdEnd / interval);
-
-      double[] testNorthWin = Arrays.copyOfRange(initTestNorth, startIdx, endIdx);
-      double[] testEastWin = Arrays.copyOfRange(initTestEast, startIdx, endIdx);
-      double[] refNorthWin = Arrays.copyOfRange(initRefNorth, startIdx, endIdx);
-
-      testNorthWin = TimeSeriesUtils.detrend(testNorthWin);
-      testEastWin = TimeSeriesUtils.detrend(testEastWin);
-      refNorthWin = TimeSeriesUtils.detrend(refNorthWin);
-
-      testNorthWin = FFTResult.bandFilter(testNorthWin, samplesPerSecond, low, high);
-      testEastWin = FFTResult.bandFilter(testEastWin, samplesPerSecond, low, high);
-      refNorthWin = FFTResult.bandFilter(refNorthWin, samplesPerSecond, low, high);
-
-      jacobian =
-          getDampedJacobianFunction(testNorthWin, testEastWin, refNorthWin, bestCorr, bestTheta);
-
-      LeastSquaresProblem findAngleWindow = new LeastSquaresBuilder().
-          start(new double[]{bestTheta}).
-          model(jacobian).
-          target(target).
-          maxEvaluations(Integer.MAX_VALUE).
-          maxIterations(Integer.MAX_VALUE).
-          lazyEvaluation(false).
-          build();
+    if (parallelWindows) {
+      // every window is damped toward and started from the initial estimate, so none depends on
+      // the others; the averaging below then picks out the best-correlated windows as usual
+      fireStateChange("Fitting angle over " + numWindows + " data windows in parallel");
+      final double seedCorr = bestCorr;
+      final double seedTheta = bestGuessAngle;
+      List<Integer> windows = new ArrayList<>();
+      for (int i = 0; i < numWindows; ++i) {
+        windows.add(i);
+      }
+      // windows left without a fit once the budget is used up are null
+      List<List<WindowFit>> groupFits = runInGroups("angle fits of windows", windows,
+          defaultGroupCount(windows.size()), group -> {
+            List<WindowFit> fits = new ArrayList<>(group.size());
+            for (int i : group) {
+              CancellationToken.checkCurrent();
+              SolverBudget windowBudget = getWindowBudget(solveStartTime);
+              fits.add(windowBudget == null ? null : fitWindow(i, windowMoments, windowInterval,
+                  seedCorr, seedTheta, optimizer, windowBudget));
+            }
+            return fits;
+          });
+      for (List<WindowFit> fits : groupFits) {
+        for (WindowFit windowFit : fits) {
+          if (windowFit == null) {
+            budgetExhausted = true;
+            continue;
+          }
+          windowSolverTelemetry.add(windowFit.telemetry);
+          budgetExhausted |= windowFit.telemetry.isBudgetExhausted();
+          angleCorrelationMap.put(windowFit.windowStart,
+              new Pair<>(windowFit.angle, windowFit.correlation));
+          sortedCorrelation.add(windowFit.correlation);
+        }
+      }
+      if (budgetExhausted) {
+        fireStateChange("Solver time budget exhausted; using windows fit in time");
+      }
+    } else {
+      for (int i = 0; i < numWindows; ++i) {
+        CancellationToken.checkCurrent();
+        // each window gets whatever time is left in the budget
+        SolverBudget windowBudget = getWindowBudget(solveStartTime);
+        if (windowBudget == null) {
+          fireStateChange("Solver time budget exhausted; using windows fit so far");
+          budgetExhausted = true;
+          break;
+        }
 
-      optimumY = optimizer.optimize(findAngleWindow);
+        fireStateChange("Fitting angle over data in window " + (i + 1) + " of " + numWindows);
 
-      RealVector angleVectorWindow = optimumY.getPoint();
-      findAngleWindow.evaluate(angleVectorWindow);
-      // call to evaluate at best-fit point gives corresponding latestCorrelation as side effect
-      double currentWindowAngle = angleVectorWindow.getEntry(0);
+        WindowFit windowFit =
+            fitWindow(i, windowMoments, windowInterval, bestCorr, bestTheta, optimizer,
+                windowBudget);
+        windowSolverTelemetry.add(windowFit.telemetry);
+        budgetExhausted |= windowFit.telemetry.isBudgetExhausted();
 
-      currentWindowAngle = ((currentWindowAngle % tau) + tau) % tau;
+        double correlation = windowFit.correlation;
 
-      double correlation = latestCorrelation;
+        if (correlation > bestCorr) {
+          bestCorr = correlation;
+          bestTheta = windowFit.angle;
+        }
 
-      if (correlation > bestCorr) {
-        bestCorr = correlation;
-        bestTheta = currentWindowAngle;
+        angleCorrelationMap.put(windowFit.windowStart,
+            new Pair<>(windowFit.angle, correlation));
+        sortedCorrelation.add(correlation);
       }
-
-      angleCorrelationMap.put(wdStart, new Pair<>(currentWindowAngle, correlation));
-      sortedCorrelation.add(correlation);
     }
 
     int minCorrelations = 5;
@@ -504,33 +591,102 @@ public class AzimuthExperiment extends Experiment {
    * we use a different cost function for initial estimate since using the
    * squared correlation would make x, 180+x produce the same values
    *
+   * @param moments Moments of the (detrended) data in the window being fit
+   * @param cr Best correlation found so far
+   * @param th Angle (radians) producing the best correlation found so far
    * @return Jacobian Function
    */
   private MultivariateJacobianFunction
-  getDampedJacobianFunction(double[] l1, double[] l2, double[] l3, double cr, double th) {
+  getDampedJacobianFunction(RotationCorrelation moments, double cr, double th) {
 
     // make my func the j-func, I want that func-y stuff
 
     return new MultivariateJacobianFunction() {
 
-      final double[] finalTestNorth = l1;
-      final double[] finalTestEast = l2;
-      final double[] finalRefNorth = l3;
+      // moments of the window's data, so evaluations don't depend on its length
+      final RotationCorrelation rotationCorrelation = moments;
       final double bestCorr = cr;
       final double bestTheta = th;
 
       @Override
       public Pair<RealVector, RealMatrix> value(final RealVector point) {
         return jacobian(point,
-            finalRefNorth,
-            finalTestNorth,
-            finalTestEast,
+            rotationCorrelation,
             bestCorr,
             bestTheta);
       }
     };
   }
 
+  /**
+   * Get the budget for the next window's solve, which gets whatever time is left in the budget
+   *
+   * @param solveStartTime Value of System.nanoTime() when the initial estimate began
+   * @return Budget for the window, or null if there is no time left to fit it
+   */
+  private SolverBudget getWindowBudget(long solveStartTime) {
+    if (solverBudget.getMaxWallTimeMillis() <= 0) {
+      return solverBudget;
+    }
+    long remainingMillis = solverBudget.getMaxWallTimeMillis() -
+        (System.nanoTime() - solveStartTime) / 1000000L;
+    if (remainingMillis <= 0) {
+      return null;
+    }
+    return solverBudget.withMaxWallTimeMillis(remainingMillis);
+  }
+
+  /**
+   * Fit the angle over a single correlation window using the damped cost function. This only reads
+   * from this experiment's fields, so windows may be fit concurrently.
+   *
+   * @param index Index of the window, starting from the beginning of the data
+   * @param windowMoments Sums over the full range of (filtered) data
+   * @param interval Sampling interval of the data (ms)
+   * @param bestCorr Correlation to damp the fit toward
+   * @param bestTheta Angle (radians) producing that correlation, and the solver's starting point
+   * @param optimizer Solver to fit the angle with
+   * @param budget Limits on the window's solve
+   * @return Best-fit angle of the window and its correlation
+   */
+  private WindowFit fitWindow(int index, RotationMomentAccumulator windowMoments, long interval,
+      double bestCorr, double bestTheta, LevenbergMarquardtOptimizer optimizer,
+      SolverBudget budget) {
+    double tau = NumericUtils.TAU;
+
+    // get start and end indices from given times
+    long wdStart = WINDOW_SPACING * index; // start of 500s-sliding window
+    long wdEnd = wdStart + WINDOW_LENGTH; // end of window (2000s long)
+
+    int startIdx = (int) (wdStart / interval);
+    int endIdx = Math.min((int) (wdEnd / interval), windowMoments.getLength());
+
+    RotationCorrelation moments = windowMoments.window(startIdx, endIdx);
+    MultivariateJacobianFunction jacobian =
+        getDampedJacobianFunction(moments, bestCorr, bestTheta);
+
+    SolverTelemetry windowTelemetry = new SolverTelemetry("Azimuth window " + (index + 1));
+    LeastSquaresProblem findAngleWindow = new LeastSquaresBuilder().
+        start(new double[]{bestTheta}).
+        model(windowTelemetry.instrument(jacobian)).
+        checker(windowTelemetry.getCostRecorder()).
+        // want (correlation-1+damping) to be as close to 0 as possible
+        target(new double[]{0}).
+        maxEvaluations(Integer.MAX_VALUE).
+        maxIterations(Integer.MAX_VALUE).
+        lazyEvaluation(false).
+        build();
+    windowTelemetry.setBudget(budget);
+
+    LeastSquaresOptimizer.Optimum optimum = windowTelemetry.optimize(optimizer, findAngleWindow);
+
+    double windowAngle = optimum.getPoint().getEntry(0);
+    windowAngle = ((windowAngle % tau) + tau) % tau;
+    // correlation (not the damped cost) at the best-fit angle, used to choose windows to average
+    double correlation = moments.correlation(windowAngle);
+    return new WindowFit(wdStart, windowAngle, correlation, windowTelemetry);
+  }
+
   /**
    * Return the fit angle calculated by the backend in degrees
    *
@@ -552,8 +708,8 @@ public class AzimuthExperiment extends Experiment {
   /**
    * Returns the jacobian function for initial estimate given input timeseries data.
    * The timeseries are used as input to the rotation function.
-   * We take the inputs as fixed and rotate copies of the data to find the
-   * Jacobian of the data.
+   * We take the inputs as fixed and get the correlation of the rotated data (and its derivative)
+   * from the moments of the inputs, which are calculated once when the function is created.
    *
    * @param l1 Data from the test sensor's north-facing component
    * @param l2 Data from the test sensor's east-facing component
@@ -564,16 +720,11 @@ public class AzimuthExperiment extends Experiment {
   getJacobianFunction(double[] l1, double[] l2, double[] l3) {
     return new MultivariateJacobianFunction() {
 
-      final double[] finalTestNorth = l1;
-      final double[] finalTestEast = l2;
-      final double[] finalRefNorth = l3;
+      final RotationCorrelation rotationCorrelation = new RotationCorrelation(l3, l1, l2);
 
       @Override
       public Pair<RealVector, RealMatrix> value(final RealVector point) {
-        return jacobian(point,
-            finalRefNorth,
-            finalTestNorth,
-            finalTestEast);
+        return jacobian(point, rotationCorrelation);
       }
     };
   }
@@ -605,6 +756,48 @@ public class AzimuthExperiment extends Experiment {
     offset = newOffset;
   }
 
+  /**
+   * Get the record of the solver's iterations, evaluations, timing, and convergence for the
+   * initial estimate of the angle over the full range of data
+   *
+   * @return Telemetry of the initial angle fit
+   */
+  public SolverTelemetry getSolverTelemetry() {
+    return solverTelemetry;
+  }
+
+  /**
+   * Get the records of the solver's iterations, evaluations, timing, and convergence for each of
+   * the correlation windows. This is empty if the experiment only did the initial estimate.
+   *
+   * @return List of telemetry of each window's angle fit, in window order
+   */
+  public List<SolverTelemetry> getWindowSolverTelemetry() {
+    return Collections.unmodifiableList(windowSolverTelemetry);
+  }
+
+  /**
+   * Get whether any of the solves ran out of budget (or windows were skipped because the time
+   * budget ran out), in which case the angle is the best estimate found so far
+   *
+   * @return True if the solver budget was exhausted
+   */
+  public boolean isBudgetExhausted() {
+    return budgetExhausted;
+  }
+
+  /**
+   * Set limits on the time, iterations, and evaluations the solver may use. The time limit
+   * covers the initial estimate and all of the correlation windows together, while the iteration
+   * and evaluation limits apply to each solve. When the budget runs out the best estimate found
+   * so far is used.
+   *
+   * @param budget Limits for the solver, or SolverBudget.UNLIMITED to run until convergence
+   */
+  public void setSolverBudget(SolverBudget budget) {
+    solverBudget = budget;
+  }
+
   /**
    * Get the uncertainty of the angle
    *
@@ -633,28 +826,23 @@ public class AzimuthExperiment extends Experiment {
     return true;
   }
 
+  /**
+   * Jacobian function for the azimuth solver's initial estimate. Produces the correlation of the
+   * reference sensor with the test sensors rotated by the given angle, and its exact derivative.
+   *
+   * @param point Current angle
+   * @param rotationCorrelation Moments of the reference and test sensor data
+   * @return Correlation (RealVector) and its derivative (RealMatrix) at the current angle
+   */
   private Pair<RealVector, RealMatrix> jacobian(
       final RealVector point,
-      final double[] refNorth,
-      final double[] testNorth,
-      final double[] testEast) {
-
-    double diff = 1E-12;
+      final RotationCorrelation rotationCorrelation) {
 
     double theta = (point.getEntry(0));
-    double thetaDelta = theta + diff;
 
-    // angles of rotation are x, x+dx respectively
-    double[] testRotated =
-        TimeSeriesUtils.rotate(testNorth, testEast, theta);
-    double[] rotatedDiff =
-        TimeSeriesUtils.rotate(testNorth, testEast, thetaDelta);
-
-    PearsonsCorrelation pearsonsCorrelation = new PearsonsCorrelation();
-    double value = pearsonsCorrelation.correlation(refNorth, testRotated);
+    double value = rotationCorrelation.correlation(theta);
     RealVector valueVec = MatrixUtils.createRealVector(new double[]{value});
-    double deltaY = pearsonsCorrelation.correlation(refNorth, rotatedDiff);
-    double change = (deltaY - value) / diff;
+    double change = rotationCorrelation.correlationDerivative(theta);
     double[][] jacobianArray = new double[][]{{change}};
     RealMatrix jacobian = MatrixUtils.createRealMatrix(jacobianArray);
     return new Pair<>(valueVec, jacobian);
@@ -669,44 +857,27 @@ public class AzimuthExperiment extends Experiment {
    * set of input data).
    *
    * @param point Current angle
-   * @param refNorth Reference sensor, facing north
-   * @param testNorth Test sensor, facing approximately north
-   * @param testEast Test sensor, facing approximately east and orthogonal to
-   * testNorth
+   * @param rotationCorrelation Moments of the reference and test sensor data over the window
    * @param bestCorr Most recent best-result value for the correlation (from previous windows)
    * @param bestTheta Most recent best-result value for the correlation (from previous windows)
-   * @return Correlation (RealVector) and forward difference
-   * approximation of the Jacobian (RealMatrix) at the current angle
+   * @return Cost (RealVector) and its derivative (RealMatrix) at the current angle
    */
   private Pair<RealVector, RealMatrix> jacobian(
       final RealVector point,
-      final double[] refNorth,
-      final double[] testNorth,
-      final double[] testEast,
+      final RotationCorrelation rotationCorrelation,
       final double bestCorr,
       final double bestTheta) {
 
-    double diff = 1E-12;
-
     double theta = (point.getEntry(0));
-    double thetaDelta = theta + diff;
 
-    // angles of rotation are x, x+dx respectively
-    double[] testRotated =
-        TimeSeriesUtils.rotate(testNorth, testEast, theta);
-    double[] rotatedDiff =
-        TimeSeriesUtils.rotate(testNorth, testEast, thetaDelta);
-
-    PearsonsCorrelation pearsonsCorrelation = new PearsonsCorrelation();
-    double value = pearsonsCorrelation.correlation(refNorth, testRotated);
-    latestCorrelation = value;
+    double correlation = rotationCorrelation.correlation(theta);
     double damping = (bestCorr - 1) * (theta - bestTheta);
-    value = Math.pow(value - 1 + damping, 2);
+    double residual = correlation - 1 + damping;
+    double value = Math.pow(residual, 2);
     RealVector valueVec = MatrixUtils.createRealVector(new double[]{value});
-    double deltaY = pearsonsCorrelation.correlation(refNorth, rotatedDiff);
-    damping = (bestCorr - 1) * (thetaDelta - bestTheta);
-    deltaY = Math.pow(deltaY - 1 + damping, 2);
-    double change = (deltaY - value) / diff;
+    // d/dt (corr - 1 + (bestCorr - 1) * (t - bestTheta))^2
+    double change = 2 * residual
+        * (rotationCorrelation.correlationDerivative(theta) + bestCorr - 1);
     double[][] jacobianArray = new double[][]{{change}};
     RealMatrix jacobian = MatrixUtils.createRealMatrix(jacobianArray);
     return new Pair<>(valueVec, jacobian);
@@ -735,4 +906,43 @@ public class AzimuthExperiment extends Experiment {
   boolean getSimpleCalc() {
     return simpleCalc;
   }
+
+  /**
+   * Set whether to fit each correlation window independently, in parallel. Normally each window's
+   * fit is damped toward the best-correlated fit of the windows before it, so they must be done in
+   * order; in parallel mode every window is instead damped toward and started from the initial
+   * estimate over the full range of data. The best-correlated windows are then averaged as usual.
+   *
+   * @param parallel True if windows should be fit independently and in parallel
+   */
+  public void setParallelWindows(boolean parallel) {
+    parallelWindows = parallel;
+  }
+
+  /**
+   * Get whether correlation windows are fit independently and in parallel
+   *
+   * @return True if windows are fit in parallel
+   */
+  public boolean isParallelWindows() {
+    return parallelWindows;
+  }
+
+  /**
+   * Result of fitting the angle over a single correlation window
+   */
+  private static final class WindowFit {
+
+    final long windowStart;
+    final double angle;
+    final double correlation;
+    final SolverTelemetry telemetry;
+
+    WindowFit(long windowStart, double angle, double correlation, SolverTelemetry telemetry) {
+      this.windowStart = windowStart;
+      this.angle = angle;
+      this.correlation = correlation;
+      this.telemetry = telemetry;
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package asl.sensor.experiment;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import asl.sensor.utils.CrossSpectralMatrix;
+import java.util.ArrayList;
+import java.util.List;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+/**
+ * Calculates the magnitude-squared coherence, |Pij|^2 / (Pii * Pjj), of each pair of 2-3 series of
+ * data. The self-noise calculations assume that the sensors being compared record the same signal;
+ * where that holds the coherence is close to 1, and where it drops (i.e., because a channel is
+ * misaligned or clipped, or its own noise dominates) so does the reliability of the noise estimate.
+ * The PSDs and cross-powers are calculated the same way as for the spectrum and noise experiments,
+ * but all together (see CrossSpectralMatrix), so that each series is only transformed once.
+ * Since the same response terms cancel out of the coherence, responses are not needed.
+ */
+public class CoherenceExperiment extends Experiment {
+
+  private static final int MAX_DATA_EXPECTED = 3;
+
+  /**
+   * True if plotting using Hz, False if sampleRate
+   */
+  private boolean freqSpace;
+
+  private int[] dataIndices;
+
+  public CoherenceExperiment() {
+    super();
+    dataIndices = new int[]{};
+    freqSpace = false;
+  }
+
+  @Override
+  public String[] getInsetStrings() {
+    return new String[]{getFormattedDateRange()};
+  }
+
+  @Override
+  protected void backend(final DataStore dataStore) {
+
+    XYSeriesCollection plotCoherence = new XYSeriesCollection();
+    plotCoherence.setAutoWidth(true);
+
+    List<Integer> indices = new ArrayList<>();
+    for (int i = 0; i < MAX_DATA_EXPECTED; ++i) {
+      if (dataStore.blockIsSet(i)) {
+        indices.add(i);
+      }
+    }
+    dataIndices = new int[indices.size()];
+    double[][] data = new double[dataIndices.length][];
+    String[] names = new String[dataIndices.length];
+    for (int i = 0; i < dataIndices.length; ++i) {
+      dataIndices[i] = indices.get(i);
+      DataBlock block = dataStore.getBlock(dataIndices[i]);
+      names[i] = block.getName() + " [" + dataIndices[i] + "]";
+      dataNames.add(block.getName());
+      data[i] = block.getData();
+    }
+    long interval = dataStore.getBlock(dataIndices[0]).getInterval();
+
+    fireStateChange("Getting PSDs and cross-powers of all series...");
+    CrossSpectralMatrix spectra = CrossSpectralMatrix.calculate(data, interval);
+
+    fireStateChange("Getting coherence of each pair of series...");
+    for (int i = 0; i < dataIndices.length; ++i) {
+      for (int j = i + 1; j < dataIndices.length; ++j) {
+        XYSeries series = new XYSeries("Coherence " + names[i] + " & " + names[j]);
+        addCoherenceToPlot(series, spectra.getCoherence(i, j), spectra.getFreqs(), freqSpace,
+            psdBandsPerOctave);
+        plotCoherence.addSeries(series);
+      }
+    }
+
+    xySeriesData.add(plotCoherence);
+  }
+
+  @Override
+  public int blocksNeeded() {
+    // this refers to the number of input panel components to show, not the amount of data needed
+    // to run the plot -- similar to spectrum experiment, don't need all inputs filled to do calcs
+    return MAX_DATA_EXPECTED;
+  }
+
+  @Override
+  public boolean hasEnoughData(DataStore dataStore) {
+    int loaded = 0;
+    for (int i = 0; i < MAX_DATA_EXPECTED; ++i) {
+      if (dataStore.blockIsSet(i)) {
+        ++loaded;
+      }
+    }
+    return loaded >= 2;
+  }
+
+  /**
+   * Used to set the x-axis over which the coherence is plotted,
+   * either frequency (Hz) units or sample-interval (s) units
+   *
+   * @param freqSpace True if the plot should use units of Hz
+   */
+  public void setFreqSpace(boolean freqSpace) {
+    this.freqSpace = freqSpace;
+  }
+
+}
@@ -5,10 +5,21 @@ import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.EventListenerList;
@@ -18,7 +29,10 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
+import asl.sensor.utils.CancellationToken;
+import asl.sensor.utils.FractionalOctaveBinner;
 import asl.sensor.utils.NumericUtils;
+import asl.sensor.utils.StageProfiler;
 
 /**
  * This function defines template patterns for each type of sensor experiment
@@ -77,6 +91,17 @@ public abstract class Experiment {
    * Frequency plots should be limited by this value as max resolution of period (1E6 seconds)
    */
   static final double MAX_PLOT_PERIOD = 1.0E6;
+  /**
+   * Pool shared by all experiments for running independent parts of a calculation concurrently
+   * (its threads are daemons, so it does not need to be shut down)
+   */
+  private static final ForkJoinPool SHARED_EXECUTOR =
+      new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+  /**
+   * Groups per processor when splitting many similar items into concurrent tasks, so that progress
+   * can be reported during the run
+   */
+  static final int TASKS_PER_PROCESSOR = 4;
   private final EventListenerList eventHelper;
   long start;
   long end;
@@ -91,6 +116,28 @@ public abstract class Experiment {
   List<String> dataNames;
   private String status;
   private Map<String, List<Pair<Date, Date>>> gapRegions;
+  /**
+   * Memo of preprocessed data for the current run, possibly shared with a parent experiment
+   */
+  private PreprocessingMemo preprocessingMemo;
+  /**
+   * True if the memo belongs to a parent experiment's run, and so should not be reset here
+   */
+  private boolean memoShared;
+  /**
+   * Token used to cancel the current run
+   */
+  private CancellationToken cancellationToken;
+  /**
+   * Stages of the current run, which are part of a parent experiment's profile if this is run as
+   * part of its calculation
+   */
+  private StageProfiler stageProfiler;
+  /**
+   * Number of fractional-octave bands per octave that plotted PSDs are averaged into, or 0 if PSDs
+   * are plotted at every frequency (with moving-average smoothing)
+   */
+  int psdBandsPerOctave;
   /**
    * Initialize all fields common to experiment objects
    */
@@ -100,6 +147,11 @@ public abstract class Experiment {
     dataNames = new ArrayList<>();
     status = "";
     eventHelper = new EventListenerList();
+    preprocessingMemo = new PreprocessingMemo();
+    memoShared = false;
+    cancellationToken = new CancellationToken();
+    stageProfiler = new StageProfiler();
+    psdBandsPerOctave = 0;
   }
 
   /**
@@ -111,11 +163,14 @@ public abstract class Experiment {
    * @param freqSpace True if using units of Hz, False if units of s
    * (sample rate vs. interval between points)
    * @param index Specifies which of the DataBlocks in the DataStore to get the data from
+   * @param bandsPerOctave Number of bands per octave to average the PSD into, or 0 to plot the
+   * smoothed PSD at every frequency
    */
   static void addToPlot(
       final DataStore dataStore,
       final boolean freqSpace,
       final int index,
+      final int bandsPerOctave,
       XYSeriesCollection xysc) {
 
     XYSeries powerSeries =
@@ -124,7 +179,7 @@ public abstract class Experiment {
     Complex[] resultPSD = dataStore.getPSD(index).getFFT();
     double[] freqs = dataStore.getPSD(index).getFreqs();
 
-    addToPlot(powerSeries, resultPSD, freqs, freqSpace, xysc);
+    addToPlot(powerSeries, resultPSD, freqs, freqSpace, bandsPerOctave, xysc);
   }
 
   /**
@@ -207,6 +262,8 @@ public abstract class Experiment {
    * @param resultPSD FFT data produced by the PSD
    * @param freqs Frequency corresponding to PSD value at given index
    * @param freqSpace True if using units of Hz, False if units of s
+   * @param bandsPerOctave Number of bands per octave to average the PSD into, or 0 to plot the
+   * smoothed PSD at every frequency
    * @param xysc XYSeriesCollection the given XYSeries will be loaded into
    */
   static void addToPlot(
@@ -214,44 +271,128 @@ public abstract class Experiment {
       final Complex[] resultPSD,
       final double[] freqs,
       final boolean freqSpace,
+      final int bandsPerOctave,
       XYSeriesCollection xysc) {
 
-    // Smooth the PSD data before it goes out to the plots
-    Complex[] smoothedPSD = NumericUtils.multipointMovingAverage(resultPSD, 9, false);
-    // for the last 3 points, do 7, 5, 3 last points
-    Complex last3 = Complex.ZERO;
-    Complex last5 = Complex.ZERO;
-    Complex last7 = Complex.ZERO;
-    for (int i = 0; i < 7; ++i) {
-      if (i < 3) {
-        last3 = last3.add(resultPSD[i]);
+    StageProfiler.Span span = StageProfiler.stage("Plot building");
+    try {
+      if (bandsPerOctave > 0) {
+        FractionalOctaveBinner binner = new FractionalOctaveBinner(freqs, bandsPerOctave);
+        addBinnedToPlot(powerSeries, binner, binner.bin(resultPSD), freqSpace);
+        xysc.addSeries(powerSeries);
+        return;
+      }
+
+      // Smooth the PSD data before it goes out to the plots
+      Complex[] smoothedPSD = NumericUtils.multipointMovingAverage(resultPSD, 9, false);
+      // for the last 3 points, do 7, 5, 3 last points
+      Complex last3 = Complex.ZERO;
+      Complex last5 = Complex.ZERO;
+      Complex last7 = Complex.ZERO;
+      for (int i = 0; i < 7; ++i) {
+        if (i < 3) {
+          last3 = last3.add(resultPSD[i]);
+        }
+        if (i < 5) {
+          last5 = last5.add(resultPSD[i]);
+        }
+        last7 = last7.add(resultPSD[i]);
       }
-      if (i < 5) {
-        last5 = last5.add(resultPSD[i]);
+
+      int idx = smoothedPSD.length - 1;
+      smoothedPSD[idx] = last3.divide(3);
+      --idx;
+      smoothedPSD[idx] = last5.divide(5);
+      --idx;
+      smoothedPSD[idx] = last7.divide(7);
+
+      for (int j = 0; j < freqs.length; ++j) {
+        if (1 / freqs[j] > MAX_PLOT_PERIOD) {
+          continue;
+        }
+        double temp = 10 * Math.log10(smoothedPSD[j].abs());
+        if (freqSpace) {
+          powerSeries.add(freqs[j], temp);
+        } else {
+          powerSeries.add(1 / freqs[j], temp);
+        }
       }
-      last7 = last7.add(resultPSD[i]);
-    }
 
-    int idx = smoothedPSD.length - 1;
-    smoothedPSD[idx] = last3.divide(3);
-    --idx;
-    smoothedPSD[idx] = last5.divide(5);
-    --idx;
-    smoothedPSD[idx] = last7.divide(7);
+      xysc.addSeries(powerSeries);
+    } finally {
+      span.close();
+    }
+  }
 
-    for (int j = 0; j < freqs.length; ++j) {
-      if (1 / freqs[j] > MAX_PLOT_PERIOD) {
+  /**
+   * Helper function to add spectral data averaged into fractional-octave bands (in linear units,
+   * such as PSD magnitudes) to an XYSeries in decibels. Bands without a finite value in decibels
+   * (i.e., empty bands or bands of zeros) and bands beyond the maximum plotted period are skipped.
+   *
+   * @param series XYSeries data to load the binned data into
+   * @param binner Binner that produced the data, used to get the band frequencies
+   * @param binnedValues Data averaged into the bands of the binner
+   * @param freqSpace True if using units of Hz, False if units of s
+   */
+  static void addBinnedToPlot(
+      final XYSeries series,
+      final FractionalOctaveBinner binner,
+      final double[] binnedValues,
+      final boolean freqSpace) {
+    double[] centers = binner.getCenterFrequencies();
+    for (int j = 0; j < centers.length; ++j) {
+      if (1 / centers[j] > MAX_PLOT_PERIOD) {
+        continue;
+      }
+      double temp = 10 * Math.log10(binnedValues[j]);
+      if (!Double.isFinite(temp)) {
         continue;
       }
-      double temp = 10 * Math.log10(smoothedPSD[j].abs());
       if (freqSpace) {
-        powerSeries.add(freqs[j], temp);
+        series.add(centers[j], temp);
       } else {
-        powerSeries.add(1 / freqs[j], temp);
+        series.add(1 / centers[j], temp);
       }
     }
+  }
 
-    xysc.addSeries(powerSeries);
+  /**
+   * Helper function to add the coherence of two series (see CrossSpectralMatrix) to an XYSeries.
+   * Coherence is plotted in linear units (0 to 1) rather than decibels. If bands per octave are
+   * given, the coherence is averaged into fractional-octave bands as with binned PSDs. Points
+   * without a finite value (such as the DC term) and beyond the maximum plotted period are skipped.
+   *
+   * @param series XYSeries data to load the coherence into
+   * @param coherence Coherence at each frequency
+   * @param freqs Frequencies of the coherence (Hz)
+   * @param freqSpace True if using units of Hz, False if units of s
+   * @param bandsPerOctave Number of fractional-octave bands to average into, or 0 to plot every
+   * frequency
+   */
+  static void addCoherenceToPlot(
+      final XYSeries series,
+      final double[] coherence,
+      final double[] freqs,
+      final boolean freqSpace,
+      final int bandsPerOctave) {
+    double[] values = coherence;
+    double[] plotFreqs = freqs;
+    if (bandsPerOctave > 0) {
+      FractionalOctaveBinner binner = new FractionalOctaveBinner(freqs, bandsPerOctave);
+      values = binner.bin(coherence);
+      plotFreqs = binner.getCenterFrequencies();
+    }
+    for (int j = 0; j < plotFreqs.length; ++j) {
+      if (!(plotFreqs[j] > 0.) || 1 / plotFreqs[j] > MAX_PLOT_PERIOD
+          || !Double.isFinite(values[j])) {
+        continue;
+      }
+      if (freqSpace) {
+        series.add(plotFreqs[j], values[j]);
+      } else {
+        series.add(1 / plotFreqs[j], values[j]);
+      }
+    }
   }
 
   /**
@@ -297,6 +438,174 @@ public abstract class Experiment {
     }
   }
 
+  /**
+   * Get the executor shared by all experiments for running independent parts of a calculation
+   * concurrently
+   *
+   * @return Shared executor
+   */
+  static ExecutorService getSharedExecutor() {
+    return SHARED_EXECUTOR;
+  }
+
+  /**
+   * Run independent tasks concurrently on the shared executor and wait for all of them to finish.
+   * Status updates are only fired from the calling thread, once as each task completes, so that
+   * listeners see one coherent sequence of progress messages. If this is called from a task that
+   * is itself running in a fork-join pool, the tasks are run one after another instead to avoid
+   * tying up the pool's threads waiting on each other. The tasks run with the calling thread's
+   * stage profiler and a child of its cancellation token. If the run is cancelled or any task
+   * fails, that child is cancelled so the other tasks stop at their next check, and this waits
+   * for them to stop before returning, so that none are still running once it has.
+   *
+   * @param taskNames Description of each task, used in status updates
+   * @param tasks Tasks to run, which must not depend on each other
+   * @param <T> Type of the tasks' results
+   * @return Result of each task, in the same order as the tasks were given
+   */
+  <T> List<T> runConcurrently(List<String> taskNames, List<Callable<T>> tasks) {
+    int taskCount = tasks.size();
+    List<T> results = new ArrayList<>(taskCount);
+    if (ForkJoinTask.inForkJoinPool()) {
+      for (int i = 0; i < taskCount; ++i) {
+        fireStateChange("Getting " + taskNames.get(i) + "...");
+        try {
+          results.add(tasks.get(i).call());
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return results;
+    }
+
+    // futures of pool tasks ignore interruption, so stop the tasks through their token instead
+    CancellationToken token = CancellationToken.current().newChild();
+    CompletionService<T> completionService = new ExecutorCompletionService<>(SHARED_EXECUTOR);
+    List<Future<T>> futures = new ArrayList<>(taskCount);
+    Map<Future<T>, Integer> taskIndices = new HashMap<>();
+    StageProfiler profiler = StageProfiler.current();
+    for (Callable<T> task : tasks) {
+      Future<T> future = completionService.submit(() -> profiler.call(() -> token.call(task)));
+      taskIndices.put(future, futures.size());
+      futures.add(future);
+    }
+    boolean finished = false;
+    try {
+      for (int completed = 1; completed <= taskCount; ++completed) {
+        Future<T> done = completionService.take();
+        done.get(); // fail fast if this task threw an exception
+        String taskName = taskNames.get(taskIndices.get(done));
+        fireStateChange("Got " + taskName + " (" + completed + " of " + taskCount + " done)");
+      }
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      finished = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Calculation interrupted");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      if (!finished) {
+        token.cancel();
+        awaitStopped(futures);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Wait for tasks whose token has been cancelled to stop, ignoring how they ended. Tasks stop at
+   * their next cancellation check, so this waits through interruptions (restoring the interrupt
+   * afterwards) rather than leave them running.
+   *
+   * @param futures Futures of the tasks
+   */
+  private static void awaitStopped(List<? extends Future<?>> futures) {
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException | CancellationException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Split items into contiguous groups of nearly equal size and run each group as a task through
+   * {@link #runConcurrently(List, List)}. Each task is named from the items it covers, counting
+   * from 1, e.g., "PSDs of frames 1 to 10".
+   *
+   * @param itemsName Description of the work done on the items, e.g., "PSDs of frames"
+   * @param items Items to split, in order
+   * @param groupCount Number of groups to split into (at most one per item)
+   * @param groupTask Work done on each group, which must not depend on any other group
+   * @param <E> Type of the items
+   * @param <T> Type of the result of each group
+   * @return Result of each group, in the same order as the items
+   */
+  <E, T> List<T> runInGroups(String itemsName, List<E> items, int groupCount,
+      Function<List<E>, T> groupTask) {
+    groupCount = Math.min(groupCount, items.size());
+    List<String> taskNames = new ArrayList<>(groupCount);
+    List<Callable<T>> tasks = new ArrayList<>(groupCount);
+    for (int group = 0; group < groupCount; ++group) {
+      int from = (int) ((long) items.size() * group / groupCount);
+      int to = (int) ((long) items.size() * (group + 1) / groupCount);
+      final List<E> groupItems = items.subList(from, to);
+      taskNames.add(itemsName + " " + (from + 1) + " to " + to);
+      tasks.add(() -> groupTask.apply(groupItems));
+    }
+    return runConcurrently(taskNames, tasks);
+  }
+
+  /**
+   * Get the number of groups to split items into when each item is about as much work as any
+   * other, enough to keep every processor busy while still reporting progress
+   *
+   * @param itemCount Number of items to split
+   * @return Number of groups, at most one per item
+   */
+  static int defaultGroupCount(int itemCount) {
+    return Math.min(itemCount, TASKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Check whether a span of time overlaps any gap in the data, such as from
+   * {@link DataBlock#getGapBoundaries()}. Spans just touching a gap do not overlap it.
+   *
+   * @param gaps Start and end times of each gap (ms)
+   * @param start Start of the span (ms)
+   * @param end End of the span (ms)
+   * @return True if the span overlaps any of the gaps
+   */
+  static boolean overlapsGap(List<Pair<Long, Long>> gaps, long start, long end) {
+    for (Pair<Long, Long> gap : gaps) {
+      if (gap.getFirst() < end && gap.getSecond() > start) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Return the plottable data for this experiment, populated in the backend
    * function of an implementing class; calling this class before running the
@@ -350,6 +659,111 @@ public abstract class Experiment {
     return start;
   }
 
+  /**
+   * Get the number of fractional-octave bands per octave that plotted PSDs are averaged into
+   *
+   * @return Bands per octave, or 0 if PSDs are plotted at every frequency
+   */
+  public int getPSDBandsPerOctave() {
+    return psdBandsPerOctave;
+  }
+
+  /**
+   * Used to set how experiments that plot PSDs (spectrum, self-noise, relative gain) display them:
+   * either averaged into 1/N-octave bands on a log-frequency grid (i.e., 8 or 12 bands per octave),
+   * which gives far fewer points to draw and report for long records and lines up with the noise
+   * models, or smoothed at every frequency of the PSD (the default). Only the plots are affected.
+   *
+   * @param bandsPerOctave Number of bands per octave, or 0 to plot PSDs at every frequency
+   */
+  public void setPSDBandsPerOctave(int bandsPerOctave) {
+    if (bandsPerOctave < 0) {
+      throw new IllegalArgumentException("Bands per octave cannot be negative: " + bandsPerOctave);
+    }
+    psdBandsPerOctave = bandsPerOctave;
+  }
+
+  /**
+   * Get the memo of data preprocessed during the current run of this experiment
+   *
+   * @return Memo of derived data
+   */
+  PreprocessingMemo getPreprocessingMemo() {
+    return preprocessingMemo;
+  }
+
+  /**
+   * Share a parent experiment's memo of preprocessed data with this experiment, for when this is
+   * run as part of the parent's calculation. The memo is then not reset when this is run.
+   *
+   * @param memo Memo of derived data for the parent experiment's run
+   */
+  void sharePreprocessingMemo(PreprocessingMemo memo) {
+    preprocessingMemo = memo;
+    memoShared = true;
+  }
+
+  /**
+   * Get the token used to cancel the current run, for handing to work done in other threads
+   *
+   * @return Cancellation token of the current run
+   */
+  CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  /**
+   * Get the stages recorded during the last run of this experiment: the time and memory spent
+   * loading data, matching intervals, calculating PSDs, fitting, and so on. If this experiment was
+   * run as part of another's calculation, these are part of the other experiment's profile.
+   *
+   * @return Profile of the last run
+   */
+  public StageProfiler getStageProfiler() {
+    return stageProfiler;
+  }
+
+  /**
+   * Get a table of the time spent in each stage of the last run, for reports. This is empty if
+   * no stages were recorded.
+   *
+   * @return Stage timing report, or an empty string
+   */
+  public String getStageTimingReport() {
+    return stageProfiler.toString();
+  }
+
+  /**
+   * Cancel the current run of this experiment, which stops at its next check for cancellation
+   * with a CancellationException
+   */
+  public void cancel() {
+    cancellationToken.cancel();
+  }
+
+  /**
+   * Start a new memo of preprocessed data for a new run, unless the memo is shared from a parent
+   * experiment (derived data is only reused within a run, since inputs may change between runs)
+   */
+  void resetPreprocessingMemo() {
+    if (!memoShared) {
+      preprocessingMemo = new PreprocessingMemo();
+    }
+  }
+
+  /**
+   * Get a description of how much preprocessing of the data was reused during the last run, for
+   * reports. This is empty if the experiment did not use the memo.
+   *
+   * @return Memo statistics, or an empty string
+   */
+  public String getPreprocessingStatistics() {
+    if (preprocessingMemo.getRequests() == 0) {
+      return "";
+    }
+    return preprocessingMemo.toString();
+  }
+
   /**
    * Return newest status message produced by this program
    * (Used to get the actual status messages that should be displayed in the GUI while processing)
@@ -390,21 +804,59 @@ public abstract class Experiment {
    * @param dataStore Timeseries data to be processed
    */
   public void runExperimentOnData(final DataStore dataStore) {
+    // if this is run as part of another calculation, it is cancelled along with that one
+    runExperimentOnData(dataStore, CancellationToken.current());
+  }
+
+  /**
+   * Driver to do data processing on inputted data, as in {@link #runExperimentOnData(DataStore)},
+   * stopping the calculation early if the given token is cancelled. The backend (and any
+   * calculations it runs in the same thread) can find the token through
+   * {@link CancellationToken#current()}; a cancelled run throws a CancellationException.
+   *
+   * @param dataStore Timeseries data to be processed
+   * @param token Token used to cancel the calculation
+   */
+  public void runExperimentOnData(final DataStore dataStore, final CancellationToken token) {
+    cancellationToken = token;
+    StageProfiler parentProfiler = StageProfiler.current();
+    if (parentProfiler.isEnabled()) {
+      // run as part of another experiment's calculation, so the stages are part of its profile
+      stageProfiler = parentProfiler;
+      token.run(() -> runWithToken(dataStore));
+      return;
+    }
+    stageProfiler = new StageProfiler();
+    long runStart = System.nanoTime();
+    try {
+      stageProfiler.run(() -> token.run(() -> runWithToken(dataStore)));
+    } finally {
+      ExperimentProfiles.getInstance().record(
+          getClass().getSimpleName(), stageProfiler, System.nanoTime() - runStart);
+    }
+  }
+
+  private void runWithToken(final DataStore input) {
 
     fireStateChange("Beginning loading data...");
 
     dataNames = new ArrayList<>();
     xySeriesData = new ArrayList<>();
     gapRegions = new LinkedHashMap<>();
+    resetPreprocessingMemo();
 
-    if (hasEnoughData(dataStore) && (blocksNeeded() == 0)) {
+    if (hasEnoughData(input) && (blocksNeeded() == 0)) {
       // prevent null issue when doing response data, which does not really have times
       start = 0L;
       end = 0L;
-      backend(dataStore);
+      runBackend(input);
       return;
     }
 
+    // match intervals on a copy, which shares the input's data, so that the input is left as it
+    // was and can be given to other experiments (even ones running at the same time)
+    final DataStore dataStore = new DataStore(input);
+
     // TODO: may want to do a check that enough data exists and throw exception as necessary
 
     final DataBlock db = dataStore.getXthLoadedBlock(1);
@@ -412,7 +864,12 @@ public abstract class Experiment {
     start = db.getStartTime();
     end = db.getEndTime();
 
-    dataStore.matchIntervals(blocksNeeded());
+    StageProfiler.Span span = StageProfiler.stage("Matching intervals");
+    try {
+      dataStore.matchIntervals(blocksNeeded());
+    } finally {
+      span.close();
+    }
 
     // populate gapregions data
     for (int i = 0; i < blocksNeeded(); ++i) {
@@ -436,8 +893,17 @@ public abstract class Experiment {
 
     fireStateChange("Beginning calculations...");
 
-    backend(dataStore);
+    runBackend(dataStore);
 
     fireStateChange("Calculations done!");
   }
+
+  private void runBackend(final DataStore dataStore) {
+    StageProfiler.Span span = StageProfiler.stage(getClass().getSimpleName() + " backend");
+    try {
+      backend(dataStore);
+    } finally {
+      span.close();
+    }
+  }
 }
@@ -0,0 +1,108 @@
+package asl.sensor.experiment;
+
+import asl.sensor.utils.StageProfiler;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keeps the stage profile of the latest run of each type of experiment and publishes it through
+ * the platform MBean server under {@link #OBJECT_NAME}. Only the latest run of each experiment is
+ * kept, so this doesn't grow over the life of the program.
+ */
+public final class ExperimentProfiles implements ExperimentProfilesMXBean {
+
+  /**
+   * Name the profiles are registered under with the platform MBean server
+   */
+  public static final String OBJECT_NAME = "asl.sensor:type=ExperimentProfiles";
+
+  private static final ExperimentProfiles INSTANCE = register(new ExperimentProfiles());
+
+  private final Map<String, StageProfiler> latestProfiles;
+  private final Map<String, Long> latestRunNanos;
+
+  private ExperimentProfiles() {
+    latestProfiles = new ConcurrentHashMap<>();
+    latestRunNanos = new ConcurrentHashMap<>();
+  }
+
+  private static ExperimentProfiles register(ExperimentProfiles profiles) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(profiles, name);
+      }
+    } catch (JMException | SecurityException e) {
+      // profiles are still available through getInstance, just not over JMX
+      e.printStackTrace();
+    }
+    return profiles;
+  }
+
+  /**
+   * Get the profiles of all experiments run in this program
+   *
+   * @return Shared record of experiment profiles
+   */
+  public static ExperimentProfiles getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Record the profile of a completed run of an experiment, replacing that of its last run
+   *
+   * @param experimentName Name of the experiment (its class name)
+   * @param profiler Stages recorded during the run
+   * @param runNanos Total wall time of the run in nanoseconds
+   */
+  void record(String experimentName, StageProfiler profiler, long runNanos) {
+    latestProfiles.put(experimentName, profiler);
+    latestRunNanos.put(experimentName, runNanos);
+  }
+
+  /**
+   * Get the stages recorded in the latest run of an experiment
+   *
+   * @param experimentName Name of the experiment (its class name)
+   * @return Profile of the latest run, or null if the experiment hasn't been run
+   */
+  public StageProfiler getLatestProfile(String experimentName) {
+    return latestProfiles.get(experimentName);
+  }
+
+  @Override
+  public String[] getProfiledExperiments() {
+    return new TreeMap<>(latestProfiles).keySet().toArray(new String[0]);
+  }
+
+  @Override
+  public Map<String, String> getLatestReports() {
+    Map<String, String> reports = new TreeMap<>();
+    for (Map.Entry<String, StageProfiler> entry : latestProfiles.entrySet()) {
+      reports.put(entry.getKey(), entry.getValue().toString());
+    }
+    return reports;
+  }
+
+  @Override
+  public Map<String, Double> getLatestRunMillis() {
+    Map<String, Double> runTimes = new TreeMap<>();
+    for (Map.Entry<String, Long> entry : latestRunNanos.entrySet()) {
+      runTimes.put(entry.getKey(), entry.getValue() / 1E6);
+    }
+    return runTimes;
+  }
+
+  @Override
+  public void clear() {
+    latestProfiles.clear();
+    latestRunNanos.clear();
+  }
+
+}
@@ -0,0 +1,37 @@
+package asl.sensor.experiment;
+
+import java.util.Map;
+
+/**
+ * JMX view of the stage timing of the most recent run of each type of experiment, so that a
+ * running program (i.e., the cal processing server) can be profiled with a JMX console.
+ */
+public interface ExperimentProfilesMXBean {
+
+  /**
+   * Get the names of the experiments that have been run
+   *
+   * @return Names of experiment classes with a recorded profile
+   */
+  String[] getProfiledExperiments();
+
+  /**
+   * Get the stage timing table of the latest run of each experiment
+   *
+   * @return Map from experiment class names to stage timing reports
+   */
+  Map<String, String> getLatestReports();
+
+  /**
+   * Get the total wall time of the latest run of each experiment
+   *
+   * @return Map from experiment class names to run times in milliseconds
+   */
+  Map<String, Double> getLatestRunMillis();
+
+  /**
+   * Discard all recorded profiles
+   */
+  void clear();
+
+}
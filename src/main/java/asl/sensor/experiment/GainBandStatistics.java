@@ -0,0 +1,241 @@
+package asl.sensor.experiment;
+
+import asl.sensor.utils.FFTResult;
+import java.util.Arrays;
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Magnitudes of a pair of PSDs and prefix sums over them, from which the relative gain statistics
+ * of any band of frequencies (the mean of each PSD and the deviation of their ratio) can be found
+ * in constant time. The gain panels recalculate these each time the selected range changes, so
+ * this keeps the readout responsive while the range is dragged over long, high-rate PSDs.
+ *
+ * The results match NumericUtils.getFFTMean and NumericUtils.getFFTSDev: infinite magnitudes are
+ * skipped in the sums, and a NaN magnitude makes a band's mean NaN. The squared deviation is
+ * expanded as sum(d^2) - 2 * D * sum(d) + n * D^2, where d is each ratio in the band less a
+ * reference ratio (the median over all frequencies) and D is the band's mean ratio less the same
+ * reference; if a band has a ratio that isn't finite (i.e., a zero in the denominator) the
+ * deviation is summed directly.
+ *
+ * Ratios far from the passband (i.e., where one sensor's noise dominates) can be many orders of
+ * magnitude larger than the deviation within a narrow, well-matched band, so the prefix sums are
+ * kept compensated: each is stored with the rounding error of its running total, so that the
+ * difference of two prefix sums keeps the precision of a sum taken over the band alone.
+ */
+final class GainBandStatistics {
+
+  // lowest frequency considered when finding the peak of a PSD
+  private static final double MIN_PEAK_FREQUENCY = 0.001;
+
+  // magnitude of each PSD at each frequency
+  private final double[][] magnitudes;
+  // compensated prefix sums of the magnitudes (skipping infinite values) and counts of NaN
+  // magnitudes
+  private final double[][] magnitudeSums;
+  private final double[][] magnitudeSumErrors;
+  private final int[][] nanCounts;
+  // for each PSD as the numerator, the median ratio of its magnitude to the other's
+  private final double[] referenceRatios;
+  // for each PSD as the numerator, compensated prefix sums of the ratio less the reference and of
+  // that difference squared, over frequencies where both magnitudes are finite
+  private final double[][] ratioSums;
+  private final double[][] ratioSumErrors;
+  private final double[][] squaredRatioSums;
+  private final double[][] squaredRatioSumErrors;
+  private final int[][] ratioCounts;
+  // counts of frequencies where both magnitudes are finite but their ratio isn't
+  private final int[][] irregularRatioCounts;
+  private final int[] peakIndices;
+
+  /**
+   * Calculate the magnitudes and sums for a pair of PSDs with the same frequencies
+   *
+   * @param first PSD of the first sensor
+   * @param second PSD of the second sensor
+   */
+  GainBandStatistics(FFTResult first, FFTResult second) {
+    double[] frequencies = first.getFreqs();
+    FFTResult[] psds = {first, second};
+    int length = frequencies.length;
+    magnitudes = new double[2][length];
+    magnitudeSums = new double[2][length + 1];
+    magnitudeSumErrors = new double[2][length + 1];
+    nanCounts = new int[2][length + 1];
+    peakIndices = new int[2];
+    for (int series = 0; series < 2; ++series) {
+      Complex[] psd = psds[series].getFFT();
+      double[] magnitude = magnitudes[series];
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < length; ++i) {
+        magnitude[i] = psd[i].abs();
+        double value = magnitude[i];
+        magnitudeSums[series][i + 1] = magnitudeSums[series][i];
+        magnitudeSumErrors[series][i + 1] = magnitudeSumErrors[series][i];
+        nanCounts[series][i + 1] = nanCounts[series][i];
+        if (Double.isNaN(value)) {
+          ++nanCounts[series][i + 1];
+        } else if (value < Double.POSITIVE_INFINITY) {
+          addCompensated(magnitudeSums[series], magnitudeSumErrors[series], i + 1, value);
+        }
+        // peak is found on the plotted (dB) scale
+        if (frequencies[i] >= MIN_PEAK_FREQUENCY) {
+          double decibels = 10 * Math.log10(value);
+          if (decibels < Double.POSITIVE_INFINITY && decibels > max) {
+            max = decibels;
+            peakIndices[series] = i;
+          }
+        }
+      }
+    }
+
+    referenceRatios = new double[2];
+    ratioSums = new double[2][length + 1];
+    ratioSumErrors = new double[2][length + 1];
+    squaredRatioSums = new double[2][length + 1];
+    squaredRatioSumErrors = new double[2][length + 1];
+    ratioCounts = new int[2][length + 1];
+    irregularRatioCounts = new int[2][length + 1];
+    for (int numerator = 0; numerator < 2; ++numerator) {
+      double[] ratios = regularRatios(magnitudes[numerator], magnitudes[1 - numerator]);
+      double reference = median(ratios);
+      referenceRatios[numerator] = reference;
+      double[] top = magnitudes[numerator];
+      double[] bottom = magnitudes[1 - numerator];
+      for (int i = 0; i < length; ++i) {
+        ratioSums[numerator][i + 1] = ratioSums[numerator][i];
+        ratioSumErrors[numerator][i + 1] = ratioSumErrors[numerator][i];
+        squaredRatioSums[numerator][i + 1] = squaredRatioSums[numerator][i];
+        squaredRatioSumErrors[numerator][i + 1] = squaredRatioSumErrors[numerator][i];
+        ratioCounts[numerator][i + 1] = ratioCounts[numerator][i];
+        irregularRatioCounts[numerator][i + 1] = irregularRatioCounts[numerator][i];
+        if (top[i] >= Double.POSITIVE_INFINITY || bottom[i] >= Double.POSITIVE_INFINITY) {
+          continue;
+        }
+        double ratio = top[i] / bottom[i];
+        if (Double.isNaN(ratio) || Double.isInfinite(ratio)) {
+          ++irregularRatioCounts[numerator][i + 1];
+          continue;
+        }
+        double difference = ratio - reference;
+        addCompensated(ratioSums[numerator], ratioSumErrors[numerator], i + 1, difference);
+        addCompensated(squaredRatioSums[numerator], squaredRatioSumErrors[numerator], i + 1,
+            difference * difference);
+        ++ratioCounts[numerator][i + 1];
+      }
+    }
+  }
+
+  /**
+   * Add a value to a compensated running total (Neumaier's variant of Kahan summation), where
+   * errors[index] holds the rounding error left out of sums[index]
+   */
+  private static void addCompensated(double[] sums, double[] errors, int index, double value) {
+    double sum = sums[index];
+    double total = sum + value;
+    if (Math.abs(sum) >= Math.abs(value)) {
+      errors[index] += (sum - total) + value;
+    } else {
+      errors[index] += (value - total) + sum;
+    }
+    sums[index] = total;
+  }
+
+  /**
+   * Get the difference of a compensated prefix sum between two indices. Since neighboring totals
+   * are close, the difference of the totals is exact and only the (much smaller) errors round.
+   */
+  private static double compensatedDifference(double[] sums, double[] errors, int lower,
+      int upper) {
+    return (sums[upper] - sums[lower]) + (errors[upper] - errors[lower]);
+  }
+
+  /**
+   * Get the ratios of two magnitudes at every frequency where the ratio is finite
+   */
+  private static double[] regularRatios(double[] top, double[] bottom) {
+    double[] ratios = new double[top.length];
+    int count = 0;
+    for (int i = 0; i < top.length; ++i) {
+      double ratio = top[i] / bottom[i];
+      if (!Double.isNaN(ratio) && !Double.isInfinite(ratio)) {
+        ratios[count++] = ratio;
+      }
+    }
+    return Arrays.copyOf(ratios, count);
+  }
+
+  private static double median(double[] values) {
+    if (values.length == 0) {
+      return 0.;
+    }
+    Arrays.sort(values);
+    return values[values.length / 2];
+  }
+
+  /**
+   * Get the index of the highest point of a PSD (in dB), ignoring frequencies below 0.001Hz
+   *
+   * @param series Which PSD to get the peak of (0 or 1)
+   * @return Index of the peak
+   */
+  int getPeakIndex(int series) {
+    return peakIndices[series];
+  }
+
+  /**
+   * Get the mean magnitude of a PSD over a band, as NumericUtils.getFFTMean does (the sum of the
+   * finite magnitudes from lower to higher inclusive, divided by higher - lower)
+   *
+   * @param series Which PSD to get the mean of (0 or 1)
+   * @param lower Index of the first frequency in the band
+   * @param higher Index of the last frequency in the band
+   * @return Mean of the PSD over the band
+   */
+  double mean(int series, int lower, int higher) {
+    if (nanCounts[series][higher + 1] - nanCounts[series][lower] > 0) {
+      return Double.NaN;
+    }
+    double sum = compensatedDifference(magnitudeSums[series], magnitudeSumErrors[series],
+        lower, higher + 1);
+    return sum / (higher - lower);
+  }
+
+  /**
+   * Get the deviation of the ratio of the PSDs over a band from a given mean ratio, as
+   * NumericUtils.getFFTSDev does
+   *
+   * @param numerator Which PSD is the numerator of the ratio (0 or 1)
+   * @param meanRatio Mean ratio to take the deviation from
+   * @param lower Index of the first frequency in the band
+   * @param higher Index of the last frequency in the band
+   * @return Root of the sum of squared differences of the ratio from the mean
+   */
+  double sigma(int numerator, double meanRatio, int lower, int higher) {
+    if (irregularRatioCounts[numerator][higher + 1] - irregularRatioCounts[numerator][lower] > 0) {
+      return directSigma(numerator, meanRatio, lower, higher);
+    }
+    int count = ratioCounts[numerator][higher + 1] - ratioCounts[numerator][lower];
+    double sum = compensatedDifference(ratioSums[numerator], ratioSumErrors[numerator],
+        lower, higher + 1);
+    double squaredSum = compensatedDifference(squaredRatioSums[numerator],
+        squaredRatioSumErrors[numerator], lower, higher + 1);
+    double offset = meanRatio - referenceRatios[numerator];
+    double sumOfSquares = squaredSum - 2 * offset * sum + count * offset * offset;
+    // rounding can leave a tiny negative value when the ratio is nearly constant
+    return Math.sqrt(Math.max(0., sumOfSquares));
+  }
+
+  private double directSigma(int numerator, double meanRatio, int lower, int higher) {
+    double[] top = magnitudes[numerator];
+    double[] bottom = magnitudes[1 - numerator];
+    double sigma = 0.;
+    for (int i = lower; i <= higher; ++i) {
+      if (top[i] >= Double.POSITIVE_INFINITY || bottom[i] >= Double.POSITIVE_INFINITY) {
+        continue;
+      }
+      sigma += Math.pow((top[i] / bottom[i]) - meanRatio, 2);
+    }
+    return Math.sqrt(sigma);
+  }
+
+}
@@ -3,7 +3,6 @@ package asl.sensor.experiment;
 import asl.sensor.input.DataStore;
 import asl.sensor.input.InstrumentResponse;
 import asl.sensor.utils.FFTResult;
-import asl.sensor.utils.NumericUtils;
 import org.apache.commons.math3.complex.Complex;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
@@ -33,6 +32,7 @@ public class GainExperiment extends Experiment {
 
   private double[] gainStage1, A0Freqs;
   private FFTResult[] fftResults;
+  private GainBandStatistics bandStatistics; // sums over the PSDs for fast range statistics
   private int[] indices; // indices of valid data sources (i.e., 0 and 1)
   private int referenceIndex;
   private double lowPeriod, highPeriod;
@@ -134,9 +134,12 @@ public class GainExperiment extends Experiment {
       Complex[] fft = fftResults[i].getFFT();
       double[] freqs = fftResults[i].getFreqs();
       // false, because we don't want to plot in frequency space
-      addToPlot(xys, fft, freqs, false, xysc);
+      addToPlot(xys, fft, freqs, false, psdBandsPerOctave, xysc);
     }
 
+    // the range statistics are recalculated as the range is changed, so do the work up front
+    bandStatistics = new GainBandStatistics(fftResults[0], fftResults[1]);
+
     fireStateChange("Getting NLNM data...");
     xysc.addSeries(FFTResult.getLowNoiseModel(false));
 
@@ -175,26 +178,7 @@ public class GainExperiment extends Experiment {
    * @return The index of the peak location
    */
   private int getPeakIndex(int fftIndex) {
-
-    FFTResult fft = fftResults[fftIndex];
-
-    Complex[] timeSeries = fft.getFFT();
-    double[] freqs = fft.getFreqs();
-
-    double max = Double.NEGATIVE_INFINITY;
-    int peakIndex = 0;
-    for (int i = 0; i < timeSeries.length; ++i) {
-      if (freqs[i] < 0.001) {
-        continue;
-      }
-
-      double result = 10 * Math.log10(timeSeries[i].abs());
-      if (result < Double.POSITIVE_INFINITY && result > max) {
-        max = result;
-        peakIndex = i;
-      }
-    }
-    return peakIndex;
+    return bandStatistics.getPeakIndex(fftIndex);
   }
 
 
@@ -253,19 +237,17 @@ public class GainExperiment extends Experiment {
     upperBound = Math.max(lowerBound, upperBound);
     lowerBound = temp;
 
-    FFTResult plot0 = fftResults[refIndex];
-    FFTResult plot1 = fftResults[refIndexPlusOne];
-
-    double mean0 = NumericUtils.getFFTMean(plot0, lowerBound, upperBound);
     // since both datasets must have matching interval, PSDs have same frequencies
-    double mean1 = NumericUtils.getFFTMean(plot1, lowerBound, upperBound);
+    // (sums are precalculated, so these are constant-time; see NumericUtils.getFFTMean)
+    double mean0 = bandStatistics.mean(refIndex, lowerBound, upperBound);
+    double mean1 = bandStatistics.mean(refIndexPlusOne, lowerBound, upperBound);
 
     // double MIN_VALUE field is effectively java's machine epsilon
     // calculate ratio and sigma over the range
     double ratio = (mean0 + Double.MIN_VALUE) / (mean1 + Double.MIN_VALUE);
     // added terms exist to prevent division by 0
 
-    double sigma = NumericUtils.getFFTSDev(plot0, plot1, ratio, lowerBound, upperBound);
+    double sigma = bandStatistics.sigma(refIndex, ratio, lowerBound, upperBound);
 
     double refGain = gainStage1[refIndex];
     double calcGain = gainStage1[refIndexPlusOne] / Math.sqrt(ratio);
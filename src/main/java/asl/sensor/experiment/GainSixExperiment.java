@@ -3,6 +3,9 @@ package asl.sensor.experiment;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.utils.TimeSeriesUtils;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.jfree.data.xy.XYSeries;
 
 /**
@@ -72,6 +75,7 @@ public class GainSixExperiment extends Experiment {
     componentBackends = new GainExperiment[DIMENSIONS];
     for (int i = 0; i < componentBackends.length; i++) {
       componentBackends[i] = new GainExperiment();
+      componentBackends[i].setPSDBandsPerOctave(psdBandsPerOctave);
     }
 
     long interval = dataStore.getBlock(0).getInterval();
@@ -97,36 +101,47 @@ public class GainSixExperiment extends Experiment {
     double[] east2Sensor = dataStore.getBlock(4).getData();
 
     // see also the rotation used in the 9-input self noise backend
-    fireStateChange("Getting second north sensor orientation...");
-    north2Angle = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
-        north2Sensor, interval, start, end);
-
-    fireStateChange("Getting second east sensor orientation...");
-    // direction north angle should be if north and east truly orthogonal
-    // then east component is x component of rotation in that direction
-    // i.e., need to correct by 90 degrees to get rotation angle rather than
-    // azimuth of east sensor
-    // offset by 3Pi/2 is the same as offset Pi/2 (90 degrees) in other
-    // rotation direction
-    east2Angle = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
-        east2Sensor, interval, start, end) + (3 * Math.PI / 2);
-
-    // now to rotate the data according to these angles
-    fireStateChange("Rotating data...");
-    DataBlock north2Rotated =
-        TimeSeriesUtils.rotate(dataStore.getBlock(3), dataStore.getBlock(4), north2Angle);
-    stores[0].setBlock(1, north2Rotated);
-    DataBlock east2Rotated =
-        TimeSeriesUtils.rotateX(dataStore.getBlock(3), dataStore.getBlock(4), east2Angle);
-    stores[1].setBlock(1, east2Rotated);
-
-    // now get the datasets to plug into the datastore
-    String[] direction = new String[]{"north", "east", "vertical"};
-
-    for (int i = 0; i < DIMENSIONS; ++i) {
-      fireStateChange("Running calculations on " + direction[i] + " components...");
-      componentBackends[i].runExperimentOnData(stores[i]);
-    }
+    // each component's gain only depends on its own pair of sensors, so run all three at once;
+    // the vertical components aren't rotated, so their PSDs are done during the orientation solves
+    // (the data is loaded above, so the tasks only read the blocks they share)
+    List<String> componentNames = Arrays.asList("north component gain",
+        "east component gain", "vertical component gain");
+    // the solves share the preprocessing of the first sensor's data through the run's memo
+    PreprocessingMemo memo = getPreprocessingMemo();
+    List<Callable<Double>> components = Arrays.asList(
+        () -> {
+          double angle = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
+              north2Sensor, interval, start, end, memo);
+          DataBlock north2Rotated =
+              TimeSeriesUtils.rotate(dataStore.getBlock(3), dataStore.getBlock(4), angle);
+          stores[0].setBlock(1, north2Rotated);
+          componentBackends[0].runExperimentOnData(stores[0]);
+          return angle;
+        },
+        () -> {
+          // direction north angle should be if north and east truly orthogonal
+          // then east component is x component of rotation in that direction
+          // i.e., need to correct by 90 degrees to get rotation angle rather than
+          // azimuth of east sensor
+          // offset by 3Pi/2 is the same as offset Pi/2 (90 degrees) in other
+          // rotation direction
+          double angle = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
+              east2Sensor, interval, start, end, memo) + (3 * Math.PI / 2);
+          DataBlock east2Rotated =
+              TimeSeriesUtils.rotateX(dataStore.getBlock(3), dataStore.getBlock(4), angle);
+          stores[1].setBlock(1, east2Rotated);
+          componentBackends[1].runExperimentOnData(stores[1]);
+          return angle;
+        },
+        () -> {
+          componentBackends[2].runExperimentOnData(stores[2]);
+          return 0.; // vertical sensors are not rotated
+        });
+    fireStateChange("Orienting and running calculations on components concurrently...");
+    List<Double> angles = runConcurrently(componentNames, components);
+
+    north2Angle = angles.get(0);
+    east2Angle = angles.get(1);
 
     for (Experiment exp : componentBackends) {
       // each backend only has one plot's worth of data
@@ -3,7 +3,10 @@ package asl.sensor.experiment;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.CrossSpectralMatrix;
 import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.FractionalOctaveBinner;
+import java.util.Arrays;
 import org.apache.commons.math3.complex.Complex;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
@@ -28,6 +31,11 @@ public class NoiseExperiment extends Experiment {
    */
   boolean freqSpace;
 
+  /**
+   * Controls whether the coherence of each pair of inputs is also plotted
+   */
+  boolean plotCoherence;
+
   private static final int DATA_NEEDED = 3;
 
   /**
@@ -42,6 +50,7 @@ public class NoiseExperiment extends Experiment {
     super();
     respIndices = new int[DATA_NEEDED];
     freqSpace = false;
+    plotCoherence = false;
   }
 
   @Override
@@ -103,7 +112,7 @@ public class NoiseExperiment extends Experiment {
       Complex[] fft = psdCalc.getFFT();
       spectra[i] = fft;
       freqs = psdCalc.getFreqs();
-      addToPlot(powerSeries, fft, freqs, freqSpace, xysc);
+      addToPlot(powerSeries, fft, freqs, freqSpace, psdBandsPerOctave, xysc);
     }
 
     String getting = "Getting crosspower of series ";
@@ -132,6 +141,15 @@ public class NoiseExperiment extends Experiment {
           new XYSeries("Noise " + dataIn[j].getName() + " [" + j + "]");
     }
 
+    // noise magnitudes, kept to be averaged into bands if plotting binned PSDs
+    double[][] noisePower = new double[dataIn.length][];
+    if (psdBandsPerOctave > 0) {
+      for (int j = 0; j < dataIn.length; ++j) {
+        noisePower[j] = new double[freqs.length];
+        Arrays.fill(noisePower[j], Double.NaN);
+      }
+    }
+
     fireStateChange("Doing noise estimation calculations...");
     for (int i = 1; i < freqs.length; ++i) {
       if (1 / freqs[i] > MAX_PLOT_PERIOD) {
@@ -146,17 +164,17 @@ public class NoiseExperiment extends Experiment {
       Complex p21 = c21[i];
       Complex p23 = c23[i];
 
-      // nii = pii - pij*hij
-      Complex n11 =
-          p11.subtract(p21.multiply(p13).divide(p23));
+      Complex[] noise = getSelfNoise(p11, p22, p33, p13, p21, p23);
+      Complex n11 = noise[0];
+      Complex n22 = noise[1];
+      Complex n33 = noise[2];
 
-      Complex n22 =
-          p22.subtract(
-              (p23.conjugate()).multiply(p21).divide(p13.conjugate()));
-
-      Complex n33 =
-          p33.subtract(
-              p23.multiply(p13.conjugate()).divide(p21));
+      if (psdBandsPerOctave > 0) {
+        noisePower[0][i] = n11.abs();
+        noisePower[1][i] = n22.abs();
+        noisePower[2][i] = n33.abs();
+        continue;
+      }
 
       // now get magnitude and convert to dB
       double plot1 = 10 * Math.log10(n11.abs());
@@ -185,6 +203,13 @@ public class NoiseExperiment extends Experiment {
       }
     }
 
+    if (psdBandsPerOctave > 0) {
+      FractionalOctaveBinner binner = new FractionalOctaveBinner(freqs, psdBandsPerOctave);
+      for (int j = 0; j < dataIn.length; ++j) {
+        addBinnedToPlot(noiseSeriesArr[j], binner, binner.bin(noisePower[j]), freqSpace);
+      }
+    }
+
     for (XYSeries noiseSeries : noiseSeriesArr) {
       xysc.addSeries(noiseSeries);
     }
@@ -194,6 +219,58 @@ public class NoiseExperiment extends Experiment {
 
     xySeriesData.add(xysc);
 
+    if (plotCoherence) {
+      // the PSDs and cross-powers are already calculated, so this is only a little arithmetic
+      fireStateChange("Getting coherence of each pair of inputs...");
+      Complex[][] crossPowers = new Complex[][]{c21, c13, c23};
+      int[][] pairs = new int[][]{{0, 1}, {0, 2}, {1, 2}};
+      XYSeriesCollection coherenceCollection = new XYSeriesCollection();
+      coherenceCollection.setAutoWidth(true);
+      for (int pair = 0; pair < pairs.length; ++pair) {
+        int first = pairs[pair][0];
+        int second = pairs[pair][1];
+        double[] coherence = new double[freqs.length];
+        for (int i = 0; i < freqs.length; ++i) {
+          coherence[i] = CrossSpectralMatrix.coherence(crossPowers[pair][i], spectra[first][i],
+              spectra[second][i]);
+        }
+        XYSeries coherenceSeries = new XYSeries("Coherence " + dataIn[first].getName() + " ["
+            + first + "] & " + dataIn[second].getName() + " [" + second + "]");
+        addCoherenceToPlot(coherenceSeries, coherence, freqs, freqSpace, psdBandsPerOctave);
+        coherenceCollection.addSeries(coherenceSeries);
+      }
+      xySeriesData.add(coherenceCollection);
+    }
+
+  }
+
+  /**
+   * Get the self-noise of each of three sensors at one frequency from their PSDs and cross-powers
+   * (with responses applied), as in Ringler and Hutt (2010)
+   *
+   * @param p11 PSD of the first sensor
+   * @param p22 PSD of the second sensor
+   * @param p33 PSD of the third sensor
+   * @param p13 Cross-power of the first and third sensors
+   * @param p21 Cross-power of the second and first sensors
+   * @param p23 Cross-power of the second and third sensors
+   * @return Noise of the first, second, and third sensors
+   */
+  static Complex[] getSelfNoise(Complex p11, Complex p22, Complex p33,
+      Complex p13, Complex p21, Complex p23) {
+    // nii = pii - pij*hij
+    Complex n11 =
+        p11.subtract(p21.multiply(p13).divide(p23));
+
+    Complex n22 =
+        p22.subtract(
+            (p23.conjugate()).multiply(p21).divide(p13.conjugate()));
+
+    Complex n33 =
+        p33.subtract(
+            p23.multiply(p13.conjugate()).divide(p21));
+
+    return new Complex[]{n11, n22, n33};
   }
 
   @Override
@@ -221,6 +298,17 @@ public class NoiseExperiment extends Experiment {
     return respIndices;
   }
 
+  /**
+   * Set whether to also plot the coherence of each pair of inputs (see CoherenceExperiment),
+   * to check whether the sensors are recording the same signal as the noise calculation assumes.
+   * If set, the coherence is the second set of plottable data.
+   *
+   * @param plotCoherence True if the coherence should be plotted
+   */
+  public void setPlotCoherence(boolean plotCoherence) {
+    this.plotCoherence = plotCoherence;
+  }
+
   /**
    * Used to set the x-axis over which the PSDs / cross-powers are plotted,
    * either frequency (Hz) units or sample-interval (s) units
@@ -3,6 +3,10 @@ package asl.sensor.experiment;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.utils.TimeSeriesUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.jfree.data.xy.XYSeriesCollection;
 
 /**
@@ -124,21 +128,37 @@ public class NoiseNineExperiment extends NoiseExperiment {
     sb.append("for second and third sets of horizontal (N, E) data...");
     fireStateChange(sb.toString());
 
+    // the four orientation solves don't depend on each other, so run them all at once
+    List<String> solveNames = Arrays.asList("second north sensor orientation",
+        "second east sensor orientation", "third north sensor orientation",
+        "third east sensor orientation");
+    // the solves share the preprocessing of the first sensor's data through the run's memo
+    PreprocessingMemo memo = getPreprocessingMemo();
+    List<Callable<Double>> solves = Arrays.asList(
+        () -> AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
+            north2Sensor, interval, start, end, memo),
+        () -> AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
+            east2Sensor, interval, start, end, memo),
+        () -> AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
+            north3Sensor, interval, start, end, memo),
+        () -> AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
+            east3Sensor, interval, start, end, memo));
+    fireStateChange("Getting sensor orientations concurrently...");
+    List<Double> azimuths = runConcurrently(solveNames, solves);
+
     // angle is set negative because we are finding angle of reference input
     // which is what north2Sensor is here
-    fireStateChange("Getting second north sensor orientation...");
-    northAngles[0] = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
-        north2Sensor, interval, start, end);
-
-    fireStateChange("Getting second east sensor orientation...");
+    northAngles[0] = -azimuths.get(0);
     // direction north angle should be if north and east truly orthogonal
     // then east component is x component of rotation in that direction
     // i.e., need to correct by 90 degrees to get rotation angle rather than
     // azimuth of east sensor
     // offset by 3Pi/2 is the same as offset Pi/2 (90 degrees) in other
     // rotation direction
-    eastAngles[0] = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
-        east2Sensor, interval, start, end) + (3 * Math.PI / 2);
+    eastAngles[0] = -azimuths.get(1) + (3 * Math.PI / 2);
+    // see also the rotation used in the 6-input gain backend
+    northAngles[1] = -azimuths.get(2);
+    eastAngles[1] = -azimuths.get(3) + (3 * Math.PI / 2);
 
     // now to rotate the data according to these angles
     fireStateChange("Rotating data...");
@@ -149,16 +169,6 @@ public class NoiseNineExperiment extends NoiseExperiment {
         TimeSeriesUtils.rotateX(dataStore.getBlock(3), dataStore.getBlock(4), eastAngles[0]);
     stores[1].setBlock(1, east2Rotated);
 
-    // see also the rotation used in the 9-input self noise backend
-    fireStateChange("Getting third north sensor orientation...");
-    northAngles[1] = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
-        north3Sensor, interval, start, end);
-    fireStateChange("Getting third east sensor orientation...");
-    eastAngles[1] = -AzimuthExperiment.getAzimuth(north1Sensor, east1Sensor,
-        east3Sensor, interval, start, end) + (3 * Math.PI / 2);
-
-    // now to rotate the data according to these angles
-    fireStateChange("Rotating data...");
     DataBlock north3Rotated =
         TimeSeriesUtils.rotate(dataStore.getBlock(6), dataStore.getBlock(7), northAngles[1]);
     stores[0].setBlock(2, north3Rotated);
@@ -172,7 +182,10 @@ public class NoiseNineExperiment extends NoiseExperiment {
     // get noise from each axis's data
     NoiseExperiment noiseExp = new NoiseExperiment();
     noiseExp.setFreqSpace(freqSpace);
+    noiseExp.setPSDBandsPerOctave(psdBandsPerOctave);
+    noiseExp.setPlotCoherence(plotCoherence);
     String[] directions = new String[]{"north", "east", "vertical"};
+    List<XYSeriesCollection> coherenceData = new ArrayList<>();
     for (int i = 0; i < DIMENSIONS; ++i) {
       sb = new StringBuilder("Calculating ");
       sb.append(directions[i]);
@@ -180,7 +193,12 @@ public class NoiseNineExperiment extends NoiseExperiment {
       noiseExp.runExperimentOnData(stores[i]);
       XYSeriesCollection xys = noiseExp.getData().get(0);
       xySeriesData.add(xys);
+      if (plotCoherence) {
+        coherenceData.add(noiseExp.getData().get(1));
+      }
     }
+    // coherence plots (if any) follow the noise plots, in the same order
+    xySeriesData.addAll(coherenceData);
 
   }
 
@@ -5,6 +5,8 @@ import asl.sensor.input.DataStore;
 import asl.sensor.utils.NumericUtils;
 import asl.sensor.utils.TimeSeriesUtils;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealVector;
 import org.jfree.data.xy.XYSeries;
@@ -114,14 +116,29 @@ public class OrthogonalExperiment extends Experiment {
     double[] testYArr = Arrays.copyOfRange(testLH1, 0, len);
     double[] testXArr = Arrays.copyOfRange(testLH2, 0, len);
 
-    AzimuthExperiment azi = new AzimuthExperiment();
-    azi.setSimple(false); // set to see if damped window estimates are hurting our results
-    fireStateChange("Getting y (north sensor) angle");
-    azi.alternateEntryPoint(refYArr, refXArr, testYArr, interval, start, end);
-    double angleY = -azi.getFitAngle(); // degrees
-    fireStateChange("Getting x (east sensor) angle");
-    azi.alternateEntryPoint(refYArr, refXArr, testXArr, interval, start, end);
-    double angleX = -azi.getFitAngle();
+    // the two angles are independent, so find them at once, each with its own experiment
+    final long aziInterval = interval;
+    List<String> solveNames = Arrays.asList("y (north sensor) angle", "x (east sensor) angle");
+    List<Callable<Double>> solves = Arrays.asList(
+        () -> {
+          AzimuthExperiment azi = new AzimuthExperiment();
+          azi.setSimple(false); // set to see if damped window estimates are hurting our results
+          // both solves share the preprocessing of the reference data through the run's memo
+          azi.sharePreprocessingMemo(getPreprocessingMemo());
+          azi.alternateEntryPoint(refYArr, refXArr, testYArr, aziInterval, start, end);
+          return azi.getFitAngle();
+        },
+        () -> {
+          AzimuthExperiment azi = new AzimuthExperiment();
+          azi.setSimple(false);
+          azi.sharePreprocessingMemo(getPreprocessingMemo());
+          azi.alternateEntryPoint(refYArr, refXArr, testXArr, aziInterval, start, end);
+          return azi.getFitAngle();
+        });
+    fireStateChange("Getting sensor angles concurrently...");
+    List<Double> fitAngles = runConcurrently(solveNames, solves);
+    double angleY = -fitAngles.get(0); // degrees
+    double angleX = -fitAngles.get(1);
 
     angle = Math.abs(angleY - angleX);
 
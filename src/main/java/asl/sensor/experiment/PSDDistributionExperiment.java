@@ -0,0 +1,350 @@
+package asl.sensor.experiment;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.FractionalOctaveBinner;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.math3.util.Pair;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+/**
+ * Produces the probability density function (PDF) of the PSDs of a long record of data, in the
+ * manner of McNamara and Buland: the data is split into hour-long segments overlapping by half,
+ * the PSD of each is taken (the same way as the spectrum experiment's, with the response removed),
+ * averaged into fractional-octave bands (1/8 octave unless a binning is set with
+ * setPSDBandsPerOctave) and counted in a histogram of power in 1 dB bins. Each segment is read
+ * from the data's records on its own (see DataBlock.getData(long, long)) and only the histogram is
+ * kept, so the memory used by the calculation does not grow with the length of the record; the
+ * segments are processed in parallel, each worker counting into its own histogram.
+ * Segments that overlap a gap in the data are left out, since the zeros filling the gap would
+ * bias the PSD low.
+ *
+ * The plotted results are the mode and the 10th, 50th, and 90th percentiles of the power in each
+ * band, along with the NLNM and NHNM. The full histogram can be gotten with
+ * {@link #getHistogram()}.
+ * See also McNamara, Buland: 'Ambient Noise Levels in the Continental United States', Bulletin of
+ * the Seismological Society of America (2004).
+ */
+public class PSDDistributionExperiment extends Experiment {
+
+  public static final String MODE = "Mode";
+  public static final String[] PERCENTILE_NAMES =
+      {"10th percentile", "Median", "90th percentile"};
+  private static final double[] PERCENTILES = {0.1, 0.5, 0.9};
+
+  /**
+   * Lowest power counted in the histogram (dB rel. 1 (m/s^2)^2/Hz); lower values are counted in
+   * the lowest bin
+   */
+  public static final double MIN_POWER = -200.;
+  /**
+   * Highest power counted in the histogram; higher values are counted in the highest bin
+   */
+  public static final double MAX_POWER = -50.;
+  /**
+   * Width of each power bin of the histogram (dB)
+   */
+  public static final double POWER_BIN_WIDTH = 1.;
+  private static final int POWER_BINS = (int) ((MAX_POWER - MIN_POWER) / POWER_BIN_WIDTH);
+  private static final int DEFAULT_BANDS_PER_OCTAVE = 8;
+  private static final long SEGMENT_LENGTH_MILLIS = 3600L * 1000L; // 1 hour
+
+  private boolean freqSpace;
+  private double[] bandFrequencies;
+  private int[][] histogram; // counts of segments in each [frequency band][power bin]
+  private int segmentsUsed;
+  private int segmentsSkipped;
+
+  public PSDDistributionExperiment() {
+    super();
+    freqSpace = false;
+    bandFrequencies = new double[]{};
+    histogram = new int[][]{};
+  }
+
+  @Override
+  protected void backend(final DataStore dataStore) {
+
+    final DataBlock block = dataStore.getBlock(0);
+    final InstrumentResponse response = dataStore.getResponse(0);
+    dataNames.add(block.getName());
+    dataNames.add(response.getName());
+
+    final long interval = block.getInterval();
+    long startTime = block.getStartTime();
+    long endTime = block.getEndTime();
+
+    // hour-long segments that step by half an hour; records shorter than that are one segment
+    final long length = Math.min(SEGMENT_LENGTH_MILLIS, endTime - startTime);
+    long segmentStep = Math.max(interval, (length / 2) / interval * interval);
+    List<Long> segmentStarts = new ArrayList<>();
+    List<Pair<Long, Long>> gaps = block.getGapBoundaries();
+    segmentsSkipped = 0;
+    for (long start = startTime; start + length <= endTime; start += segmentStep) {
+      if (overlapsGap(gaps, start, start + length)) {
+        ++segmentsSkipped;
+        continue;
+      }
+      segmentStarts.add(start);
+    }
+    segmentsUsed = segmentStarts.size();
+
+    int bandsPerOctave = psdBandsPerOctave > 0 ? psdBandsPerOctave : DEFAULT_BANDS_PER_OCTAVE;
+    if (segmentStarts.isEmpty()) {
+      bandFrequencies = new double[]{};
+      histogram = new int[][]{};
+    } else {
+      // all segments have the same length, and so the same frequencies; get them from the first
+      fireStateChange("Getting PSD of first segment...");
+      FFTResult first = segmentPSD(block, segmentStarts.get(0), length, response, interval);
+      FractionalOctaveBinner binner =
+          new FractionalOctaveBinner(first.getFreqs(), bandsPerOctave);
+      bandFrequencies = binner.getCenterFrequencies();
+      final int bandCount = bandFrequencies.length;
+      histogram = new int[bandCount][POWER_BINS];
+      count(histogram, binner.bin(first.getFFT()));
+
+      // split the rest of the segments into contiguous groups, each counted into its own histogram
+      List<Long> remaining = segmentStarts.subList(1, segmentStarts.size());
+      fireStateChange("Getting PSDs of " + remaining.size() + " more segments concurrently...");
+      List<int[][]> partials = runInGroups("PSDs of more segments", remaining,
+          defaultGroupCount(remaining.size()), starts -> {
+            int[][] partial = new int[bandCount][POWER_BINS];
+            for (long segmentStart : starts) {
+              FFTResult psd = segmentPSD(block, segmentStart, length, response, interval);
+              count(partial, binner.bin(psd.getFFT()));
+            }
+            return partial;
+          });
+      for (int[][] partial : partials) {
+        for (int band = 0; band < histogram.length; ++band) {
+          for (int bin = 0; bin < POWER_BINS; ++bin) {
+            histogram[band][bin] += partial[band][bin];
+          }
+        }
+      }
+    }
+
+    fireStateChange("Getting statistics of PSD distribution...");
+    XYSeriesCollection xysc = new XYSeriesCollection();
+    xysc.setAutoWidth(true);
+    XYSeries modeSeries = new XYSeries(MODE);
+    XYSeries[] percentileSeries = new XYSeries[PERCENTILES.length];
+    for (int i = 0; i < PERCENTILES.length; ++i) {
+      percentileSeries[i] = new XYSeries(PERCENTILE_NAMES[i]);
+    }
+    for (int band = 0; band < bandFrequencies.length; ++band) {
+      if (1 / bandFrequencies[band] > MAX_PLOT_PERIOD) {
+        continue;
+      }
+      double xValue = freqSpace ? bandFrequencies[band] : 1 / bandFrequencies[band];
+      double mode = getMode(band);
+      if (!Double.isNaN(mode)) {
+        modeSeries.add(xValue, mode);
+      }
+      for (int i = 0; i < PERCENTILES.length; ++i) {
+        double percentile = getPercentile(band, PERCENTILES[i]);
+        if (!Double.isNaN(percentile)) {
+          percentileSeries[i].add(xValue, percentile);
+        }
+      }
+    }
+    xysc.addSeries(modeSeries);
+    for (XYSeries series : percentileSeries) {
+      xysc.addSeries(series);
+    }
+    xysc.addSeries(FFTResult.getLowNoiseModel(freqSpace));
+    xysc.addSeries(FFTResult.getHighNoiseModel(freqSpace));
+    xySeriesData.add(xysc);
+  }
+
+  private static FFTResult segmentPSD(DataBlock block, long start, long length,
+      InstrumentResponse response, long interval) {
+    // only this segment is read from the records; each Welch window is demeaned and tapered
+    double[] segment = block.getData(start, start + length);
+    return FFTResult.crossPower(segment, segment, response, response, interval);
+  }
+
+  /**
+   * Count the power of each band of a segment's PSD in the histogram
+   *
+   * @param counts Histogram to add to, indexed by band and then by power bin
+   * @param bandPower PSD of the segment averaged into bands (linear units)
+   */
+  private static void count(int[][] counts, double[] bandPower) {
+    for (int band = 0; band < bandPower.length; ++band) {
+      double decibels = 10 * Math.log10(bandPower[band]);
+      if (Double.isNaN(decibels)) {
+        continue;
+      }
+      int bin = (int) Math.floor((decibels - MIN_POWER) / POWER_BIN_WIDTH);
+      bin = Math.max(0, Math.min(POWER_BINS - 1, bin));
+      ++counts[band][bin];
+    }
+  }
+
+  private int getBandTotal(int band) {
+    int total = 0;
+    for (int count : histogram[band]) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * Get the power at the center of the most common power bin in a band
+   *
+   * @param band Index of the frequency band
+   * @return Most likely power (dB), or NaN if no segments had a value in that band
+   */
+  private double getMode(int band) {
+    int modeBin = -1;
+    int modeCount = 0;
+    for (int bin = 0; bin < POWER_BINS; ++bin) {
+      if (histogram[band][bin] > modeCount) {
+        modeCount = histogram[band][bin];
+        modeBin = bin;
+      }
+    }
+    if (modeBin < 0) {
+      return Double.NaN;
+    }
+    return getPowerBinCenter(modeBin);
+  }
+
+  /**
+   * Get the power at the center of the bin containing the given percentile of a band's counts
+   *
+   * @param band Index of the frequency band
+   * @param fraction Percentile as a fraction (i.e., 0.5 for the median)
+   * @return Power (dB) at that percentile, or NaN if no segments had a value in that band
+   */
+  private double getPercentile(int band, double fraction) {
+    int total = getBandTotal(band);
+    if (total == 0) {
+      return Double.NaN;
+    }
+    double target = fraction * total;
+    int cumulative = 0;
+    for (int bin = 0; bin < POWER_BINS; ++bin) {
+      cumulative += histogram[band][bin];
+      if (cumulative >= target) {
+        return getPowerBinCenter(bin);
+      }
+    }
+    return getPowerBinCenter(POWER_BINS - 1);
+  }
+
+  private static double getPowerBinCenter(int bin) {
+    return MIN_POWER + (bin + 0.5) * POWER_BIN_WIDTH;
+  }
+
+  @Override
+  public int blocksNeeded() {
+    return 1;
+  }
+
+  /**
+   * Get the center frequencies of the fractional-octave bands of the histogram
+   *
+   * @return Frequencies (Hz) in ascending order, one for each row of the histogram
+   */
+  public double[] getBandFrequencies() {
+    return bandFrequencies.clone();
+  }
+
+  /**
+   * Get the power at the center of each power bin of the histogram
+   *
+   * @return Power (dB rel. 1 (m/s^2)^2/Hz) in ascending order, one for each histogram column
+   */
+  public double[] getPowerBinCenters() {
+    double[] centers = new double[POWER_BINS];
+    for (int bin = 0; bin < POWER_BINS; ++bin) {
+      centers[bin] = getPowerBinCenter(bin);
+    }
+    return centers;
+  }
+
+  /**
+   * Get the number of segments whose PSD had power in each bin, for each frequency band
+   *
+   * @return Counts indexed by band (see {@link #getBandFrequencies()}) and then by power bin
+   * (see {@link #getPowerBinCenters()})
+   */
+  public int[][] getHistogram() {
+    int[][] copy = new int[histogram.length][];
+    for (int band = 0; band < histogram.length; ++band) {
+      copy[band] = histogram[band].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Get the probability of each power bin in each band, i.e., the PDF of the PSDs
+   *
+   * @return Probability (0 to 1) indexed the same way as the histogram
+   */
+  public double[][] getProbabilities() {
+    double[][] probabilities = new double[histogram.length][POWER_BINS];
+    for (int band = 0; band < histogram.length; ++band) {
+      int total = getBandTotal(band);
+      if (total == 0) {
+        continue;
+      }
+      for (int bin = 0; bin < POWER_BINS; ++bin) {
+        probabilities[band][bin] = histogram[band][bin] / (double) total;
+      }
+    }
+    return probabilities;
+  }
+
+  /**
+   * Get the number of segments whose PSDs were counted
+   *
+   * @return Number of hour-long segments used
+   */
+  public int getSegmentsUsed() {
+    return segmentsUsed;
+  }
+
+  /**
+   * Get the number of segments that were left out because they overlapped a gap in the data
+   *
+   * @return Number of segments skipped
+   */
+  public int getSegmentsSkipped() {
+    return segmentsSkipped;
+  }
+
+  @Override
+  String[] getDataStrings() {
+    return new String[]{"Segments used: " + segmentsUsed
+        + "\nSegments skipped (gaps): " + segmentsSkipped};
+  }
+
+  @Override
+  public String[] getInsetStrings() {
+    return new String[]{getDataStrings()[0] + '\n' + getFormattedDateRange()};
+  }
+
+  @Override
+  public boolean hasEnoughData(DataStore dataStore) {
+    return dataStore.bothComponentsSet(0);
+  }
+
+  /**
+   * Used to set the x-axis over which the PSD statistics are plotted,
+   * either frequency (Hz) units or sample-interval (s) units
+   *
+   * @param freqSpace True if the plot should use units of Hz
+   */
+  public void setFreqSpace(boolean freqSpace) {
+    this.freqSpace = freqSpace;
+  }
+
+}
@@ -0,0 +1,112 @@
+package asl.sensor.experiment;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Memo of series derived from input data during a single run of an experiment, shared with any
+ * experiments run as part of it (such as the azimuth solves done by the 9-input self-noise), so
+ * that each distinct preprocessing step (demeaning, detrending, filtering, decimation) of each
+ * series is only calculated once per run.
+ *
+ * A derived series is identified by the array it was calculated from (by identity, not contents)
+ * and the name of the operation. Since the result of one step is itself the source of the next,
+ * a chain of operations on the same source data resolves to the same arrays wherever it is done.
+ * The names must therefore include any parameters that change the result (i.e., filter corners).
+ * Derived series are shared between callers and must not be modified.
+ *
+ * This is safe to use from concurrent solves; if two threads need the same series at once, one
+ * calculates it while the other waits for the result.
+ */
+final class PreprocessingMemo {
+
+  private final Map<Key, double[]> derivedSeries;
+  private final AtomicInteger requests;
+  private final AtomicInteger computations;
+
+  PreprocessingMemo() {
+    derivedSeries = new ConcurrentHashMap<>();
+    requests = new AtomicInteger();
+    computations = new AtomicInteger();
+  }
+
+  /**
+   * Get the result of an operation on the given data, calculating it if it hasn't been yet
+   *
+   * @param source Data the operation is done on (not modified)
+   * @param operation Name of the operation, including any parameters that change its result
+   * @param transform Function doing the operation, returning a new array or the source itself
+   * @return Result of the operation, which must not be modified
+   */
+  double[] derive(double[] source, String operation, UnaryOperator<double[]> transform) {
+    requests.incrementAndGet();
+    return derivedSeries.computeIfAbsent(new Key(source, operation), key -> {
+      computations.incrementAndGet();
+      return transform.apply(source);
+    });
+  }
+
+  /**
+   * Get the number of derived series that have been requested, including repeated requests
+   *
+   * @return Number of calls to derive
+   */
+  int getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Get the number of derived series that actually had to be calculated
+   *
+   * @return Number of distinct operations done
+   */
+  int getComputations() {
+    return computations.get();
+  }
+
+  /**
+   * Get the number of requests for derived series that were answered from the memo
+   *
+   * @return Number of operations not repeated
+   */
+  int getReuses() {
+    return getRequests() - getComputations();
+  }
+
+  @Override
+  public String toString() {
+    return "Preprocessing memo: " + getComputations() + " derived series calculated, "
+        + getReuses() + " of " + getRequests() + " requests reused";
+  }
+
+  /**
+   * Identifies a derived series by the identity of its source array and the operation name
+   */
+  private static final class Key {
+
+    private final double[] source;
+    private final String operation;
+
+    Key(double[] source, String operation) {
+      this.source = source;
+      this.operation = operation;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key otherKey = (Key) other;
+      return source == otherKey.source && operation.equals(otherKey.operation);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(source) + operation.hashCode();
+    }
+  }
+
+}
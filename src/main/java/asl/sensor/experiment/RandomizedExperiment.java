@@ -1,9 +1,12 @@
 package asl.sensor.experiment;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.complex.ComplexFormat;
@@ -23,6 +26,8 @@ import org.jfree.data.xy.XYSeriesCollection;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.input.InstrumentResponse;
+import asl.sensor.output.FitResultStore;
+import asl.sensor.output.FitResultStore.CalibrationType;
 import asl.sensor.utils.FFTResult;
 import asl.sensor.utils.NumericUtils;
 import asl.sensor.utils.TimeSeriesUtils;
@@ -78,6 +83,12 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
   private double maxMagWeight, maxArgWeight; // max values of magnitude, phase
   private double nyquistMultiplier; // region up to nyquist to take for data
   private int numIterations; // how much the solver ran
+  private int pointsPerDecade; // log-spaced resampling of fit target, 0 to use every bin
+  private int numFitPoints; // number of frequencies the solver fit over
+  private FitResultStore fitResultStore; // previous results to start from, null if not used
+  private boolean warmStarted; // true if the solver started from a previous result
+  private String fitResultStoreError; // why the fit library couldn't be used, null if it could
+  private SolverTelemetry solverTelemetry; // record of the most recent solve
 
   public RandomizedExperiment() {
     super();
@@ -85,6 +96,8 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     numIterations = 0;
     plotUsingHz = true;
     nyquistMultiplier = 0.8; // defaults to 0.8
+    pointsPerDecade = 0; // defaults to fitting over every frequency bin
+    solverTelemetry = new SolverTelemetry("Randomized cal fit");
   }
 
   private static String complexListToString(List<Complex> complexList) {
@@ -167,6 +180,12 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
         + DECIMAL_FORMAT.get().format(initialResidual)
         + "\nBest fit: "
         + DECIMAL_FORMAT.get().format(fitResidual);
+    if (isBudgetExhausted()) {
+      sbR += "\n(solver budget exhausted; best fit found so far)";
+    }
+    if (fitResultStoreError != null) {
+      sbR += "\n(" + fitResultStoreError + ")";
+    }
 
     return new String[]{sbInitialPoles.toString(), sbInitZ.toString(), sbR};
   }
@@ -269,6 +288,82 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     return new Pair<>(result, jacobianMatrix);
   }
 
+  /**
+   * Resample a fit target over linearly-spaced frequency bins onto a log-spaced grid.
+   * Each decade of the frequency range is split into the given number of cells, and the bins
+   * falling into each cell are averaged into a single point (frequency, amplitude, and phase).
+   * Weights of the bins in a cell are averaged too, so that a cell at high frequency merging
+   * hundreds of bins counts no more towards the fit than one at low frequency with only a few,
+   * and the number of points (and so the cost of each solver iteration) depends only on the
+   * number of decades in the data.
+   * Cells that have no bins in them (i.e., at low frequencies) are not included in the output.
+   *
+   * @param freqs Frequencies of the target, linearly spaced and in increasing order
+   * @param values Target to fit; amplitudes for each frequency followed by phases
+   * @param weights Weights of each point in the target, laid out the same way as the values
+   * @param pointsPerDecade Number of log-spaced cells per decade of frequency (must be positive)
+   * @return Array of three arrays: resampled frequencies, values, and weights
+   */
+  static double[][] logSpacedResample(double[] freqs, double[] values, double[] weights,
+      int pointsPerDecade) {
+    int len = freqs.length;
+    // bin at 0Hz can't be placed on log grid; fold it into the first cell
+    double lowestFreq = freqs[0];
+    if (lowestFreq <= 0. && len > 1) {
+      lowestFreq = freqs[1];
+    }
+    double logStart = Math.log10(lowestFreq);
+    double logRange = Math.log10(freqs[len - 1]) - logStart;
+    int numCells = (int) Math.floor(logRange * pointsPerDecade) + 1;
+
+    double[] freqSums = new double[numCells];
+    double[] ampSums = new double[numCells];
+    double[] phaseSums = new double[numCells];
+    double[] ampWeightSums = new double[numCells];
+    double[] phaseWeightSums = new double[numCells];
+    int[] binCounts = new int[numCells];
+
+    for (int i = 0; i < len; ++i) {
+      int cell = 0;
+      if (freqs[i] > lowestFreq) {
+        cell = (int) ((Math.log10(freqs[i]) - logStart) * pointsPerDecade);
+        cell = Math.min(cell, numCells - 1);
+      }
+      freqSums[cell] += freqs[i];
+      ampSums[cell] += values[i];
+      phaseSums[cell] += values[i + len];
+      ampWeightSums[cell] += weights[i];
+      phaseWeightSums[cell] += weights[i + len];
+      ++binCounts[cell];
+    }
+
+    int filledCells = 0;
+    for (int count : binCounts) {
+      if (count > 0) {
+        ++filledCells;
+      }
+    }
+
+    double[] resampledFreqs = new double[filledCells];
+    double[] resampledValues = new double[2 * filledCells];
+    double[] resampledWeights = new double[2 * filledCells];
+    int index = 0;
+    for (int cell = 0; cell < numCells; ++cell) {
+      if (binCounts[cell] == 0) {
+        continue;
+      }
+      int argIndex = index + filledCells;
+      resampledFreqs[index] = freqSums[cell] / binCounts[cell];
+      resampledValues[index] = ampSums[cell] / binCounts[cell];
+      resampledValues[argIndex] = phaseSums[cell] / binCounts[cell];
+      resampledWeights[index] = ampWeightSums[cell] / binCounts[cell];
+      resampledWeights[argIndex] = phaseWeightSums[cell] / binCounts[cell];
+      ++index;
+    }
+
+    return new double[][]{resampledFreqs, resampledValues, resampledWeights};
+  }
+
   static void scaleValues(double[] unrot, double[] freqs, boolean isLowFrequencyCalibration) {
     int normalIdx = FFTResult.getIndexOfFrequency(freqs, ZERO_TARGET);
     int argStart = unrot.length / 2;
@@ -491,6 +586,27 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
       calcArg.add(xAxis, NumericUtils.rewrapAngleDegrees(phs));
     }
 
+    // frequencies and data the solver is run over; these are the plotted values unless resampled
+    double[] fitFreqs = freqs;
+    double[] fitTarget = observedResult;
+    if (pointsPerDecade > 0) {
+      fireStateChange("Resampling calculated resp data onto log-spaced frequencies...");
+      double[][] resampled = logSpacedResample(freqs, observedResult, weights, pointsPerDecade);
+      fitFreqs = resampled[0];
+      fitTarget = resampled[1];
+      weights = resampled[2];
+      // averaging moves the point the curves are normalized at, so re-normalize to match
+      // the scaling that is applied to the evaluated responses in the solver
+      int fitNormalIdx = FFTResult.getIndexOfFrequency(fitFreqs, ZERO_TARGET);
+      double ampOffset = fitTarget[fitNormalIdx];
+      double phsOffset = fitTarget[fitNormalIdx + fitFreqs.length];
+      for (int i = 0; i < fitFreqs.length; ++i) {
+        fitTarget[i] -= ampOffset;
+        fitTarget[i + fitFreqs.length] -= phsOffset;
+      }
+    }
+    numFitPoints = fitFreqs.length;
+
     DiagonalMatrix weightMat = new DiagonalMatrix(weights);
 
     fireStateChange("Getting estimate and setting up solver...");
@@ -508,13 +624,28 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     int numZeros = initialZeroGuess.getDimension();
     initialGuess = initialZeroGuess.append(initialPoleGuess);
 
+    // the nominal response is still what the initial residual is reported against
+    RealVector nominalGuess = initialGuess;
+    warmStarted = false;
+    fitResultStoreError = null;
+    if (fitResultStore != null) {
+      fireStateChange("Checking for previous fit to use as initial guess...");
+      RealVector warmStartGuess =
+          getWarmStartGuess(sensorOut.getName(), nyquistMultiplier * nyquist);
+      if (warmStartGuess != null && warmStartGuess.getDimension() == initialGuess.getDimension()) {
+        initialGuess = warmStartGuess;
+        warmStarted = true;
+      }
+    }
+
     // now, solve for the response that gets us the best-fit response curve
     // RealVector initialGuess = MatrixUtils.createRealVector(responseVariables);
-    RealVector obsResVector = MatrixUtils.createRealVector(observedResult);
+    RealVector obsResVector = MatrixUtils.createRealVector(fitTarget);
 
+    final double[] solverFreqs = fitFreqs;
     MultivariateJacobianFunction jacobian = new MultivariateJacobianFunction() {
 
-      final double[] freqsSet = freqs;
+      final double[] freqsSet = solverFreqs;
       final int numZerosSet = numZeros;
       final boolean isLowFrequency = isLowFrequencyCalibration;
       final InstrumentResponse fitSet = fitResponse;
@@ -538,7 +669,7 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
       paramTolerance = 1.0E-10;
     }
 
-    LeastSquaresOptimizer optimizer = new LevenbergMarquardtOptimizer().
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
         withCostRelativeTolerance(costTolerance).
         withOrthoTolerance(1E-25).
         withParameterRelativeTolerance(paramTolerance);
@@ -554,9 +685,10 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     LeastSquaresProblem lsp = new LeastSquaresBuilder().
         start(initialGuess).
         target(obsResVector).
-        model(jacobian).
+        model(solverTelemetry.instrument(jacobian)).
         weight(weightMat).
         parameterValidator(this).
+        checker(solverTelemetry.getCostRecorder()).
         lazyEvaluation(false).
         maxEvaluations(Integer.MAX_VALUE).
         maxIterations(Integer.MAX_VALUE).
@@ -566,14 +698,14 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
 
     // residuals used to determine quality of solution convergence
 
-    LeastSquaresProblem.Evaluation initEval = lsp.evaluate(initialGuess);
+    LeastSquaresProblem.Evaluation initEval = lsp.evaluate(nominalGuess);
     initialResidual = initEval.getCost();
 
     fireStateChange("Got initial evaluation; running solver...");
 
     RealVector finalResultVector;
 
-    LeastSquaresOptimizer.Optimum optimum = optimizer.optimize(lsp);
+    LeastSquaresOptimizer.Optimum optimum = solverTelemetry.optimize(optimizer, lsp);
     finalResultVector = optimum.getPoint();
     numIterations = optimum.getIterations();
 
@@ -592,6 +724,20 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     fitPoles = fitResponse.getPoles();
     fitZeros = fitResponse.getZeros();
 
+    if (fitResultStore != null) {
+      Map<String, double[]> fitResult = new HashMap<>();
+      fitResult.put(FitResultStore.POLES, FitResultStore.complexListToArray(fitPoles));
+      fitResult.put(FitResultStore.ZEROS, FitResultStore.complexListToArray(fitZeros));
+      try {
+        fitResultStore.store(getCalibrationType(), initResponse.getName(), sensorOut.getName(),
+            fitResult);
+      } catch (IOException e) {
+        // not being able to save the result shouldn't prevent getting it
+        fitResultStoreError = "fit not saved to library: " + e.getMessage();
+        fireStateChange("Could not save fit to library: " + e.getMessage());
+      }
+    }
+
     fireStateChange("Getting extended resp curves for high-freq plots...");
     // we use the apply response method here to get the full range of plotted data, not just fit
     Complex[] init = initResponse.applyResponseToInput(plottingFreqs);
@@ -683,6 +829,60 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     return 2;
   }
 
+  /**
+   * Get the type of calibration this experiment is set to run, used to look up previous results
+   *
+   * @return Low or high frequency random calibration type
+   */
+  private CalibrationType getCalibrationType() {
+    if (isLowFrequencyCalibration) {
+      return CalibrationType.RANDOM_LOW_FREQUENCY;
+    }
+    return CalibrationType.RANDOM_HIGH_FREQUENCY;
+  }
+
+  /**
+   * Get the previous fit of this sensor (or the same model of sensor) from the fit result library
+   * as a vector of the parameters to be fit. This is produced by applying the previous fit poles
+   * and zeros to the input response and then getting its fit parameters as the solver would.
+   *
+   * @param sncl Name of the sensor output data
+   * @param peak Peak frequency of poles and zeros to include in the fit
+   * @return Vector of initial fit parameters, or null if there is no usable previous fit
+   */
+  private RealVector getWarmStartGuess(String sncl, double peak) {
+    Map<String, double[]> previousFit;
+    try {
+      previousFit = fitResultStore.lookup(getCalibrationType(), fitResponse.getName(), sncl);
+    } catch (IOException e) {
+      fitResultStoreError = "previous fit not used, library unreadable: " + e.getMessage();
+      fireStateChange("Could not read fit library, using input response: " + e.getMessage());
+      return null;
+    }
+    if (previousFit == null ||
+        !previousFit.containsKey(FitResultStore.POLES) ||
+        !previousFit.containsKey(FitResultStore.ZEROS)) {
+      return null;
+    }
+
+    List<Complex> previousPoles =
+        FitResultStore.arrayToComplexList(previousFit.get(FitResultStore.POLES));
+    List<Complex> previousZeros =
+        FitResultStore.arrayToComplexList(previousFit.get(FitResultStore.ZEROS));
+    // previous fit must have come from a response with the same structure as this one
+    if (previousPoles.size() != fitResponse.getPoles().size() ||
+        previousZeros.size() != fitResponse.getZeros().size()) {
+      return null;
+    }
+
+    InstrumentResponse previousResponse = new InstrumentResponse(fitResponse);
+    previousResponse.setPoles(previousPoles);
+    previousResponse.setZeros(previousZeros);
+    RealVector poleGuess = previousResponse.polesToVector(isLowFrequencyCalibration, peak);
+    RealVector zeroGuess = previousResponse.zerosToVector(isLowFrequencyCalibration, peak);
+    return zeroGuess.append(poleGuess);
+  }
+
   /**
    * Get the poles that the solver has found to best-fit the est. response
    *
@@ -792,6 +992,55 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     return numIterations;
   }
 
+  /**
+   * Get the number of frequencies the solver fit the response curve over. This is the number of
+   * frequency bins in the fit range, or the number of log-spaced points if resampling is set.
+   *
+   * @return Number of frequency points used in the fit
+   */
+  public int getNumberOfFitPoints() {
+    return numFitPoints;
+  }
+
+  /**
+   * Get the number of log-spaced points per decade the fit target is resampled to
+   *
+   * @return Points per decade, or 0 if the solver fits over every frequency bin
+   */
+  public int getPointsPerDecade() {
+    return pointsPerDecade;
+  }
+
+  /**
+   * Get the record of the solver's iterations, evaluations, timing, and convergence from the most
+   * recent run of this experiment
+   *
+   * @return Telemetry of the randomized cal fit
+   */
+  public SolverTelemetry getSolverTelemetry() {
+    return solverTelemetry;
+  }
+
+  /**
+   * Get whether the solver ran out of its budget before converging, in which case the fit
+   * parameters are the best found so far
+   *
+   * @return True if the solve was stopped by its budget
+   */
+  public boolean isBudgetExhausted() {
+    return solverTelemetry.isBudgetExhausted();
+  }
+
+  /**
+   * Get whether the solver's initial guess came from a previous fit in the fit result library
+   * rather than the input response
+   *
+   * @return True if the solver started from a previous fit
+   */
+  public boolean isWarmStarted() {
+    return warmStarted;
+  }
+
   public double getMaxFitFrequency() {
     return freqs[freqs.length - 1];
   }
@@ -833,6 +1082,40 @@ public class RandomizedExperiment extends Experiment implements ParameterValidat
     nyquistMultiplier = Math.max(0.3, nyquistMultiplier);
   }
 
+  /**
+   * Set limits on the time, iterations, and evaluations the solver may use. When the budget runs
+   * out the solver stops and the best parameters found so far are used as the fit.
+   *
+   * @param budget Limits for the solver, or SolverBudget.UNLIMITED to run until convergence
+   */
+  public void setSolverBudget(SolverBudget budget) {
+    solverTelemetry.setBudget(budget);
+  }
+
+  /**
+   * Set a library of previous fit results to use. If set, the best previous fit for the same
+   * sensor and response is used as the solver's initial guess (falling back to the input response
+   * if there is none), and the result of this experiment is added to the library when it is run.
+   *
+   * @param fitResultStore Library of previous fits, or null to always start from the input response
+   */
+  public void setFitResultStore(FitResultStore fitResultStore) {
+    this.fitResultStore = fitResultStore;
+  }
+
+  /**
+   * Set the number of log-spaced points per decade to resample the calculated response onto
+   * before fitting. The linearly-spaced frequency bins from the PSD calculation crowd towards
+   * higher frequencies, so this both evens out how much each frequency band contributes to the fit
+   * and keeps the cost of each solver iteration from growing with the length of the data.
+   * Setting this to 0 (the default) or a negative value fits over every frequency bin.
+   *
+   * @param pointsPerDecade Number of points per decade of frequency, or 0 to use every bin
+   */
+  public void setPointsPerDecade(int pointsPerDecade) {
+    this.pointsPerDecade = Math.max(0, pointsPerDecade);
+  }
+
   /**
    * Determines which poles to fit when doing the response curve fitting;
    * low frequency calibrations set the first two poles; high frequency
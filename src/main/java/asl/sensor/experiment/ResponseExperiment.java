@@ -7,6 +7,8 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import org.apache.commons.math3.complex.Complex;
 import org.jfree.data.xy.XYSeries;
@@ -43,26 +45,9 @@ public class ResponseExperiment extends Experiment {
     double lowFreq = .0001;
     double highFreq = 200;
 
-    int pointCount = 100000;
-    double linearChange = (highFreq - lowFreq) / pointCount;
-    // find logarithmic parameters for linear components
-    double b = Math.log10(lowFreq / highFreq) / (lowFreq - highFreq);
-    double a = lowFreq / Math.pow(10, b * lowFreq);
-
-    // hard-code length here because the limits of the calculated range are fixed
-    double[] freqArray = new double[pointCount];
-
-    double currentFreq = lowFreq;
-    for (int i = 0; i < freqArray.length; ++i) {
-      freqArray[i] = currentFreq;
-      currentFreq = a * Math.pow(10, b * (i * linearChange));
-    }
-
     // used to prevent issues with duplicate response plotting / XYSeries names
-    Set<String> respNames = new HashSet<>();
-
-    XYSeriesCollection args = new XYSeriesCollection();
-    XYSeriesCollection mags = new XYSeriesCollection();
+    Set<String> respNames = new LinkedHashSet<>();
+    List<InstrumentResponse> plottedResponses = new ArrayList<>();
 
     for (int responseIndex = 0; responseIndex < 3; ++responseIndex) {
       if (!dataStore.responseIsSet(responseIndex)) {
@@ -78,9 +63,22 @@ public class ResponseExperiment extends Experiment {
       } else {
         respNames.add(name);
         responses.add(instrumentResponse);
+        plottedResponses.add(instrumentResponse);
       }
+    }
+
+    // the curves are mostly flat, so only evaluate them densely where they bend
+    AdaptiveResponseSampler sampler =
+        new AdaptiveResponseSampler(plottedResponses, lowFreq, highFreq);
+    double[] freqArray = sampler.getFrequencies();
+
+    XYSeriesCollection args = new XYSeriesCollection();
+    XYSeriesCollection mags = new XYSeriesCollection();
 
-      Complex[] result = instrumentResponse.applyResponseToInput(freqArray);
+    int plotIndex = 0;
+    for (String name : respNames) {
+      Complex[] result = sampler.getResult(plotIndex);
+      ++plotIndex;
 
       double phiPrev = 0; // use with unwrapping
       XYSeries magnitude = new XYSeries(name + " " + MAGNITUDE);
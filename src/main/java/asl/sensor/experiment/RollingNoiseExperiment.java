@@ -0,0 +1,436 @@
+package asl.sensor.experiment;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.CrossSpectralMatrix;
+import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.FractionalOctaveBinner;
+import asl.sensor.utils.SlidingCrossSpectra;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.util.Pair;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+/**
+ * Tracks the self-noise of three sensors over a long (i.e., multi-day) record by sliding a window
+ * over the data and doing the 3-input self-noise calculation (as in NoiseExperiment) within each
+ * window. Windows are 4 hours long unless set with setWindowLength, and step by half their length.
+ * Each window's noise is averaged into fractional-octave bands (1/8 octave unless a binning is set
+ * with setPSDBandsPerOctave), and the result plotted is the 5th, 50th, and 95th percentile of each
+ * sensor's noise over all the windows in each band, which shows both the sensor's quietest noise
+ * and how much it varies with, say, temperature or the time of day.
+ *
+ * Each window's PSDs and cross-powers are the Welch average of segments 1/4 its length moving 1/16
+ * at a time, the same as in the single-window calculation. As consecutive windows overlap, the
+ * FFT of each segment is kept and reused by every window it is part of (see SlidingCrossSpectra),
+ * so each segment is only transformed once rather than once for every window covering it. The
+ * data is read from the records as it is needed rather than as full time series, and the windows
+ * are split into contiguous groups that are processed in parallel. Windows that overlap a gap in
+ * any of the data are skipped, since the zeros filling the gap would bias the noise low.
+ */
+public class RollingNoiseExperiment extends Experiment {
+
+  /**
+   * Length of each window unless otherwise set (4 hours, in ms)
+   */
+  public static final long DEFAULT_WINDOW_LENGTH = 4L * 3600L * 1000L;
+  private static final int DATA_NEEDED = 3;
+  private static final int DEFAULT_BANDS_PER_OCTAVE = 8;
+  private static final double[] PERCENTILES = {5., 50., 95.};
+  // fewest windows per parallel group, so that most windows reuse their neighbours' segments
+  private static final int MIN_WINDOWS_PER_TASK = 4;
+
+  private boolean freqSpace;
+  private long windowLength;
+  private long windowStep;
+  private int bandsPerOctave;
+  private int[] respIndices;
+  private long[] windowStartTimes;
+  private double[] bandFrequencies;
+  // noise (dB) indexed by window, then by sensor, then by frequency band
+  private float[][][] noise;
+  private int windowsUsed;
+  private int windowsSkipped;
+  private int segmentsTransformed;
+
+  public RollingNoiseExperiment() {
+    super();
+    freqSpace = false;
+    windowLength = DEFAULT_WINDOW_LENGTH;
+    bandsPerOctave = DEFAULT_BANDS_PER_OCTAVE;
+    respIndices = new int[DATA_NEEDED];
+    windowStartTimes = new long[]{};
+    bandFrequencies = new double[]{};
+    noise = new float[][][]{};
+  }
+
+  @Override
+  protected void backend(final DataStore dataStore) {
+
+    final DataBlock[] blocks = new DataBlock[DATA_NEEDED];
+    InstrumentResponse[] responses = new InstrumentResponse[DATA_NEEDED];
+    respIndices = new int[DATA_NEEDED];
+    for (int i = 0; i < DATA_NEEDED; ++i) {
+      // xth fully loaded function begins at 1
+      int idx = dataStore.getXthFullyLoadedIndex(i + 1);
+      respIndices[i] = idx;
+      blocks[i] = dataStore.getBlock(idx);
+      responses[i] = dataStore.getResponse(idx);
+      dataNames.add(blocks[i].getName());
+      dataNames.add(responses[i].getName());
+    }
+
+    final long interval = blocks[0].getInterval();
+    final long[] dataStarts = new long[DATA_NEEDED];
+    long totalSamples = Long.MAX_VALUE;
+    for (int i = 0; i < DATA_NEEDED; ++i) {
+      dataStarts[i] = blocks[i].getStartTime();
+      totalSamples = Math.min(totalSamples, (blocks[i].getEndTime() - dataStarts[i]) / interval);
+    }
+    // records shorter than a window are a single window
+    final int windowSamples = (int) Math.min(windowLength / interval, totalSamples);
+
+    final SlidingCrossSpectra.DataReader reader = (from, to) -> {
+      double[][] data = new double[DATA_NEEDED][];
+      for (int i = 0; i < DATA_NEEDED; ++i) {
+        long start = dataStarts[i] + from * interval;
+        long end = dataStarts[i] + to * interval;
+        data[i] = Arrays.copyOf(blocks[i].getData(start, end), (int) (to - from));
+      }
+      return data;
+    };
+    SlidingCrossSpectra layout = new SlidingCrossSpectra(DATA_NEEDED, windowSamples, interval,
+        reader);
+    int segmentStep = layout.getSegmentStep();
+    // windows step by (about) half their length, in whole segments so that they share segments
+    final int stepSegments = Math.max(1, windowSamples / 2 / segmentStep);
+    windowStep = stepSegments * segmentStep * interval;
+
+    int windowCount = 0;
+    while ((long) windowCount * stepSegments * segmentStep + windowSamples <= totalSamples) {
+      ++windowCount;
+    }
+    windowStartTimes = new long[windowCount];
+    List<List<Pair<Long, Long>>> gaps = new ArrayList<>();
+    for (DataBlock block : blocks) {
+      gaps.add(block.getGapBoundaries());
+    }
+    List<Integer> windowsToUse = new ArrayList<>();
+    for (int window = 0; window < windowCount; ++window) {
+      long offset = (long) window * stepSegments * segmentStep * interval;
+      windowStartTimes[window] = dataStarts[0] + offset;
+      boolean inGap = false;
+      for (int i = 0; i < DATA_NEEDED; ++i) {
+        long start = dataStarts[i] + offset;
+        inGap |= overlapsGap(gaps.get(i), start, start + windowSamples * interval);
+      }
+      if (!inGap) {
+        windowsToUse.add(window);
+      }
+    }
+    windowsUsed = windowsToUse.size();
+    windowsSkipped = windowCount - windowsUsed;
+
+    // all windows have the same length, and so the same frequencies and response curves
+    final double[] freqs = layout.getFreqs();
+    final Complex[][] freqRespd = new Complex[DATA_NEEDED][];
+    for (int i = 0; i < DATA_NEEDED; ++i) {
+      freqRespd[i] = responses[i].applyResponseToInput(freqs);
+    }
+    bandsPerOctave = psdBandsPerOctave > 0 ? psdBandsPerOctave : DEFAULT_BANDS_PER_OCTAVE;
+    final FractionalOctaveBinner binner = new FractionalOctaveBinner(freqs, bandsPerOctave);
+    bandFrequencies = binner.getCenterFrequencies();
+
+    final float[][][] rows = new float[windowCount][][];
+    for (int window = 0; window < windowCount; ++window) {
+      rows[window] = new float[DATA_NEEDED][bandFrequencies.length];
+      for (float[] row : rows[window]) {
+        Arrays.fill(row, Float.NaN);
+      }
+    }
+
+    // split the windows into contiguous groups, each sliding over its own windows in order;
+    // only one group per processor, since each holds a window's worth of segment transforms
+    int groupCount = Math.min((windowsUsed + MIN_WINDOWS_PER_TASK - 1) / MIN_WINDOWS_PER_TASK,
+        Runtime.getRuntime().availableProcessors());
+    fireStateChange("Getting noise over " + windowsUsed + " windows concurrently...");
+    List<Integer> transformedCounts = runInGroups("noise of windows", windowsToUse, groupCount,
+        windows -> {
+          SlidingCrossSpectra sliding =
+              new SlidingCrossSpectra(DATA_NEEDED, windowSamples, interval, reader);
+          for (int window : windows) {
+            CrossSpectralMatrix spectra = sliding.moveTo((long) window * stepSegments);
+            double[][] windowNoise = getWindowNoise(spectra, freqs, freqRespd);
+            for (int i = 0; i < DATA_NEEDED; ++i) {
+              rows[window][i] = FractionalOctaveBinner.toDecibels(binner.bin(windowNoise[i]));
+            }
+          }
+          return sliding.getSegmentsTransformed();
+        });
+    segmentsTransformed = 0;
+    for (int transformed : transformedCounts) {
+      segmentsTransformed += transformed;
+    }
+    noise = rows;
+
+    fireStateChange("Getting percentiles of noise over windows...");
+    XYSeriesCollection xysc = new XYSeriesCollection();
+    xysc.setAutoWidth(true);
+    for (int i = 0; i < DATA_NEEDED; ++i) {
+      for (double percentile : PERCENTILES) {
+        XYSeries series = new XYSeries(getSeriesName(percentile, blocks[i].getName(), i));
+        double[] values = getNoisePercentile(i, percentile);
+        for (int band = 0; band < bandFrequencies.length; ++band) {
+          if (1 / bandFrequencies[band] > MAX_PLOT_PERIOD || Double.isNaN(values[band])) {
+            continue;
+          }
+          double xValue = freqSpace ? bandFrequencies[band] : 1 / bandFrequencies[band];
+          series.add(xValue, values[band]);
+        }
+        xysc.addSeries(series);
+      }
+    }
+    xysc.addSeries(FFTResult.getLowNoiseModel(freqSpace));
+    xysc.addSeries(FFTResult.getHighNoiseModel(freqSpace));
+    xySeriesData.add(xysc);
+  }
+
+  /**
+   * Get the self-noise of each sensor in one window from the spectra of that window
+   *
+   * @param spectra PSDs and cross-powers of the window (no responses applied)
+   * @param freqs Frequencies of the spectra
+   * @param freqRespd Response of each sensor evaluated at those frequencies
+   * @return Noise magnitude of each sensor at each frequency, NaN where not plotted
+   */
+  private static double[][] getWindowNoise(CrossSpectralMatrix spectra, double[] freqs,
+      Complex[][] freqRespd) {
+    Complex[] p11 = applyResponses(spectra, 0, 0, freqs, freqRespd);
+    Complex[] p22 = applyResponses(spectra, 1, 1, freqs, freqRespd);
+    Complex[] p33 = applyResponses(spectra, 2, 2, freqs, freqRespd);
+    Complex[] c13 = applyResponses(spectra, 0, 2, freqs, freqRespd);
+    Complex[] c21 = applyResponses(spectra, 1, 0, freqs, freqRespd);
+    Complex[] c23 = applyResponses(spectra, 1, 2, freqs, freqRespd);
+
+    double[][] noisePower = new double[DATA_NEEDED][freqs.length];
+    for (double[] sensorNoise : noisePower) {
+      Arrays.fill(sensorNoise, Double.NaN);
+    }
+    for (int k = 1; k < freqs.length; ++k) {
+      if (1 / freqs[k] > MAX_PLOT_PERIOD) {
+        continue;
+      }
+      Complex[] noiseAtFreq =
+          NoiseExperiment.getSelfNoise(p11[k], p22[k], p33[k], c13[k], c21[k], c23[k]);
+      for (int i = 0; i < DATA_NEEDED; ++i) {
+        noisePower[i][k] = noiseAtFreq[i].abs();
+      }
+    }
+    return noisePower;
+  }
+
+  private static Complex[] applyResponses(CrossSpectralMatrix spectra, int i, int j,
+      double[] freqs, Complex[][] freqRespd) {
+    return FFTResult.crossPower(spectra.getCrossPower(i, j), freqs, freqRespd[i], freqRespd[j])
+        .getFFT();
+  }
+
+  /**
+   * Get the name of the plotted series of one percentile of a sensor's noise
+   *
+   * @param percentile Percentile (0 to 100)
+   * @param name Name of the sensor's data
+   * @param index Index of the sensor (0 to 2)
+   * @return Series name
+   */
+  public static String getSeriesName(double percentile, String name, int index) {
+    String percentileName =
+        percentile == 50. ? "Median" : String.format("%.0fth percentile", percentile);
+    return percentileName + " noise " + name + " [" + index + "]";
+  }
+
+  @Override
+  public int blocksNeeded() {
+    return DATA_NEEDED;
+  }
+
+  /**
+   * Get the center frequencies of the fractional-octave bands the noise was averaged into
+   *
+   * @return Frequencies (Hz) in ascending order
+   */
+  public double[] getBandFrequencies() {
+    return bandFrequencies.clone();
+  }
+
+  /**
+   * Get the number of bands per octave the windows' noise was averaged into
+   *
+   * @return N, for bands of 1/N octave
+   */
+  public int getBandsPerOctave() {
+    return bandsPerOctave;
+  }
+
+  /**
+   * Get the noise of one sensor in each band over each window. Windows left out because they
+   * overlap a gap in the data are NaN, as are bands with no finite noise values.
+   *
+   * @param sensor Index of the sensor (0 to 2)
+   * @return Noise (dB rel. 1 (m/s^2)^2/Hz) indexed by window (see {@link #getWindowStartTimes()})
+   * and then by band (see {@link #getBandFrequencies()})
+   */
+  public float[][] getNoiseMatrix(int sensor) {
+    float[][] copy = new float[noise.length][];
+    for (int window = 0; window < noise.length; ++window) {
+      copy[window] = noise[window][sensor].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Get a percentile of one sensor's noise over all the windows in each band, interpolating
+   * linearly between the nearest ranks
+   *
+   * @param sensor Index of the sensor (0 to 2)
+   * @param percentile Percentile to get (0 to 100)
+   * @return Noise (dB) at that percentile in each band, NaN for bands with no values
+   */
+  public double[] getNoisePercentile(int sensor, double percentile) {
+    if (percentile < 0. || percentile > 100.) {
+      throw new IllegalArgumentException("Percentile must be from 0 to 100: " + percentile);
+    }
+    double[] result = new double[bandFrequencies.length];
+    double[] values = new double[noise.length];
+    for (int band = 0; band < bandFrequencies.length; ++band) {
+      int count = 0;
+      for (float[][] window : noise) {
+        if (Float.isFinite(window[sensor][band])) {
+          values[count] = window[sensor][band];
+          ++count;
+        }
+      }
+      if (count == 0) {
+        result[band] = Double.NaN;
+        continue;
+      }
+      Arrays.sort(values, 0, count);
+      double rank = percentile / 100. * (count - 1);
+      int lower = (int) Math.floor(rank);
+      int upper = Math.min(count - 1, lower + 1);
+      result[band] = values[lower] + (rank - lower) * (values[upper] - values[lower]);
+    }
+    return result;
+  }
+
+  /**
+   * Get the number of segments whose FFTs were taken in the last run; without reusing segments
+   * between overlapping windows, this would be the segments per window times the windows used
+   *
+   * @return Number of segments transformed
+   */
+  public int getSegmentsTransformed() {
+    return segmentsTransformed;
+  }
+
+  /**
+   * Get the start time of each window
+   *
+   * @return Times (ms from epoch) in ascending order
+   */
+  public long[] getWindowStartTimes() {
+    return windowStartTimes.clone();
+  }
+
+  /**
+   * Get the length of each window the noise is calculated over
+   *
+   * @return Window length (ms)
+   */
+  public long getWindowLength() {
+    return windowLength;
+  }
+
+  /**
+   * Get the time between the starts of consecutive windows, which is about half the window length
+   *
+   * @return Window step (ms)
+   */
+  public long getWindowStep() {
+    return windowStep;
+  }
+
+  /**
+   * Get the number of windows whose noise was calculated
+   *
+   * @return Number of windows used
+   */
+  public int getWindowsUsed() {
+    return windowsUsed;
+  }
+
+  /**
+   * Get the number of windows that were left out because they overlapped a gap in the data
+   *
+   * @return Number of windows skipped
+   */
+  public int getWindowsSkipped() {
+    return windowsSkipped;
+  }
+
+  @Override
+  String[] getDataStrings() {
+    return new String[]{"Window length (s): " + windowLength / 1000.
+        + "\nWindows used: " + windowsUsed
+        + "\nWindows skipped (gaps): " + windowsSkipped};
+  }
+
+  @Override
+  public String[] getInsetStrings() {
+    return new String[]{getDataStrings()[0] + '\n' + getFormattedDateRange()};
+  }
+
+  @Override
+  public boolean hasEnoughData(DataStore dataStore) {
+    for (int i = 0; i < blocksNeeded(); ++i) {
+      if (!dataStore.bothComponentsSet(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int[] listActiveResponseIndices() {
+    return respIndices;
+  }
+
+  /**
+   * Used to set the x-axis over which the noise is plotted,
+   * either frequency (Hz) units or sample-interval (s) units
+   *
+   * @param freqSpace True if the plot should use units of Hz
+   */
+  public void setFreqSpace(boolean freqSpace) {
+    this.freqSpace = freqSpace;
+  }
+
+  /**
+   * Set the length of the windows the noise is calculated over. Longer windows resolve lower
+   * frequencies (the lowest is around a quarter of the window length) but give fewer windows to
+   * take the percentiles over.
+   *
+   * @param windowLength Window length (ms)
+   */
+  public void setWindowLength(long windowLength) {
+    if (windowLength <= 0) {
+      throw new IllegalArgumentException("Window length must be positive: " + windowLength);
+    }
+    this.windowLength = windowLength;
+  }
+
+}
@@ -0,0 +1,130 @@
+package asl.sensor.experiment;
+
+/**
+ * Correlation between a reference signal and a pair of orthogonal signals rotated by an angle,
+ * calculated from the second moments of the three signals. The rotated signal is
+ * north * cos(theta) - east * sin(theta) (as in TimeSeriesUtils.rotate), so its covariance with
+ * the reference and its variance are combinations of the covariances of the unrotated signals.
+ * Once those six moments have been calculated (which takes one pass over the data), the Pearson
+ * correlation and its exact derivative with respect to the angle can be found for any angle
+ * without touching the data again.
+ */
+final class RotationCorrelation {
+
+  // sums of products of the demeaned data; ratios of these are the same as for (co)variances
+  private final double refVariance;
+  private final double northVariance;
+  private final double eastVariance;
+  private final double refNorthCovariance;
+  private final double refEastCovariance;
+  private final double northEastCovariance;
+
+  /**
+   * Calculate the moments of the given data.
+   *
+   * @param refNorth Data from the known north-facing sensor
+   * @param testNorth Data from the test sensor's north-facing component
+   * @param testEast Data from the test sensor's east-facing component
+   */
+  RotationCorrelation(double[] refNorth, double[] testNorth, double[] testEast) {
+    int length = refNorth.length;
+    double refMean = 0.;
+    double northMean = 0.;
+    double eastMean = 0.;
+    for (int i = 0; i < length; ++i) {
+      refMean += refNorth[i];
+      northMean += testNorth[i];
+      eastMean += testEast[i];
+    }
+    refMean /= length;
+    northMean /= length;
+    eastMean /= length;
+
+    double refRef = 0.;
+    double northNorth = 0.;
+    double eastEast = 0.;
+    double refNorthSum = 0.;
+    double refEastSum = 0.;
+    double northEastSum = 0.;
+    for (int i = 0; i < length; ++i) {
+      double ref = refNorth[i] - refMean;
+      double north = testNorth[i] - northMean;
+      double east = testEast[i] - eastMean;
+      refRef += ref * ref;
+      northNorth += north * north;
+      eastEast += east * east;
+      refNorthSum += ref * north;
+      refEastSum += ref * east;
+      northEastSum += north * east;
+    }
+    refVariance = refRef;
+    northVariance = northNorth;
+    eastVariance = eastEast;
+    refNorthCovariance = refNorthSum;
+    refEastCovariance = refEastSum;
+    northEastCovariance = northEastSum;
+  }
+
+  /**
+   * Create from already-calculated moments (i.e., from a RotationMomentAccumulator). These can be
+   * (co)variances or sums of products of demeaned data, as long as all are scaled the same way.
+   *
+   * @param refVariance Variance of the reference data
+   * @param northVariance Variance of the test sensor's north-facing data
+   * @param eastVariance Variance of the test sensor's east-facing data
+   * @param refNorthCovariance Covariance of the reference and test north data
+   * @param refEastCovariance Covariance of the reference and test east data
+   * @param northEastCovariance Covariance of the test north and test east data
+   */
+  RotationCorrelation(double refVariance, double northVariance, double eastVariance,
+      double refNorthCovariance, double refEastCovariance, double northEastCovariance) {
+    this.refVariance = refVariance;
+    this.northVariance = northVariance;
+    this.eastVariance = eastVariance;
+    this.refNorthCovariance = refNorthCovariance;
+    this.refEastCovariance = refEastCovariance;
+    this.northEastCovariance = northEastCovariance;
+  }
+
+  /**
+   * Pearson correlation of the reference with the test data rotated by the given angle
+   *
+   * @param theta Angle of rotation (radians)
+   * @return Correlation, which is NaN if either signal has no variance
+   */
+  double correlation(double theta) {
+    double cos = Math.cos(theta);
+    double sin = Math.sin(theta);
+    return covariance(cos, sin) / Math.sqrt(refVariance * rotatedVariance(cos, sin));
+  }
+
+  /**
+   * Derivative with respect to the angle of the Pearson correlation of the reference with the
+   * test data rotated by the given angle
+   *
+   * @param theta Angle of rotation (radians)
+   * @return Derivative of the correlation at that angle
+   */
+  double correlationDerivative(double theta) {
+    double cos = Math.cos(theta);
+    double sin = Math.sin(theta);
+    double covariance = covariance(cos, sin);
+    double variance = rotatedVariance(cos, sin);
+    double covarianceDerivative = -sin * refNorthCovariance - cos * refEastCovariance;
+    double varianceDerivative = 2 * sin * cos * (eastVariance - northVariance)
+        - 2 * (cos * cos - sin * sin) * northEastCovariance;
+    // d/dt (c / sqrt(r * v)) = (c' - c * v' / (2 * v)) / sqrt(r * v)
+    return (covarianceDerivative - covariance * varianceDerivative / (2 * variance))
+        / Math.sqrt(refVariance * variance);
+  }
+
+  private double covariance(double cos, double sin) {
+    return cos * refNorthCovariance - sin * refEastCovariance;
+  }
+
+  private double rotatedVariance(double cos, double sin) {
+    return cos * cos * northVariance - 2 * sin * cos * northEastCovariance
+        + sin * sin * eastVariance;
+  }
+
+}
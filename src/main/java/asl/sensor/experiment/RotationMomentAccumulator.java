@@ -0,0 +1,114 @@
+package asl.sensor.experiment;
+
+/**
+ * Prefix sums over a full record of reference and test sensor data, from which the moments used
+ * by RotationCorrelation can be read for any window of the record in constant time. The moments
+ * are those of each window's data after removing its linear trend, which is the same as detrending
+ * a copy of the window (see TimeSeriesUtils.detrend) and taking the moments of that.
+ *
+ * For data x and y over a window of m points with index t, removing the linear trend of each
+ * leaves sum(x*y) - sum(x)*sum(y)/m - Sxt * Syt / Stt, where Sxt = sum(x*t) - sum(x)*sum(t)/m
+ * (likewise Syt) and Stt = m * (m^2 - 1) / 12, so only sums of x, x*t, and x*y are needed.
+ */
+final class RotationMomentAccumulator {
+
+  // series indices in the arrays of sums
+  private static final int REF = 0;
+  private static final int NORTH = 1;
+  private static final int EAST = 2;
+
+  private final int length;
+  // prefix sums of each series, and of each series weighted by its index: sum[series][i] is the
+  // sum over the first i points
+  private final double[][] sums;
+  private final double[][] indexSums;
+  // prefix sums of products: ref*ref, north*north, east*east, ref*north, ref*east, north*east
+  private final double[][] productSums;
+
+  /**
+   * Accumulate the sums over the full record of data. All arrays should have the same length.
+   *
+   * @param refNorth Data from the known north-facing sensor
+   * @param testNorth Data from the test sensor's north-facing component
+   * @param testEast Data from the test sensor's east-facing component
+   */
+  RotationMomentAccumulator(double[] refNorth, double[] testNorth, double[] testEast) {
+    length = refNorth.length;
+    double[][] data = {refNorth, testNorth, testEast};
+    sums = new double[3][length + 1];
+    indexSums = new double[3][length + 1];
+    productSums = new double[6][length + 1];
+    for (int i = 0; i < length; ++i) {
+      for (int series = 0; series < 3; ++series) {
+        double value = data[series][i];
+        sums[series][i + 1] = sums[series][i] + value;
+        indexSums[series][i + 1] = indexSums[series][i] + value * i;
+      }
+      double ref = refNorth[i];
+      double north = testNorth[i];
+      double east = testEast[i];
+      productSums[0][i + 1] = productSums[0][i] + ref * ref;
+      productSums[1][i + 1] = productSums[1][i] + north * north;
+      productSums[2][i + 1] = productSums[2][i] + east * east;
+      productSums[3][i + 1] = productSums[3][i] + ref * north;
+      productSums[4][i + 1] = productSums[4][i] + ref * east;
+      productSums[5][i + 1] = productSums[5][i] + north * east;
+    }
+  }
+
+  /**
+   * Get the number of points in the record
+   *
+   * @return Length of the data the sums were accumulated over
+   */
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * Get the moments of a window of the record with each series' linear trend removed
+   *
+   * @param startIdx Index of the first point in the window
+   * @param endIdx Index after the last point in the window
+   * @return Moments of the window's detrended data
+   */
+  RotationCorrelation window(int startIdx, int endIdx) {
+    double points = endIdx - startIdx;
+    // index is taken relative to the start of the window
+    double indexSum = points * (points - 1) / 2;
+    double indexVariance = points * (points * points - 1) / 12;
+
+    double[] windowSums = new double[3];
+    double[] indexCovariances = new double[3];
+    for (int series = 0; series < 3; ++series) {
+      double sum = sums[series][endIdx] - sums[series][startIdx];
+      double weightedSum = indexSums[series][endIdx] - indexSums[series][startIdx]
+          - startIdx * sum;
+      windowSums[series] = sum;
+      indexCovariances[series] = weightedSum - sum * indexSum / points;
+    }
+
+    return new RotationCorrelation(
+        detrendedCovariance(0, REF, REF, startIdx, endIdx, windowSums, indexCovariances,
+            indexVariance),
+        detrendedCovariance(1, NORTH, NORTH, startIdx, endIdx, windowSums, indexCovariances,
+            indexVariance),
+        detrendedCovariance(2, EAST, EAST, startIdx, endIdx, windowSums, indexCovariances,
+            indexVariance),
+        detrendedCovariance(3, REF, NORTH, startIdx, endIdx, windowSums, indexCovariances,
+            indexVariance),
+        detrendedCovariance(4, REF, EAST, startIdx, endIdx, windowSums, indexCovariances,
+            indexVariance),
+        detrendedCovariance(5, NORTH, EAST, startIdx, endIdx, windowSums, indexCovariances,
+            indexVariance));
+  }
+
+  private double detrendedCovariance(int product, int first, int second, int startIdx, int endIdx,
+      double[] windowSums, double[] indexCovariances, double indexVariance) {
+    double points = endIdx - startIdx;
+    double productSum = productSums[product][endIdx] - productSums[product][startIdx];
+    double covariance = productSum - windowSums[first] * windowSums[second] / points;
+    return covariance - indexCovariances[first] * indexCovariances[second] / indexVariance;
+  }
+
+}
@@ -1,19 +1,21 @@
 package asl.sensor.experiment;
 
+import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
-import asl.sensor.utils.TimeSeriesUtils;
+import asl.sensor.utils.SinusoidFit;
 import java.util.ArrayList;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 
 /**
  * This process compares the behavior for an input and output sine wave for a sensor. Unlike with
  * sine cals and step cals, a sine wave has a single (fixed) frequency, and thus no response is
- * used in this calculation. We take the RMS of the signals to get a ratio of their amplitudes,
- * and also calculate the distance between peaks of the sine wave to get an estimation of its
- * frequency. This estimation is likely to differ by a few Hz from the expected value in most cases,
- * and is mainly used as a quick way of checking that the calibration completed without significant
+ * used in this calculation. A sinusoid is fit to each signal by least squares to get a ratio of
+ * their amplitudes: the frequency is estimated from the calibration input's mean crossings and
+ * refined with a four-parameter fit to that input, and then the output's amplitude and phase are
+ * fit at that frequency (see SinusoidFit). Each fit is a pass or few through the data without
+ * copying it, so an hour or more of high-rate data is quick to process. The frequency is mainly
+ * used as a quick way of checking that the calibration completed without significant
  * error making its results suspect (i.e., sine cals should have frequency in the sensor passband).
  * The main purpose of doing this cal is to get a midband sensitivity estimate for a seismometer,
  * under the assumption that the calibration components (i.e., coil abd drive) have fixed behavior.
@@ -21,17 +23,27 @@ import org.jfree.data.xy.XYSeriesCollection;
  * "Obtaining Changes in Calibration-Coil to Seismometer Output Constants Using Sine Waves",
  * Bulletin of the Seismological Society of America, Vol 104 (Feb. 2014).
  *
+ * Since plotting every sample of a long cal is slow and shows no more than a line's width can,
+ * the sine plot is an envelope of the signals (the minimum and maximum of each of a fixed number
+ * of spans of the data), and the linearity plot uses an evenly-spaced subset of the samples.
+ *
  * @author akearns - KBRWyle
  */
 public class SineExperiment extends Experiment {
 
-  private double calSDev, outSDev, peakPeakFreq;
+  // number of spans of data the sine plot takes the minimum and maximum of
+  private static final int ENVELOPE_SPANS = 2000;
+  private static final int MAX_LINEARITY_POINTS = 10000;
+
+  private double calAmplitude, outAmplitude, sineFrequency, samplesPerPeriod, phaseDifference;
 
   public SineExperiment() {
     super();
-    calSDev = 0.;
-    outSDev = 0.;
-    peakPeakFreq = 0.;
+    calAmplitude = 0.;
+    outAmplitude = 0.;
+    sineFrequency = 0.;
+    samplesPerPeriod = 0.;
+    phaseDifference = 0.;
   }
 
   private String getResultData() {
@@ -41,6 +53,8 @@ public class SineExperiment extends Experiment {
     String outAmp = DECIMAL_FORMAT.get().format(outAmplitude);
     String ratio = DECIMAL_FORMAT.get().format(calAmplitude / outAmplitude);
     String estimatedFrequency = DECIMAL_FORMAT.get().format(getEstSineFreq());
+    String fittedFrequency = DECIMAL_FORMAT.get().format(getFittedFrequency());
+    String phase = DECIMAL_FORMAT.get().format(getPhaseDifference());
     return "Calculated calibration amplitude: "
         + calAmp
         + "\nCalculated output amplitude: "
@@ -48,7 +62,11 @@ public class SineExperiment extends Experiment {
         + "\nAmplitude ratio: "
         + ratio
         + "\nEstimated sine frequency: "
-        + estimatedFrequency;
+        + estimatedFrequency
+        + "\nFitted sine frequency (Hz): "
+        + fittedFrequency
+        + "\nPhase of output relative to input (deg): "
+        + phase;
   }
 
   @Override
@@ -56,67 +74,108 @@ public class SineExperiment extends Experiment {
     return new String[]{getResultData()};
   }
 
+  /**
+   * Get the amplitude of the sinusoid fit to the calibration input, as its RMS value (which is
+   * the same as the standard deviation of a pure sinusoid)
+   *
+   * @return RMS amplitude of the calibration input (counts)
+   */
   public double getCalAmplitude() {
-    return calSDev;
+    return calAmplitude;
   }
 
+  /**
+   * Get the amplitude of the sinusoid fit to the sensor output, as its RMS value (which is
+   * the same as the standard deviation of a pure sinusoid)
+   *
+   * @return RMS amplitude of the sensor output (counts)
+   */
   public double getOutAmplitude() {
-    return outSDev;
+    return outAmplitude;
   }
 
+  /**
+   * Get the period of the sinusoid fit to the calibration input, in samples, as this has always
+   * been reported (see {@link #getFittedFrequency()} for the frequency in Hz)
+   *
+   * @return Samples per period of the sine wave, or NaN if the input does not complete a full cycle
+   */
   public double getEstSineFreq() {
-    return peakPeakFreq;
+    return samplesPerPeriod;
+  }
+
+  /**
+   * Get the frequency of the sinusoid fit to the calibration input
+   *
+   * @return Frequency (Hz), or NaN if the input does not complete a full cycle
+   */
+  public double getFittedFrequency() {
+    return sineFrequency;
+  }
+
+  /**
+   * Get the phase of the sensor output's sinusoid relative to that of the calibration input
+   *
+   * @return Phase difference (degrees, from -180 to 180)
+   */
+  public double getPhaseDifference() {
+    return phaseDifference;
   }
 
   @Override
   protected void backend(DataStore dataStore) {
-    calSDev = 0.;
-    outSDev = 0.;
-    peakPeakFreq = 0.;
-
-    double[] calTimeSeries = dataStore.getBlock(0).getData().clone();
-    double[] outTimeSeries = dataStore.getBlock(1).getData().clone();
-
-    dataNames.add(dataStore.getBlock(0).getName());
-    dataNames.add(dataStore.getBlock(1).getName());
-
-    // get the sine wave frequency by measuring wavelengths (get distance between peaks)
-    int currentPeakDistance = 0;
-    int totalPeakDistance = 0;
-    int peakCount = -1; // start at negative 1 so first peak counts as 0
-    for (int i = 1; i < outTimeSeries.length - 1; ++i) {
-      if (outTimeSeries[i] > outTimeSeries[i - 1] && outTimeSeries[i] > outTimeSeries[i + 1]) {
-        ++peakCount;
-        totalPeakDistance += currentPeakDistance;
-        currentPeakDistance = 0;
-      } else {
-        ++currentPeakDistance;
-      }
-    }
-    if (peakCount > 0) {
-      peakPeakFreq = totalPeakDistance / (double) peakCount;
+    calAmplitude = 0.;
+    outAmplitude = 0.;
+    sineFrequency = 0.;
+    samplesPerPeriod = 0.;
+    phaseDifference = 0.;
+
+    DataBlock calBlock = dataStore.getBlock(0);
+    DataBlock outBlock = dataStore.getBlock(1);
+    // the fits only read the data, so the cached time series can be used without copying them
+    double[] calTimeSeries = calBlock.getData();
+    double[] outTimeSeries = outBlock.getData();
+    long interval = calBlock.getInterval();
+
+    dataNames.add(calBlock.getName());
+    dataNames.add(outBlock.getName());
+
+    fireStateChange("Fitting sinusoid to calibration input...");
+    double calOffset = 0.;
+    double outOffset = 0.;
+    double initialFrequency = SinusoidFit.estimateFrequency(calTimeSeries, interval);
+    if (Double.isNaN(initialFrequency)) {
+      // not a full cycle of data, so there's nothing to fit
+      calAmplitude = Double.NaN;
+      outAmplitude = Double.NaN;
+      sineFrequency = Double.NaN;
+      samplesPerPeriod = Double.NaN;
+      phaseDifference = Double.NaN;
     } else {
-      peakPeakFreq = 0;
+      SinusoidFit calFit = SinusoidFit.fitFourParameter(calTimeSeries, interval, initialFrequency);
+      sineFrequency = calFit.getFrequency();
+      samplesPerPeriod = 1000. / (sineFrequency * interval);
+      fireStateChange("Fitting sinusoid to sensor output...");
+      SinusoidFit outFit = SinusoidFit.fitThreeParameter(outTimeSeries, interval, sineFrequency);
+      calAmplitude = calFit.getRMSAmplitude();
+      outAmplitude = outFit.getRMSAmplitude();
+      calOffset = calFit.getOffset();
+      outOffset = outFit.getOffset();
+      double phase = Math.toDegrees(outFit.getPhase() - calFit.getPhase());
+      // wrap into the range -180 to 180
+      phaseDifference = phase - 360. * Math.floor((phase + 180.) / 360.);
     }
-
-    // we would like to have the signals centered on 0 for lining them up
-    calTimeSeries = TimeSeriesUtils.demean(calTimeSeries);
-    outTimeSeries = TimeSeriesUtils.demean(outTimeSeries);
-    // standard deviation is a good
-    calSDev = new DescriptiveStatistics(calTimeSeries).getStandardDeviation();
-    outSDev = new DescriptiveStatistics(outTimeSeries).getStandardDeviation();
+    // scale the output to the input's amplitude so they can be compared on the same plot
+    double outScale = Double.isNaN(calAmplitude) ? 1. : calAmplitude / outAmplitude;
 
     // add plots sine waves
+    fireStateChange("Getting plots of sine waves...");
     XYSeriesCollection xysc = new XYSeriesCollection();
-    XYSeries cal = new XYSeries(dataStore.getBlock(0).getName() + " [cal]");
-    XYSeries out = new XYSeries(dataStore.getBlock(1).getName() + " [out, scaled]");
-    double interval =
-        dataStore.getBlock(0).getInterval();
+    XYSeries cal = new XYSeries(calBlock.getName() + " [cal]");
+    XYSeries out = new XYSeries(outBlock.getName() + " [out, scaled]");
     double start = getStart();
-    for (int i = 0; i < calTimeSeries.length; ++i) {
-      cal.add(start + interval * i, calTimeSeries[i]);
-      out.add(start + interval * i, outTimeSeries[i] * calSDev / outSDev);
-    }
+    addEnvelopeToPlot(cal, calTimeSeries, start, interval, calOffset, 1.);
+    addEnvelopeToPlot(out, outTimeSeries, start, interval, outOffset, outScale);
     xysc.addSeries(cal);
     xysc.addSeries(out);
     xySeriesData = new ArrayList<>();
@@ -124,14 +183,50 @@ public class SineExperiment extends Experiment {
     // produce linearity plots
     xysc = new XYSeriesCollection();
     // booleans: don't autosort, do allow duplicate values
-    XYSeries lin = new XYSeries(dataStore.getBlock(1).getName() + " linearity", false, true);
-    for (int i = 0; i < calTimeSeries.length; ++i) {
-      lin.add(calTimeSeries[i], outTimeSeries[i]);
+    XYSeries lin = new XYSeries(outBlock.getName() + " linearity", false, true);
+    int length = Math.min(calTimeSeries.length, outTimeSeries.length);
+    int stride = length / MAX_LINEARITY_POINTS + 1;
+    for (int i = 0; i < length; i += stride) {
+      lin.add(calTimeSeries[i] - calOffset, outTimeSeries[i] - outOffset);
     }
     xysc.addSeries(lin);
     xySeriesData.add(xysc);
   }
 
+  /**
+   * Add the envelope of a signal to a plot: for each of a fixed number of spans of the data, its
+   * minimum and maximum, in the order they occur. Signals short enough are plotted in full.
+   *
+   * @param series Series to add the plotted points to
+   * @param data Signal to plot
+   * @param start Time of the first sample (ms from epoch)
+   * @param interval Sample interval (ms)
+   * @param offset Value to subtract from the signal to center it on zero
+   * @param scale Value to multiply the centered signal by
+   */
+  private static void addEnvelopeToPlot(XYSeries series, double[] data, double start,
+      double interval, double offset, double scale) {
+    int spanLength = Math.max(1, (data.length + ENVELOPE_SPANS - 1) / ENVELOPE_SPANS);
+    for (int spanStart = 0; spanStart < data.length; spanStart += spanLength) {
+      int spanEnd = Math.min(data.length, spanStart + spanLength);
+      int lowest = spanStart;
+      int highest = spanStart;
+      for (int i = spanStart + 1; i < spanEnd; ++i) {
+        if (data[i] < data[lowest]) {
+          lowest = i;
+        } else if (data[i] > data[highest]) {
+          highest = i;
+        }
+      }
+      int first = Math.min(lowest, highest);
+      int second = Math.max(lowest, highest);
+      series.add(start + interval * first, (data[first] - offset) * scale);
+      if (second != first) {
+        series.add(start + interval * second, (data[second] - offset) * scale);
+      }
+    }
+  }
+
   @Override
   public int blocksNeeded() {
     return 2;
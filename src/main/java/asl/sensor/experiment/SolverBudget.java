@@ -0,0 +1,105 @@
+package asl.sensor.experiment;
+
+/**
+ * Limits on how long a least-squares solver may run: a maximum wall-clock time, a maximum number
+ * of iterations, and a maximum number of function evaluations. Any limit that is zero (or
+ * negative) is not enforced. When a solver runs out of budget it stops and returns the best
+ * parameters found so far, and its telemetry reports the solve as budget-exhausted
+ * (see {@link SolverTelemetry}).
+ */
+public class SolverBudget {
+
+  /**
+   * Budget with no limits, which lets the solver run until it converges
+   */
+  public static final SolverBudget UNLIMITED = new SolverBudget(0L, 0, 0);
+
+  private final long maxWallTimeMillis;
+  private final int maxIterations;
+  private final int maxEvaluations;
+
+  /**
+   * Create a new budget. Limits that are zero or negative are not enforced.
+   *
+   * @param maxWallTimeMillis Maximum time the solver may run for, in milliseconds
+   * @param maxIterations Maximum number of iterations the solver may take
+   * @param maxEvaluations Maximum number of evaluations of the model function
+   */
+  public SolverBudget(long maxWallTimeMillis, int maxIterations, int maxEvaluations) {
+    this.maxWallTimeMillis = Math.max(0L, maxWallTimeMillis);
+    this.maxIterations = Math.max(0, maxIterations);
+    this.maxEvaluations = Math.max(0, maxEvaluations);
+  }
+
+  /**
+   * Get the maximum time the solver may run for
+   *
+   * @return Time limit in milliseconds, or 0 if there is no limit
+   */
+  public long getMaxWallTimeMillis() {
+    return maxWallTimeMillis;
+  }
+
+  /**
+   * Get the maximum number of iterations the solver may take
+   *
+   * @return Iteration limit, or 0 if there is no limit
+   */
+  public int getMaxIterations() {
+    return maxIterations;
+  }
+
+  /**
+   * Get the maximum number of times the solver may evaluate the model function
+   *
+   * @return Evaluation limit, or 0 if there is no limit
+   */
+  public int getMaxEvaluations() {
+    return maxEvaluations;
+  }
+
+  /**
+   * Get whether this budget enforces any limits at all
+   *
+   * @return True if no limits are set
+   */
+  public boolean isUnlimited() {
+    return maxWallTimeMillis == 0L && maxIterations == 0 && maxEvaluations == 0;
+  }
+
+  /**
+   * Produce a copy of this budget with a different time limit. This is used to split a single
+   * time limit over several consecutive solves (i.e., azimuth correlation windows).
+   *
+   * @param newMaxWallTimeMillis New time limit in milliseconds (0 for no limit)
+   * @return Budget with the same iteration and evaluation limits and the given time limit
+   */
+  public SolverBudget withMaxWallTimeMillis(long newMaxWallTimeMillis) {
+    return new SolverBudget(newMaxWallTimeMillis, maxIterations, maxEvaluations);
+  }
+
+  @Override
+  public String toString() {
+    if (isUnlimited()) {
+      return "unlimited";
+    }
+    StringBuilder sb = new StringBuilder();
+    if (maxWallTimeMillis > 0) {
+      sb.append("time: ").append(maxWallTimeMillis).append(" ms");
+    }
+    if (maxIterations > 0) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append("iterations: ").append(maxIterations);
+    }
+    if (maxEvaluations > 0) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append("evaluations: ").append(maxEvaluations);
+    }
+    return sb.toString();
+  }
+
+}
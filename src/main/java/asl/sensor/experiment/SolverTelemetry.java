@@ -0,0 +1,505 @@
+package asl.sensor.experiment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.apache.commons.math3.exception.ConvergenceException;
+import org.apache.commons.math3.exception.TooManyEvaluationsException;
+import org.apache.commons.math3.exception.TooManyIterationsException;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem.Evaluation;
+import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunction;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.ConvergenceChecker;
+import org.apache.commons.math3.util.Pair;
+import asl.sensor.utils.CancellationToken;
+import asl.sensor.utils.StageProfiler;
+
+/**
+ * Records what happened during a single least-squares solve: the number of iterations and function
+ * evaluations, how long the solve took (split between evaluating the model function and the
+ * solver's own linear algebra), the cost after each iteration, and why the solver stopped.
+ * This is used to find inputs that make the solvers slow or unstable.
+ *
+ * To record a solve, wrap the model function with instrument() and set the convergence checker
+ * returned by getCostRecorder() when building the least-squares problem, and then call optimize()
+ * on this object in place of the optimizer itself. The cost recorder never signals convergence
+ * by itself, so the optimizer's own tolerances still determine when it stops.
+ *
+ * The Levenberg-Marquardt optimizer doesn't report which of its tolerances ended a solve, so the
+ * convergence reason is inferred from the final iterations, checking the tolerances in the order
+ * the optimizer does.
+ *
+ * A {@link SolverBudget} can also be set to limit the solve. The budget is checked after each
+ * iteration and before each evaluation of the model, and when it runs out the solve stops and
+ * returns the best point found so far (the optimizer only accepts steps that reduce the cost, so
+ * this is the most recently accepted point) rather than throwing an exception.
+ */
+public class SolverTelemetry {
+
+  /**
+   * Reason that a solver stopped iterating
+   */
+  public enum ConvergenceReason {
+    /**
+     * Solver has not been run yet
+     */
+    NOT_RUN,
+    /**
+     * Residuals were orthogonal to the jacobian (gradient is effectively zero)
+     */
+    ORTHOGONALITY_TOLERANCE,
+    /**
+     * Relative reduction of the cost was within tolerance
+     */
+    COST_TOLERANCE,
+    /**
+     * Relative change of the parameters was within tolerance
+     */
+    PARAMETER_TOLERANCE,
+    /**
+     * Solver hit the maximum number of function evaluations
+     */
+    EVALUATION_LIMIT,
+    /**
+     * Solver hit the maximum number of iterations
+     */
+    ITERATION_LIMIT,
+    /**
+     * Solver could not make progress (i.e., tolerances too small for machine precision)
+     */
+    FAILED,
+    /**
+     * Solver ran out of its time, iteration, or evaluation budget; result is the best found so far
+     */
+    BUDGET_EXHAUSTED,
+    /**
+     * Calculation the solver was part of was cancelled, so there is no result
+     */
+    CANCELLED
+  }
+
+  private final String name;
+  private int iterations;
+  private int evaluations;
+  private long totalNanos;
+  private long modelNanos;
+  private final List<Double> costs;
+  private ConvergenceReason convergenceReason;
+  // last two accepted points from the solver, used to infer the convergence reason
+  private Evaluation lastPrevious, lastCurrent;
+  private boolean solving;
+  private SolverBudget budget;
+  private long startNanos;
+  private RealVector bestPoint; // most recent point accepted by the solver
+  private boolean budgetExhausted;
+
+  /**
+   * Create a new empty telemetry record
+   *
+   * @param name Description of the solve (i.e., "Randomized cal fit")
+   */
+  public SolverTelemetry(String name) {
+    this.name = name;
+    costs = new ArrayList<>();
+    convergenceReason = ConvergenceReason.NOT_RUN;
+    budget = SolverBudget.UNLIMITED;
+  }
+
+  /**
+   * Set the limits on the time, iterations, and evaluations of the next solve
+   *
+   * @param budget Limits for the solver, or SolverBudget.UNLIMITED to run until convergence
+   */
+  public void setBudget(SolverBudget budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Get the limits on the time, iterations, and evaluations of the solve
+   *
+   * @return Limits for the solver
+   */
+  public SolverBudget getBudget() {
+    return budget;
+  }
+
+  /**
+   * Wrap a model function so that its evaluations are counted and timed while the solver runs.
+   * Evaluations made outside of optimize() (i.e., evaluating an initial guess) are not recorded.
+   * Each evaluation first checks whether the calculation running in this thread was cancelled
+   * (see CancellationToken), so a cancelled solve stops within one evaluation.
+   *
+   * @param model Model function to be given to the least-squares problem
+   * @return Model function that produces the same result and records telemetry
+   */
+  public MultivariateJacobianFunction instrument(final MultivariateJacobianFunction model) {
+    return point -> {
+      CancellationToken.checkCurrent();
+      if (!solving) {
+        return model.value(point);
+      }
+      int maxEvaluations = budget.getMaxEvaluations();
+      if (isOutOfTime() || (maxEvaluations > 0 && evaluations >= maxEvaluations)) {
+        throw new BudgetExhaustedException();
+      }
+      long startTime = System.nanoTime();
+      Pair<RealVector, RealMatrix> result = model.value(point);
+      modelNanos += System.nanoTime() - startTime;
+      ++evaluations;
+      return result;
+    };
+  }
+
+  /**
+   * Get a convergence checker to give to the least-squares problem that records the cost at each
+   * iteration. It never signals convergence itself.
+   *
+   * @return Convergence checker that records the solver's progress
+   */
+  public ConvergenceChecker<Evaluation> getCostRecorder() {
+    return (iteration, previous, current) -> {
+      if (costs.isEmpty()) {
+        costs.add(previous.getCost());
+      }
+      costs.add(current.getCost());
+      lastPrevious = previous;
+      lastCurrent = current;
+      bestPoint = current.getPoint();
+      int maxIterations = budget.getMaxIterations();
+      if (isOutOfTime() || (maxIterations > 0 && iteration >= maxIterations)) {
+        // stopping here has the optimizer return the current point as its optimum
+        budgetExhausted = true;
+        return true;
+      }
+      return false;
+    };
+  }
+
+  /**
+   * Check if the solve has gone on longer than the budget allows
+   *
+   * @return True if the budget has a time limit and the solve has exceeded it
+   */
+  private boolean isOutOfTime() {
+    long maxWallTimeMillis = budget.getMaxWallTimeMillis();
+    return maxWallTimeMillis > 0 && System.nanoTime() - startNanos >= maxWallTimeMillis * 1000000L;
+  }
+
+  /**
+   * Run the optimizer over the problem and record the results of the solve. Exceptions from the
+   * optimizer are recorded as the convergence reason and then rethrown. If the solver runs out of
+   * budget, the best point found so far is returned as the optimum.
+   *
+   * @param optimizer Optimizer to solve the problem with
+   * @param problem Problem to solve, built with this object's instrumented model and cost recorder
+   * @return Optimum found by the solver
+   */
+  public LeastSquaresOptimizer.Optimum optimize(LevenbergMarquardtOptimizer optimizer,
+      LeastSquaresProblem problem) {
+    iterations = 0;
+    evaluations = 0;
+    modelNanos = 0;
+    costs.clear();
+    lastPrevious = null;
+    lastCurrent = null;
+    bestPoint = problem.getStart();
+    budgetExhausted = false;
+
+    solving = true;
+    startNanos = System.nanoTime();
+    StageProfiler.Span span = StageProfiler.stage("Fitting");
+    try {
+      LeastSquaresOptimizer.Optimum optimum = optimizer.optimize(problem);
+      iterations = optimum.getIterations();
+      if (budgetExhausted) {
+        convergenceReason = ConvergenceReason.BUDGET_EXHAUSTED;
+      } else {
+        convergenceReason = inferConvergenceReason(optimizer, optimum);
+      }
+      if (costs.isEmpty()) {
+        // solver stopped before completing a single iteration
+        costs.add(optimum.getCost());
+      }
+      return optimum;
+    } catch (BudgetExhaustedException e) {
+      // ran out in the middle of an iteration; re-evaluate the last accepted point to return it
+      solving = false;
+      budgetExhausted = true;
+      convergenceReason = ConvergenceReason.BUDGET_EXHAUSTED;
+      iterations = Math.max(0, costs.size() - 1);
+      LeastSquaresProblem.Evaluation best = problem.evaluate(bestPoint);
+      if (costs.isEmpty()) {
+        costs.add(best.getCost());
+      }
+      return new BestSoFarOptimum(best, evaluations, iterations);
+    } catch (CancellationException e) {
+      convergenceReason = ConvergenceReason.CANCELLED;
+      throw e;
+    } catch (TooManyEvaluationsException e) {
+      convergenceReason = ConvergenceReason.EVALUATION_LIMIT;
+      throw e;
+    } catch (TooManyIterationsException e) {
+      convergenceReason = ConvergenceReason.ITERATION_LIMIT;
+      throw e;
+    } catch (ConvergenceException e) {
+      convergenceReason = ConvergenceReason.FAILED;
+      throw e;
+    } finally {
+      span.close();
+      totalNanos = System.nanoTime() - startNanos;
+      solving = false;
+      if (iterations == 0) {
+        iterations = Math.max(0, costs.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * Find which tolerance most likely ended the solve, checking them in the same order as the
+   * Levenberg-Marquardt optimizer: orthogonality of the residuals and jacobian at the final point,
+   * then the relative reduction in cost over the last iteration. Otherwise the solver stopped
+   * because its step size became small relative to the parameters.
+   *
+   * @param optimizer Optimizer that produced the result
+   * @param optimum Result of the solve
+   * @return Most likely reason the solve ended
+   */
+  private ConvergenceReason inferConvergenceReason(LevenbergMarquardtOptimizer optimizer,
+      LeastSquaresOptimizer.Optimum optimum) {
+    RealMatrix jacobian = optimum.getJacobian();
+    RealVector residuals = optimum.getResiduals();
+    double residualNorm = residuals.getNorm();
+    double maxCosine = 0.;
+    if (residualNorm > 0.) {
+      for (int j = 0; j < jacobian.getColumnDimension(); ++j) {
+        RealVector column = jacobian.getColumnVector(j);
+        double columnNorm = column.getNorm();
+        if (columnNorm != 0.) {
+          double cosine = Math.abs(column.dotProduct(residuals)) / (columnNorm * residualNorm);
+          maxCosine = Math.max(maxCosine, cosine);
+        }
+      }
+    }
+    if (maxCosine <= optimizer.getOrthoTolerance()) {
+      return ConvergenceReason.ORTHOGONALITY_TOLERANCE;
+    }
+
+    if (lastPrevious != null && lastPrevious.getCost() != 0.) {
+      double costRatio = lastCurrent.getCost() / lastPrevious.getCost();
+      double actualReduction = 1. - costRatio * costRatio;
+      if (Math.abs(actualReduction) <= optimizer.getCostRelativeTolerance()) {
+        return ConvergenceReason.COST_TOLERANCE;
+      }
+    }
+
+    return ConvergenceReason.PARAMETER_TOLERANCE;
+  }
+
+  /**
+   * Get the description of what was solved for
+   *
+   * @return Name of this solve
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the number of iterations the solver ran for
+   *
+   * @return Iteration count
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * Get the number of times the solver evaluated the model function (and its jacobian)
+   *
+   * @return Evaluation count
+   */
+  public int getEvaluations() {
+    return evaluations;
+  }
+
+  /**
+   * Get the total wall-clock time of the solve
+   *
+   * @return Time of solve in milliseconds
+   */
+  public double getTotalTimeMillis() {
+    return totalNanos / 1E6;
+  }
+
+  /**
+   * Get the wall-clock time spent evaluating the model function and its jacobian
+   *
+   * @return Time of model evaluations in milliseconds
+   */
+  public double getModelTimeMillis() {
+    return modelNanos / 1E6;
+  }
+
+  /**
+   * Get the wall-clock time spent in the solver itself (decompositions, step calculations, etc.),
+   * which is everything that is not evaluating the model function
+   *
+   * @return Time of solver linear algebra in milliseconds
+   */
+  public double getLinearAlgebraTimeMillis() {
+    return (totalNanos - modelNanos) / 1E6;
+  }
+
+  /**
+   * Get the cost (weighted residual norm) at the start point and after each iteration
+   *
+   * @return List of costs, beginning with the cost of the initial guess
+   */
+  public List<Double> getCostPerIteration() {
+    return Collections.unmodifiableList(costs);
+  }
+
+  /**
+   * Get the cost (weighted residual norm) at the start point and after each iteration
+   *
+   * @return Array of costs, beginning with the cost of the initial guess
+   */
+  public double[] getCostPerIterationArray() {
+    double[] out = new double[costs.size()];
+    for (int i = 0; i < out.length; ++i) {
+      out[i] = costs.get(i);
+    }
+    return out;
+  }
+
+  /**
+   * Get whether the solver stopped because it ran out of budget, in which case the result is the
+   * best found so far rather than a converged solution
+   *
+   * @return True if the solve was stopped by its budget
+   */
+  public boolean isBudgetExhausted() {
+    return convergenceReason == ConvergenceReason.BUDGET_EXHAUSTED;
+  }
+
+  /**
+   * Get the reason the solver stopped
+   *
+   * @return Convergence reason (inferred from the solver state for tolerance-based stops)
+   */
+  public ConvergenceReason getConvergenceReason() {
+    return convergenceReason;
+  }
+
+  /**
+   * Produce a short human-readable summary of the solve, for reports
+   *
+   * @return Summary of solve telemetry
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(name).append(":\n");
+    sb.append("    Iterations: ").append(iterations);
+    sb.append(", evaluations: ").append(evaluations).append("\n");
+    sb.append("    Time (ms): ");
+    sb.append(Experiment.DECIMAL_FORMAT.get().format(getTotalTimeMillis()));
+    sb.append(" (model: ");
+    sb.append(Experiment.DECIMAL_FORMAT.get().format(getModelTimeMillis()));
+    sb.append(", solver: ");
+    sb.append(Experiment.DECIMAL_FORMAT.get().format(getLinearAlgebraTimeMillis()));
+    sb.append(")\n");
+    if (!costs.isEmpty()) {
+      sb.append("    Cost: ");
+      sb.append(Experiment.DECIMAL_FORMAT.get().format(costs.get(0)));
+      sb.append(" -> ");
+      sb.append(Experiment.DECIMAL_FORMAT.get().format(costs.get(costs.size() - 1)));
+      sb.append("\n");
+    }
+    sb.append("    Stopped by: ").append(convergenceReason);
+    if (!budget.isUnlimited()) {
+      sb.append(" (budget: ").append(budget).append(")");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Thrown from the instrumented model function to stop the optimizer when it runs out of budget
+   * partway through an iteration. This is always caught within optimize().
+   */
+  private static class BudgetExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    BudgetExhaustedException() {
+      super("Solver budget exhausted", null, false, false);
+    }
+  }
+
+  /**
+   * Optimum produced from the best point found before the solver ran out of budget
+   */
+  private static class BestSoFarOptimum implements LeastSquaresOptimizer.Optimum {
+
+    private final LeastSquaresProblem.Evaluation evaluation;
+    private final int evaluations;
+    private final int iterations;
+
+    BestSoFarOptimum(LeastSquaresProblem.Evaluation evaluation, int evaluations, int iterations) {
+      this.evaluation = evaluation;
+      this.evaluations = evaluations;
+      this.iterations = iterations;
+    }
+
+    @Override
+    public int getEvaluations() {
+      return evaluations;
+    }
+
+    @Override
+    public int getIterations() {
+      return iterations;
+    }
+
+    @Override
+    public RealMatrix getCovariances(double threshold) {
+      return evaluation.getCovariances(threshold);
+    }
+
+    @Override
+    public RealVector getSigma(double covarianceSingularityThreshold) {
+      return evaluation.getSigma(covarianceSingularityThreshold);
+    }
+
+    @Override
+    public double getRMS() {
+      return evaluation.getRMS();
+    }
+
+    @Override
+    public RealMatrix getJacobian() {
+      return evaluation.getJacobian();
+    }
+
+    @Override
+    public double getCost() {
+      return evaluation.getCost();
+    }
+
+    @Override
+    public RealVector getResiduals() {
+      return evaluation.getResiduals();
+    }
+
+    @Override
+    public RealVector getPoint() {
+      return evaluation.getPoint();
+    }
+  }
+
+}
@@ -0,0 +1,301 @@
+package asl.sensor.experiment;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.FractionalOctaveBinner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.math3.util.Pair;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+/**
+ * Produces a spectrogram of a long record of data, to show when events such as calibration pulses
+ * or bursts of noise happen within it. The data is split into frames overlapping by half (10
+ * minutes long unless set with setFrameLength), and the PSD of each frame is taken the same way as
+ * the spectrum experiment's (Welch's method with the response removed) and averaged into
+ * fractional-octave bands (1/8 octave unless a binning is set with setPSDBandsPerOctave).
+ * The result is kept as a matrix of power in dB, one row per frame and one column per band, so
+ * that its size depends only on the number of frames and bands.
+ *
+ * Frames are read from the data's records one at a time (see DataBlock.getData(long, long)) rather
+ * than from the full time series, so that a week or more of data does not need to be held in
+ * memory twice; groups of frames are processed in parallel. Frames that overlap a gap in the data
+ * are left as NaN (not plotted), since the zeros filling the gap would bias the PSD low.
+ *
+ * The plotted result is the spectrogram itself, which is drawn by the panel from
+ * {@link #getPowerMatrix()}; the data returned by {@link #getData()} is the mean PSD over all the
+ * frames, along with the NLNM and NHNM.
+ */
+public class SpectrogramExperiment extends Experiment {
+
+  public static final String MEAN_PSD = "Mean PSD";
+  /**
+   * Length of each frame unless otherwise set (10 minutes, in ms)
+   */
+  public static final long DEFAULT_FRAME_LENGTH = 600L * 1000L;
+  private static final int DEFAULT_BANDS_PER_OCTAVE = 8;
+
+  private boolean freqSpace;
+  private long frameLength;
+  private long frameStep;
+  private int bandsPerOctave;
+  private long[] frameStartTimes;
+  private double[] bandFrequencies;
+  private float[][] power; // power (dB) indexed by frame and then by frequency band
+  private int framesUsed;
+  private int framesSkipped;
+
+  public SpectrogramExperiment() {
+    super();
+    freqSpace = false;
+    frameLength = DEFAULT_FRAME_LENGTH;
+    bandsPerOctave = DEFAULT_BANDS_PER_OCTAVE;
+    frameStartTimes = new long[]{};
+    bandFrequencies = new double[]{};
+    power = new float[][]{};
+  }
+
+  @Override
+  protected void backend(final DataStore dataStore) {
+
+    final DataBlock block = dataStore.getBlock(0);
+    final InstrumentResponse response = dataStore.getResponse(0);
+    dataNames.add(block.getName());
+    dataNames.add(response.getName());
+
+    final long interval = block.getInterval();
+    long startTime = block.getStartTime();
+    long endTime = block.getEndTime();
+
+    // frames step by half their length; records shorter than a frame are a single frame
+    final long length = Math.min(frameLength, endTime - startTime);
+    frameStep = Math.max(interval, length / 2);
+    int frameCount = 0;
+    for (long start = startTime; start + length <= endTime; start += frameStep) {
+      ++frameCount;
+    }
+    final long[] starts = new long[frameCount];
+    boolean[] inGap = new boolean[frameCount];
+    List<Pair<Long, Long>> gaps = block.getGapBoundaries();
+    List<Integer> framesToUse = new ArrayList<>();
+    for (int frame = 0; frame < frameCount; ++frame) {
+      starts[frame] = startTime + frame * frameStep;
+      inGap[frame] = overlapsGap(gaps, starts[frame], starts[frame] + length);
+      if (!inGap[frame]) {
+        framesToUse.add(frame);
+      }
+    }
+    frameStartTimes = starts;
+    framesUsed = framesToUse.size();
+    framesSkipped = frameCount - framesUsed;
+
+    bandsPerOctave = psdBandsPerOctave > 0 ? psdBandsPerOctave : DEFAULT_BANDS_PER_OCTAVE;
+    if (framesToUse.isEmpty()) {
+      bandFrequencies = new double[]{};
+      power = new float[frameCount][0];
+    } else {
+      // all frames have the same length, and so the same frequencies; get them from the first
+      fireStateChange("Getting PSD of first frame...");
+      int firstFrame = framesToUse.get(0);
+      FFTResult first = framePSD(block, starts[firstFrame], length, response, interval);
+      FractionalOctaveBinner binner =
+          new FractionalOctaveBinner(first.getFreqs(), bandsPerOctave);
+      bandFrequencies = binner.getCenterFrequencies();
+      final float[][] rows = new float[frameCount][];
+      for (int frame = 0; frame < frameCount; ++frame) {
+        if (inGap[frame]) {
+          rows[frame] = new float[bandFrequencies.length];
+          Arrays.fill(rows[frame], Float.NaN);
+        }
+      }
+      rows[firstFrame] = FractionalOctaveBinner.toDecibels(binner.bin(first.getFFT()));
+
+      // split the rest of the frames into contiguous groups; each fills in its own rows
+      List<Integer> remaining = framesToUse.subList(1, framesToUse.size());
+      fireStateChange("Getting PSDs of " + remaining.size() + " more frames concurrently...");
+      runInGroups("PSDs of more frames", remaining, defaultGroupCount(remaining.size()),
+          frames -> {
+            for (int frame : frames) {
+              FFTResult psd = framePSD(block, starts[frame], length, response, interval);
+              rows[frame] = FractionalOctaveBinner.toDecibels(binner.bin(psd.getFFT()));
+            }
+            return frames.size();
+          });
+      power = rows;
+    }
+
+    fireStateChange("Getting mean PSD over frames...");
+    XYSeriesCollection xysc = new XYSeriesCollection();
+    xysc.setAutoWidth(true);
+    XYSeries meanSeries = new XYSeries(MEAN_PSD);
+    double[] meanPower = getMeanPower();
+    for (int band = 0; band < bandFrequencies.length; ++band) {
+      if (1 / bandFrequencies[band] > MAX_PLOT_PERIOD || Double.isNaN(meanPower[band])) {
+        continue;
+      }
+      double xValue = freqSpace ? bandFrequencies[band] : 1 / bandFrequencies[band];
+      meanSeries.add(xValue, meanPower[band]);
+    }
+    xysc.addSeries(meanSeries);
+    xysc.addSeries(FFTResult.getLowNoiseModel(freqSpace));
+    xysc.addSeries(FFTResult.getHighNoiseModel(freqSpace));
+    xySeriesData.add(xysc);
+  }
+
+  private static FFTResult framePSD(DataBlock block, long start, long length,
+      InstrumentResponse response, long interval) {
+    // only this frame is read from the records; each Welch window is demeaned and tapered
+    double[] frame = block.getData(start, start + length);
+    return FFTResult.crossPower(frame, frame, response, response, interval);
+  }
+
+  /**
+   * Get the mean (linear) power of each band over the frames not left out for gaps
+   *
+   * @return Mean power of each band (dB), or NaN for bands without a value in any frame
+   */
+  private double[] getMeanPower() {
+    double[] meanPower = new double[bandFrequencies.length];
+    for (int band = 0; band < bandFrequencies.length; ++band) {
+      double sum = 0.;
+      int count = 0;
+      for (float[] frame : power) {
+        if (Float.isFinite(frame[band])) {
+          sum += Math.pow(10, frame[band] / 10.);
+          ++count;
+        }
+      }
+      meanPower[band] = 10 * Math.log10(sum / count);
+    }
+    return meanPower;
+  }
+
+  @Override
+  public int blocksNeeded() {
+    return 1;
+  }
+
+  /**
+   * Get the center frequencies of the fractional-octave bands of the spectrogram
+   *
+   * @return Frequencies (Hz) in ascending order, one for each column of the power matrix
+   */
+  public double[] getBandFrequencies() {
+    return bandFrequencies.clone();
+  }
+
+  /**
+   * Get the number of bands per octave the frames' PSDs were averaged into
+   *
+   * @return N, for bands of 1/N octave
+   */
+  public int getBandsPerOctave() {
+    return bandsPerOctave;
+  }
+
+  /**
+   * Get the start time of each frame
+   *
+   * @return Times (ms from epoch) in ascending order, one for each row of the power matrix
+   */
+  public long[] getFrameStartTimes() {
+    return frameStartTimes.clone();
+  }
+
+  /**
+   * Get the time between the starts of consecutive frames, which is half the frame length
+   *
+   * @return Frame step (ms)
+   */
+  public long getFrameStep() {
+    return frameStep;
+  }
+
+  /**
+   * Get the length of each frame the PSDs are taken over
+   *
+   * @return Frame length (ms)
+   */
+  public long getFrameLength() {
+    return frameLength;
+  }
+
+  /**
+   * Get the spectrogram, as the power in each frequency band for each frame. Frames left out
+   * because they overlap a gap in the data are NaN, as are bands with no finite PSD values.
+   *
+   * @return Power (dB rel. 1 (m/s^2)^2/Hz) indexed by frame (see {@link #getFrameStartTimes()})
+   * and then by band (see {@link #getBandFrequencies()})
+   */
+  public float[][] getPowerMatrix() {
+    float[][] copy = new float[power.length][];
+    for (int frame = 0; frame < power.length; ++frame) {
+      copy[frame] = power[frame].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Get the number of frames whose PSDs were calculated
+   *
+   * @return Number of frames used
+   */
+  public int getFramesUsed() {
+    return framesUsed;
+  }
+
+  /**
+   * Get the number of frames that were left out because they overlapped a gap in the data
+   *
+   * @return Number of frames skipped
+   */
+  public int getFramesSkipped() {
+    return framesSkipped;
+  }
+
+  @Override
+  String[] getDataStrings() {
+    return new String[]{"Frame length (s): " + frameLength / 1000.
+        + "\nFrames used: " + framesUsed
+        + "\nFrames skipped (gaps): " + framesSkipped};
+  }
+
+  @Override
+  public String[] getInsetStrings() {
+    return new String[]{getDataStrings()[0] + '\n' + getFormattedDateRange()};
+  }
+
+  @Override
+  public boolean hasEnoughData(DataStore dataStore) {
+    return dataStore.bothComponentsSet(0);
+  }
+
+  /**
+   * Set the length of the frames the PSDs are taken over. Longer frames resolve lower
+   * frequencies (the lowest is around a quarter of the frame length, as each frame's PSD is a
+   * Welch average) but show less detail in time.
+   *
+   * @param frameLength Frame length (ms)
+   */
+  public void setFrameLength(long frameLength) {
+    if (frameLength <= 0) {
+      throw new IllegalArgumentException("Frame length must be positive: " + frameLength);
+    }
+    this.frameLength = frameLength;
+  }
+
+  /**
+   * Used to set the x-axis over which the mean PSD is plotted,
+   * either frequency (Hz) units or sample-interval (s) units
+   *
+   * @param freqSpace True if the plot should use units of Hz
+   */
+  public void setFreqSpace(boolean freqSpace) {
+    this.freqSpace = freqSpace;
+  }
+
+}
@@ -81,7 +81,7 @@ public class SpectrumExperiment extends Experiment {
     // gets the PSDs of each given index for given freqSpace
     for (int index : respIndices) {
       fireStateChange("Getting PSDs of data " + index + "...");
-      addToPlot(dataStore, freqSpace, index, plotTimeseries);
+      addToPlot(dataStore, freqSpace, index, psdBandsPerOctave, plotTimeseries);
     }
 
     plotTimeseries.addSeries(FFTResult.getLowNoiseModel(freqSpace));
@@ -3,17 +3,26 @@ package asl.sensor.experiment;
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.input.InstrumentResponse;
+import asl.sensor.output.FitResultStore;
+import asl.sensor.output.FitResultStore.CalibrationType;
+import asl.sensor.utils.CancellationToken;
 import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.InverseFFTPlan;
 import asl.sensor.utils.NumericUtils;
+import asl.sensor.utils.StageProfiler;
 import asl.sensor.utils.TimeSeriesUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
 import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
 import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
@@ -37,7 +46,8 @@ import org.jfree.data.xy.XYSeriesCollection;
  * Levenberg-Marquardt optimizer in order to find the best-fit parameters for
  * the corner and damping. In order to do this, the function defines a further
  * backend function that calculates the forward-approximation of the derivative
- * of the function given a sample point.
+ * of the function given a sample point, or optionally the derivative found analytically from the
+ * response's dependence on the corner and damping (see setAnalyticJacobian).
  * In addition to the deconvolved and best-fit timeseries, this class is
  * also able to return the values for the corner frequency and damping that
  * produce them, as well as their corresponding residual values.
@@ -58,16 +68,46 @@ public class StepExperiment extends Experiment {
    * Used in the least squared solver (limit in change to apply to corner and damping params)
    */
   private final double X_TOLER = 1E-15;
+  /**
+   * Data is decimated to (at least) this sample rate when searching for the solver's initial
+   * guess over a grid of corner and damping values
+   */
+  private static final double GRID_SAMPLE_RATE = 1.;
+  /**
+   * Number of corner frequencies in the grid search, log-spaced from the RESP's corner divided
+   * by GRID_CORNER_RANGE to the RESP's corner multiplied by it
+   */
+  private static final int GRID_CORNER_POINTS = 25;
+  private static final double GRID_CORNER_RANGE = 10.;
+  /**
+   * Number of damping values in the grid search, evenly spaced between the min and max damping
+   */
+  private static final int GRID_DAMPING_POINTS = 15;
+  private static final double GRID_MIN_DAMPING = 0.1;
+  private static final double GRID_MAX_DAMPING = 1.5;
   private double f, h; //corner and damping of output (uncorrected)
   private double fCorr, hCorr; // fit parameters to turn output into cal input
   private double initResid, fitResid; // residual values
   private int trimmedLength, cutAmount;
   private double[] freqs; // frequency (i.e., x-axis values) of step cal FFT series
-  private Complex[] sensorFFTSeries; // FFT of step cal from sensor
+  // buffers used in calculating the deconvolution, kept for the whole run (see initializeKernel)
+  private DeconvolutionKernel kernel; // removes response from sensor FFT
+  private double[] fitBuffer, cornerDiffBuffer, dampingDiffBuffer; // jacobian model evaluations
+  // sensor output and its integral in time space, used to get analytic derivatives of the fit
+  private double[] sensorBasis, sensorIntegralBasis;
+  private boolean useAnalyticJacobian; // calculate derivatives instead of approximating
   private int sensorOutIdx; // used to keep track of response location for report generation
+  private FitResultStore fitResultStore; // previous results to start from, null if not used
+  private boolean warmStarted; // true if the solver started from a previous result
+  private String fitResultStoreError; // why the fit library couldn't be used, null if it could
+  private boolean useGridSearch; // search a coarse grid for the solver's initial guess
+  private double[] gridSearchSeed; // corner and damping chosen by grid search, null if not run
+  private double gridSearchMillis; // time taken by the grid search
+  private SolverTelemetry solverTelemetry; // record of the most recent solve
 
   public StepExperiment() {
     super();
+    solverTelemetry = new SolverTelemetry("Step cal fit");
   }
 
   @Override
@@ -101,6 +141,27 @@ public class StepExperiment extends Experiment {
         + "\nDamping: "
         + DECIMAL_FORMAT.get().format(fitDamping)
         + "\n";
+    if (isBudgetExhausted()) {
+      sb2 += "(solver budget exhausted; best fit found so far)\n";
+    }
+    if (fitResultStoreError != null) {
+      sb2 += "(" + fitResultStoreError + ")\n";
+    }
+    if (gridSearchSeed != null) {
+      sb2 += "Grid search initial guess"
+          + "\nCorner frequency (Hz): "
+          + DECIMAL_FORMAT.get().format(gridSearchSeed[0])
+          + " ("
+          + DECIMAL_FORMAT.get().format(1. / gridSearchSeed[0])
+          + " secs)"
+          + "\nDamping: "
+          + DECIMAL_FORMAT.get().format(gridSearchSeed[1])
+          + "\n("
+          + (GRID_CORNER_POINTS * GRID_DAMPING_POINTS)
+          + " points in "
+          + DECIMAL_FORMAT.get().format(gridSearchMillis)
+          + " ms)\n";
+    }
     return new String[]{sb, sb2};
   }
 
@@ -143,6 +204,89 @@ public class StepExperiment extends Experiment {
 
     return resetData;
   }
+  /**
+   * Applies a "water level" to FFT data held in primitive arrays, in place. This does the same
+   * calculation as {@link #setWaterLevel(Complex[])}, including inverting the values, without
+   * allocating any memory.
+   *
+   * @param real Real components of the FFT data, replaced with the inverted, water-leveled result
+   * @param imag Imaginary components of the FFT data, replaced likewise
+   * @param abs Work array of the same length as the data, used to hold magnitudes
+   */
+  private static void setWaterLevel(double[] real, double[] imag, double[] abs) {
+    double max = abs(real[0], imag[0]);
+    int maxIdx = 0;
+    // first iteration gets abs values, scaled data
+    for (int i = 0; i < real.length; ++i) {
+      abs[i] = abs(real[i], imag[i]);
+      if (max < abs[i]) {
+        max = abs[i];
+        maxIdx = i;
+      }
+    }
+    double scaleBy = abs[maxIdx] * 1E-30; // python code multiplies by 10^(-600/20) which is 10^-30
+    for (int i = 0; i < real.length; ++i) {
+      if (abs[i] < scaleBy & abs[i] > 0) {
+        double scale = scaleBy / abs[i];
+        real[i] *= scale;
+        imag[i] *= scale;
+        abs[i] = abs(real[i], imag[i]);
+      }
+
+      if (abs[i] > 0) {
+        // 1 / (c + di), using the same division method as Complex.divide
+        double c = real[i];
+        double d = imag[i];
+        if (Double.isInfinite(c) || Double.isInfinite(d)) {
+          real[i] = 0.;
+          imag[i] = 0.;
+        } else if (Math.abs(c) < Math.abs(d)) {
+          double q = c / d;
+          double denominator = c * q + d;
+          real[i] = q / denominator;
+          imag[i] = -1. / denominator;
+        } else {
+          double q = d / c;
+          double denominator = d * q + c;
+          real[i] = 1. / denominator;
+          imag[i] = -q / denominator;
+        }
+      }
+
+      if (abs[i] == 0) {
+        real[i] = 0.;
+        imag[i] = 0.;
+      }
+    }
+  }
+
+  /**
+   * Magnitude of a complex number given by its components, calculated the same way as
+   * Complex.abs (which avoids overflow for large components)
+   *
+   * @param real Real component
+   * @param imag Imaginary component
+   * @return Absolute value of the complex number
+   */
+  private static double abs(double real, double imag) {
+    if (Double.isNaN(real) || Double.isNaN(imag)) {
+      return Double.NaN;
+    }
+    if (Double.isInfinite(real) || Double.isInfinite(imag)) {
+      return Double.POSITIVE_INFINITY;
+    }
+    if (Math.abs(real) < Math.abs(imag)) {
+      double q = real / imag;
+      return Math.abs(imag) * Math.sqrt(1 + q * q);
+    } else {
+      if (real == 0.) {
+        return Math.abs(imag);
+      }
+      double q = imag / real;
+      return Math.abs(real) * Math.sqrt(1 + q * q);
+    }
+  }
+
 
   @Override
   protected void backend(final DataStore dataStore) {
@@ -205,8 +349,8 @@ public class StepExperiment extends Experiment {
     FFTResult sensorsFFT =
         FFTResult.singleSidedFilteredFFT(sensorOutput, needsFlip);
     // these values used in calculating the response deconvolution
-    sensorFFTSeries = sensorsFFT.getFFT();
     freqs = sensorsFFT.getFreqs();
+    initializeKernel(sensorsFFT);
     // calculate method applies the current f, h value to the FFT (removes response),
     // inverts the FFT back into time space, and then does additional filtering on the result
     // (i.e., lowpass, demean, normalize)
@@ -235,28 +379,52 @@ public class StepExperiment extends Experiment {
 
     fireStateChange("Solving for best-fit corner and damping...");
     // next step: curve fitting
-    RealVector startVector = MatrixUtils.createRealVector(params);
+    RealVector initVector = MatrixUtils.createRealVector(params);
+    RealVector startVector = initVector;
+    warmStarted = false;
+    fitResultStoreError = null;
+    if (fitResultStore != null) {
+      double[] previousParams = getWarmStartGuess(ir.getName(), sensorOutput.getName());
+      if (previousParams != null) {
+        startVector = MatrixUtils.createRealVector(previousParams);
+        warmStarted = true;
+      }
+    }
+    // previous fit is a better guess than the grid, so only search when there isn't one
+    gridSearchSeed = null;
+    if (useGridSearch && !warmStarted) {
+      StageProfiler.Span span = StageProfiler.stage("Grid search");
+      try {
+        gridSearchSeed = gridSearch(sensorOutput, needsFlip, stepCalData, sps, f);
+      } finally {
+        span.close();
+      }
+      if (gridSearchSeed != null) {
+        startVector = MatrixUtils.createRealVector(gridSearchSeed);
+      }
+    }
     RealVector observedComponents = MatrixUtils.createRealVector(stepCalSeries);
 
     LeastSquaresProblem lsp = new LeastSquaresBuilder().
         start(startVector).
         target(observedComponents).
-        model(this::jacobian).
+        model(solverTelemetry.instrument(this::jacobian)).
+        checker(solverTelemetry.getCostRecorder()).
         lazyEvaluation(false).
         maxEvaluations(Integer.MAX_VALUE).
         maxIterations(Integer.MAX_VALUE).
         build();
 
-    LeastSquaresProblem.Evaluation initEval = lsp.evaluate(startVector);
+    LeastSquaresProblem.Evaluation initEval = lsp.evaluate(initVector);
     // System.out.println("INITIAL GUESS RESIDUAL: " +  initEval.getRMS() );
 
     initResid = initEval.getRMS() * 100;
 
-    LeastSquaresOptimizer optimizer = new LevenbergMarquardtOptimizer().
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
         withCostRelativeTolerance(F_TOLER).
         withParameterRelativeTolerance(X_TOLER);
 
-    LeastSquaresOptimizer.Optimum optimum = optimizer.optimize(lsp);
+    LeastSquaresOptimizer.Optimum optimum = solverTelemetry.optimize(optimizer, lsp);
     // line below used to quickly disable solver
     // comment out above assignment and uncomment that line to do so
     //LeastSquaresProblem.Evaluation optimum = lsp.evaluate(startVector);
@@ -271,6 +439,19 @@ public class StepExperiment extends Experiment {
     fCorr = newParams[0];
     hCorr = newParams[1];
 
+    if (fitResultStore != null) {
+      Map<String, double[]> fitResult = new HashMap<>();
+      fitResult.put(FitResultStore.CORNER, new double[]{fCorr});
+      fitResult.put(FitResultStore.DAMPING, new double[]{hCorr});
+      try {
+        fitResultStore.store(CalibrationType.STEP, ir.getName(), sensorOutput.getName(), fitResult);
+      } catch (IOException e) {
+        // not being able to save the result shouldn't prevent getting it
+        fitResultStoreError = "fit not saved to library: " + e.getMessage();
+        fireStateChange("Could not save fit to library: " + e.getMessage());
+      }
+    }
+
     double[] fitPlot = calculate(newParams);
     // fitPlot = TimeSeriesUtils.normalize(fitPlot);
     now = start;
@@ -368,71 +549,174 @@ public class StepExperiment extends Experiment {
    * response from the sensor-input timeseries (done in frequency space)
    */
   private double[] calculate(double[] params) {
+    double[] result = new double[trimmedLength];
+    kernel.calculate(params[0], params[1], result);
+    return result;
+  }
 
-    // the original length of the timeseries data we've gotten the FFT of
-    int inverseTrim = trimmedLength + 2 * cutAmount;
-    // the upper bound on the returned data (trimmed length plus amount cut from start as offset)
-    int upperBound = trimmedLength + cutAmount;
-
-    // use these terms to calculate the poles
-    double f = params[0];
-    double h = params[1];
-
-    // term inside the square root in the calculations of p1, p2
-    // (h^2-1)
-    Complex tempResult = new Complex(Math.pow(h, 2) - 1);
-
-    double omega = 2 * Math.PI * f; // omega_0
-
-    // casting h as a complex number to enable these calculations
-    Complex hCast = new Complex(h);
-
-    // - (h + sqrt(h^2-1))
-    Complex pole1 = hCast.add(tempResult.sqrt()).multiply(-1);
-    pole1 = pole1.multiply(omega);
-    // cannot modify complex numbers "in-place"; they MUST be (re)assigned
-
-    // - (h - sqrt(h^2-1))
-    Complex pole2 = hCast.subtract(tempResult.sqrt()).multiply(-1);
-    pole2 = pole2.multiply(omega);
+  /**
+   * Set up the buffers used by calculate for the current sensor data: the deconvolution kernel,
+   * buffers for the solver's evaluations of the model, and the timeseries used to get the
+   * analytic derivatives.
+   *
+   * @param sensorFFT Single-sided FFT of the sensor output
+   */
+  private void initializeKernel(FFTResult sensorFFT) {
+    kernel = new DeconvolutionKernel(sensorFFT, cutAmount);
+    // buffers for the jacobian's three evaluations of the model
+    fitBuffer = new double[trimmedLength];
+    cornerDiffBuffer = new double[trimmedLength];
+    dampingDiffBuffer = new double[trimmedLength];
+    initializeDerivativeBasis();
+  }
 
-    // calculate the FFT of the response
-    // recall that sensorFFTSeries is the FFT of the sensor output from the step signal
-    Complex[] respFFT = new Complex[sensorFFTSeries.length]; // array of resps
-    // don't let denominator be zero
-    respFFT[0] = Complex.ONE;
-    for (int i = 1; i < respFFT.length; ++i) {
-      // replaced freqs[i] with 2*pi*i*f
-      Complex factor = new Complex(0, 2 * Math.PI * freqs[i]);
-      // (2*pi*i*f - p1) * (2*pi*f*i - p2)
-      Complex denom = factor.subtract(pole1).multiply(factor.subtract(pole2));
-      respFFT[i] = factor.divide(denom);
+  /**
+   * Set up the timeseries that the analytic derivatives of the deconvolution are formed from.
+   * Away from the zero and Nyquist frequencies, the derivatives of the deconvolved FFT with
+   * respect to corner and damping are combinations of the sensor FFT S and of S / (i*w) (the FFT
+   * of the sensor output's integral) with weights depending only on the corner and damping.
+   * Because of that, both can be returned to time space once here, with a single inverse FFT,
+   * and the derivatives at any corner and damping are then weighted sums of the two.
+   */
+  private void initializeDerivativeBasis() {
+    int length = kernel.sensorFFTReal.length;
+    int lastIdx = length - 1;
+    double[] integralReal = new double[length];
+    double[] integralImag = new double[length];
+    double[] sensorReal = new double[length];
+    double[] sensorImag = new double[length];
+    // zero and Nyquist frequencies are left as 0, as they are handled separately
+    for (int i = 1; i < lastIdx; ++i) {
+      sensorReal[i] = kernel.sensorFFTReal[i];
+      sensorImag[i] = kernel.sensorFFTImag[i];
+      // S / (i*w) = -i * S / w
+      integralReal[i] = kernel.sensorFFTImag[i] / kernel.angularFreqs[i];
+      integralImag[i] = -kernel.sensorFFTReal[i] / kernel.angularFreqs[i];
     }
+    sensorBasis = new double[trimmedLength];
+    sensorIntegralBasis = new double[trimmedLength];
+    kernel.inverseFFTPlan.inverse(sensorReal, sensorImag, integralReal, integralImag, cutAmount,
+        sensorBasis, sensorIntegralBasis);
+  }
 
-    // get water level for response curve (gets multiplicative inverse as well)
-    respFFT = setWaterLevel(respFFT);
-
-    // now that we have the response curve, we can remove it from the FFT of the sensor data
-    Complex[] toDeconvolve = new Complex[sensorFFTSeries.length];
-    // deconvolving response is dividing fft(signal) by fft(response)
-    // note that setting water level involves inverting the respFFT value, so we multiply here
-    for (int i = 0; i < sensorFFTSeries.length; ++i) {
-      toDeconvolve[i] = sensorFFTSeries[i].multiply(respFFT[i]);
+  /**
+   * Find the corner and damping over a coarse grid of values that best fit the step calibration,
+   * to use as the solver's initial guess. To keep this cheap the data is decimated before
+   * deconvolving, and the grid's rows of corner frequencies are evaluated in parallel.
+   *
+   * @param sensorOutput Output of the sensor from the step calibration
+   * @param needsFlip True if the sensor output is inverted
+   * @param stepCalData Low-pass filtered step calibration input, before trimming
+   * @param sps Sample rate of the data
+   * @param nominalCorner Corner frequency from the RESP, which the grid is centered on
+   * @return Array of form {f,h} with the best corner and damping on the grid, or null if the data
+   * is too short to search with
+   */
+  private double[] gridSearch(DataBlock sensorOutput, boolean needsFlip, double[] stepCalData,
+      double sps, double nominalCorner) {
+    fireStateChange("Searching grid for initial corner and damping...");
+    long startTime = System.nanoTime();
+
+    // both inputs are already low-pass filtered well below the decimated nyquist rate
+    int factor = Math.max(1, (int) (sps / GRID_SAMPLE_RATE));
+    double decimatedSps = sps / factor;
+    int gridCutAmount = cutAmount / factor;
+    double[] decimatedCal = TimeSeriesUtils.downsample(stepCalData, factor);
+    int gridLength = decimatedCal.length - 2 * gridCutAmount;
+    if (gridLength < 2) {
+      return null;
+    }
+    // the target is processed the same way as in the full-resolution fit
+    double[] gridTarget =
+        Arrays.copyOfRange(decimatedCal, gridCutAmount, gridCutAmount + gridLength);
+    gridTarget = TimeSeriesUtils.demean(gridTarget);
+    gridTarget = TimeSeriesUtils.detrendEnds(gridTarget);
+    gridTarget = TimeSeriesUtils.normalize(gridTarget);
+    final double[] target = gridTarget;
+
+    double[] sensorData = FFTResult.lowPassFilter(sensorOutput.getData().clone(), sps, 0.1);
+    sensorData = TimeSeriesUtils.downsample(sensorData, factor);
+    FFTResult decimatedFFT = FFTResult.singleSidedFFT(sensorData, decimatedSps, needsFlip);
+    DeconvolutionKernel gridKernel = new DeconvolutionKernel(decimatedFFT, gridCutAmount);
+
+    double[] corners = new double[GRID_CORNER_POINTS];
+    double logMin = Math.log(nominalCorner / GRID_CORNER_RANGE);
+    double logStep = 2 * Math.log(GRID_CORNER_RANGE) / (GRID_CORNER_POINTS - 1);
+    for (int i = 0; i < corners.length; ++i) {
+      corners[i] = Math.exp(logMin + i * logStep);
+    }
+    double[] dampings = new double[GRID_DAMPING_POINTS];
+    double dampingStep = (GRID_MAX_DAMPING - GRID_MIN_DAMPING) / (GRID_DAMPING_POINTS - 1);
+    for (int i = 0; i < dampings.length; ++i) {
+      dampings[i] = GRID_MIN_DAMPING + i * dampingStep;
     }
 
-    int lastIdx = toDeconvolve.length - 1;
-    toDeconvolve[lastIdx] = new Complex(toDeconvolve[lastIdx].abs(), 0.);
-
-    // return data to time space
-    double[] returnValue = FFTResult.singleSidedInverseFFT(toDeconvolve, inverseTrim);
-
-    // trim data around areas with filter ringing and remove linear trend
-    int trimOffset = 0;
-    returnValue = Arrays.copyOfRange(returnValue, cutAmount + trimOffset, upperBound + trimOffset);
-    returnValue = TimeSeriesUtils.detrendEnds(returnValue);
-    returnValue = TimeSeriesUtils.normalize(returnValue);
+    // split the rows of corners into contiguous groups, each with its own copy of the kernel's
+    // work buffers, that fill in their own rows of residuals
+    final double[][] residuals = new double[corners.length][dampings.length];
+    List<Integer> rows = new ArrayList<>(corners.length);
+    for (int i = 0; i < corners.length; ++i) {
+      rows.add(i);
+    }
+    runInGroups("grid rows of corners", rows, defaultGroupCount(rows.size()), group -> {
+      DeconvolutionKernel rowKernel = gridKernel.copy();
+      double[] result = new double[target.length];
+      for (int i : group) {
+        for (int j = 0; j < dampings.length; ++j) {
+          CancellationToken.checkCurrent();
+          rowKernel.calculate(corners[i], dampings[j], result);
+          double sumSquares = 0.;
+          for (int k = 0; k < result.length; ++k) {
+            double diff = result[k] - target[k];
+            sumSquares += diff * diff;
+          }
+          residuals[i][j] = sumSquares;
+        }
+      }
+      return group.size();
+    });
+
+    double[] best = null;
+    double bestResidual = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < corners.length; ++i) {
+      for (int j = 0; j < dampings.length; ++j) {
+        if (residuals[i][j] < bestResidual) {
+          bestResidual = residuals[i][j];
+          best = new double[]{corners[i], dampings[j]};
+        }
+      }
+    }
+    gridSearchMillis = (System.nanoTime() - startTime) / 1E6;
+    return best;
+  }
 
-    return returnValue;
+  /**
+   * Get the corner and damping from a previous fit of this sensor (or the same model of sensor)
+   * in the fit result library
+   *
+   * @param responseName Name of the response of the sensor
+   * @param sncl Name of the sensor output data
+   * @return Array of form {f,h}, or null if there is no usable previous fit
+   */
+  private double[] getWarmStartGuess(String responseName, String sncl) {
+    fireStateChange("Checking for previous fit to use as initial guess...");
+    Map<String, double[]> previousFit;
+    try {
+      previousFit = fitResultStore.lookup(CalibrationType.STEP, responseName, sncl);
+    } catch (IOException e) {
+      fitResultStoreError = "previous fit not used, library unreadable: " + e.getMessage();
+      fireStateChange("Could not read fit library, using input response: " + e.getMessage());
+      return null;
+    }
+    if (previousFit == null) {
+      return null;
+    }
+    double[] corner = previousFit.get(FitResultStore.CORNER);
+    double[] damping = previousFit.get(FitResultStore.DAMPING);
+    if (corner == null || damping == null || corner.length < 1 || damping.length < 1) {
+      return null;
+    }
+    return new double[]{corner[0], damping[0]};
   }
 
   /**
@@ -469,6 +753,138 @@ public class StepExperiment extends Experiment {
     return (dataStore.blockIsSet(0) && dataStore.bothComponentsSet(1));
   }
 
+  /**
+   * Get the record of the solver's iterations, evaluations, timing, and convergence from the most
+   * recent run of this experiment
+   *
+   * @return Telemetry of the corner and damping fit
+   */
+  public SolverTelemetry getSolverTelemetry() {
+    return solverTelemetry;
+  }
+
+  /**
+   * Get whether the solver ran out of its budget before converging, in which case the fit
+   * parameters are the best found so far
+   *
+   * @return True if the solve was stopped by its budget
+   */
+  public boolean isBudgetExhausted() {
+    return solverTelemetry.isBudgetExhausted();
+  }
+
+  /**
+   * Get the corner and damping chosen by the grid search as the solver's initial guess
+   *
+   * @return Array of form {f,h}, or null if the grid search was not run
+   */
+  public double[] getGridSearchSeed() {
+    if (gridSearchSeed == null) {
+      return null;
+    }
+    return gridSearchSeed.clone();
+  }
+
+  /**
+   * Get the time taken by the grid search for the solver's initial guess
+   *
+   * @return Time in milliseconds (0 if the grid search was not run)
+   */
+  public double getGridSearchMillis() {
+    if (gridSearchSeed == null) {
+      return 0.;
+    }
+    return gridSearchMillis;
+  }
+
+  /**
+   * Get whether the solver's initial guess came from a previous fit in the fit result library
+   * rather than the input response
+   *
+   * @return True if the solver started from a previous fit
+   */
+  public boolean isWarmStarted() {
+    return warmStarted;
+  }
+
+  /**
+   * Set whether to search a coarse grid of corner and damping values (on decimated data) for the
+   * solver's initial guess, rather than starting from the RESP's values. This helps when the RESP
+   * is far from the sensor's actual response. A previous fit from the fit result library is still
+   * preferred to the grid search if there is one.
+   *
+   * @param gridSearch True to search for the initial guess
+   */
+  public void setGridSearch(boolean gridSearch) {
+    useGridSearch = gridSearch;
+  }
+
+  /**
+   * Get whether a grid search is used to find the solver's initial guess
+   *
+   * @return True if the grid search is used
+   */
+  public boolean isGridSearch() {
+    return useGridSearch;
+  }
+
+  /**
+   * Set whether the solver gets the derivatives of the deconvolved timeseries with respect to
+   * corner and damping analytically or by forward differences (the default). The analytic
+   * derivatives need one deconvolution per solver evaluation rather than three.
+   *
+   * @param analyticJacobian True to calculate derivatives analytically
+   */
+  public void setAnalyticJacobian(boolean analyticJacobian) {
+    useAnalyticJacobian = analyticJacobian;
+  }
+
+  /**
+   * Get whether the solver uses analytic derivatives rather than forward differences
+   *
+   * @return True if derivatives are calculated analytically
+   */
+  public boolean isAnalyticJacobian() {
+    return useAnalyticJacobian;
+  }
+
+  /**
+   * Set limits on the time, iterations, and evaluations the solver may use. When the budget runs
+   * out the solver stops and the best parameters found so far are used as the fit.
+   *
+   * @param budget Limits for the solver, or SolverBudget.UNLIMITED to run until convergence
+   */
+  public void setSolverBudget(SolverBudget budget) {
+    solverTelemetry.setBudget(budget);
+  }
+
+  /**
+   * Set a library of previous fit results to use. If set, the previous fit for the same sensor
+   * and response is used as the solver's initial guess (falling back to the input response
+   * if there is none), and the result of this experiment is added to the library when it is run.
+   *
+   * @param fitResultStore Library of previous fits, or null to always start from the input response
+   */
+  public void setFitResultStore(FitResultStore fitResultStore) {
+    this.fitResultStore = fitResultStore;
+  }
+
+  /**
+   * Computes the value and derivatives of the deconvolution for a response formed from a given
+   * corner and damping value, using either the analytic or forward-difference derivatives
+   *
+   * @param variables Vector with the corner and damping values (in that order) from which the
+   * derivatives are calculated
+   * @return The result at the passed-in point plus the derivative of these points,
+   * as a vector and matrix respectively
+   */
+  private Pair<RealVector, RealMatrix> jacobian(RealVector variables) {
+    if (useAnalyticJacobian) {
+      return analyticJacobian(variables);
+    }
+    return forwardDifferenceJacobian(variables);
+  }
+
   /**
    * Computes the forward change in value of the calculations for response
    * formed from a given corner and damping value
@@ -478,7 +894,7 @@ public class StepExperiment extends Experiment {
    * @return The result at the passed-in point plus the approximate derivative
    * of these points, as a vector and matrix respectively
    */
-  private Pair<RealVector, RealMatrix> jacobian(RealVector variables) {
+  Pair<RealVector, RealMatrix> forwardDifferenceJacobian(RealVector variables) {
     // approximate through forward differences
     double[][] jacobian = new double[trimmedLength][2];
 
@@ -487,21 +903,155 @@ public class StepExperiment extends Experiment {
     double f2 = f1 + STEP_FACTOR;
     double h2 = h1 + STEP_FACTOR;
 
-    double[] fInit = calculate(new double[]{f1, h1});
-    double[] diffOnF = calculate(new double[]{f2, h1});
-    double[] diffOnH = calculate(new double[]{f1, h2});
+    double[] fInit = fitBuffer;
+    double[] diffOnF = cornerDiffBuffer;
+    double[] diffOnH = dampingDiffBuffer;
+    kernel.calculate(f1, h1, fInit);
+    kernel.calculate(f2, h1, diffOnF);
+    kernel.calculate(f1, h2, diffOnH);
 
     for (int i = 0; i < trimmedLength; ++i) {
       jacobian[i][0] = (diffOnF[i] - fInit[i]) / STEP_FACTOR;
       jacobian[i][1] = (diffOnH[i] - fInit[i]) / STEP_FACTOR;
     }
 
-    RealMatrix jMat = MatrixUtils.createRealMatrix(jacobian);
+    // matrix takes ownership of the jacobian array rather than copying it
+    RealMatrix jMat = new Array2DRowRealMatrix(jacobian, false);
+    // model buffer is reused, so its values have to be copied
     RealVector fnc = MatrixUtils.createRealVector(fInit);
 
     return new Pair<>(fnc, jMat);
   }
 
+  /**
+   * Computes the value of the deconvolution for a response formed from a given corner and damping
+   * value and its exact derivatives with respect to both. The response's denominator is
+   * D = w0^2 - w^2 + 2i*h*w0*w (for w = 2*pi*f at each frequency and w0 = 2*pi*corner), and the
+   * deconvolution multiplies the sensor FFT by D / (i*w), so the derivatives of the deconvolved
+   * FFT are the sensor FFT scaled by 2*w0 (damping) and by 4*pi*(h - i*w0/w) (corner). These are
+   * formed in time space from the precomputed sensor output and its integral (see
+   * initializeDerivativeBasis), so the only inverse FFT needed is that of the deconvolution itself.
+   * The derivatives are then carried through the detrending and normalization of the result.
+   * The water level is ignored here, as it only changes points where the response is effectively
+   * zero.
+   *
+   * @param variables Vector with the corner and damping values (in that order) from which the
+   * derivatives are calculated
+   * @return The result at the passed-in point plus the derivative of these points,
+   * as a vector and matrix respectively
+   */
+  Pair<RealVector, RealMatrix> analyticJacobian(RealVector variables) {
+    double f1 = variables.getEntry(0);
+    double h1 = variables.getEntry(1);
+    double omega = 2 * Math.PI * f1;
+
+    double[] fInit = fitBuffer;
+    double[] diffOnF = cornerDiffBuffer;
+    double[] diffOnH = dampingDiffBuffer;
+    kernel.deconvolve(f1, h1);
+    kernel.inverseFFTPlan.inverse(kernel.deconvolvedReal, kernel.deconvolvedImag, cutAmount,
+        fInit);
+
+    // the deconvolution takes the magnitude of the Nyquist frequency point,
+    // so the derivative there is that of the magnitude
+    int lastIdx = kernel.sensorFFTReal.length - 1;
+    double sReal = kernel.sensorFFTReal[lastIdx];
+    double sImag = kernel.sensorFFTImag[lastIdx];
+    double lastReal = sReal * kernel.respReal[lastIdx] - sImag * kernel.respImag[lastIdx];
+    double lastImag = sReal * kernel.respImag[lastIdx] + sImag * kernel.respReal[lastIdx];
+    double lastAbs = kernel.deconvolvedReal[lastIdx];
+    double nyquistOnF = 0.;
+    double nyquistOnH = 0.;
+    if (lastAbs > 0) {
+      double ratio = omega / kernel.angularFreqs[lastIdx];
+      double cornerReal = 4 * Math.PI * (sReal * h1 + sImag * ratio);
+      double cornerImag = 4 * Math.PI * (sImag * h1 - sReal * ratio);
+      nyquistOnF = (lastReal * cornerReal + lastImag * cornerImag) / lastAbs;
+      nyquistOnH = 2 * omega * (lastReal * sReal + lastImag * sImag) / lastAbs;
+    }
+    // a real value x at the Nyquist frequency contributes x * (-1)^n / (full FFT length) to time
+    double nyquistScale = 1. / (2 * lastIdx);
+    if (cutAmount % 2 != 0) {
+      nyquistScale = -nyquistScale;
+    }
+
+    // response is set to 1 at zero frequency, so the deconvolution there is constant;
+    // elsewhere d/dh of D / (i*w) is 2i*w0*w / (i*w) = 2*w0
+    // and d/df of D / (i*w) is 2*pi * (2*w0 + 2i*h*w) / (i*w) = 4*pi * (h - i*w0/w)
+    for (int i = 0; i < trimmedLength; ++i) {
+      diffOnF[i] = 4 * Math.PI * (h1 * sensorBasis[i] + omega * sensorIntegralBasis[i])
+          + nyquistOnF * nyquistScale;
+      diffOnH[i] = 2 * omega * sensorBasis[i] + nyquistOnH * nyquistScale;
+      nyquistScale = -nyquistScale;
+    }
+
+    // now apply the chain rule through the post-processing done in calculate
+    detrendEndsDerivative(fInit, diffOnF);
+    detrendEndsDerivative(fInit, diffOnH);
+    TimeSeriesUtils.detrendEndsInPlace(fInit);
+    normalizeDerivative(fInit, diffOnF);
+    normalizeDerivative(fInit, diffOnH);
+    TimeSeriesUtils.normalizeInPlace(fInit);
+
+    double[][] jacobian = new double[trimmedLength][2];
+    for (int i = 0; i < trimmedLength; ++i) {
+      jacobian[i][0] = diffOnF[i];
+      jacobian[i][1] = diffOnH[i];
+    }
+
+    // matrix takes ownership of the jacobian array rather than copying it
+    RealMatrix jMat = new Array2DRowRealMatrix(jacobian, false);
+    // model buffer is reused, so its values have to be copied
+    RealVector fnc = MatrixUtils.createRealVector(fInit);
+
+    return new Pair<>(fnc, jMat);
+  }
+
+  /**
+   * Replace the derivative of a timeseries with the derivative of the timeseries after
+   * TimeSeriesUtils.detrendEnds has been applied to it
+   *
+   * @param data Timeseries, before detrending
+   * @param derivative Derivative of the timeseries, modified in place
+   */
+  private static void detrendEndsDerivative(double[] data, double[] derivative) {
+    // detrendEnds subtracts start + ((diff / length) * i + 1) * diff / lastIdx from each point,
+    // where diff = end - start, so the trend being removed is quadratic in diff
+    int lastIdx = data.length - 1;
+    double diff = data[lastIdx] - data[0];
+    double startDeriv = derivative[0];
+    double diffDeriv = derivative[lastIdx] - startDeriv;
+    for (int i = 0; i < derivative.length; ++i) {
+      derivative[i] -= startDeriv + diffDeriv * (2 * diff * i / data.length + 1) / lastIdx;
+    }
+  }
+
+  /**
+   * Replace the derivative of a timeseries with the derivative of the timeseries after
+   * TimeSeriesUtils.normalize has been applied to it
+   *
+   * @param data Timeseries, before normalization
+   * @param derivative Derivative of the timeseries, modified in place
+   */
+  private static void normalizeDerivative(double[] data, double[] derivative) {
+    double absMax = Math.abs(data[0]);
+    int maxIdx = 0;
+    for (int i = 0; i < data.length; ++i) {
+      if (Math.abs(data[i]) > absMax) {
+        absMax = Math.abs(data[i]);
+        maxIdx = i;
+      }
+    }
+    if (absMax == 0) {
+      return;
+    }
+    // d(x / |x_max|) = dx / |x_max| - x * sign(x_max) * dx_max / |x_max|^2
+    double maxDeriv = Math.signum(data[maxIdx]) * derivative[maxIdx];
+    for (int i = 0; i < derivative.length; ++i) {
+      derivative[i] = (derivative[i] - (data[i] / absMax) * maxDeriv) / absMax;
+    }
+  }
+
   /**
    * NOTE: not used by corresponding panel, overrides with active indices
    * of components in the combo-box
@@ -513,4 +1063,169 @@ public class StepExperiment extends Experiment {
     return new int[]{sensorOutIdx};
   }
 
+  /**
+   * Inputs and work buffers for deconvolving a response with a given corner and damping from the
+   * FFT of the sensor output and returning the result to time space. The inputs are only read,
+   * so copies of a kernel (see copy) share them, but each copy has its own work buffers; a single
+   * kernel should not be used by more than one thread at a time.
+   */
+  private static final class DeconvolutionKernel {
+
+    private final double[] sensorFFTReal, sensorFFTImag; // FFT of step cal from sensor
+    private final double[] angularFreqs; // 2*pi*f for each frequency
+    private final int offset; // number of points trimmed from the start of the result
+    private final double[] respReal, respImag, respAbs; // response (inverted) and its magnitude
+    private final double[] deconvolvedReal, deconvolvedImag; // sensor FFT with response removed
+    private final InverseFFTPlan inverseFFTPlan; // returns deconvolved FFT to time space
+
+    /**
+     * Set up a kernel for the given sensor data: the FFT of the sensor output as primitive
+     * arrays, the 2*pi*f factors for each frequency, work space for the response and
+     * deconvolution, and the plan used to invert the deconvolved FFT.
+     *
+     * @param sensorFFT Single-sided FFT of the sensor output
+     * @param offset Number of points to trim from the start of the deconvolved timeseries
+     */
+    DeconvolutionKernel(FFTResult sensorFFT, int offset) {
+      Complex[] sensorFFTSeries = sensorFFT.getFFT();
+      double[] freqs = sensorFFT.getFreqs();
+      int length = sensorFFTSeries.length;
+      sensorFFTReal = new double[length];
+      sensorFFTImag = new double[length];
+      angularFreqs = new double[length];
+      for (int i = 0; i < length; ++i) {
+        sensorFFTReal[i] = sensorFFTSeries[i].getReal();
+        sensorFFTImag[i] = sensorFFTSeries[i].getImaginary();
+        // replaced freqs[i] with 2*pi*i*f
+        angularFreqs[i] = 2 * Math.PI * freqs[i];
+      }
+      this.offset = offset;
+      respReal = new double[length];
+      respImag = new double[length];
+      respAbs = new double[length];
+      deconvolvedReal = new double[length];
+      deconvolvedImag = new double[length];
+      inverseFFTPlan = new InverseFFTPlan(length);
+    }
+
+    private DeconvolutionKernel(DeconvolutionKernel toCopy) {
+      sensorFFTReal = toCopy.sensorFFTReal;
+      sensorFFTImag = toCopy.sensorFFTImag;
+      angularFreqs = toCopy.angularFreqs;
+      offset = toCopy.offset;
+      int length = sensorFFTReal.length;
+      respReal = new double[length];
+      respImag = new double[length];
+      respAbs = new double[length];
+      deconvolvedReal = new double[length];
+      deconvolvedImag = new double[length];
+      inverseFFTPlan = new InverseFFTPlan(length);
+    }
+
+    /**
+     * Produce a kernel for the same sensor data with its own work buffers, so that it can be
+     * used alongside this one (i.e., from another thread)
+     *
+     * @return New kernel sharing this one's inputs
+     */
+    DeconvolutionKernel copy() {
+      return new DeconvolutionKernel(this);
+    }
+
+    /**
+     * Does the deconvolution of the response calculated from the corner freq. (f)
+     * and damping (h) parameters passed in, writing the result into the given array.
+     * This is run on every evaluation of the solver's model, so it works entirely within this
+     * kernel's buffers and does not allocate any memory.
+     *
+     * @param f Corner frequency of response to remove
+     * @param h Damping of response to remove
+     * @param result Array to write the deconvolved timeseries into; its length is the number of
+     * points kept after trimming
+     */
+    void calculate(double f, double h, double[] result) {
+      deconvolve(f, h);
+      // return data to time space, trimming data around areas with filter ringing
+      inverseFFTPlan.inverse(deconvolvedReal, deconvolvedImag, offset, result);
+      // and remove linear trend
+      TimeSeriesUtils.detrendEndsInPlace(result);
+      TimeSeriesUtils.normalizeInPlace(result);
+    }
+
+    /**
+     * Removes the response calculated from the corner freq. (f) and damping (h) from the FFT of the
+     * sensor output, leaving the result in the deconvolved FFT buffers. The response and its
+     * (inverted, water-leveled) values are left in the response buffers.
+     *
+     * @param f Corner frequency of response to remove
+     * @param h Damping of response to remove
+     */
+    void deconvolve(double f, double h) {
+
+      // term inside the square root in the calculations of p1, p2
+      // (h^2-1), which is a real number but may have an imaginary square root
+      double tempResult = Math.pow(h, 2) - 1;
+      double sqrtReal = tempResult >= 0 ? Math.sqrt(tempResult) : 0.;
+      double sqrtImag = tempResult >= 0 ? 0. : Math.sqrt(-tempResult);
+
+      double omega = 2 * Math.PI * f; // omega_0
+
+      // - (h + sqrt(h^2-1))
+      double pole1Real = -(h + sqrtReal) * omega;
+      double pole1Imag = -sqrtImag * omega;
+      // - (h - sqrt(h^2-1))
+      double pole2Real = -(h - sqrtReal) * omega;
+      double pole2Imag = sqrtImag * omega;
+
+      // calculate the FFT of the response
+      // don't let denominator be zero
+      respReal[0] = 1.;
+      respImag[0] = 0.;
+      for (int i = 1; i < respReal.length; ++i) {
+        // factor is 2*pi*i*f, which only has an imaginary component
+        double factor = angularFreqs[i];
+        // (2*pi*i*f - p1) * (2*pi*f*i - p2)
+        double aReal = -pole1Real;
+        double aImag = factor - pole1Imag;
+        double bReal = -pole2Real;
+        double bImag = factor - pole2Imag;
+        double denomReal = aReal * bReal - aImag * bImag;
+        double denomImag = aReal * bImag + aImag * bReal;
+        // (i * factor) / denom, using the same division method as Complex.divide
+        if (denomReal == 0. && denomImag == 0.) {
+          respReal[i] = Double.NaN;
+          respImag[i] = Double.NaN;
+        } else if (Math.abs(denomReal) < Math.abs(denomImag)) {
+          double q = denomReal / denomImag;
+          double denominator = denomReal * q + denomImag;
+          respReal[i] = factor / denominator;
+          respImag[i] = (factor * q) / denominator;
+        } else {
+          double q = denomImag / denomReal;
+          double denominator = denomImag * q + denomReal;
+          respReal[i] = (factor * q) / denominator;
+          respImag[i] = factor / denominator;
+        }
+      }
+
+      // get water level for response curve (gets multiplicative inverse as well)
+      setWaterLevel(respReal, respImag, respAbs);
+
+      // now that we have the response curve, we can remove it from the FFT of the sensor data
+      // deconvolving response is dividing fft(signal) by fft(response)
+      // note that setting water level involves inverting the respFFT value, so we multiply here
+      for (int i = 0; i < respReal.length; ++i) {
+        double sReal = sensorFFTReal[i];
+        double sImag = sensorFFTImag[i];
+        deconvolvedReal[i] = sReal * respReal[i] - sImag * respImag[i];
+        deconvolvedImag[i] = sReal * respImag[i] + sImag * respReal[i];
+      }
+
+      int lastIdx = deconvolvedReal.length - 1;
+      deconvolvedReal[lastIdx] = abs(deconvolvedReal[lastIdx], deconvolvedImag[lastIdx]);
+      deconvolvedImag[lastIdx] = 0.;
+    }
+
+  }
+
 }
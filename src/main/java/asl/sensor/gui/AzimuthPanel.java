@@ -2,6 +2,7 @@ package asl.sensor.gui;
 
 import asl.sensor.ExperimentFactory;
 import asl.sensor.experiment.AzimuthExperiment;
+import asl.sensor.experiment.SolverTelemetry;
 import asl.sensor.input.DataStore;
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -11,6 +12,7 @@ import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.util.List;
 import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -47,6 +49,8 @@ public class AzimuthPanel extends ExperimentPanel {
 
   private final JSpinner offsetSpinner; // select how far from north to set reference data
   private final JComboBox<String> chartSelector;
+  private final SolverBudgetPanel solverBudgetPanel;
+  private final JCheckBox parallelWindowsBox;
   // note that some overrides are necessary because angle chart is a polar plot, not xy plot
   // so things like progress updates are called in a different manner
   private JFreeChart angleChart, estimationChart; // plot angle, plot windowed estimation angle and correlation
@@ -105,12 +109,21 @@ public class AzimuthPanel extends ExperimentPanel {
     offsetPanel.setLayout(new BoxLayout(offsetPanel, BoxLayout.X_AXIS));
     offsetPanel.add(offsetSpinnerLabel);
     offsetPanel.add(offsetSpinner);
+    solverBudgetPanel = new SolverBudgetPanel();
+    parallelWindowsBox = new JCheckBox("Fit windows in parallel");
+    parallelWindowsBox.setToolTipText("Fit each correlation window independently from the "
+        + "initial estimate rather than damping toward earlier windows (faster on long data)");
+    JPanel optionsPanel = new JPanel();
+    optionsPanel.setLayout(new BoxLayout(optionsPanel, BoxLayout.Y_AXIS));
+    optionsPanel.add(offsetPanel);
+    optionsPanel.add(parallelWindowsBox);
+    optionsPanel.add(solverBudgetPanel);
     constraints.weighty = 0.0;
     constraints.gridy += 1;
     constraints.gridwidth = 1;
     constraints.fill = GridBagConstraints.NONE;
     constraints.anchor = GridBagConstraints.WEST;
-    this.add(offsetPanel, constraints);
+    this.add(optionsPanel, constraints);
 
     constraints.gridx += 1;
     constraints.fill = GridBagConstraints.NONE;
@@ -191,7 +204,13 @@ public class AzimuthPanel extends ExperimentPanel {
     }
     sb.append("\n");
 
-    return new String[]{sb.toString()};
+    StringBuilder solverText = new StringBuilder("Solver telemetry:\n");
+    solverText.append(azimuthExperiment.getSolverTelemetry()).append("\n");
+    for (SolverTelemetry windowTelemetry : azimuthExperiment.getWindowSolverTelemetry()) {
+      solverText.append(windowTelemetry).append("\n");
+    }
+
+    return new String[]{sb.toString(), solverText.toString()};
   }
 
   @Override
@@ -217,6 +236,8 @@ public class AzimuthPanel extends ExperimentPanel {
 
     AzimuthExperiment experiment = (AzimuthExperiment) expResult;
     experiment.setOffset(value);
+    experiment.setSolverBudget(solverBudgetPanel.getBudget());
+    experiment.setParallelWindows(parallelWindowsBox.isSelected());
 
     XYPlot estimationPlot;
 
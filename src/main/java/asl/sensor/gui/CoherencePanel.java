@@ -0,0 +1,162 @@
+package asl.sensor.gui;
+
+import asl.sensor.ExperimentFactory;
+import asl.sensor.experiment.CoherenceExperiment;
+import asl.sensor.input.DataStore;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import org.jfree.chart.annotations.XYTitleAnnotation;
+import org.jfree.chart.axis.LogarithmicAxis;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.title.TextTitle;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.ui.RectangleAnchor;
+
+/**
+ * Panel for displaying the coherence of each pair of 2-3 inputs.
+ * Includes a checkbox to choose between frequency and interval x-axis, and a selector to average
+ * the coherence into fractional-octave bands as with the PSD plots.
+ */
+public class CoherencePanel extends ExperimentPanel {
+
+  private static final long serialVersionUID = -3212896409216340374L;
+
+  private final JCheckBox freqSpaceBox;
+  private final JComboBox<String> psdDisplaySelector;
+  private final NumberAxis freqAxis;
+  private int plotCount;
+
+  /**
+   * Constructs a new panel and lays out all the components in it
+   *
+   * @param experiment Enum to get relevant experiment backend from factory
+   */
+  public CoherencePanel(ExperimentFactory experiment) {
+    super(experiment);
+
+    plotCount = 0;
+    for (int i = 0; i < 3; ++i) {
+      channelType[i] = "Input data (at least 2 required)";
+    }
+
+    xAxis = new LogarithmicAxis("Period (s)");
+    freqAxis = new LogarithmicAxis("Frequency (Hz)");
+    yAxis = new NumberAxis("Coherence");
+    yAxis.setRange(0., 1.05);
+    Font bold = xAxis.getLabelFont();
+    bold = bold.deriveFont(Font.BOLD, bold.getSize() + 2);
+    xAxis.setLabelFont(bold);
+    yAxis.setLabelFont(bold);
+    freqAxis.setLabelFont(bold);
+
+    freqSpaceBox = new JCheckBox("Use Hz units (requires regen)");
+    freqSpaceBox.setSelected(false);
+
+    psdDisplaySelector = createPSDDisplaySelector();
+
+    applyAxesToChart(); // now that we've got axes defined
+
+    // set the GUI components
+    this.setLayout(new GridBagLayout());
+    GridBagConstraints constraints = new GridBagConstraints();
+
+    constraints.fill = GridBagConstraints.BOTH;
+    constraints.gridx = 0;
+    constraints.gridy = 0;
+    constraints.weightx = 1.0;
+    constraints.weighty = 1.0;
+    constraints.gridwidth = 3;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(chartPanel, constraints);
+
+    // place the other UI elements in a single row below the chart
+    constraints.gridwidth = 1;
+    constraints.weighty = 0.0;
+    constraints.weightx = 0.0;
+    constraints.anchor = GridBagConstraints.WEST;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridy += 1;
+    constraints.gridx = 0;
+    this.add(freqSpaceBox, constraints);
+
+    constraints.gridx += 1;
+    constraints.weightx = 1.0;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(save, constraints);
+
+    // display options on the right, which also keeps the save button in the center
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridx += 1;
+    constraints.weightx = 0;
+    constraints.anchor = GridBagConstraints.WEST;
+    this.add(psdDisplaySelector, constraints);
+  }
+
+  @Override
+  protected void drawCharts() {
+    setChart(expResult.getData().get(0));
+    setTitle(chart.getXYPlot(), expResult.getInsetStrings()[0]);
+    chartPanel.setChart(chart);
+    chartPanel.setMouseZoomable(true);
+  }
+
+  /**
+   * Gets the x-axis for this panel based on whether or not the
+   * selection box to plot in units of Hz is selected
+   */
+  @Override
+  public ValueAxis getXAxis() {
+    // true if using Hz units
+    if (freqSpaceBox.isSelected()) {
+      return freqAxis;
+    }
+    return xAxis;
+  }
+
+  @Override
+  public int panelsNeeded() {
+    return 3;
+  }
+
+  @Override
+  public int plotsToShow() {
+    return plotCount;
+  }
+
+  @Override
+  protected void updateData(final DataStore dataStore) {
+    set = true;
+
+    plotCount = 0;
+    for (int i = 0; i < panelsNeeded(); ++i) {
+      if (dataStore.blockIsSet(i)) {
+        ++plotCount;
+      }
+    }
+
+    ((CoherenceExperiment) expResult).setFreqSpace(freqSpaceBox.isSelected());
+    expResult.setPSDBandsPerOctave(getSelectedBandsPerOctave(psdDisplaySelector));
+    expResult.runExperimentOnData(dataStore);
+
+    XYSeriesCollection coherence = expResult.getData().get(0);
+    for (int i = 0; i < coherence.getSeriesCount(); ++i) {
+      seriesColorMap.put((String) coherence.getSeriesKey(i), COLORS[i % 3]);
+    }
+  }
+
+  private void setTitle(XYPlot plot, String insetString) {
+    TextTitle result = getDefaultTextTitle();
+    result.setText(insetString);
+    XYTitleAnnotation title = new XYTitleAnnotation(0.98, 0.02, result,
+        RectangleAnchor.BOTTOM_RIGHT);
+    plot.clearAnnotations();
+    plot.addAnnotation(title);
+  }
+
+}
@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.TimeZone;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JPanel;
 import javax.swing.event.ChangeEvent;
@@ -86,6 +87,11 @@ public abstract class ExperimentPanel
         return format;
       });
   private static final long serialVersionUID = -5591522915365766604L;
+  // ways to display PSDs, and the number of fractional-octave bands each uses (0 for none)
+  private static final String[] PSD_DISPLAY_NAMES = {"Full-resolution PSD (requires regen)",
+      "1/3-octave PSD (requires regen)", "1/6-octave PSD (requires regen)",
+      "1/8-octave PSD (requires regen)", "1/12-octave PSD (requires regen)"};
+  private static final int[] PSD_BANDS_PER_OCTAVE = {0, 3, 6, 8, 12};
   final JButton save; // easy access to saving output as png
   final ChartPanel chartPanel; // component used to hold the shown chart
   final ExperimentFactory expType;
@@ -173,6 +179,28 @@ public abstract class ExperimentPanel
   }
   // these are map/set because they are based on the data read in, not fixed
 
+  /**
+   * Create a combo box to choose how an experiment's PSDs are displayed, either at every
+   * frequency or averaged into fractional-octave bands (see Experiment.setPSDBandsPerOctave)
+   *
+   * @return Combo box of PSD display options, set to full resolution
+   */
+  static JComboBox<String> createPSDDisplaySelector() {
+    JComboBox<String> selector = new JComboBox<>(PSD_DISPLAY_NAMES);
+    selector.setSelectedIndex(0);
+    return selector;
+  }
+
+  /**
+   * Get the number of bands per octave for the option chosen in a PSD display combo box
+   *
+   * @param selector Combo box created by {@link #createPSDDisplaySelector()}
+   * @return Bands per octave to average PSDs into, or 0 for full-resolution PSDs
+   */
+  static int getSelectedBandsPerOctave(JComboBox<String> selector) {
+    return PSD_BANDS_PER_OCTAVE[selector.getSelectedIndex()];
+  }
+
   static TextTitle getDefaultTextTitle() {
     TextTitle result = new TextTitle();
     Font font = result.getFont();
@@ -450,6 +478,16 @@ public abstract class ExperimentPanel
     if (sb.length() > 0) {
       sb.append("\n\n");
     }
+    String preprocessing = expResult.getPreprocessingStatistics();
+    if (preprocessing.length() > 0) {
+      sb.append(preprocessing);
+      sb.append("\n\n");
+    }
+    String stageTiming = expResult.getStageTimingReport();
+    if (stageTiming.length() > 0) {
+      sb.append(stageTiming);
+      sb.append("\n\n");
+    }
     String metadata = getMetadataString();
     if (metadata.length() > 0) {
       sb.append(metadata);
@@ -651,6 +689,16 @@ public abstract class ExperimentPanel
     if (sb.length() > 0) {
       sb.append("\n \n");
     }
+    String preprocessing = expResult.getPreprocessingStatistics();
+    if (preprocessing.length() > 0) {
+      sb.append(preprocessing);
+      sb.append("\n \n");
+    }
+    String stageTiming = expResult.getStageTimingReport();
+    if (stageTiming.length() > 0) {
+      sb.append(stageTiming);
+      sb.append("\n \n");
+    }
     String metadata = getMetadataString();
     if (metadata.length() > 0) {
       sb.append(metadata);
@@ -48,6 +48,7 @@ public class GainPanel extends ExperimentPanel
   final JSlider leftSlider;
   final JSlider rightSlider;
   final JComboBox<String> referenceSeries;
+  final JComboBox<String> psdDisplaySelector;
   final JButton recalcButton;
   double lowPeriod, highPeriod;
 
@@ -101,6 +102,8 @@ public class GainPanel extends ExperimentPanel
 
     referenceSeries.setSelectedIndex(0);
 
+    psdDisplaySelector = createPSDDisplaySelector();
+
     // create layout
     this.setLayout(new GridBagLayout());
     GridBagConstraints constraints = new GridBagConstraints();
@@ -140,6 +143,9 @@ public class GainPanel extends ExperimentPanel
     constraints.gridx += 1;
     constraints.fill = GridBagConstraints.NONE;
     this.add(save, constraints);
+    constraints.gridx += 1;
+    constraints.anchor = GridBagConstraints.WEST;
+    this.add(psdDisplaySelector, constraints);
 
   }
 
@@ -388,6 +394,7 @@ public class GainPanel extends ExperimentPanel
   protected void updateData(final DataStore dataStore) {
     set = true;
     setDataNames(dataStore);
+    expResult.setPSDBandsPerOctave(getSelectedBandsPerOctave(psdDisplaySelector));
     expResult.runExperimentOnData(dataStore);
     // need to have 2 series for relative gain
     referenceSeries.setEnabled(true);
@@ -113,6 +113,9 @@ public class GainSixPanel extends GainPanel {
     plotSelection.addActionListener(this);
     add(plotSelection, constraints);
 
+    constraints.gridy += 1;
+    add(psdDisplaySelector, constraints);
+
   }
 
   /**
@@ -256,6 +259,7 @@ public class GainSixPanel extends GainPanel {
 
     setDataNames();
 
+    expResult.setPSDBandsPerOctave(getSelectedBandsPerOctave(psdDisplaySelector));
     expResult.runExperimentOnData(dataStore);
 
     // need to have 2 series for relative gain
@@ -0,0 +1,91 @@
+package asl.sensor.gui;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.entity.EntityCollection;
+import org.jfree.chart.plot.CrosshairState;
+import org.jfree.chart.plot.PlotRenderingInfo;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
+import org.jfree.data.Range;
+import org.jfree.data.general.DatasetUtilities;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYZDataset;
+import org.jfree.ui.RectangleAnchor;
+
+/**
+ * Renders the values of an XYZ dataset as colored blocks (a heat map) whose heights are a fixed
+ * ratio rather than a fixed difference, for plotting data on fractional-octave bands (such as a
+ * spectrogram) against a logarithmic range axis. Each block is centered on its x value with the
+ * renderer's block width, and spans from y / sqrt(ratio) to y * sqrt(ratio), so that bands spaced
+ * evenly in log frequency (or period) are drawn edge to edge. Items with a z value of NaN are not
+ * drawn. Only vertical plot orientation is supported.
+ */
+class LogBlockRenderer extends XYBlockRenderer {
+
+  private static final long serialVersionUID = 3389616025377591542L;
+
+  private final double halfHeightRatio;
+
+  /**
+   * Create a renderer for blocks of the given relative height
+   *
+   * @param heightRatio Ratio of the top of each block to its bottom, i.e., 2^(1/N) for bands of 1/N
+   * octave
+   */
+  LogBlockRenderer(double heightRatio) {
+    super();
+    halfHeightRatio = Math.sqrt(heightRatio);
+    setBlockAnchor(RectangleAnchor.CENTER);
+  }
+
+  @Override
+  public Range findRangeBounds(XYDataset dataset) {
+    if (dataset == null) {
+      return null;
+    }
+    Range bounds = DatasetUtilities.findRangeBounds(dataset, false);
+    if (bounds == null) {
+      return null;
+    }
+    return new Range(bounds.getLowerBound() / halfHeightRatio,
+        bounds.getUpperBound() * halfHeightRatio);
+  }
+
+  @Override
+  public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
+      PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
+      XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
+
+    double z = ((XYZDataset) dataset).getZValue(series, item);
+    if (Double.isNaN(z)) {
+      return;
+    }
+    double x = dataset.getXValue(series, item);
+    double y = dataset.getYValue(series, item);
+    double halfWidth = getBlockWidth() / 2;
+
+    double left = domainAxis.valueToJava2D(x - halfWidth, dataArea, plot.getDomainAxisEdge());
+    double right = domainAxis.valueToJava2D(x + halfWidth, dataArea, plot.getDomainAxisEdge());
+    double bottom =
+        rangeAxis.valueToJava2D(y / halfHeightRatio, dataArea, plot.getRangeAxisEdge());
+    double top = rangeAxis.valueToJava2D(y * halfHeightRatio, dataArea, plot.getRangeAxisEdge());
+    Rectangle2D block = new Rectangle2D.Double(Math.min(left, right), Math.min(top, bottom),
+        Math.abs(right - left), Math.abs(bottom - top));
+
+    // outline each block in its own color so that there are no seams between them
+    g2.setPaint(getPaintScale().getPaint(z));
+    g2.fill(block);
+    g2.setStroke(new BasicStroke(1.0f));
+    g2.draw(block);
+
+    EntityCollection entities = state.getEntityCollection();
+    if (entities != null) {
+      addEntity(entities, block, dataset, series, item, 0.0, 0.0);
+    }
+  }
+
+}
@@ -16,7 +16,8 @@ import org.jfree.data.xy.XYSeriesCollection;
 /**
  * Panel for 9-input self noise. Similar to 3-input self noise (NoisePanel)
  * but includes multiple plots, one for each linear axis in 3D space
- * (north-south, east-west, up-down) and a combo box to select them
+ * (north-south, east-west, up-down) and a combo box to select them, along with the
+ * coherence plot of each axis if that was calculated
  *
  * @author akearns - KBRWyle
  */
@@ -25,6 +26,8 @@ public class NoiseNinePanel extends NoisePanel {
   private static final long serialVersionUID = -8049021432657749975L;
   private final JComboBox<String> plotSelection;
   private JFreeChart northChart, eastChart, verticalChart;
+  // coherence plots of each axis, in the same order; null unless coherence was calculated
+  private JFreeChart[] coherenceCharts;
 
   /**
    * Construct panel and lay out its components
@@ -102,9 +105,19 @@ public class NoiseNinePanel extends NoisePanel {
     plotSelection.addItem("North component plot");
     plotSelection.addItem("East component plot");
     plotSelection.addItem("Vertical component plot");
+    plotSelection.addItem("North coherence plot");
+    plotSelection.addItem("East coherence plot");
+    plotSelection.addItem("Vertical coherence plot");
     plotSelection.addActionListener(this);
     add(plotSelection, constraints);
 
+    constraints.gridy += 1;
+    add(psdDisplaySelector, constraints);
+
+    constraints.gridx = 0;
+    constraints.fill = GridBagConstraints.NONE;
+    add(coherenceBox, constraints);
+
     revalidate();
 
   }
@@ -137,51 +150,54 @@ public class NoiseNinePanel extends NoisePanel {
     super.actionPerformed(event);
 
     if (event.getSource() == plotSelection) {
-
-      int index = plotSelection.getSelectedIndex();
-      switch (index) {
-        case 0:
-          chart = northChart;
-          break;
-        case 1:
-          chart = eastChart;
-          break;
-        default:
-          chart = verticalChart;
-          break;
-      }
-
+      chart = getSelectedChart();
       chartPanel.setChart(chart);
       chartPanel.setMouseZoomable(true);
     }
 
   }
 
+  @Override
+  public void clearChart() {
+    coherenceCharts = null;
+    super.clearChart();
+  }
+
   @Override
   protected void drawCharts() {
+    chart = getSelectedChart();
+    chartPanel.setChart(chart);
+    chartPanel.setMouseZoomable(true);
+  }
 
+  /**
+   * Get the chart chosen in the plot selection box; if a coherence plot is chosen but coherence
+   * was not calculated, the noise plot of the same axis is used instead
+   *
+   * @return Chart to display
+   */
+  private JFreeChart getSelectedChart() {
     int index = plotSelection.getSelectedIndex();
-
-    switch (index) {
+    if (index >= 3 && coherenceCharts != null) {
+      return coherenceCharts[index - 3];
+    }
+    switch (index % 3) {
       case 0:
-        chart = northChart;
-        break;
+        return northChart;
       case 1:
-        chart = eastChart;
-        break;
+        return eastChart;
       default:
-        chart = verticalChart;
-        break;
+        return verticalChart;
     }
-
-    chartPanel.setChart(chart);
-    chartPanel.setMouseZoomable(true);
-
   }
 
   @Override
   public JFreeChart[] getCharts() {
-    return new JFreeChart[]{northChart, eastChart, verticalChart};
+    if (coherenceCharts == null) {
+      return new JFreeChart[]{northChart, eastChart, verticalChart};
+    }
+    return new JFreeChart[]{northChart, eastChart, verticalChart,
+        coherenceCharts[0], coherenceCharts[1], coherenceCharts[2]};
   }
 
 
@@ -200,6 +216,8 @@ public class NoiseNinePanel extends NoisePanel {
 
     NoiseNineExperiment noiseExperiment = (NoiseNineExperiment) expResult;
     noiseExperiment.setFreqSpace(freqSpaceImmutable);
+    noiseExperiment.setPSDBandsPerOctave(getSelectedBandsPerOctave(psdDisplaySelector));
+    noiseExperiment.setPlotCoherence(coherenceBox.isSelected());
 
     expResult.runExperimentOnData(dataStore);
 
@@ -241,6 +259,20 @@ public class NoiseNinePanel extends NoisePanel {
     plot = verticalChart.getXYPlot();
     setTitle(plot, insetStrings[2]);
 
+    coherenceCharts = null;
+    if (expResult.getData().size() > 3) {
+      // coherence of each axis follows the noise data of each axis
+      String[] directions = new String[]{"NORTH", "EAST", "VERTICAL"};
+      coherenceCharts = new JFreeChart[directions.length];
+      for (int i = 0; i < directions.length; ++i) {
+        XYSeriesCollection coherence = expResult.getData().get(i + 3);
+        setCoherenceColors(coherence);
+        coherenceCharts[i] = buildChart(coherence, getXAxis(), coherenceAxis);
+        coherenceCharts[i].setTitle("Coherence (" + directions[i] + ")");
+        setTitle(coherenceCharts[i].getXYPlot(), insetStrings[i]);
+      }
+    }
+
   }
 
 }
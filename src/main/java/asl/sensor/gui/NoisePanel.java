@@ -7,8 +7,10 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.awt.event.ActionEvent;
 import javax.swing.JCheckBox;
-import javax.swing.JPanel;
+import javax.swing.JComboBox;
+import org.jfree.chart.JFreeChart;
 import org.jfree.chart.annotations.XYTitleAnnotation;
 import org.jfree.chart.axis.LogarithmicAxis;
 import org.jfree.chart.axis.NumberAxis;
@@ -22,7 +24,8 @@ import org.jfree.ui.RectangleAnchor;
  * Panel for displaying the results of the self-noise experiment (3-input).
  * In addition to general requirements of output panels, also includes
  * a checkbox to choose between frequency and interval x-axis and
- * the variant axes for when that box is checked.
+ * the variant axes for when that box is checked, and a checkbox to also plot the
+ * coherence of each pair of inputs (selectable with a combo box once calculated).
  *
  * @author akearns - KBRWyle
  */
@@ -31,10 +34,15 @@ public class NoisePanel extends ExperimentPanel {
   private static final long serialVersionUID = 9018553361096758354L;
 
   final JCheckBox freqSpaceBox;
+  final JComboBox<String> psdDisplaySelector;
+  final JCheckBox coherenceBox;
+  final NumberAxis coherenceAxis;
 
   final int NOISE_PLOT_COUNT = 6;
 
   private final NumberAxis freqAxis;
+  private final JComboBox<String> chartSelector;
+  private JFreeChart noiseChart, coherenceChart;
 
   /**
    * Constructs a new panel and lays out all the components in it
@@ -60,10 +68,24 @@ public class NoisePanel extends ExperimentPanel {
     xAxis.setLabelFont(bold);
     yAxis.setLabelFont(bold);
     freqAxis.setLabelFont(bold);
+    coherenceAxis = new NumberAxis("Coherence");
+    coherenceAxis.setRange(0., 1.05);
+    coherenceAxis.setLabelFont(bold);
 
     freqSpaceBox = new JCheckBox("Use Hz units (requires regen)");
     freqSpaceBox.setSelected(false);
 
+    psdDisplaySelector = createPSDDisplaySelector();
+
+    coherenceBox = new JCheckBox("Add coherence plot (requires regen)");
+    coherenceBox.setSelected(false);
+
+    chartSelector = new JComboBox<>();
+    chartSelector.addItem("Self-noise plot");
+    chartSelector.addItem("Coherence plot");
+    chartSelector.setEnabled(false);
+    chartSelector.addActionListener(this);
+
     applyAxesToChart(); // now that we've got axes defined
 
     // set the GUI components
@@ -95,24 +117,75 @@ public class NoisePanel extends ExperimentPanel {
     constraints.anchor = GridBagConstraints.CENTER;
     this.add(save, constraints);
 
-    // add an empty panel as a spacer to keep the save button in the center
+    // PSD display options on the right, which also keeps the save button in the center
     constraints.fill = GridBagConstraints.NONE;
     constraints.gridx += 1;
     constraints.weightx = 0;
     constraints.anchor = GridBagConstraints.WEST;
-    JPanel spacer = new JPanel();
-    spacer.setPreferredSize(freqSpaceBox.getPreferredSize());
-    this.add(spacer, constraints);
+    this.add(psdDisplaySelector, constraints);
+
+    // coherence options in a second row
+    constraints.gridy += 1;
+    constraints.gridx = 0;
+    this.add(coherenceBox, constraints);
+
+    constraints.gridx = 2;
+    constraints.fill = GridBagConstraints.HORIZONTAL;
+    this.add(chartSelector, constraints);
+  }
+
+  @Override
+  public void actionPerformed(ActionEvent event) {
+
+    if (event.getSource() == chartSelector) {
+      if (chartSelector.getSelectedIndex() == 1 && coherenceChart != null) {
+        chart = coherenceChart;
+      } else if (noiseChart != null) {
+        chart = noiseChart;
+      }
+      chartPanel.setChart(chart);
+      chartPanel.setMouseZoomable(true);
+      return;
+    }
+
+    super.actionPerformed(event);
+  }
+
+  @Override
+  public void clearChart() {
+    noiseChart = null;
+    coherenceChart = null;
+    chartSelector.setEnabled(false);
+    super.clearChart();
   }
 
   @Override
   protected void drawCharts() {
     setChart(expResult.getData().get(0));
     setTitle(chart.getXYPlot(), expResult.getInsetStrings()[0]);
+    noiseChart = chart;
+    coherenceChart = null;
+    if (expResult.getData().size() > 1) {
+      coherenceChart = buildChart(expResult.getData().get(1), getXAxis(), coherenceAxis);
+      appendChartTitle(coherenceChart, " (coherence)");
+      setTitle(coherenceChart.getXYPlot(), expResult.getInsetStrings()[0]);
+      if (chartSelector.getSelectedIndex() == 1) {
+        chart = coherenceChart;
+      }
+    }
+    chartSelector.setEnabled(coherenceChart != null);
     chartPanel.setChart(chart);
     chartPanel.setMouseZoomable(true);
   }
 
+  @Override
+  public JFreeChart[] getCharts() {
+    if (coherenceChart == null) {
+      return super.getCharts();
+    }
+    return new JFreeChart[]{noiseChart, coherenceChart};
+  }
+
   /**
    * Gets the x-axis for this panel based on whether or not the
    * selection box to plot in units of Hz is selected. If it is, this
@@ -142,6 +215,8 @@ public class NoisePanel extends ExperimentPanel {
     set = true;
 
     ((NoiseExperiment) expResult).setFreqSpace(freqSpaceBox.isSelected());
+    ((NoiseExperiment) expResult).setPlotCoherence(coherenceBox.isSelected());
+    expResult.setPSDBandsPerOctave(getSelectedBandsPerOctave(psdDisplaySelector));
     expResult.runExperimentOnData(dataStore);
 
     XYSeriesCollection timeseries = expResult.getData().get(0);
@@ -154,6 +229,20 @@ public class NoisePanel extends ExperimentPanel {
         seriesDashedSet.add(name);
       }
     }
+    if (expResult.getData().size() > 1) {
+      setCoherenceColors(expResult.getData().get(1));
+    }
+  }
+
+  /**
+   * Give each pair's coherence curve its own color
+   *
+   * @param coherence Coherence data from the noise experiment
+   */
+  void setCoherenceColors(XYSeriesCollection coherence) {
+    for (int i = 0; i < coherence.getSeriesCount(); ++i) {
+      seriesColorMap.put((String) coherence.getSeriesKey(i), COLORS[i % 3]);
+    }
   }
 
   void setTitle(XYPlot plot, String insetString) {
@@ -0,0 +1,145 @@
+package asl.sensor.gui;
+
+import asl.sensor.ExperimentFactory;
+import asl.sensor.experiment.PSDDistributionExperiment;
+import asl.sensor.input.DataStore;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import org.jfree.chart.annotations.XYTitleAnnotation;
+import org.jfree.chart.axis.LogarithmicAxis;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.title.TextTitle;
+import org.jfree.ui.RectangleAnchor;
+
+/**
+ * Panel for displaying the distribution of PSDs over a long record of data (the mode and
+ * percentiles of the PSD probability density function) against the noise models.
+ * Includes a checkbox to choose between frequency and interval x-axis.
+ */
+public class PSDDistributionPanel extends ExperimentPanel {
+
+  private static final long serialVersionUID = -2466415867362528513L;
+
+  private final JCheckBox freqSpaceBox;
+  private final NumberAxis freqAxis;
+
+  /**
+   * Constructs a new panel and lays out all the components in it
+   *
+   * @param experiment Enum to get relevant experiment backend from factory
+   */
+  public PSDDistributionPanel(ExperimentFactory experiment) {
+    super(experiment);
+
+    channelType[0] = "Input data, days to weeks long (RESP required)";
+
+    plotTheseInBold = new String[]{"NLNM", "NHNM", PSDDistributionExperiment.MODE};
+    seriesColorMap.put(PSDDistributionExperiment.MODE, COLORS[0]);
+    for (String percentile : PSDDistributionExperiment.PERCENTILE_NAMES) {
+      seriesColorMap.put(percentile, COLORS[1]);
+      seriesDashedSet.add(percentile);
+    }
+
+    xAxis = new LogarithmicAxis("Period (s)");
+    freqAxis = new LogarithmicAxis("Frequency (Hz)");
+    yAxis = new NumberAxis("Power (rel. 1 (m/s^2)^2/Hz)");
+    yAxis.setAutoRange(true);
+    ((NumberAxis) yAxis).setAutoRangeIncludesZero(false);
+    Font bold = xAxis.getLabelFont();
+    bold = bold.deriveFont(Font.BOLD, bold.getSize() + 2);
+    xAxis.setLabelFont(bold);
+    yAxis.setLabelFont(bold);
+    freqAxis.setLabelFont(bold);
+
+    freqSpaceBox = new JCheckBox("Use Hz units (requires regen)");
+    freqSpaceBox.setSelected(false);
+
+    applyAxesToChart(); // now that we've got axes defined
+
+    // set the GUI components
+    this.setLayout(new GridBagLayout());
+    GridBagConstraints constraints = new GridBagConstraints();
+
+    constraints.fill = GridBagConstraints.BOTH;
+    constraints.gridx = 0;
+    constraints.gridy = 0;
+    constraints.weightx = 1.0;
+    constraints.weighty = 1.0;
+    constraints.gridwidth = 3;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(chartPanel, constraints);
+
+    // place the other UI elements in a single row below the chart
+    constraints.gridwidth = 1;
+    constraints.weighty = 0.0;
+    constraints.weightx = 0.0;
+    constraints.anchor = GridBagConstraints.WEST;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridy += 1;
+    constraints.gridx = 0;
+    this.add(freqSpaceBox, constraints);
+
+    constraints.gridx += 1;
+    constraints.weightx = 1.0;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(save, constraints);
+
+    // add an empty panel as a spacer to keep the save button in the center
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridx += 1;
+    constraints.weightx = 0;
+    constraints.anchor = GridBagConstraints.WEST;
+    JPanel spacer = new JPanel();
+    spacer.setPreferredSize(freqSpaceBox.getPreferredSize());
+    this.add(spacer, constraints);
+  }
+
+  @Override
+  protected void drawCharts() {
+    setChart(expResult.getData().get(0));
+    setTitle(chart.getXYPlot(), expResult.getInsetStrings()[0]);
+    chartPanel.setChart(chart);
+    chartPanel.setMouseZoomable(true);
+  }
+
+  /**
+   * Gets the x-axis for this panel based on whether or not the
+   * selection box to plot in units of Hz is selected
+   */
+  @Override
+  public ValueAxis getXAxis() {
+    // true if using Hz units
+    if (freqSpaceBox.isSelected()) {
+      return freqAxis;
+    }
+    return xAxis;
+  }
+
+  @Override
+  public int panelsNeeded() {
+    return 1;
+  }
+
+  @Override
+  protected void updateData(final DataStore dataStore) {
+    set = true;
+    ((PSDDistributionExperiment) expResult).setFreqSpace(freqSpaceBox.isSelected());
+    expResult.runExperimentOnData(dataStore);
+  }
+
+  private void setTitle(XYPlot plot, String insetString) {
+    TextTitle result = getDefaultTextTitle();
+    result.setText(insetString);
+    XYTitleAnnotation title = new XYTitleAnnotation(0.98, 0.98, result,
+        RectangleAnchor.TOP_RIGHT);
+    plot.clearAnnotations();
+    plot.addAnnotation(title);
+  }
+
+}
@@ -4,6 +4,7 @@ import asl.sensor.ExperimentFactory;
 import asl.sensor.experiment.RandomizedExperiment;
 import asl.sensor.experiment.ResponseExperiment;
 import asl.sensor.input.DataStore;
+import asl.sensor.output.FitResultStore;
 import asl.sensor.utils.NumericUtils;
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -56,9 +57,11 @@ public class RandomizedPanel extends ExperimentPanel {
   private static final long serialVersionUID = -1791709117080520178L;
   private final JComboBox<String> plotSelection;
   private final JSpinner nyquistMultiplier;
+  private final JSpinner pointsPerDecade;
+  private final SolverBudgetPanel solverBudgetPanel;
   private ValueAxis degreeAxis, residualPhaseAxis, residualAmplitudeAxis, periodAxis,
       residualXAxis, residualPeriodAxis;
-  private JCheckBox lowFrequencyBox, showParams, frequencySpace;
+  private JCheckBox lowFrequencyBox, showParams, frequencySpace, warmStartBox;
   private JFreeChart magnitudeChart, argumentChart, residualAmplitudeChart, residualPhaseChart;
   public RandomizedPanel(ExperimentFactory experiment) {
     super(experiment);
@@ -72,6 +75,16 @@ public class RandomizedPanel extends ExperimentPanel {
     JPanel labelPanel = new JPanel();
     labelPanel.add(nyquistMultiplierLabel);
 
+    // 0 is used to fit over every frequency bin (i.e., no resampling)
+    spinModel = new SpinnerNumberModel(0, 0, 100, 1);
+    pointsPerDecade = new JSpinner(spinModel);
+    JLabel pointsPerDecadeLabel = new JLabel("Fit points per decade (0 = all)");
+    pointsPerDecadeLabel.setLabelFor(pointsPerDecade);
+    pointsPerDecadeLabel.setHorizontalTextPosition(SwingConstants.RIGHT);
+    pointsPerDecadeLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+
+    solverBudgetPanel = new SolverBudgetPanel();
+
     channelType[0] = "Calibration input";
     channelType[1] = "Calibration output from sensor (RESP required)";
 
@@ -111,6 +124,7 @@ public class RandomizedPanel extends ExperimentPanel {
     checkBoxPanel.add(lowFrequencyBox);
     checkBoxPanel.add(showParams);
     checkBoxPanel.add(frequencySpace);
+    checkBoxPanel.add(warmStartBox);
     this.add(checkBoxPanel, constraints);
 
     constraints.gridx += 1;
@@ -130,7 +144,16 @@ public class RandomizedPanel extends ExperimentPanel {
     nyquistLimitPanel.setLayout(new BoxLayout(nyquistLimitPanel, BoxLayout.X_AXIS));
     nyquistLimitPanel.add(nyquistMultiplier);
     nyquistLimitPanel.add(nyquistMultiplierLabel);
-    this.add(nyquistLimitPanel, constraints);
+    JPanel pointsPerDecadePanel = new JPanel();
+    pointsPerDecadePanel.setLayout(new BoxLayout(pointsPerDecadePanel, BoxLayout.X_AXIS));
+    pointsPerDecadePanel.add(pointsPerDecade);
+    pointsPerDecadePanel.add(pointsPerDecadeLabel);
+    JPanel solverOptionsPanel = new JPanel();
+    solverOptionsPanel.setLayout(new BoxLayout(solverOptionsPanel, BoxLayout.Y_AXIS));
+    solverOptionsPanel.add(nyquistLimitPanel);
+    solverOptionsPanel.add(pointsPerDecadePanel);
+    solverOptionsPanel.add(solverBudgetPanel);
+    this.add(solverOptionsPanel, constraints);
 
     constraints.fill = GridBagConstraints.NONE;
     constraints.gridy += 1;
@@ -396,6 +419,22 @@ public class RandomizedPanel extends ExperimentPanel {
     int iters = experiment.getIterations();
     result.append("Iteration count from solver: ");
     result.append(iters);
+    if (experiment.isWarmStarted()) {
+      result.append(" (started from previous fit)");
+    }
+    result.append("\n");
+
+    int fitPoints = experiment.getNumberOfFitPoints();
+    result.append("Frequency points used in fit: ");
+    result.append(fitPoints);
+    if (experiment.getPointsPerDecade() > 0) {
+      result.append(" (");
+      result.append(experiment.getPointsPerDecade());
+      result.append(" per decade)");
+    }
+    result.append("\n");
+
+    result.append(experiment.getSolverTelemetry());
     result.append("\n");
 
     result.append(super.getMetadataString());
@@ -499,6 +538,10 @@ public class RandomizedPanel extends ExperimentPanel {
 
     frequencySpace = new JCheckBox("Use Hz units (req. regen)");
     frequencySpace.setSelected(true);
+
+    warmStartBox = new JCheckBox("Start from previous fit");
+    warmStartBox.setToolTipText("Use the last fit of this sensor (or sensor model) as the "
+        + "solver's initial guess, and save the result for the next calibration");
   }
 
   @Override
@@ -546,6 +589,13 @@ public class RandomizedPanel extends ExperimentPanel {
     rndExp.setLowFrequencyCalibration(isLowFreq);
     rndExp.setPlotUsingHz(frequencySpace.isSelected());
     rndExp.setNyquistMultiplier(multiplier);
+    rndExp.setPointsPerDecade((int) pointsPerDecade.getValue());
+    rndExp.setSolverBudget(solverBudgetPanel.getBudget());
+    if (warmStartBox.isSelected()) {
+      rndExp.setFitResultStore(FitResultStore.getDefaultStore());
+    } else {
+      rndExp.setFitResultStore(null);
+    }
     expResult.runExperimentOnData(dataStore);
 
     String appendFreqTitle;
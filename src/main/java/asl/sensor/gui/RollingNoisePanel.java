@@ -0,0 +1,166 @@
+package asl.sensor.gui;
+
+import asl.sensor.ExperimentFactory;
+import asl.sensor.experiment.RollingNoiseExperiment;
+import asl.sensor.input.DataStore;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import org.jfree.chart.annotations.XYTitleAnnotation;
+import org.jfree.chart.axis.LogarithmicAxis;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.title.TextTitle;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.ui.RectangleAnchor;
+
+/**
+ * Panel for displaying the results of the rolling self-noise experiment, which plots the median
+ * (solid) and 5th and 95th percentiles (dashed) of each sensor's noise over windows of a long
+ * record. Includes a checkbox to choose between frequency and interval x-axis and a selector for
+ * the length of the windows.
+ */
+public class RollingNoisePanel extends ExperimentPanel {
+
+  private static final long serialVersionUID = -1795460915440381577L;
+
+  private static final String[] WINDOW_LENGTH_NAMES =
+      {"1-hour windows", "2-hour windows", "4-hour windows", "6-hour windows", "12-hour windows"};
+  private static final long[] WINDOW_LENGTHS = {3600L * 1000L, 2L * 3600L * 1000L,
+      4L * 3600L * 1000L, 6L * 3600L * 1000L, 12L * 3600L * 1000L};
+
+  private final JCheckBox freqSpaceBox;
+  private final JComboBox<String> windowLengthSelector;
+  private final NumberAxis freqAxis;
+
+  /**
+   * Constructs a new panel and lays out all the components in it
+   *
+   * @param experiment Enum to get relevant experiment backend from factory
+   */
+  public RollingNoisePanel(ExperimentFactory experiment) {
+    super(experiment);
+
+    for (int i = 0; i < 3; ++i) {
+      channelType[i] = "Input data, days long (RESP required)";
+    }
+
+    plotTheseInBold = new String[]{"NLNM", "NHNM"};
+
+    xAxis = new LogarithmicAxis("Period (s)");
+    freqAxis = new LogarithmicAxis("Frequency (Hz)");
+    yAxis = new NumberAxis("Power (rel. 1 (m/s^2)^2/Hz)");
+    yAxis.setAutoRange(true);
+    ((NumberAxis) yAxis).setAutoRangeIncludesZero(false);
+    Font bold = xAxis.getLabelFont();
+    bold = bold.deriveFont(Font.BOLD, bold.getSize() + 2);
+    xAxis.setLabelFont(bold);
+    yAxis.setLabelFont(bold);
+    freqAxis.setLabelFont(bold);
+
+    freqSpaceBox = new JCheckBox("Use Hz units (requires regen)");
+    freqSpaceBox.setSelected(false);
+
+    windowLengthSelector = new JComboBox<>(WINDOW_LENGTH_NAMES);
+    for (int i = 0; i < WINDOW_LENGTHS.length; ++i) {
+      if (WINDOW_LENGTHS[i] == RollingNoiseExperiment.DEFAULT_WINDOW_LENGTH) {
+        windowLengthSelector.setSelectedIndex(i);
+      }
+    }
+
+    applyAxesToChart(); // now that we've got axes defined
+
+    // set the GUI components
+    this.setLayout(new GridBagLayout());
+    GridBagConstraints constraints = new GridBagConstraints();
+
+    constraints.fill = GridBagConstraints.BOTH;
+    constraints.gridx = 0;
+    constraints.gridy = 0;
+    constraints.weightx = 1.0;
+    constraints.weighty = 1.0;
+    constraints.gridwidth = 3;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(chartPanel, constraints);
+
+    // place the other UI elements in a single row below the chart
+    constraints.gridwidth = 1;
+    constraints.weighty = 0.0;
+    constraints.weightx = 0.0;
+    constraints.anchor = GridBagConstraints.WEST;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridy += 1;
+    constraints.gridx = 0;
+    this.add(freqSpaceBox, constraints);
+
+    constraints.gridx += 1;
+    constraints.weightx = 1.0;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(save, constraints);
+
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridx += 1;
+    constraints.weightx = 0;
+    constraints.anchor = GridBagConstraints.WEST;
+    this.add(windowLengthSelector, constraints);
+  }
+
+  @Override
+  protected void drawCharts() {
+    setChart(expResult.getData().get(0));
+    setTitle(chart.getXYPlot(), expResult.getInsetStrings()[0]);
+    chartPanel.setChart(chart);
+    chartPanel.setMouseZoomable(true);
+  }
+
+  /**
+   * Gets the x-axis for this panel based on whether or not the
+   * selection box to plot in units of Hz is selected
+   */
+  @Override
+  public ValueAxis getXAxis() {
+    // true if using Hz units
+    if (freqSpaceBox.isSelected()) {
+      return freqAxis;
+    }
+    return xAxis;
+  }
+
+  @Override
+  public int panelsNeeded() {
+    return 3;
+  }
+
+  @Override
+  protected void updateData(final DataStore dataStore) {
+    set = true;
+    RollingNoiseExperiment experiment = (RollingNoiseExperiment) expResult;
+    experiment.setFreqSpace(freqSpaceBox.isSelected());
+    experiment.setWindowLength(WINDOW_LENGTHS[windowLengthSelector.getSelectedIndex()]);
+    expResult.runExperimentOnData(dataStore);
+
+    // each sensor's percentiles share its color, with the median solid and the others dashed
+    XYSeriesCollection noise = expResult.getData().get(0);
+    for (int i = 0; i < noise.getSeriesCount() - 2; ++i) {
+      String name = (String) noise.getSeriesKey(i);
+      seriesColorMap.put(name, COLORS[(i / 3) % 3]);
+      if (!name.startsWith("Median")) {
+        seriesDashedSet.add(name);
+      }
+    }
+  }
+
+  private void setTitle(XYPlot plot, String insetString) {
+    TextTitle result = getDefaultTextTitle();
+    result.setText(insetString);
+    XYTitleAnnotation title = new XYTitleAnnotation(0.98, 0.98, result,
+        RectangleAnchor.TOP_RIGHT);
+    plot.clearAnnotations();
+    plot.addAnnotation(title);
+  }
+
+}
@@ -0,0 +1,73 @@
+package asl.sensor.gui;
+
+import asl.sensor.experiment.SolverBudget;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingConstants;
+
+/**
+ * Small panel of spinners used to set limits on how long an experiment's solver may run: maximum
+ * time in seconds, maximum iterations, and maximum function evaluations. A value of 0 means the
+ * corresponding limit is not enforced, which is the default for all three.
+ */
+class SolverBudgetPanel extends JPanel {
+
+  private static final long serialVersionUID = 4519216387441907734L;
+
+  private final JSpinner maxSeconds;
+  private final JSpinner maxIterations;
+  private final JSpinner maxEvaluations;
+
+  SolverBudgetPanel() {
+    maxSeconds = new JSpinner(new SpinnerNumberModel(0, 0, 86400, 10));
+    maxIterations = new JSpinner(new SpinnerNumberModel(0, 0, 1000000, 10));
+    maxEvaluations = new JSpinner(new SpinnerNumberModel(0, 0, 1000000, 10));
+
+    this.setLayout(new GridBagLayout());
+    GridBagConstraints constraints = new GridBagConstraints();
+    constraints.gridx = 0;
+    constraints.gridy = 0;
+    constraints.anchor = GridBagConstraints.LINE_START;
+    this.add(buildLabel("Solver max time (s, 0 = none)", maxSeconds), constraints);
+    constraints.gridx += 1;
+    this.add(maxSeconds, constraints);
+
+    constraints.gridx = 0;
+    constraints.gridy += 1;
+    this.add(buildLabel("Max iterations (0 = none)", maxIterations), constraints);
+    constraints.gridx += 1;
+    this.add(maxIterations, constraints);
+
+    constraints.gridx = 0;
+    constraints.gridy += 1;
+    this.add(buildLabel("Max evaluations (0 = none)", maxEvaluations), constraints);
+    constraints.gridx += 1;
+    this.add(maxEvaluations, constraints);
+
+    this.setToolTipText("When a limit is reached the solver stops and uses the best fit so far");
+  }
+
+  private static JLabel buildLabel(String text, JSpinner spinner) {
+    JLabel label = new JLabel(text);
+    label.setLabelFor(spinner);
+    label.setHorizontalTextPosition(SwingConstants.RIGHT);
+    label.setHorizontalAlignment(SwingConstants.RIGHT);
+    return label;
+  }
+
+  /**
+   * Get the budget set by the spinners in this panel
+   *
+   * @return Solver budget to give to the experiment
+   */
+  SolverBudget getBudget() {
+    long millis = 1000L * (int) maxSeconds.getValue();
+    return new SolverBudget(millis, (int) maxIterations.getValue(),
+        (int) maxEvaluations.getValue());
+  }
+
+}
@@ -0,0 +1,238 @@
+package asl.sensor.gui;
+
+import asl.sensor.ExperimentFactory;
+import asl.sensor.experiment.SpectrogramExperiment;
+import asl.sensor.input.DataStore;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.annotations.XYTitleAnnotation;
+import org.jfree.chart.axis.AxisLocation;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.axis.LogarithmicAxis;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.LookupPaintScale;
+import org.jfree.chart.title.PaintScaleLegend;
+import org.jfree.chart.title.TextTitle;
+import org.jfree.data.xy.DefaultXYZDataset;
+import org.jfree.ui.RectangleAnchor;
+import org.jfree.ui.RectangleEdge;
+
+/**
+ * Panel for displaying the spectrogram of a long record of data as a heat map, with time on the
+ * x-axis, period (or frequency) on the y-axis, and the power of each frame's PSD in each band
+ * shown by color. Includes a checkbox to choose between frequency and interval y-axis and a
+ * selector for the length of the frames.
+ */
+public class SpectrogramPanel extends ExperimentPanel {
+
+  private static final long serialVersionUID = 6160383254412883537L;
+
+  private static final String[] FRAME_LENGTH_NAMES =
+      {"5-minute frames", "10-minute frames", "30-minute frames", "1-hour frames"};
+  private static final long[] FRAME_LENGTHS = {300L * 1000L, 600L * 1000L, 1800L * 1000L,
+      3600L * 1000L};
+  // points along the color scale, from low to high power (similar to the viridis color map)
+  private static final Color[] SCALE_COLORS = {new Color(68, 1, 84), new Color(59, 82, 139),
+      new Color(33, 145, 140), new Color(94, 201, 98), new Color(253, 231, 37)};
+  private static final int SCALE_STEPS = 64;
+
+  private final JCheckBox freqSpaceBox;
+  private final JComboBox<String> frameLengthSelector;
+  private final NumberAxis freqAxis;
+
+  /**
+   * Constructs a new panel and lays out all the components in it
+   *
+   * @param experiment Enum to get relevant experiment backend from factory
+   */
+  public SpectrogramPanel(ExperimentFactory experiment) {
+    super(experiment);
+
+    channelType[0] = "Input data, hours to weeks long (RESP required)";
+
+    xAxis = new DateAxis("Time (UTC)");
+    ((DateAxis) xAxis).setDateFormatOverride(ExperimentPanel.DATE_TIME_FORMAT.get());
+    yAxis = new LogarithmicAxis("Period (s)");
+    freqAxis = new LogarithmicAxis("Frequency (Hz)");
+    Font bold = xAxis.getLabelFont();
+    bold = bold.deriveFont(Font.BOLD, bold.getSize() + 2);
+    xAxis.setLabelFont(bold);
+    yAxis.setLabelFont(bold);
+    freqAxis.setLabelFont(bold);
+
+    freqSpaceBox = new JCheckBox("Use Hz units (requires regen)");
+    freqSpaceBox.setSelected(false);
+
+    frameLengthSelector = new JComboBox<>(FRAME_LENGTH_NAMES);
+    for (int i = 0; i < FRAME_LENGTHS.length; ++i) {
+      if (FRAME_LENGTHS[i] == SpectrogramExperiment.DEFAULT_FRAME_LENGTH) {
+        frameLengthSelector.setSelectedIndex(i);
+      }
+    }
+
+    applyAxesToChart(); // now that we've got axes defined
+
+    // set the GUI components
+    this.setLayout(new GridBagLayout());
+    GridBagConstraints constraints = new GridBagConstraints();
+
+    constraints.fill = GridBagConstraints.BOTH;
+    constraints.gridx = 0;
+    constraints.gridy = 0;
+    constraints.weightx = 1.0;
+    constraints.weighty = 1.0;
+    constraints.gridwidth = 3;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(chartPanel, constraints);
+
+    // place the other UI elements in a single row below the chart
+    constraints.gridwidth = 1;
+    constraints.weighty = 0.0;
+    constraints.weightx = 0.0;
+    constraints.anchor = GridBagConstraints.WEST;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridy += 1;
+    constraints.gridx = 0;
+    this.add(freqSpaceBox, constraints);
+
+    constraints.gridx += 1;
+    constraints.weightx = 1.0;
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.anchor = GridBagConstraints.CENTER;
+    this.add(save, constraints);
+
+    constraints.fill = GridBagConstraints.NONE;
+    constraints.gridx += 1;
+    constraints.weightx = 0;
+    constraints.anchor = GridBagConstraints.WEST;
+    this.add(frameLengthSelector, constraints);
+  }
+
+  @Override
+  protected void drawCharts() {
+    SpectrogramExperiment experiment = (SpectrogramExperiment) expResult;
+    double[] bandFrequencies = experiment.getBandFrequencies();
+    long[] frameStartTimes = experiment.getFrameStartTimes();
+    float[][] power = experiment.getPowerMatrix();
+    boolean freqSpace = freqSpaceBox.isSelected();
+
+    // one block per frame and band, drawn at the center of the frame
+    int blockCount = frameStartTimes.length * bandFrequencies.length;
+    double[] times = new double[blockCount];
+    double[] yValues = new double[blockCount];
+    double[] decibels = new double[blockCount];
+    double lowest = Double.POSITIVE_INFINITY;
+    double highest = Double.NEGATIVE_INFINITY;
+    int block = 0;
+    for (int frame = 0; frame < frameStartTimes.length; ++frame) {
+      for (int band = 0; band < bandFrequencies.length; ++band) {
+        times[block] = frameStartTimes[frame] + experiment.getFrameStep();
+        yValues[block] = freqSpace ? bandFrequencies[band] : 1 / bandFrequencies[band];
+        decibels[block] = power[frame][band];
+        if (Double.isFinite(decibels[block])) {
+          lowest = Math.min(lowest, decibels[block]);
+          highest = Math.max(highest, decibels[block]);
+        }
+        ++block;
+      }
+    }
+    if (!(lowest < highest)) {
+      // no data, or all the same power; the scale still needs a range
+      lowest = Double.isFinite(lowest) ? lowest - 1 : 0.;
+      highest = lowest + 2;
+    }
+
+    DefaultXYZDataset dataset = new DefaultXYZDataset();
+    dataset.addSeries("Power", new double[][]{times, yValues, decibels});
+    LookupPaintScale scale = getPaintScale(lowest, highest);
+    LogBlockRenderer renderer =
+        new LogBlockRenderer(Math.pow(2., 1. / experiment.getBandsPerOctave()));
+    renderer.setBlockWidth(experiment.getFrameStep());
+    renderer.setPaintScale(scale);
+
+    XYPlot plot = new XYPlot(dataset, getXAxis(), getYAxis(), renderer);
+    plot.setBackgroundPaint(Color.LIGHT_GRAY);
+    chart = new JFreeChart(expType.getName(), JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+
+    NumberAxis scaleAxis = new NumberAxis("Power (rel. 1 (m/s^2)^2/Hz)");
+    scaleAxis.setRange(lowest, highest);
+    PaintScaleLegend legend = new PaintScaleLegend(scale, scaleAxis);
+    legend.setPosition(RectangleEdge.RIGHT);
+    legend.setMargin(4, 4, 40, 4);
+    legend.setAxisLocation(AxisLocation.TOP_OR_RIGHT);
+    chart.addSubtitle(legend);
+
+    setTitle(plot, expResult.getInsetStrings()[0]);
+    chartPanel.setChart(chart);
+    chartPanel.setMouseZoomable(true);
+  }
+
+  /**
+   * Build a color scale over the given range of power by interpolating between the scale colors
+   *
+   * @param lowest Lowest power (dB), shown in the first color
+   * @param highest Highest power (dB), shown in the last color
+   * @return Paint scale for the spectrogram blocks
+   */
+  private static LookupPaintScale getPaintScale(double lowest, double highest) {
+    LookupPaintScale scale = new LookupPaintScale(lowest, highest, SCALE_COLORS[0]);
+    int segments = SCALE_COLORS.length - 1;
+    for (int step = 0; step < SCALE_STEPS; ++step) {
+      double position = step / (double) (SCALE_STEPS - 1);
+      int segment = Math.min(segments - 1, (int) (position * segments));
+      double fraction = position * segments - segment;
+      Color low = SCALE_COLORS[segment];
+      Color high = SCALE_COLORS[segment + 1];
+      Color color = new Color(
+          (int) Math.round(low.getRed() + fraction * (high.getRed() - low.getRed())),
+          (int) Math.round(low.getGreen() + fraction * (high.getGreen() - low.getGreen())),
+          (int) Math.round(low.getBlue() + fraction * (high.getBlue() - low.getBlue())));
+      scale.add(lowest + (highest - lowest) * step / SCALE_STEPS, color);
+    }
+    return scale;
+  }
+
+  /**
+   * Gets the y-axis for this panel based on whether or not the
+   * selection box to plot in units of Hz is selected
+   */
+  @Override
+  public ValueAxis getYAxis() {
+    // true if using Hz units
+    if (freqSpaceBox.isSelected()) {
+      return freqAxis;
+    }
+    return yAxis;
+  }
+
+  @Override
+  public int panelsNeeded() {
+    return 1;
+  }
+
+  @Override
+  protected void updateData(final DataStore dataStore) {
+    set = true;
+    SpectrogramExperiment experiment = (SpectrogramExperiment) expResult;
+    experiment.setFreqSpace(freqSpaceBox.isSelected());
+    experiment.setFrameLength(FRAME_LENGTHS[frameLengthSelector.getSelectedIndex()]);
+    expResult.runExperimentOnData(dataStore);
+  }
+
+  private void setTitle(XYPlot plot, String insetString) {
+    TextTitle result = getDefaultTextTitle();
+    result.setText(insetString);
+    XYTitleAnnotation title = new XYTitleAnnotation(0.98, 0.98, result,
+        RectangleAnchor.TOP_RIGHT);
+    plot.clearAnnotations();
+    plot.addAnnotation(title);
+  }
+
+}
@@ -8,7 +8,7 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import javax.swing.JCheckBox;
-import javax.swing.JPanel;
+import javax.swing.JComboBox;
 import org.jfree.chart.annotations.XYTitleAnnotation;
 import org.jfree.chart.axis.LogarithmicAxis;
 import org.jfree.chart.axis.NumberAxis;
@@ -31,6 +31,7 @@ public class SpectrumPanel extends ExperimentPanel {
   private static final long serialVersionUID = 9018553361096758354L;
 
   private final JCheckBox freqSpaceBox;
+  private final JComboBox<String> psdDisplaySelector;
   private final NumberAxis freqAxis;
   private int plotCount;
 
@@ -62,6 +63,8 @@ public class SpectrumPanel extends ExperimentPanel {
     freqSpaceBox = new JCheckBox("Use Hz units (requires regen)");
     freqSpaceBox.setSelected(false);
 
+    psdDisplaySelector = createPSDDisplaySelector();
+
     applyAxesToChart(); // now that we've got axes defined
 
     // set the GUI components
@@ -93,14 +96,12 @@ public class SpectrumPanel extends ExperimentPanel {
     constraints.anchor = GridBagConstraints.CENTER;
     this.add(save, constraints);
 
-    // add an empty panel as a spacer to keep the save button in the center
+    // PSD display options on the right, which also keeps the save button in the center
     constraints.fill = GridBagConstraints.NONE;
     constraints.gridx += 1;
     constraints.weightx = 0;
     constraints.anchor = GridBagConstraints.WEST;
-    JPanel spacer = new JPanel();
-    spacer.setPreferredSize(freqSpaceBox.getPreferredSize());
-    this.add(spacer, constraints);
+    this.add(psdDisplaySelector, constraints);
   }
 
   @Override
@@ -151,6 +152,7 @@ public class SpectrumPanel extends ExperimentPanel {
     }
 
     ((SpectrumExperiment) expResult).setFreqSpace(freqSpaceBox.isSelected());
+    expResult.setPSDBandsPerOctave(getSelectedBandsPerOctave(psdDisplaySelector));
     expResult.runExperimentOnData(dataStore);
 
     XYSeriesCollection timeseries = expResult.getData().get(0);
@@ -3,10 +3,13 @@ package asl.sensor.gui;
 import asl.sensor.ExperimentFactory;
 import asl.sensor.experiment.StepExperiment;
 import asl.sensor.input.DataStore;
+import asl.sensor.output.FitResultStore;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
+import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JPanel;
 import org.jfree.chart.JFreeChart;
@@ -35,6 +38,10 @@ public class StepPanel extends ExperimentPanel {
   private static final long serialVersionUID = 3693391540945130688L;
   private static final int TITLE_IDX = 0;
   private final JComboBox<String> plotSelection;
+  private final JCheckBox warmStartBox;
+  private final JCheckBox analyticJacobianBox;
+  private final JCheckBox gridSearchBox;
+  private final SolverBudgetPanel solverBudgetPanel;
   private final ValueAxis freqAxis;
   private final ValueAxis magAxis;
   private final ValueAxis phaseAxis;
@@ -94,10 +101,23 @@ public class StepPanel extends ExperimentPanel {
     constraints.anchor = GridBagConstraints.CENTER;
     this.add(chartPanel, constraints);
 
-    // add empty space on left side to space out other components
+    // option on left side also spaces out other components
+    warmStartBox = new JCheckBox("Start from previous fit");
+    warmStartBox.setToolTipText("Use the last fit of this sensor (or sensor model) as the "
+        + "solver's initial guess, and save the result for the next calibration");
+    analyticJacobianBox = new JCheckBox("Use analytic derivatives");
+    analyticJacobianBox.setToolTipText("Calculate the solver's derivatives exactly rather than "
+        + "by forward differences, which needs a third of the deconvolutions per evaluation");
+    gridSearchBox = new JCheckBox("Search grid for initial guess");
+    gridSearchBox.setToolTipText("Find the solver's initial corner and damping from a coarse "
+        + "grid search on decimated data instead of the RESP (useful if the RESP may be wrong)");
+    solverBudgetPanel = new SolverBudgetPanel();
     JPanel space = new JPanel();
-    space.setMaximumSize(plotSelection.getMaximumSize());
-    space.setPreferredSize(plotSelection.getPreferredSize());
+    space.setLayout(new BoxLayout(space, BoxLayout.Y_AXIS));
+    space.add(warmStartBox);
+    space.add(analyticJacobianBox);
+    space.add(gridSearchBox);
+    space.add(solverBudgetPanel);
     constraints.weighty = 0.0;
     constraints.weightx = 1.0;
     constraints.fill = GridBagConstraints.BOTH;
@@ -179,6 +199,11 @@ public class StepPanel extends ExperimentPanel {
     sb.append("\nFit:  ");
     sb.append(residuals[1]);
     sb.append('\n');
+    if (experiment.isWarmStarted()) {
+      sb.append("Solver started from previous fit\n");
+    }
+    sb.append(experiment.getSolverTelemetry());
+    sb.append('\n');
     sb.append(super.getMetadataString());
     return sb.toString();
   }
@@ -235,6 +260,15 @@ public class StepPanel extends ExperimentPanel {
 
     set = true;
 
+    StepExperiment stepExperiment = (StepExperiment) expResult;
+    if (warmStartBox.isSelected()) {
+      stepExperiment.setFitResultStore(FitResultStore.getDefaultStore());
+    } else {
+      stepExperiment.setFitResultStore(null);
+    }
+    stepExperiment.setAnalyticJacobian(analyticJacobianBox.isSelected());
+    stepExperiment.setGridSearch(gridSearchBox.isSelected());
+    stepExperiment.setSolverBudget(solverBudgetPanel.getBudget());
     expResult.runExperimentOnData(dataStore);
 
     XYSeriesCollection stepData = expResult.getData().get(0);
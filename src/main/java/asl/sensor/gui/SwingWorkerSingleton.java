@@ -1,6 +1,7 @@
 package asl.sensor.gui;
 
 import asl.sensor.input.DataStore;
+import asl.sensor.utils.CancellationToken;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import javax.swing.SwingWorker;
@@ -17,6 +18,8 @@ public class SwingWorkerSingleton {
 
   private static SwingWorker<Boolean, Void> worker;
   private static ExperimentPanel epHandle;
+  // used to stop the worker's calculation, including any parts of it running in other threads
+  private static CancellationToken token;
 
   private SwingWorkerSingleton() {
     // empty constructor; worker is built when experiment is passed into it
@@ -48,6 +51,7 @@ public class SwingWorkerSingleton {
       // the result won't actually complete, so we should make it clear that
       // other panel was cancelled, and thus clear the chart / unset data
       if (!worker.isDone()) {
+        token.cancel(); // stop the calculation at its next check, wherever it is running
         try {
           worker.cancel(true); // cancel worker, set it to the new task
         } catch (CancellationException ignore) {
@@ -58,10 +62,13 @@ public class SwingWorkerSingleton {
     epHandle = active;
     epHandle.clearChartAndSetProgressData();
 
+    final CancellationToken workerToken = new CancellationToken();
+    token = workerToken;
     worker = new SwingWorker<Boolean, Void>() {
       @Override
       protected Boolean doInBackground() {
-        epHandle.updateData(ds);
+        // experiments run by the panel pick up the token as the current thread's token
+        workerToken.run(() -> epHandle.updateData(ds));
         // calculate backend and get chart, insets to show
         return epHandle.set;
       }
@@ -111,6 +118,8 @@ public class SwingWorkerSingleton {
           }
           epHandle.displayErrorMessage(text.toString());
           cause.printStackTrace();
+        } catch (CancellationException ex) {
+          // this worker was replaced by a newer one, which now owns the panel handle
         } catch (InterruptedException ex) {
           String text;
           if (ex.getMessage() == null) {
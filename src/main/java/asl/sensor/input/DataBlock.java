@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import org.apache.commons.math3.util.Pair;
 import org.jfree.data.xy.XYSeries;
+import asl.sensor.utils.StageProfiler;
 import asl.sensor.utils.TimeSeriesUtils;
 import edu.iris.dmc.seedcodec.CodecException;
 import edu.sc.seis.seisFile.mseed.SeedFormatException;
@@ -58,24 +59,29 @@ public class DataBlock {
   private boolean rebuildList;
 
   /**
-   * Creates a copy of a given DataBlock, which has the same parameters
+   * Creates a copy of a given DataBlock, which has the same parameters.
+   * The copy shares the loaded records and any already-built time series with the original
+   * rather than copying them, so this takes the same time however much data is loaded. Neither
+   * the records nor the built series are ever modified in place: trimming or resampling either
+   * block only changes that block's window, and the next call to {@link #getData()} builds a new
+   * array for it, leaving the other's data as it was.
    *
    * @param in The datablock to be copied
    */
   public DataBlock(DataBlock in) {
 
     interval = in.getInitialInterval();
-    targetInterval = in.getInterval();
-    dataMap = in.getDataMap();
     name = in.getName();
-    startTime = in.getInitialStartTime();
-    trimmedStart = in.getStartTime();
-    endTime = in.getInitialEndTime();
-    trimmedEnd = in.getEndTime();
-
-    cachedTimeSeries = in.getData().clone();
-    //Set to false, as it was just rebuilt in getData()
-    rebuildList = false;
+    synchronized (in) {
+      targetInterval = in.targetInterval;
+      dataMap = in.dataMap;
+      startTime = in.startTime;
+      trimmedStart = in.trimmedStart;
+      endTime = in.endTime;
+      trimmedEnd = in.trimmedEnd;
+      cachedTimeSeries = in.cachedTimeSeries;
+      rebuildList = in.rebuildList;
+    }
 
   }
 
@@ -133,24 +139,74 @@ public class DataBlock {
    * It is not recommended to trim data to a region including these gaps because
    * they can produce undesired behavior in the results of experiments. If the
    * data time range needs to be reduce it will also perform decimation.
+   * The returned array may be shared with copies of this block (and with other
+   * calculations using them), so it must not be modified; callers that need to
+   * change the data should work on a copy of it.
    *
    * @return Array representing the data found within a given time range
    */
-  public double[] getData() {
+  public synchronized double[] getData() {
 
     if (!rebuildList) {
       return cachedTimeSeries;
     }
 
+    StageProfiler.Span span = StageProfiler.stage("Loading data");
+    try {
+      return rebuildTimeSeries();
+    } finally {
+      span.close();
+    }
+  }
+
+  /**
+   * Construct an array representing the data in part of the loaded records, as in
+   * {@link #getData()}, but without caching it or changing the current time window. This allows
+   * long records to be processed a piece at a time (i.e., for spectrograms over weeks of data)
+   * without holding the whole time series in memory alongside the records. Gaps are filled with
+   * zeros, and the data is decimated to the current sample interval if needed. As the decimation
+   * filter is applied only over the requested range, the samples near its ends may differ
+   * slightly from those of the full time series.
+   * Since this only reads the records, it can be called from multiple threads at once.
+   *
+   * @param from Start of the range (ms from epoch)
+   * @param to End of the range (ms from epoch), exclusive
+   * @return Array of data over that range
+   */
+  public double[] getData(long from, long to) {
+    return assembleTimeSeries(from, to);
+  }
+
+  /**
+   * Assemble the continuous data in the trimmed range from the loaded records (filling gaps with
+   * zeros) and resample it to the target interval, caching the result
+   *
+   * @return Data in the trimmed time range
+   */
+  private double[] rebuildTimeSeries() {
+    cachedTimeSeries = assembleTimeSeries(trimmedStart, trimmedEnd);
+    rebuildList = false;
+    return cachedTimeSeries;
+  }
+
+  /**
+   * Assemble the continuous data in the given range from the loaded records (filling gaps with
+   * zeros) and resample it to the target interval
+   *
+   * @param rangeStart Start of the range (ms from epoch)
+   * @param rangeEnd End of the range (ms from epoch)
+   * @return Data in the range
+   */
+  private double[] assembleTimeSeries(long rangeStart, long rangeEnd) {
     List<Long> times = new ArrayList<>(dataMap.keySet());
     Collections.sort(times);
 
-    long timeCursor = trimmedStart;
+    long timeCursor = rangeStart;
 
     int numPoints =
-        (int) Math.ceil((trimmedEnd - trimmedStart) / ((double) interval));
+        (int) Math.ceil((rangeEnd - rangeStart) / ((double) interval));
 
-    cachedTimeSeries = new double[numPoints];
+    double[] timeSeries = new double[numPoints];
     int lastFilledIndex = 0;
 
     for (int i = 0; i < times.size(); ++i) {
@@ -197,16 +253,16 @@ public class DataBlock {
         end = Math.min(data.length, end);
         double[] sublist = Arrays.copyOfRange(data, startIndex, end);
         for (int j = 0; j < sublist.length; ++j, ++lastFilledIndex) {
-          cachedTimeSeries[lastFilledIndex] = sublist[j];
+          timeSeries[lastFilledIndex] = sublist[j];
         }
 
       }
 
-      timeCursor = trimmedStart + (interval * lastFilledIndex);
+      timeCursor = rangeStart + (interval * lastFilledIndex);
       if (next - timeCursor > (interval * 2)) {
         // deal with any gaps between two parts of the list
         while (timeCursor < next && lastFilledIndex < numPoints) {
-          cachedTimeSeries[lastFilledIndex] = 0.;
+          timeSeries[lastFilledIndex] = 0.;
           ++lastFilledIndex;
           timeCursor += interval;
         }
@@ -214,23 +270,22 @@ public class DataBlock {
     }
 
     while (lastFilledIndex < numPoints) {
-      cachedTimeSeries[lastFilledIndex] = 0.;
+      timeSeries[lastFilledIndex] = 0.;
       ++lastFilledIndex;
     }
 
     if (interval != targetInterval) {
-      cachedTimeSeries =
-          TimeSeriesUtils.decimate(cachedTimeSeries, interval, targetInterval);
+      timeSeries =
+          TimeSeriesUtils.decimate(timeSeries, interval, targetInterval);
       // prevent issues cause by rounding of time series length after downsampling
       int finalNumPoints =
-          (int) Math.ceil((trimmedEnd - trimmedStart) / ((double) targetInterval));
-      if (finalNumPoints < cachedTimeSeries.length) {
-        cachedTimeSeries = Arrays.copyOfRange(cachedTimeSeries, 0, finalNumPoints);
+          (int) Math.ceil((rangeEnd - rangeStart) / ((double) targetInterval));
+      if (finalNumPoints < timeSeries.length) {
+        timeSeries = Arrays.copyOfRange(timeSeries, 0, finalNumPoints);
       }
     }
 
-    rebuildList = false;
-    return cachedTimeSeries;
+    return timeSeries;
   }
 
   /**
@@ -503,7 +558,7 @@ public class DataBlock {
    *
    * @param newInterval The new interval (time between samples in milliseconds)
    */
-  public void resample(long newInterval) {
+  public synchronized void resample(long newInterval) {
     targetInterval = Math.max(interval, newInterval);
     rebuildList = rebuildList || (targetInterval != interval);
   }
@@ -553,7 +608,7 @@ public class DataBlock {
    * @param start Start time to trim window to in milliseconds from epoch
    * @param end End time to trim window to in milliseconds from epoch
    */
-  public void trim(long start, long end) {
+  public synchronized void trim(long start, long end) {
 
     long temp = Math.min(start, end);
     end = Math.max(start, end);
@@ -569,7 +624,7 @@ public class DataBlock {
   /**
    * Reset data window to entire region specified by underlying datamap.
    */
-  public void untrim() {
+  public synchronized void untrim() {
     boolean regen = (trimmedStart != startTime) || (trimmedEnd != endTime);
     trimmedStart = startTime;
     trimmedEnd = endTime;
@@ -593,6 +648,8 @@ public class DataBlock {
       throws IOException, SeedFormatException, CodecException {
     Map<Long, double[]> toAppend =
         TimeSeriesUtils.getTimeSeriesMap(filepath, name).getSecond();
+    // the current map may be shared with copies of this block, so add to a new one
+    dataMap = new LinkedHashMap<>(dataMap);
     dataMap.putAll(toAppend);
     mergeContiguousTimes();
     recalculateTimes();
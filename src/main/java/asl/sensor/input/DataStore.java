@@ -66,7 +66,12 @@ public class DataStore {
 
 
   /**
-   * Create a copy of the current datastore
+   * Create a copy of the current datastore. The copy's data blocks share their
+   * loaded data with the original's (see {@link DataBlock#DataBlock(DataBlock)}),
+   * so making a copy takes the same time however much data is loaded, while
+   * trimming or resampling either store leaves the other's data unchanged.
+   * This makes copies suitable as snapshots of the data to hand to experiments,
+   * several of which can read the same snapshot at once.
    *
    * @param ds datastore to copy
    */
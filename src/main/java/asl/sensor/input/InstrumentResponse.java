@@ -761,6 +761,17 @@ public class InstrumentResponse {
     return out;
   }
 
+  /**
+   * Replace the current zeros of this response with new ones from a list
+   *
+   * @param zeroList List of zeros to replace the current response zeros with (repeated zeros listed
+   * the number of times they appear)
+   */
+  public void setZeros(List<Complex> zeroList) {
+    Complex[] zeroArr = zeroList.toArray(new Complex[]{});
+    setZerosFromComplex(zeroArr);
+  }
+
   private List<Pair<Complex, Integer>> getZerosList() {
     return zeros;
   }
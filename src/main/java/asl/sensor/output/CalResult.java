@@ -1,5 +1,6 @@
 package asl.sensor.output;
 
+import asl.sensor.experiment.SolverTelemetry;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,6 +14,9 @@ import java.util.Map;
  * returned by a randomized cal experiment).
  * Implementing classes don't need to add additional functions but must populate the maps with
  * actual data to be returned, which varies in content depending on the type of calibration done.
+ * Results from least-squares solvers may also include the solver's telemetry (iteration counts,
+ * timing, and the reason the solver stopped); the convergence reason is kept in a third map of
+ * text values.
  * This class is not useful for the GUI interface, as the results there are contained within the
  * panel and saved to PDF reports as desired. In practice this is (currently) only used by the
  * ASL calibration tracking database.
@@ -75,16 +79,20 @@ public class CalResult {
    * @param images plots converted to png-format images as byte arrays
    * @param calAmp amplitude estimation of calibration signal
    * @param outAmp amplitude estimation of output signal
-   * @param freq estimated frequency of sine wave
+   * @param freq estimated frequency of sine wave, as samples per period
+   * @param fitFreq frequency of sinusoid fit to calibration signal (Hz)
+   * @param phase phase of output signal relative to calibration signal (degrees)
    * @param ratio ratio of signal amplitudes
    * @return object holding these values in easily-accessed maps with variable descriptions
    */
   public static CalResult buildSineCalData(byte[][] images, double calAmp, double outAmp,
-      double freq, double ratio) {
+      double freq, double fitFreq, double phase, double ratio) {
     CalResult out = new CalResult();
     out.numerMap.put("Calibration_amplitude", new double[]{calAmp});
     out.numerMap.put("Output_signal_amplitude", new double[]{outAmp});
     out.numerMap.put("Estimated_signal_frequency", new double[]{freq});
+    out.numerMap.put("Fitted_signal_frequency_Hz", new double[]{fitFreq});
+    out.numerMap.put("Phase_difference", new double[]{phase});
     out.numerMap.put("Calibration_to_output_ratio", new double[]{ratio});
     out.imageMap.put("Sine_curves_plot", images[0]);
     out.imageMap.put("Linearity", images[1]);
@@ -93,10 +101,29 @@ public class CalResult {
 
   Map<String, double[]> numerMap;
   Map<String, byte[]> imageMap;
+  Map<String, String> textMap;
 
   private CalResult() {
     numerMap = new HashMap<>();
     imageMap = new HashMap<>();
+    textMap = new HashMap<>();
+  }
+
+  /**
+   * Add the telemetry of the solver that produced this result. Iteration and evaluation counts,
+   * times (in milliseconds), and the cost at each iteration are added to the numeric map, and the
+   * reason the solver stopped is added to the text map.
+   * @param telemetry record of the solve that produced this result
+   */
+  public void addSolverTelemetry(SolverTelemetry telemetry) {
+    numerMap.put("Solver_iterations", new double[]{telemetry.getIterations()});
+    numerMap.put("Solver_evaluations", new double[]{telemetry.getEvaluations()});
+    numerMap.put("Solver_total_time_ms", new double[]{telemetry.getTotalTimeMillis()});
+    numerMap.put("Solver_model_time_ms", new double[]{telemetry.getModelTimeMillis()});
+    numerMap.put("Solver_linear_algebra_time_ms",
+        new double[]{telemetry.getLinearAlgebraTimeMillis()});
+    numerMap.put("Solver_cost_per_iteration", telemetry.getCostPerIterationArray());
+    textMap.put("Solver_convergence_reason", telemetry.getConvergenceReason().name());
   }
 
   /**
@@ -115,4 +142,13 @@ public class CalResult {
   public Map<String, double[]> getNumerMap() {
     return numerMap;
   }
+
+  /**
+   * Return the map of text data
+   * @return map of strings, keyed by strings with descriptions of the given values (i.e., the
+   * reason the solver stopped)
+   */
+  public Map<String, String> getTextMap() {
+    return textMap;
+  }
 }
@@ -0,0 +1,353 @@
+package asl.sensor.output;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Local persistent library of previous calibration solver results, used to provide a better
+ * initial guess (a "warm start") for the next calibration of the same sensor. Results are keyed by
+ * the type of calibration, the name of the response the solver was run with, and the SNCL of the
+ * sensor data. When no result exists for a given sensor, the most recent result for the same
+ * response and calibration type (that is, another instance of the same sensor model) is used.
+ *
+ * The library is stored as a plain tab-separated text file with one result per line. Each line
+ * has the calibration type, response name, SNCL, and the time the result was stored, followed by
+ * one column for each named set of parameters, written as the name, an equals sign, and a
+ * comma-separated list of values (i.e., "poles=-0.0123,0.0123,-0.0123,-0.0123").
+ * Writes are done by re-reading the file while holding a lock on it, replacing the entry for the
+ * updated key, and atomically moving a temporary file into place, so that multiple instances of
+ * the program (i.e., the GUI and the calibration server) can safely share one library file.
+ */
+public class FitResultStore {
+
+  /**
+   * Calibration types that results can be stored for. Low and high frequency random cals fit
+   * different sets of poles and zeros and so are kept separately.
+   */
+  public enum CalibrationType {
+    RANDOM_LOW_FREQUENCY,
+    RANDOM_HIGH_FREQUENCY,
+    STEP
+  }
+
+  /**
+   * Name of parameters entry holding the (complex) poles of a fit response, stored interleaved as
+   * real and imaginary values
+   */
+  public static final String POLES = "poles";
+  /**
+   * Name of parameters entry holding the (complex) zeros of a fit response, stored interleaved as
+   * real and imaginary values
+   */
+  public static final String ZEROS = "zeros";
+  /**
+   * Name of parameters entry holding the corner frequency (Hz) fit from a step calibration
+   */
+  public static final String CORNER = "corner";
+  /**
+   * Name of parameters entry holding the damping fit from a step calibration
+   */
+  public static final String DAMPING = "damping";
+
+  /**
+   * Default location of the library, in the user's home directory
+   */
+  public static final String DEFAULT_FILENAME = ".asl-sensor-suite-fits.tsv";
+
+  private static final String SEPARATOR = "\t";
+  private static final String HEADER = "# type\tresponse\tsncl\tupdated\tparameters...";
+  // file locks are held per-process, so writes within this process are also synchronized here
+  private static final Object WRITE_LOCK = new Object();
+
+  private final Path libraryPath;
+
+  /**
+   * Create a handle to a library at the given location. The file is created on the first write.
+   *
+   * @param libraryPath Location of the library file
+   */
+  public FitResultStore(Path libraryPath) {
+    this.libraryPath = libraryPath;
+  }
+
+  /**
+   * Create a handle to a library at the given filename. The file is created on the first write.
+   *
+   * @param filename Full path of the library file
+   */
+  public FitResultStore(String filename) {
+    this(Paths.get(filename));
+  }
+
+  /**
+   * Get a handle to the library in the default location (user's home directory)
+   *
+   * @return Library stored in the default location
+   */
+  public static FitResultStore getDefaultStore() {
+    return new FitResultStore(Paths.get(System.getProperty("user.home"), DEFAULT_FILENAME));
+  }
+
+  /**
+   * Convert a list of complex values (i.e., poles) into an array of their real and imaginary
+   * components, in the format used to store them in the library
+   *
+   * @param values List of complex values
+   * @return Array where even indices are real components and odd indices imaginary components
+   */
+  public static double[] complexListToArray(List<Complex> values) {
+    double[] out = new double[2 * values.size()];
+    for (int i = 0; i < values.size(); ++i) {
+      out[2 * i] = values.get(i).getReal();
+      out[2 * i + 1] = values.get(i).getImaginary();
+    }
+    return out;
+  }
+
+  /**
+   * Convert an array of real and imaginary components as stored in the library back to a list of
+   * complex values
+   *
+   * @param values Array where even indices are real components and odd indices imaginary ones
+   * @return List of complex values
+   */
+  public static List<Complex> arrayToComplexList(double[] values) {
+    List<Complex> out = new ArrayList<>();
+    for (int i = 0; i + 1 < values.length; i += 2) {
+      out.add(new Complex(values[i], values[i + 1]));
+    }
+    return out;
+  }
+
+  /**
+   * Get the location of the file this library is stored in
+   *
+   * @return Path of library file
+   */
+  public Path getPath() {
+    return libraryPath;
+  }
+
+  /**
+   * Get the stored parameters to use as the initial guess for a calibration. If there is a result
+   * matching the response and SNCL, that is returned; otherwise the most recent result for the
+   * given response (i.e., another sensor of the same model) is returned.
+   *
+   * @param type Type of calibration to get a previous result for
+   * @param responseName Name of the response the calibration is being run with
+   * @param sncl Name of the sensor output data
+   * @return Map of parameter names to values, or null if there is no result to use
+   * @throws IOException If the library file exists but could not be read
+   */
+  public Map<String, double[]> lookup(CalibrationType type, String responseName, String sncl)
+      throws IOException {
+    responseName = clean(responseName);
+    sncl = clean(sncl);
+    Entry exactMatch = null;
+    Entry modelMatch = null;
+    for (Entry entry : readEntries()) {
+      if (entry.type != type || !entry.responseName.equals(responseName)) {
+        continue;
+      }
+      if (entry.sncl.equals(sncl)) {
+        exactMatch = entry;
+      } else if (modelMatch == null || entry.updated.isAfter(modelMatch.updated)) {
+        modelMatch = entry;
+      }
+    }
+
+    if (exactMatch != null) {
+      return Collections.unmodifiableMap(exactMatch.parameters);
+    } else if (modelMatch != null) {
+      return Collections.unmodifiableMap(modelMatch.parameters);
+    }
+    return null;
+  }
+
+  /**
+   * Add a result to the library, replacing any existing result for the same calibration type,
+   * response, and SNCL.
+   *
+   * @param type Type of calibration the result is from
+   * @param responseName Name of the response the calibration was run with
+   * @param sncl Name of the sensor output data
+   * @param parameters Map of parameter names to values (i.e., POLES and ZEROS)
+   * @throws IOException If the library file could not be written
+   */
+  public void store(CalibrationType type, String responseName, String sncl,
+      Map<String, double[]> parameters) throws IOException {
+    Entry newEntry = new Entry(type, clean(responseName), clean(sncl), Instant.now(),
+        new LinkedHashMap<>(parameters));
+
+    synchronized (WRITE_LOCK) {
+      Path parent = libraryPath.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      Path lockPath = Paths.get(libraryPath.toString() + ".lock");
+      try (FileChannel lockChannel = FileChannel.open(lockPath,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        // also lock the file, in case another process is writing to the same library
+        FileLock lock = lockChannel.lock();
+        try {
+          replaceEntry(newEntry, parent);
+        } finally {
+          lock.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Rewrite the library with the given entry in place of any existing one for the same
+   * calibration type, response, and SNCL. The new library is written to a temporary file that
+   * then replaces the old one, so that it is never left partly written.
+   */
+  private void replaceEntry(Entry newEntry, Path parent) throws IOException {
+    List<Entry> entries = readEntries();
+    entries.removeIf(entry -> entry.type == newEntry.type &&
+        entry.responseName.equals(newEntry.responseName) &&
+        entry.sncl.equals(newEntry.sncl));
+    entries.add(newEntry);
+
+    Path tempPath = Files.createTempFile(parent, libraryPath.getFileName().toString(), ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+        writer.write(HEADER);
+        writer.newLine();
+        for (Entry entry : entries) {
+          writer.write(entry.toLine());
+          writer.newLine();
+        }
+      }
+      Files.move(tempPath, libraryPath,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  /**
+   * Read in all entries in the library. Lines that cannot be parsed are skipped.
+   *
+   * @return List of entries, in the order they appear in the library file
+   * @throws IOException If the library file exists but could not be read
+   */
+  private List<Entry> readEntries() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    if (!Files.exists(libraryPath)) {
+      return entries;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(libraryPath, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        Entry entry = Entry.fromLine(line);
+        if (entry != null) {
+          entries.add(entry);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Remove separator characters from names so that they can't break the library format
+   *
+   * @param name Name to be written to the library
+   * @return Name with tabs and line breaks replaced by spaces
+   */
+  private static String clean(String name) {
+    return name.replaceAll("[\\t\\r\\n]", " ");
+  }
+
+  /**
+   * Single stored calibration result
+   */
+  private static class Entry {
+
+    final CalibrationType type;
+    final String responseName;
+    final String sncl;
+    final Instant updated;
+    final Map<String, double[]> parameters;
+
+    Entry(CalibrationType type, String responseName, String sncl, Instant updated,
+        Map<String, double[]> parameters) {
+      this.type = type;
+      this.responseName = responseName;
+      this.sncl = sncl;
+      this.updated = updated;
+      this.parameters = parameters;
+    }
+
+    static Entry fromLine(String line) {
+      String[] columns = line.split(SEPARATOR);
+      if (columns.length < 4) {
+        return null;
+      }
+      try {
+        CalibrationType type = CalibrationType.valueOf(columns[0]);
+        Instant updated = Instant.parse(columns[3]);
+        Map<String, double[]> parameters = new LinkedHashMap<>();
+        for (int i = 4; i < columns.length; ++i) {
+          String[] nameAndValues = columns[i].split("=", 2);
+          if (nameAndValues.length < 2) {
+            return null;
+          }
+          String[] values = nameAndValues[1].isEmpty() ?
+              new String[]{} : nameAndValues[1].split(",");
+          double[] parsed = new double[values.length];
+          for (int j = 0; j < values.length; ++j) {
+            parsed[j] = Double.parseDouble(values[j]);
+          }
+          parameters.put(nameAndValues[0], parsed);
+        }
+        return new Entry(type, columns[1], columns[2], updated, parameters);
+      } catch (IllegalArgumentException | DateTimeParseException e) {
+        // includes NumberFormatException; entry is from an incompatible version or was mangled
+        return null;
+      }
+    }
+
+    String toLine() {
+      StringBuilder line = new StringBuilder();
+      line.append(type.name()).append(SEPARATOR);
+      line.append(responseName).append(SEPARATOR);
+      line.append(sncl).append(SEPARATOR);
+      line.append(updated.toString());
+      for (String name : parameters.keySet()) {
+        line.append(SEPARATOR).append(name).append("=");
+        double[] values = parameters.get(name);
+        for (int i = 0; i < values.length; ++i) {
+          if (i > 0) {
+            line.append(",");
+          }
+          // full precision so that the stored result can be reproduced exactly
+          line.append(Double.toString(values[i]));
+        }
+      }
+      return line.toString();
+    }
+  }
+
+}
@@ -0,0 +1,177 @@
+package asl.sensor.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of a calculation. Long-running loops (Welch segments, solver model
+ * evaluations, azimuth windows, decimation) check the token of the calculation they belong to and
+ * stop by throwing a CancellationException once it has been cancelled, either explicitly or because
+ * its deadline passed. Interrupting the thread doing the calculation also counts as cancelling it,
+ * so that SwingWorker.cancel(true) stops a calculation without needing a handle on its token.
+ *
+ * Rather than passing a token through every utility method, the token is installed for the thread
+ * running a calculation (see {@link #call(Callable)}) and found by the loops with
+ * {@link #checkCurrent()}. Code that hands work to other threads should install the same token in
+ * those threads.
+ */
+public class CancellationToken {
+
+  private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+  private volatile boolean cancelled;
+  private final long deadlineNanos;
+  private final boolean hasDeadline;
+  private final CancellationToken parent; // null unless this is part of another calculation
+
+  /**
+   * Create a token that is only cancelled by calling {@link #cancel()}
+   */
+  public CancellationToken() {
+    this(null);
+  }
+
+  private CancellationToken(CancellationToken parent) {
+    cancelled = false;
+    hasDeadline = false;
+    deadlineNanos = 0L;
+    this.parent = parent;
+  }
+
+  private CancellationToken(long timeoutMillis) {
+    cancelled = false;
+    hasDeadline = true;
+    deadlineNanos = System.nanoTime() + timeoutMillis * 1000000L;
+    parent = null;
+  }
+
+  /**
+   * Create a token that is cancelled once the given time has passed (or if cancel is called),
+   * i.e., for timeouts on requests to process a calibration
+   *
+   * @param timeoutMillis Time from now until the token is cancelled, in milliseconds
+   * @return Token with the given deadline
+   */
+  public static CancellationToken withTimeout(long timeoutMillis) {
+    return new CancellationToken(timeoutMillis);
+  }
+
+  /**
+   * Get the token installed for the current thread, or a new (never-cancelled) token if the
+   * thread isn't running a cancellable calculation
+   *
+   * @return Token of the calculation running in this thread
+   */
+  public static CancellationToken current() {
+    CancellationToken token = CURRENT.get();
+    if (token == null) {
+      return new CancellationToken();
+    }
+    return token;
+  }
+
+  /**
+   * Stop the current thread's calculation if it has been cancelled or the thread was interrupted
+   *
+   * @throws CancellationException if the calculation should stop
+   */
+  public static void checkCurrent() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Calculation interrupted");
+    }
+    CancellationToken token = CURRENT.get();
+    if (token != null) {
+      token.throwIfCancelled();
+    }
+  }
+
+  /**
+   * Create a token for part of this calculation, which is cancelled whenever this one is but can
+   * also be cancelled on its own, i.e., to stop the other parts of a calculation once one fails
+   *
+   * @return Token that is cancelled along with this one
+   */
+  public CancellationToken newChild() {
+    return new CancellationToken(this);
+  }
+
+  /**
+   * Cancel the calculation this token belongs to; it stops at its next check
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Get whether the calculation has been cancelled or its deadline has passed
+   *
+   * @return True if the calculation should stop
+   */
+  public boolean isCancelled() {
+    return cancelled || (hasDeadline && System.nanoTime() - deadlineNanos >= 0) ||
+        (parent != null && parent.isCancelled());
+  }
+
+  /**
+   * Stop the calculation if it has been cancelled or its deadline has passed
+   *
+   * @throws CancellationException if the calculation should stop
+   */
+  public void throwIfCancelled() {
+    if (parent != null) {
+      parent.throwIfCancelled();
+    }
+    if (cancelled) {
+      throw new CancellationException("Calculation cancelled");
+    }
+    if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+      throw new CancellationException("Calculation timed out");
+    }
+  }
+
+  /**
+   * Run a calculation in the current thread with this token installed, so that the loops it runs
+   * stop once this is cancelled. The previously installed token is restored afterwards.
+   *
+   * @param calculation Calculation to run
+   * @param <T> Type of the calculation's result
+   * @return Result of the calculation
+   * @throws Exception Any exception thrown by the calculation, including CancellationException
+   */
+  public <T> T call(Callable<T> calculation) throws Exception {
+    CancellationToken previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      throwIfCancelled();
+      return calculation.call();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Run a calculation in the current thread with this token installed, as in
+   * {@link #call(Callable)}, for calculations that don't throw checked exceptions
+   *
+   * @param calculation Calculation to run
+   */
+  public void run(Runnable calculation) {
+    CancellationToken previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      throwIfCancelled();
+      calculation.run();
+    } finally {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+
+}
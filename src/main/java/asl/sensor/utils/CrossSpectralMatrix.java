@@ -0,0 +1,227 @@
+package asl.sensor.utils;
+
+import java.util.Arrays;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Holds the PSDs and cross-powers of every pair of a set of time series, as calculated by Welch's
+ * method in the same way as FFTResult.spectralCalc (windows of 1/4 the data moving 1/16 at a time,
+ * each demeaned and cosine-tapered). Rather than taking the spectral calculation of each pair
+ * separately, which transforms each series once for every pair it is part of, the FFT of each
+ * window of each series is taken once and multiplied against those of all the other series in
+ * the same sweep through the data. This is mainly used to get the magnitude-squared coherence of
+ * each pair, |Pij|^2 / (Pii * Pjj), which is 1 where the two series are linearly related and falls
+ * towards 0 where they are not (i.e., where one series is dominated by its own noise, or is
+ * clipped or misaligned).
+ *
+ * The results are stored as primitive arrays (no responses are applied), one for each pair with
+ * i less than or equal to j; those with i greater than j are the complex conjugates of those.
+ */
+public final class CrossSpectralMatrix {
+
+  private final int seriesCount;
+  private final double[] frequencies;
+  // real and imaginary parts of the cross-power of each pair, indexed by getPairIndex
+  private final double[][] real;
+  private final double[][] imaginary;
+
+  CrossSpectralMatrix(int seriesCount, double[] frequencies, double[][] real,
+      double[][] imaginary) {
+    this.seriesCount = seriesCount;
+    this.frequencies = frequencies;
+    this.real = real;
+    this.imaginary = imaginary;
+  }
+
+  /**
+   * Calculate the PSDs and cross-powers of all pairs of the given time series
+   *
+   * @param data Time series data, all of the same length and sample interval (not modified)
+   * @param interval Sample interval of the data (ms)
+   * @return Spectral matrix of the data
+   */
+  public static CrossSpectralMatrix calculate(double[][] data, long interval) {
+    StageProfiler.Span span = StageProfiler.stage("Cross-spectral matrix");
+    try {
+      int seriesCount = data.length;
+      int length = data[0].length;
+      for (double[] series : data) {
+        if (series.length != length) {
+          throw new IllegalArgumentException("Time series must all have the same length");
+        }
+      }
+
+      // divide into windows of 1/4, moving up 1/16 of the data at a time
+      int range = length / 4;
+      int slider = range / 4;
+      double period = interval / (double) TimeSeriesUtils.ONE_HZ_INTERVAL;
+      int padding = FFTResult.findFFTPaddingLength(range);
+      int singleSide = padding / 2 + 1;
+      double deltaFreq = 1. / (padding * period);
+
+      int pairCount = seriesCount * (seriesCount + 1) / 2;
+      double[][] real = new double[pairCount][singleSide];
+      double[][] imaginary = new double[pairCount][singleSide];
+      double[][] windowReal = new double[seriesCount][singleSide];
+      double[][] windowImaginary = new double[seriesCount][singleSide];
+      double wss = 1.;
+      int segsProcessed = 0;
+
+      for (int rangeStart = 0; rangeStart + range <= length; rangeStart += slider) {
+        // stop between segments if the calculation this is part of has been cancelled
+        CancellationToken.checkCurrent();
+        for (int i = 0; i < seriesCount; ++i) {
+          double[] toFFT = Arrays.copyOfRange(data[i], rangeStart, rangeStart + range);
+          Pair<Complex[], Double> windowFFTData = FFTResult.getSpectralWindow(toFFT, padding);
+          Complex[] fft = windowFFTData.getFirst();
+          wss = windowFFTData.getSecond(); // the same for every window, which are the same length
+          for (int k = 0; k < singleSide; ++k) {
+            windowReal[i][k] = fft[k].getReal();
+            windowImaginary[i][k] = fft[k].getImaginary();
+          }
+        }
+        accumulateSegment(windowReal, windowImaginary, real, imaginary);
+        ++segsProcessed;
+      }
+
+      scaleSums(real, imaginary, period, wss, segsProcessed);
+      double[] frequencies = new double[singleSide];
+      for (int k = 0; k < singleSide; ++k) {
+        frequencies[k] = k * deltaFreq;
+      }
+      return new CrossSpectralMatrix(seriesCount, frequencies, real, imaginary);
+    } finally {
+      span.close();
+    }
+  }
+
+  /**
+   * Add the cross-powers of every pair of one segment's FFTs (fft1 * fft2') to the running sums
+   *
+   * @param segmentReal Real part of the FFT of the segment of each series
+   * @param segmentImaginary Imaginary part of the FFT of the segment of each series
+   * @param real Sums of the real parts of each pair's cross-power, indexed as in getPairIndex
+   * @param imaginary Sums of the imaginary parts of each pair's cross-power
+   */
+  static void accumulateSegment(double[][] segmentReal, double[][] segmentImaginary,
+      double[][] real, double[][] imaginary) {
+    int seriesCount = segmentReal.length;
+    int pair = 0;
+    for (int i = 0; i < seriesCount; ++i) {
+      for (int j = i; j < seriesCount; ++j) {
+        double[] pairReal = real[pair];
+        double[] pairImaginary = imaginary[pair];
+        double[] real1 = segmentReal[i];
+        double[] imaginary1 = segmentImaginary[i];
+        double[] real2 = segmentReal[j];
+        double[] imaginary2 = segmentImaginary[j];
+        for (int k = 0; k < pairReal.length; ++k) {
+          // fft1 * fft2'
+          pairReal[k] += real1[k] * real2[k] + imaginary1[k] * imaginary2[k];
+          pairImaginary[k] += imaginary1[k] * real2[k] - real1[k] * imaginary2[k];
+        }
+        ++pair;
+      }
+    }
+  }
+
+  /**
+   * Scale summed cross-powers as in the spectral calculation: the mean of 2 * fft1 * fft2' / wss,
+   * times the sample period
+   *
+   * @param real Sums of the real parts of each pair's cross-power (scaled in place)
+   * @param imaginary Sums of the imaginary parts of each pair's cross-power (scaled in place)
+   * @param period Sample period (s)
+   * @param wss Sum of squares of the taper applied to each segment
+   * @param segmentCount Number of segments summed
+   */
+  static void scaleSums(double[][] real, double[][] imaginary, double period, double wss,
+      int segmentCount) {
+    double scale = 2. * period / (wss * segmentCount);
+    for (int pair = 0; pair < real.length; ++pair) {
+      for (int k = 0; k < real[pair].length; ++k) {
+        real[pair][k] *= scale;
+        imaginary[pair][k] *= scale;
+      }
+    }
+  }
+
+  /**
+   * Get the magnitude-squared coherence of two series at one frequency from their PSDs and
+   * cross-power. Since the same response terms divide both the numerator and denominator, this is
+   * the same whether or not responses have been applied to the spectra.
+   *
+   * @param crossPower Cross-power of the two series, Pij
+   * @param power1 PSD of the first series, Pii
+   * @param power2 PSD of the second series, Pjj
+   * @return Coherence, from 0 to 1 (NaN if either PSD is zero)
+   */
+  public static double coherence(Complex crossPower, Complex power1, Complex power2) {
+    double magnitude = crossPower.abs();
+    return (magnitude * magnitude) / (power1.abs() * power2.abs());
+  }
+
+  private int getPairIndex(int i, int j) {
+    // pairs are stored row by row from the upper triangle (including the diagonal)
+    return i * seriesCount - (i * (i - 1)) / 2 + (j - i);
+  }
+
+  /**
+   * Get the frequencies of the spectra
+   *
+   * @return Frequencies (Hz), from 0 to the Nyquist rate
+   */
+  public double[] getFreqs() {
+    return frequencies;
+  }
+
+  /**
+   * Get the number of time series the spectra were calculated from
+   *
+   * @return Number of series
+   */
+  public int getSeriesCount() {
+    return seriesCount;
+  }
+
+  /**
+   * Get the cross-power of two of the series (the PSD of a series if both indices are the same),
+   * which matches FFTResult.spectralCalc of the same data
+   *
+   * @param i Index of the first series
+   * @param j Index of the second series
+   * @return Cross-power at each frequency
+   */
+  public Complex[] getCrossPower(int i, int j) {
+    boolean conjugate = i > j;
+    int pair = conjugate ? getPairIndex(j, i) : getPairIndex(i, j);
+    Complex[] crossPower = new Complex[frequencies.length];
+    for (int k = 0; k < frequencies.length; ++k) {
+      double imaginaryPart = conjugate ? -imaginary[pair][k] : imaginary[pair][k];
+      crossPower[k] = new Complex(real[pair][k], imaginaryPart);
+    }
+    return crossPower;
+  }
+
+  /**
+   * Get the magnitude-squared coherence of two of the series at each frequency
+   *
+   * @param i Index of the first series
+   * @param j Index of the second series
+   * @return Coherence (0 to 1) at each frequency, NaN where either PSD is zero
+   */
+  public double[] getCoherence(int i, int j) {
+    int pair = i > j ? getPairIndex(j, i) : getPairIndex(i, j);
+    double[] power1 = real[getPairIndex(i, i)];
+    double[] power2 = real[getPairIndex(j, j)];
+    double[] coherence = new double[frequencies.length];
+    for (int k = 0; k < frequencies.length; ++k) {
+      double re = real[pair][k];
+      double im = imaginary[pair][k];
+      coherence[k] = (re * re + im * im) / (power1[k] * power2[k]);
+    }
+    return coherence;
+  }
+
+}
@@ -111,7 +111,18 @@ public class FFTResult {
     return wss;
   }
 
-  private static FFTResult crossPower(Complex[] results, double[] freqs,
+  /**
+   * Apply two responses to an already-calculated spectrum (as from spectralCalc), converting the
+   * result into units of acceleration. This allows the response curves to be evaluated once and
+   * reused for many spectra over the same frequencies (i.e., over many windows of a long record).
+   *
+   * @param results Spectral calculation (cross-power) of the two data series
+   * @param freqs Frequencies of the spectrum
+   * @param freqRespd1 Response of the first instrument evaluated at those frequencies (velocity)
+   * @param freqRespd2 Response of the second instrument evaluated at those frequencies (velocity)
+   * @return Crosspower of the two data sets with the responses applied
+   */
+  public static FFTResult crossPower(Complex[] results, double[] freqs,
       Complex[] freqRespd1, Complex[] freqRespd2) {
 
     Complex[] out = new Complex[freqs.length];
@@ -155,23 +166,28 @@ public class FFTResult {
       InstrumentResponse ir1, InstrumentResponse ir2) {
 
     FFTResult selfPSD = spectralCalc(data1, data2);
-    Complex[] results = selfPSD.getFFT();
-    double[] freqs = selfPSD.getFreqs();
-    Complex[] freqRespd1 = ir1.applyResponseToInput(freqs);
-    Complex[] freqRespd2 = ir2.applyResponseToInput(freqs);
+    return applyResponses(selfPSD, ir1, ir2);
+  }
 
-    return crossPower(results, freqs, freqRespd1, freqRespd2);
+  private static FFTResult applyResponses(FFTResult selfPSD,
+      InstrumentResponse ir1, InstrumentResponse ir2) {
+    StageProfiler.Span span = StageProfiler.stage("Response application");
+    try {
+      Complex[] results = selfPSD.getFFT();
+      double[] freqs = selfPSD.getFreqs();
+      Complex[] freqRespd1 = ir1.applyResponseToInput(freqs);
+      Complex[] freqRespd2 = ir2.applyResponseToInput(freqs);
+
+      return crossPower(results, freqs, freqRespd1, freqRespd2);
+    } finally {
+      span.close();
+    }
   }
 
   public static FFTResult crossPower(double[] data1, double[] data2,
       InstrumentResponse ir1, InstrumentResponse ir2, long interval) {
     FFTResult selfPSD = spectralCalc(data1, data2, interval);
-    Complex[] results = selfPSD.getFFT();
-    double[] freqs = selfPSD.getFreqs();
-    Complex[] freqRespd1 = ir1.applyResponseToInput(freqs);
-    Complex[] freqRespd2 = ir2.applyResponseToInput(freqs);
-
-    return crossPower(results, freqs, freqRespd1, freqRespd2);
+    return applyResponses(selfPSD, ir1, ir2);
   }
 
   /**
@@ -540,6 +556,15 @@ public class FFTResult {
    */
   public static FFTResult
   spectralCalc(double[] list1, double[] list2, long interval) {
+    StageProfiler.Span span = StageProfiler.stage("PSD");
+    try {
+      return welchSpectrum(list1, list2, interval);
+    } finally {
+      span.close();
+    }
+  }
+
+  private static FFTResult welchSpectrum(double[] list1, double[] list2, long interval) {
 
     //Only the same data if the arrays are actually the same objects.
     //noinspection ArrayEquals
@@ -575,6 +600,8 @@ public class FFTResult {
     }
 
     while (rangeEnd <= list1.length) {
+      // stop between segments if the calculation this is part of has been cancelled
+      CancellationToken.checkCurrent();
 
       // give us a new list we can modify to get the data of
       double[] toFFT1 =
@@ -0,0 +1,166 @@
+package asl.sensor.utils;
+
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Averages spectra (such as PSDs from FFTResult.spectralCalc) into bands of a fraction of an
+ * octave, giving one point per band on a log-frequency grid rather than one per FFT bin. Bands are
+ * centered on 2^(k/N) Hz for integer k, where N is the number of bands per octave, so spectra with
+ * different frequency resolutions (i.e., from data of different sample rates or lengths) are
+ * binned onto the same frequencies. Long records have hundreds of thousands of linear bins, most of
+ * them at high frequencies, so this greatly reduces the number of points to plot and report while
+ * keeping the shape of the curve on log axes.
+ *
+ * The binner is built once for a set of frequencies and can be applied to any number of spectra
+ * over those frequencies. Each band's value is the mean of the (linear) values of the bins in it;
+ * bands containing no bins are not included.
+ */
+public final class FractionalOctaveBinner {
+
+  private final int bandsPerOctave;
+  private final int inputLength;
+  private final double[] centerFrequencies;
+  // each band covers the input indices from bandStarts[i] (inclusive) to bandEnds[i] (exclusive)
+  private final int[] bandStarts;
+  private final int[] bandEnds;
+
+  /**
+   * Find the bands covering the given frequencies
+   *
+   * @param frequencies Frequencies of the spectra to be binned, in ascending order (Hz);
+   * frequencies of zero (the DC term) and below are not included in any band
+   * @param bandsPerOctave Number of bands per octave, i.e., 3 for 1/3-octave bands
+   */
+  public FractionalOctaveBinner(double[] frequencies, int bandsPerOctave) {
+    if (bandsPerOctave < 1) {
+      throw new IllegalArgumentException("Bands per octave must be positive: " + bandsPerOctave);
+    }
+    this.bandsPerOctave = bandsPerOctave;
+    inputLength = frequencies.length;
+
+    // frequencies ascend, so each band is a contiguous run of bins
+    int[] starts = new int[inputLength];
+    int[] ends = new int[inputLength];
+    long[] bandNumbers = new long[inputLength];
+    int bandCount = 0;
+    long currentBand = Long.MIN_VALUE;
+    for (int i = 0; i < inputLength; ++i) {
+      if (!(frequencies[i] > 0.)) {
+        continue;
+      }
+      long band = getBandNumber(frequencies[i]);
+      if (bandCount == 0 || band != currentBand) {
+        currentBand = band;
+        starts[bandCount] = i;
+        bandNumbers[bandCount] = band;
+        ++bandCount;
+      }
+      ends[bandCount - 1] = i + 1;
+    }
+
+    bandStarts = new int[bandCount];
+    bandEnds = new int[bandCount];
+    centerFrequencies = new double[bandCount];
+    System.arraycopy(starts, 0, bandStarts, 0, bandCount);
+    System.arraycopy(ends, 0, bandEnds, 0, bandCount);
+    for (int i = 0; i < bandCount; ++i) {
+      centerFrequencies[i] = Math.pow(2., bandNumbers[i] / (double) bandsPerOctave);
+    }
+  }
+
+  private long getBandNumber(double frequency) {
+    double octaves = Math.log(frequency) / Math.log(2.);
+    return Math.round(octaves * bandsPerOctave);
+  }
+
+  /**
+   * Get the number of bands that contain at least one of the input frequencies
+   *
+   * @return Length of the binned spectra
+   */
+  public int getBandCount() {
+    return centerFrequencies.length;
+  }
+
+  /**
+   * Get the number of bands per octave used for binning
+   *
+   * @return N, for bands of 1/N octave
+   */
+  public int getBandsPerOctave() {
+    return bandsPerOctave;
+  }
+
+  /**
+   * Get the center frequency of each band, in ascending order
+   *
+   * @return Frequencies (Hz) matching the values of the binned spectra
+   */
+  public double[] getCenterFrequencies() {
+    return centerFrequencies.clone();
+  }
+
+  /**
+   * Average a spectrum into the bands. Values that are not finite (i.e., infinite PSD values
+   * from a response with a zero at that frequency) are left out of the averages; a band with no
+   * finite values is NaN.
+   *
+   * @param values Spectrum over the frequencies the binner was built for (i.e., PSD magnitude)
+   * @return Mean value in each band
+   */
+  public double[] bin(double[] values) {
+    if (values.length != inputLength) {
+      throw new IllegalArgumentException("Expected " + inputLength + " values, got "
+          + values.length);
+    }
+    StageProfiler.Span span = StageProfiler.stage("PSD binning");
+    try {
+      double[] binned = new double[bandStarts.length];
+      for (int band = 0; band < bandStarts.length; ++band) {
+        double sum = 0.;
+        int count = 0;
+        for (int i = bandStarts[band]; i < bandEnds[band]; ++i) {
+          if (Double.isFinite(values[i])) {
+            sum += values[i];
+            ++count;
+          }
+        }
+        binned[band] = count > 0 ? sum / count : Double.NaN;
+      }
+      return binned;
+    } finally {
+      span.close();
+    }
+  }
+
+  /**
+   * Average the magnitude of a complex spectrum (i.e., a PSD from FFTResult) into the bands,
+   * as in {@link #bin(double[])}
+   *
+   * @param spectrum Spectrum over the frequencies the binner was built for
+   * @return Mean magnitude in each band
+   */
+  public double[] bin(Complex[] spectrum) {
+    double[] magnitudes = new double[spectrum.length];
+    for (int i = 0; i < spectrum.length; ++i) {
+      magnitudes[i] = spectrum[i].abs();
+    }
+    return bin(magnitudes);
+  }
+
+  /**
+   * Convert binned power to decibels, as single-precision values for compact storage of many
+   * binned spectra (i.e., the rows of a spectrogram)
+   *
+   * @param bandPower Power in each band (linear)
+   * @return Power in each band (dB); NaN bands stay NaN
+   */
+  public static float[] toDecibels(double[] bandPower) {
+    float[] decibels = new float[bandPower.length];
+    for (int band = 0; band < bandPower.length; ++band) {
+      decibels[band] = (float) (10 * Math.log10(bandPower[band]));
+    }
+    return decibels;
+  }
+
+}
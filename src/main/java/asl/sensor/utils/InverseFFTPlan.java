@@ -0,0 +1,166 @@
+package asl.sensor.utils;
+
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+
+/**
+ * Reusable inverse FFT of single-sided (positive-frequency) spectra, for code that repeatedly
+ * inverts spectra of the same length, such as a solver's model function. This gives the same
+ * result (to within rounding error) as
+ * {@link FFTResult#singleSidedInverseFFT(org.apache.commons.math3.complex.Complex[], int)}
+ * but works over primitive arrays and keeps its work buffers between calls, so that transforming
+ * does not allocate any memory.
+ *
+ * Because the result is a real-valued timeseries, the spectrum is not padded out to its full
+ * length with complex conjugates. Instead the even and odd samples of the timeseries are
+ * recovered together from a single complex inverse FFT of half the length, using twiddle factors
+ * that are computed once when the plan is created.
+ *
+ * An instance holds mutable state and so should not be shared between threads.
+ */
+public class InverseFFTPlan {
+
+  private final int singleSideLength;
+  private final double[][] dataRI; // real and imaginary work buffers, half of full length
+  private final double[] twiddleReal, twiddleImag; // exp(2*pi*i*k/N) for full length N
+  private double[][] pairRI; // full-length work buffers for inverting two spectra together
+
+  /**
+   * Create a plan for inverting spectra of a given single-sided length.
+   *
+   * @param singleSideLength Number of positive-frequency points in the spectra (including the
+   * zero and Nyquist frequencies); this is one more than a power of two, as produced by
+   * {@link FFTResult#singleSidedFFT(double[], double, boolean)}
+   */
+  public InverseFFTPlan(int singleSideLength) {
+    int half = singleSideLength - 1;
+    if (half < 1 || Integer.bitCount(half) != 1) {
+      throw new IllegalArgumentException(
+          "Single-sided spectrum length must be one more than a power of 2, got "
+              + singleSideLength);
+    }
+    this.singleSideLength = singleSideLength;
+    dataRI = new double[2][half];
+    twiddleReal = new double[half];
+    twiddleImag = new double[half];
+    int padding = 2 * half;
+    for (int k = 0; k < half; ++k) {
+      double theta = 2 * Math.PI * k / padding;
+      twiddleReal[k] = Math.cos(theta);
+      twiddleImag[k] = Math.sin(theta);
+    }
+  }
+
+  /**
+   * Get the number of positive-frequency points this plan inverts
+   *
+   * @return Length of single-sided spectrum
+   */
+  public int getSingleSideLength() {
+    return singleSideLength;
+  }
+
+  /**
+   * Do the inverse FFT of a single-sided spectrum and write the requested range of the
+   * resulting timeseries into the output array. The negative frequencies are taken to be the
+   * complex conjugates of the corresponding positive frequencies.
+   *
+   * @param real Real components of the spectrum, of length getSingleSideLength()
+   * @param imaginary Imaginary components of the spectrum, of length getSingleSideLength()
+   * @param offset Index of the first timeseries point to write to the output
+   * @param output Array to write timeseries to; its length is the number of points written
+   */
+  public void inverse(double[] real, double[] imaginary, int offset, double[] output) {
+    double[] packedReal = dataRI[0];
+    double[] packedImag = dataRI[1];
+    int half = packedReal.length;
+
+    // for x the full timeseries, X its spectrum, and N = 2 * half, the spectra of the even and odd
+    // samples of x are E[k] = (X[k] + conj(X[half-k])) / 2 and
+    // O[k] = (X[k] - conj(X[half-k])) * exp(2*pi*i*k/N) / 2; packing them as E + iO means the
+    // inverse FFT has the even samples as its real part and the odd samples as its imaginary part
+
+    // zero and Nyquist frequencies only contribute their real parts to a real timeseries
+    packedReal[0] = (real[0] + real[half]) * 0.5;
+    packedImag[0] = (real[0] - real[half]) * 0.5;
+    for (int k = 1; k < half; ++k) {
+      double xReal = real[k];
+      double xImag = imaginary[k];
+      double xConjReal = real[half - k];
+      double xConjImag = -imaginary[half - k];
+
+      double evenReal = (xReal + xConjReal) * 0.5;
+      double evenImag = (xImag + xConjImag) * 0.5;
+      double diffReal = (xReal - xConjReal) * 0.5;
+      double diffImag = (xImag - xConjImag) * 0.5;
+      double oddReal = diffReal * twiddleReal[k] - diffImag * twiddleImag[k];
+      double oddImag = diffReal * twiddleImag[k] + diffImag * twiddleReal[k];
+
+      // E + i * O
+      packedReal[k] = evenReal - oddImag;
+      packedImag[k] = evenImag + oddReal;
+    }
+
+    FastFourierTransformer.transformInPlace(dataRI, DftNormalization.STANDARD,
+        TransformType.INVERSE);
+
+    for (int i = 0; i < output.length; ++i) {
+      int index = offset + i;
+      if (index % 2 == 0) {
+        output[i] = packedReal[index / 2];
+      } else {
+        output[i] = packedImag[index / 2];
+      }
+    }
+  }
+
+  /**
+   * Do the inverse FFTs of two single-sided spectra at once and write the requested range of each
+   * resulting timeseries into its output array. Because both timeseries are real-valued, the first
+   * spectrum is inverted into the real part and the second into the imaginary part of a single
+   * full-length complex inverse FFT. The work buffers for this are created on the first call.
+   *
+   * @param real1 Real components of the first spectrum, of length getSingleSideLength()
+   * @param imaginary1 Imaginary components of the first spectrum
+   * @param real2 Real components of the second spectrum, of length getSingleSideLength()
+   * @param imaginary2 Imaginary components of the second spectrum
+   * @param offset Index of the first timeseries point to write to the outputs
+   * @param output1 Array to write first timeseries to; its length is the number of points written
+   * @param output2 Array to write second timeseries to, of the same length as output1
+   */
+  public void inverse(double[] real1, double[] imaginary1, double[] real2, double[] imaginary2,
+      int offset, double[] output1, double[] output2) {
+    int half = dataRI[0].length;
+    int padding = 2 * half;
+    if (pairRI == null) {
+      pairRI = new double[2][padding];
+    }
+    double[] packedReal = pairRI[0];
+    double[] packedImag = pairRI[1];
+
+    // for spectra A and B, build Z = A + iB over the full length, where the negative frequencies
+    // of A and B are the conjugates of the positive ones; the inverse FFT of Z then has the
+    // timeseries of A as its real part and that of B as its imaginary part
+    // (as above, zero and Nyquist frequencies only contribute their real parts)
+    packedReal[0] = real1[0];
+    packedImag[0] = real2[0];
+    packedReal[half] = real1[half];
+    packedImag[half] = real2[half];
+    for (int k = 1; k < half; ++k) {
+      // A[k] + i * B[k]
+      packedReal[k] = real1[k] - imaginary2[k];
+      packedImag[k] = imaginary1[k] + real2[k];
+      // conj(A[k]) + i * conj(B[k])
+      packedReal[padding - k] = real1[k] + imaginary2[k];
+      packedImag[padding - k] = real2[k] - imaginary1[k];
+    }
+
+    FastFourierTransformer.transformInPlace(pairRI, DftNormalization.STANDARD,
+        TransformType.INVERSE);
+
+    System.arraycopy(packedReal, offset, output1, 0, output1.length);
+    System.arraycopy(packedImag, offset, output2, 0, output2.length);
+  }
+
+}
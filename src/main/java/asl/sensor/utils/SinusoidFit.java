@@ -0,0 +1,226 @@
+package asl.sensor.utils;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Least-squares fit of a sinusoid, x(t) = A cos(wt) + B sin(wt) + C, to a time series, following
+ * the three- and four-parameter sine fits of IEEE Std 1057. The three-parameter fit takes the
+ * frequency as known and solves for the amplitude, phase, and offset directly; the four-parameter
+ * fit also solves for a correction to the frequency, repeating until it converges. Each fit (and
+ * each iteration of the four-parameter fit) is a single pass through the data accumulating the
+ * sums of the normal equations, so no copies of the data are made. Time is measured from the
+ * first sample, so the phase is that of the sinusoid at the start of the data.
+ */
+public final class SinusoidFit {
+
+  private static final int MAX_ITERATIONS = 20;
+  // relative change in frequency below which the four-parameter fit has converged
+  private static final double FREQUENCY_TOLERANCE = 1E-9;
+  // samples between exact evaluations of the sinusoid, which is rotated a sample at a time between
+  private static final int RESYNC_SAMPLES = 1024;
+
+  private final double frequency;
+  private final double cosineTerm;
+  private final double sineTerm;
+  private final double offset;
+
+  private SinusoidFit(double frequency, double cosineTerm, double sineTerm, double offset) {
+    this.frequency = frequency;
+    this.cosineTerm = cosineTerm;
+    this.sineTerm = sineTerm;
+    this.offset = offset;
+  }
+
+  /**
+   * Estimate the frequency of a sinusoid from the times at which it crosses its mean going upward,
+   * which is a good enough starting point for the four-parameter fit. To keep noise from adding
+   * crossings, the data must drop well below the mean before another upward crossing is counted.
+   *
+   * @param data Time series (not modified)
+   * @param interval Sample interval of the data (ms)
+   * @return Estimated frequency (Hz), or NaN if the data does not complete a full cycle
+   */
+  public static double estimateFrequency(double[] data, long interval) {
+    double sum = 0.;
+    double sumSquares = 0.;
+    for (double point : data) {
+      sum += point;
+      sumSquares += point * point;
+    }
+    double mean = sum / data.length;
+    double deviation = Math.sqrt(Math.max(0., sumSquares / data.length - mean * mean));
+    // half the standard deviation, or about a third of the amplitude of a pure sinusoid
+    double hysteresis = deviation / 2.;
+
+    boolean low = false;
+    double lastMeanCrossing = Double.NaN;
+    double firstCrossing = Double.NaN;
+    double lastCrossing = Double.NaN;
+    int crossings = 0;
+    for (int i = 1; i < data.length; ++i) {
+      if (data[i - 1] < mean && data[i] >= mean) {
+        // interpolate the time (in samples) at which the data reaches its mean
+        lastMeanCrossing = i - (data[i] - mean) / (data[i] - data[i - 1]);
+      }
+      if (data[i] < mean - hysteresis) {
+        low = true;
+      } else if (low && data[i] > mean + hysteresis && !Double.isNaN(lastMeanCrossing)) {
+        low = false;
+        if (crossings == 0) {
+          firstCrossing = lastMeanCrossing;
+        }
+        lastCrossing = lastMeanCrossing;
+        ++crossings;
+      }
+    }
+    if (crossings < 2) {
+      return Double.NaN;
+    }
+    double period = interval / (double) TimeSeriesUtils.ONE_HZ_INTERVAL;
+    return (crossings - 1) / ((lastCrossing - firstCrossing) * period);
+  }
+
+  /**
+   * Fit a sinusoid of known frequency to the data (the three-parameter fit)
+   *
+   * @param data Time series (not modified)
+   * @param interval Sample interval of the data (ms)
+   * @param frequency Frequency of the sinusoid (Hz)
+   * @return Fit of the sinusoid's amplitude, phase, and offset
+   */
+  public static SinusoidFit fitThreeParameter(double[] data, long interval, double frequency) {
+    double[] solution = solveNormalEquations(data, interval, frequency, null);
+    return new SinusoidFit(frequency, solution[0], solution[1], solution[2]);
+  }
+
+  /**
+   * Fit a sinusoid to the data, refining the given frequency (the four-parameter fit).
+   * The starting frequency should be within a small fraction of a cycle over the length of the
+   * data of the true one, i.e., as from {@link #estimateFrequency(double[], long)}.
+   *
+   * @param data Time series (not modified)
+   * @param interval Sample interval of the data (ms)
+   * @param initialFrequency Starting estimate of the frequency (Hz)
+   * @return Fit of the sinusoid's frequency, amplitude, phase, and offset
+   */
+  public static SinusoidFit fitFourParameter(double[] data, long interval,
+      double initialFrequency) {
+    SinusoidFit fit = fitThreeParameter(data, interval, initialFrequency);
+    for (int iteration = 0; iteration < MAX_ITERATIONS; ++iteration) {
+      double[] solution = solveNormalEquations(data, interval, fit.frequency, fit);
+      double frequency = fit.frequency + solution[3] / NumericUtils.TAU;
+      boolean converged = Math.abs(frequency - fit.frequency) <= FREQUENCY_TOLERANCE * frequency;
+      fit = new SinusoidFit(frequency, solution[0], solution[1], solution[2]);
+      if (converged) {
+        break;
+      }
+    }
+    return fit;
+  }
+
+  /**
+   * Accumulate and solve the normal equations of the fit in one pass through the data. The
+   * columns of the design matrix are cos(wt), sin(wt), 1, and, if a previous fit is given, the
+   * derivative of that fit with respect to w, whose coefficient is the correction to w.
+   */
+  private static double[] solveNormalEquations(double[] data, long interval, double frequency,
+      SinusoidFit previous) {
+    int columns = previous == null ? 3 : 4;
+    double[][] normal = new double[columns][columns];
+    double[] projection = new double[columns];
+    double[] row = new double[columns];
+    row[2] = 1.;
+
+    double period = interval / (double) TimeSeriesUtils.ONE_HZ_INTERVAL;
+    double step = NumericUtils.TAU * frequency * period; // phase change per sample
+    double stepCos = Math.cos(step);
+    double stepSin = Math.sin(step);
+    double cos = 1.;
+    double sin = 0.;
+    for (int i = 0; i < data.length; ++i) {
+      if (i % RESYNC_SAMPLES == 0) {
+        // evaluate exactly now and then so that round-off from the rotation doesn't build up
+        if (i > 0) {
+          CancellationToken.checkCurrent();
+        }
+        cos = Math.cos(step * i);
+        sin = Math.sin(step * i);
+      }
+      row[0] = cos;
+      row[1] = sin;
+      if (previous != null) {
+        double time = i * period;
+        row[3] = time * (previous.sineTerm * cos - previous.cosineTerm * sin);
+      }
+      for (int j = 0; j < columns; ++j) {
+        projection[j] += row[j] * data[i];
+        for (int k = j; k < columns; ++k) {
+          normal[j][k] += row[j] * row[k];
+        }
+      }
+      // rotate forward by one sample
+      double nextCos = cos * stepCos - sin * stepSin;
+      sin = sin * stepCos + cos * stepSin;
+      cos = nextCos;
+    }
+    for (int j = 0; j < columns; ++j) {
+      for (int k = 0; k < j; ++k) {
+        normal[j][k] = normal[k][j];
+      }
+    }
+
+    RealVector solution = new LUDecomposition(new Array2DRowRealMatrix(normal, false))
+        .getSolver().solve(new ArrayRealVector(projection, false));
+    return solution.toArray();
+  }
+
+  /**
+   * Get the peak amplitude of the fitted sinusoid
+   *
+   * @return Amplitude, in the units of the data
+   */
+  public double getAmplitude() {
+    return Math.sqrt(cosineTerm * cosineTerm + sineTerm * sineTerm);
+  }
+
+  /**
+   * Get the RMS amplitude of the fitted sinusoid (its peak amplitude over root 2), which is what
+   * the standard deviation of the data would be if it were a pure sinusoid
+   *
+   * @return RMS amplitude, in the units of the data
+   */
+  public double getRMSAmplitude() {
+    return getAmplitude() / Math.sqrt(2.);
+  }
+
+  /**
+   * Get the frequency of the fitted sinusoid
+   *
+   * @return Frequency (Hz)
+   */
+  public double getFrequency() {
+    return frequency;
+  }
+
+  /**
+   * Get the offset (mean) of the fitted sinusoid
+   *
+   * @return Offset, in the units of the data
+   */
+  public double getOffset() {
+    return offset;
+  }
+
+  /**
+   * Get the phase of the fitted sinusoid, as x(t) = amplitude * cos(wt + phase) + offset
+   *
+   * @return Phase at the first sample (radians, from -pi to pi)
+   */
+  public double getPhase() {
+    return Math.atan2(-sineTerm, cosineTerm);
+  }
+
+}
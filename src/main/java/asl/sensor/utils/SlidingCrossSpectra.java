@@ -0,0 +1,205 @@
+package asl.sensor.utils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Calculates the PSDs and cross-powers of a set of time series over a sequence of overlapping
+ * windows of a long record, such as for tracking how a sensor's self-noise changes over days.
+ * Each window's spectra are calculated by Welch's method exactly as in CrossSpectralMatrix (and
+ * so FFTResult.spectralCalc) over that window alone: segments 1/4 the window's length, moving 1/16
+ * of it at a time. Since consecutive windows share most of their segments, the FFT of each segment
+ * is kept for as long as a later window still uses it, and each window's spectra are summed from
+ * those rather than transforming the whole window again; only the segments new to a window are
+ * read and transformed. The held transforms are summed anew for each window rather than kept as a
+ * running total, so that round-off does not build up over many windows.
+ *
+ * Windows are identified by the index of their first segment, counted in segment steps from the
+ * start of the data. Moving to windows in increasing order reuses the held segments; moving back,
+ * or forward past all of them, starts again. Instances are not thread-safe; to process windows in
+ * parallel, give each thread its own instance over its own contiguous run of windows.
+ */
+public final class SlidingCrossSpectra {
+
+  /**
+   * Source of the data the spectra are calculated from
+   */
+  public interface DataReader {
+
+    /**
+     * Read part of each time series
+     *
+     * @param from Index of the first sample to read, from the start of the data
+     * @param to Index after the last sample to read
+     * @return Data of each series over that range, each of length (to - from)
+     */
+    double[][] read(long from, long to);
+  }
+
+  private final int seriesCount;
+  private final int segmentLength;
+  private final int segmentStep;
+  private final int segmentsPerWindow;
+  private final int padding;
+  private final double period;
+  private final double[] frequencies;
+  private final DataReader reader;
+  // transforms of the segments currently held, in order of their indices
+  private final Deque<Segment> segments;
+  private double wss;
+  private int segmentsTransformed;
+
+  /**
+   * Set up the calculation of spectra over windows of the given length
+   *
+   * @param seriesCount Number of time series
+   * @param windowLength Length of each window (samples)
+   * @param interval Sample interval of the data (ms)
+   * @param reader Source of the data
+   */
+  public SlidingCrossSpectra(int seriesCount, int windowLength, long interval,
+      DataReader reader) {
+    segmentLength = windowLength / 4;
+    segmentStep = segmentLength / 4;
+    if (segmentStep < 1) {
+      throw new IllegalArgumentException("Window is too short to split into segments: "
+          + windowLength + " samples");
+    }
+    this.seriesCount = seriesCount;
+    this.reader = reader;
+    segmentsPerWindow = (windowLength - segmentLength) / segmentStep + 1;
+    period = interval / (double) TimeSeriesUtils.ONE_HZ_INTERVAL;
+    padding = FFTResult.findFFTPaddingLength(segmentLength);
+    int singleSide = padding / 2 + 1;
+    double deltaFreq = 1. / (padding * period);
+    frequencies = new double[singleSide];
+    for (int k = 0; k < singleSide; ++k) {
+      frequencies[k] = k * deltaFreq;
+    }
+    segments = new ArrayDeque<>();
+    wss = 1.;
+    segmentsTransformed = 0;
+  }
+
+  /**
+   * Get the frequencies of each window's spectra
+   *
+   * @return Frequencies (Hz), from 0 to the Nyquist rate
+   */
+  public double[] getFreqs() {
+    return frequencies.clone();
+  }
+
+  /**
+   * Get the number of samples between the starts of consecutive segments
+   *
+   * @return Segment step (samples)
+   */
+  public int getSegmentStep() {
+    return segmentStep;
+  }
+
+  /**
+   * Get the number of segments averaged together for each window
+   *
+   * @return Segments per window
+   */
+  public int getSegmentsPerWindow() {
+    return segmentsPerWindow;
+  }
+
+  /**
+   * Get the number of segments whose FFTs have been taken so far, to check how much work was
+   * saved by reusing them between windows
+   *
+   * @return Number of segments transformed
+   */
+  public int getSegmentsTransformed() {
+    return segmentsTransformed;
+  }
+
+  /**
+   * Calculate the spectra of the window starting at the given segment, reading and transforming
+   * only those of its segments that are not already held from the previous window
+   *
+   * @param firstSegment Index of the window's first segment (its start is this times the
+   * segment step, in samples from the start of the data)
+   * @return Spectra of all pairs of series over the window
+   */
+  public CrossSpectralMatrix moveTo(long firstSegment) {
+    long lastSegment = firstSegment + segmentsPerWindow - 1;
+    // drop the segments no longer needed (all of them, if moving backwards)
+    if (!segments.isEmpty() && segments.peekFirst().index > firstSegment) {
+      segments.clear();
+    }
+    while (!segments.isEmpty() && segments.peekFirst().index < firstSegment) {
+      segments.removeFirst();
+    }
+
+    long nextSegment = segments.isEmpty() ? firstSegment : segments.peekLast().index + 1;
+    if (nextSegment <= lastSegment) {
+      // read everything the new segments cover at once, rather than once for each segment
+      long from = nextSegment * segmentStep;
+      long to = lastSegment * segmentStep + segmentLength;
+      double[][] data = reader.read(from, to);
+      for (long index = nextSegment; index <= lastSegment; ++index) {
+        // stop between segments if the calculation this is part of has been cancelled
+        CancellationToken.checkCurrent();
+        int offset = (int) (index * segmentStep - from);
+        segments.addLast(transform(index, data, offset));
+      }
+    }
+
+    return sumSegments();
+  }
+
+  private Segment transform(long index, double[][] data, int offset) {
+    int singleSide = frequencies.length;
+    double[][] real = new double[seriesCount][singleSide];
+    double[][] imaginary = new double[seriesCount][singleSide];
+    for (int i = 0; i < seriesCount; ++i) {
+      double[] toFFT = Arrays.copyOfRange(data[i], offset, offset + segmentLength);
+      Pair<Complex[], Double> windowFFTData = FFTResult.getSpectralWindow(toFFT, padding);
+      Complex[] fft = windowFFTData.getFirst();
+      wss = windowFFTData.getSecond(); // the same for every segment, which are the same length
+      for (int k = 0; k < singleSide; ++k) {
+        real[i][k] = fft[k].getReal();
+        imaginary[i][k] = fft[k].getImaginary();
+      }
+    }
+    ++segmentsTransformed;
+    return new Segment(index, real, imaginary);
+  }
+
+  private CrossSpectralMatrix sumSegments() {
+    int singleSide = frequencies.length;
+    int pairCount = seriesCount * (seriesCount + 1) / 2;
+    double[][] real = new double[pairCount][singleSide];
+    double[][] imaginary = new double[pairCount][singleSide];
+    for (Segment segment : segments) {
+      CrossSpectralMatrix.accumulateSegment(segment.real, segment.imaginary, real, imaginary);
+    }
+    CrossSpectralMatrix.scaleSums(real, imaginary, period, wss, segments.size());
+    return new CrossSpectralMatrix(seriesCount, frequencies.clone(), real, imaginary);
+  }
+
+  /**
+   * FFT of one segment of each series, kept as primitive arrays
+   */
+  private static final class Segment {
+
+    final long index;
+    final double[][] real;
+    final double[][] imaginary;
+
+    Segment(long index, double[][] real, double[][] imaginary) {
+      this.index = index;
+      this.real = real;
+      this.imaginary = imaginary;
+    }
+  }
+
+}
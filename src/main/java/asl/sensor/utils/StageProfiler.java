@@ -0,0 +1,297 @@
+package asl.sensor.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Records the wall time, CPU time, and memory allocation of each stage of a calculation (loading
+ * data, matching intervals, decimation, PSDs, response application, fitting, building plots) so
+ * that the time taken by a run can be broken down without attaching a profiler.
+ *
+ * As with {@link CancellationToken}, the profiler is installed for the thread running a
+ * calculation (see {@link #call(Callable)}) and the stages are found by the code doing the work,
+ * which wraps each stage as
+ * <pre>
+ *   StageProfiler.Span span = StageProfiler.stage("PSD");
+ *   try {
+ *     ...
+ *   } finally {
+ *     span.close();
+ *   }
+ * </pre>
+ * When no profiler is installed, stages are not recorded and cost next to nothing. Code that hands
+ * work to other threads should install the same profiler in those threads to include that work.
+ *
+ * CPU time and allocation come from the JVM's ThreadMXBean and only count the thread a stage ran
+ * in. Times of a stage include any stages nested in it.
+ */
+public class StageProfiler {
+
+  private static final ThreadLocal<StageProfiler> CURRENT = new ThreadLocal<>();
+  // number of stages open in each thread, used to record how stages are nested
+  private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+  private static final com.sun.management.ThreadMXBean ALLOCATION_THREADS = allocationBean();
+  private static final Span NO_SPAN = new Span(null, null, 0L, 0L, 0L);
+  private static final StageProfiler DISABLED = new StageProfiler(false);
+  private static final ThreadLocal<DecimalFormat> FORMAT =
+      ThreadLocal.withInitial(() -> new DecimalFormat("#.###"));
+
+  private final boolean enabled;
+  private final long profileStartNanos;
+  private final List<StageSpan> spans;
+
+  /**
+   * Create a new profiler with no stages recorded
+   */
+  public StageProfiler() {
+    this(true);
+  }
+
+  private StageProfiler(boolean enabled) {
+    this.enabled = enabled;
+    profileStartNanos = System.nanoTime();
+    spans = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    if (THREADS instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREADS;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the profiler installed for the current thread, or one that records nothing if the thread
+   * isn't running a profiled calculation
+   *
+   * @return Profiler of the calculation running in this thread
+   */
+  public static StageProfiler current() {
+    StageProfiler profiler = CURRENT.get();
+    if (profiler == null) {
+      return DISABLED;
+    }
+    return profiler;
+  }
+
+  /**
+   * Start a stage of the current thread's calculation, which ends when the returned span is
+   * closed. Nothing is recorded if no profiler is installed.
+   *
+   * @param name Name of the stage (stages with the same name are totalled in reports)
+   * @return Span to close when the stage is done
+   */
+  public static Span stage(String name) {
+    return current().begin(name);
+  }
+
+  /**
+   * Start a stage of a calculation in the current thread, which ends when the returned span is
+   * closed
+   *
+   * @param name Name of the stage
+   * @return Span to close when the stage is done
+   */
+  public Span begin(String name) {
+    if (!enabled) {
+      return NO_SPAN;
+    }
+    ++DEPTH.get()[0];
+    return new Span(this, name, System.nanoTime(), threadCpuNanos(), threadAllocatedBytes());
+  }
+
+  private static long threadCpuNanos() {
+    if (!CPU_TIME_SUPPORTED) {
+      return -1L;
+    }
+    return THREADS.getCurrentThreadCpuTime();
+  }
+
+  private static long threadAllocatedBytes() {
+    if (ALLOCATION_THREADS == null) {
+      return -1L;
+    }
+    return ALLOCATION_THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static long difference(long start, long end) {
+    if (start < 0 || end < 0) {
+      return -1L;
+    }
+    return end - start;
+  }
+
+  /**
+   * Get whether this profiler records stages (false only for the profiler returned by
+   * {@link #current()} when none is installed)
+   *
+   * @return True if stages are recorded
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Get the stages recorded so far, in the order they started
+   *
+   * @return Copy of the recorded stages
+   */
+  public List<StageSpan> getSpans() {
+    List<StageSpan> copy;
+    synchronized (spans) {
+      copy = new ArrayList<>(spans);
+    }
+    copy.sort(Comparator.comparingLong(StageSpan::getStartNanos));
+    return copy;
+  }
+
+  /**
+   * Get the recorded stages totalled by name, in the order each stage first started. Each value
+   * is the number of spans, then the sums of their wall time (ns), CPU time (ns), and allocated
+   * bytes; the last two are -1 if they couldn't be measured.
+   *
+   * @return Map from stage names to totals
+   */
+  public Map<String, long[]> getStageTotals() {
+    Map<String, long[]> totals = new LinkedHashMap<>();
+    for (StageSpan span : getSpans()) {
+      long[] total = totals.computeIfAbsent(span.getName(), key -> new long[4]);
+      ++total[0];
+      total[1] += span.getWallNanos();
+      total[2] = addMeasured(total[2], span.getCpuNanos());
+      total[3] = addMeasured(total[3], span.getAllocatedBytes());
+    }
+    return totals;
+  }
+
+  private static long addMeasured(long total, long value) {
+    if (total < 0 || value < 0) {
+      return -1L;
+    }
+    return total + value;
+  }
+
+  /**
+   * Run a calculation in the current thread with this profiler installed, so that the stages it
+   * runs are recorded here. The previously installed profiler is restored afterwards.
+   *
+   * @param calculation Calculation to run
+   * @param <T> Type of the calculation's result
+   * @return Result of the calculation
+   * @throws Exception Any exception thrown by the calculation
+   */
+  public <T> T call(Callable<T> calculation) throws Exception {
+    StageProfiler previous = CURRENT.get();
+    install(this);
+    try {
+      return calculation.call();
+    } finally {
+      install(previous);
+    }
+  }
+
+  /**
+   * Run a calculation in the current thread with this profiler installed, as in
+   * {@link #call(Callable)}, for calculations that don't throw checked exceptions
+   *
+   * @param calculation Calculation to run
+   */
+  public void run(Runnable calculation) {
+    StageProfiler previous = CURRENT.get();
+    install(this);
+    try {
+      calculation.run();
+    } finally {
+      install(previous);
+    }
+  }
+
+  private static void install(StageProfiler profiler) {
+    if (profiler == null || !profiler.enabled) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(profiler);
+    }
+  }
+
+  /**
+   * Produce a table of the time spent in each stage, for reports. This is empty if no stages
+   * were recorded.
+   *
+   * @return Human-readable stage totals
+   */
+  @Override
+  public String toString() {
+    Map<String, long[]> totals = getStageTotals();
+    if (totals.isEmpty()) {
+      return "";
+    }
+    DecimalFormat format = FORMAT.get();
+    StringBuilder sb = new StringBuilder("Stage timing (wall ms, CPU ms, allocated MB):");
+    for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+      long[] total = entry.getValue();
+      sb.append("\n    ").append(entry.getKey()).append(": ");
+      sb.append(format.format(total[1] / 1E6)).append(", ");
+      sb.append(total[2] < 0 ? "n/a" : format.format(total[2] / 1E6)).append(", ");
+      sb.append(total[3] < 0 ? "n/a" : format.format(total[3] / (1024. * 1024.)));
+      if (total[0] > 1) {
+        sb.append(" (").append(total[0]).append(" times)");
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A stage of a calculation that is in progress; closing it records the stage
+   */
+  public static final class Span implements AutoCloseable {
+
+    private final StageProfiler profiler;
+    private final String name;
+    private final long startNanos;
+    private final long startCpuNanos;
+    private final long startAllocatedBytes;
+    private boolean closed;
+
+    private Span(StageProfiler profiler, String name, long startNanos, long startCpuNanos,
+        long startAllocatedBytes) {
+      this.profiler = profiler;
+      this.name = name;
+      this.startNanos = startNanos;
+      this.startCpuNanos = startCpuNanos;
+      this.startAllocatedBytes = startAllocatedBytes;
+      closed = (profiler == null);
+    }
+
+    /**
+     * End the stage and record it with its profiler (closing it again does nothing)
+     */
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      long wallNanos = System.nanoTime() - startNanos;
+      long cpuNanos = difference(startCpuNanos, threadCpuNanos());
+      long allocatedBytes = difference(startAllocatedBytes, threadAllocatedBytes());
+      int depth = --DEPTH.get()[0];
+      profiler.spans.add(new StageSpan(name, Thread.currentThread().getName(), depth,
+          startNanos - profiler.profileStartNanos, wallNanos, cpuNanos, allocatedBytes));
+    }
+  }
+
+}
@@ -0,0 +1,99 @@
+package asl.sensor.utils;
+
+/**
+ * Timing of one stage of a calculation (i.e., loading data, taking a PSD, fitting a response),
+ * as recorded by a {@link StageProfiler}. CPU time and allocation are those of the thread that ran
+ * the stage, and are negative if the JVM can't measure them.
+ */
+public final class StageSpan {
+
+  private final String name;
+  private final String threadName;
+  private final int depth;
+  private final long startNanos;
+  private final long wallNanos;
+  private final long cpuNanos;
+  private final long allocatedBytes;
+
+  StageSpan(String name, String threadName, int depth, long startNanos, long wallNanos,
+      long cpuNanos, long allocatedBytes) {
+    this.name = name;
+    this.threadName = threadName;
+    this.depth = depth;
+    this.startNanos = startNanos;
+    this.wallNanos = wallNanos;
+    this.cpuNanos = cpuNanos;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  /**
+   * Get the name of the stage
+   *
+   * @return Stage name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the name of the thread the stage ran in
+   *
+   * @return Thread name
+   */
+  public String getThreadName() {
+    return threadName;
+  }
+
+  /**
+   * Get the number of stages this one was nested in (in the same thread); 0 for stages that were
+   * not part of any other
+   *
+   * @return Nesting depth of the stage
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Get the time from the start of profiling until this stage started
+   *
+   * @return Start time relative to the profile, in nanoseconds
+   */
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  /**
+   * Get the elapsed (wall-clock) time of the stage, including any nested stages
+   *
+   * @return Wall time in nanoseconds
+   */
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  /**
+   * Get the CPU time used by the stage's thread during the stage
+   *
+   * @return CPU time in nanoseconds, or -1 if not measurable
+   */
+  public long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  /**
+   * Get the memory allocated by the stage's thread during the stage
+   *
+   * @return Allocated bytes, or -1 if not measurable
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return name + " [" + threadName + "]: " + wallNanos / 1E6 + " ms wall, "
+        + cpuNanos / 1E6 + " ms CPU, " + allocatedBytes + " bytes";
+  }
+
+}
@@ -132,10 +132,19 @@ public class TimeSeriesUtils {
     // downsample neatly in some cases so we would first upsample,
     // filter out any noise terms, then downsample
 
-    double[] upped = upsample(data, upf);
-    double[] lpfed = FFTResult.lowPassFilter(upped, higherFreq, lowerFreq);
-
-    return downsample(lpfed, dnf);
+    StageProfiler.Span span = StageProfiler.stage("Decimation");
+    try {
+      // decimating long records is slow, so stop between stages if the calculation is cancelled
+      CancellationToken.checkCurrent();
+      double[] upped = upsample(data, upf);
+      CancellationToken.checkCurrent();
+      double[] lpfed = FFTResult.lowPassFilter(upped, higherFreq, lowerFreq);
+      CancellationToken.checkCurrent();
+
+      return downsample(lpfed, dnf);
+    } finally {
+      span.close();
+    }
 
   }
 
@@ -218,17 +227,26 @@ public class TimeSeriesUtils {
   }
 
   public static double[] detrendEnds(double[] data) {
+    double[] dataCopy = data.clone();
+    detrendEndsInPlace(dataCopy);
+    return dataCopy;
+  }
+
+  /**
+   * In-place version of detrendEnds, which removes the linear trend between the first and last
+   * points of the data without allocating a new array.
+   *
+   * @param data Time series data to have its trend removed
+   */
+  public static void detrendEndsInPlace(double[] data) {
     int lastIdx = data.length - 1;
     double start = data[0];
     double end = data[lastIdx];
     double diff = end - start;
     double delta = diff / data.length;
-    double[] dataCopy = data.clone();
     for (int i = 0; i < data.length; ++i) {
-      dataCopy[i] -= start + ((delta * i) + 1) * diff / (lastIdx);
+      data[i] -= start + ((delta * i) + 1) * diff / (lastIdx);
     }
-
-    return dataCopy;
   }
 
   /**
@@ -623,6 +641,18 @@ public class TimeSeriesUtils {
    * @return The data normalized by its maximum absolute value
    */
   public static double[] normalize(double[] data) {
+    double[] normData = data.clone();
+    normalizeInPlace(normData);
+    return normData;
+  }
+
+  /**
+   * In-place version of normalize, which scales the data by its maximum absolute value without
+   * allocating a new array. Data that is all zeros is left unchanged.
+   *
+   * @param data Time series data to be normalized
+   */
+  public static void normalizeInPlace(double[] data) {
     double absMax = Math.abs(data[0]); // initialize with first value in array
     // first get the absolute max
     for (double point : data) {
@@ -630,15 +660,13 @@ public class TimeSeriesUtils {
     }
 
     if (absMax == 0) {
-      return data.clone();
+      return;
     }
 
-    double[] normData = new double[data.length];
     // now scale the data accordingly
     for (int i = 0; i < data.length; ++i) {
-      normData[i] = data[i] / absMax;
+      data[i] /= absMax;
     }
-    return normData;
   }
 
   /**
@@ -4,25 +4,33 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertThat;
 
 import asl.sensor.experiment.AzimuthExperiment;
+import asl.sensor.experiment.CoherenceExperiment;
 import asl.sensor.experiment.GainExperiment;
 import asl.sensor.experiment.GainSixExperiment;
 import asl.sensor.experiment.NoiseExperiment;
 import asl.sensor.experiment.NoiseNineExperiment;
 import asl.sensor.experiment.OrthogonalExperiment;
+import asl.sensor.experiment.PSDDistributionExperiment;
 import asl.sensor.experiment.RandomizedExperiment;
 import asl.sensor.experiment.ResponseExperiment;
+import asl.sensor.experiment.RollingNoiseExperiment;
 import asl.sensor.experiment.SineExperiment;
+import asl.sensor.experiment.SpectrogramExperiment;
 import asl.sensor.experiment.SpectrumExperiment;
 import asl.sensor.experiment.StepExperiment;
 import asl.sensor.gui.AzimuthPanel;
+import asl.sensor.gui.CoherencePanel;
 import asl.sensor.gui.GainPanel;
 import asl.sensor.gui.GainSixPanel;
 import asl.sensor.gui.NoiseNinePanel;
 import asl.sensor.gui.NoisePanel;
 import asl.sensor.gui.OrthogonalPanel;
+import asl.sensor.gui.PSDDistributionPanel;
 import asl.sensor.gui.RandomizedPanel;
 import asl.sensor.gui.ResponsePanel;
+import asl.sensor.gui.RollingNoisePanel;
 import asl.sensor.gui.SinePanel;
+import asl.sensor.gui.SpectrogramPanel;
 import asl.sensor.gui.SpectrumPanel;
 import asl.sensor.gui.StepPanel;
 import org.junit.Test;
@@ -134,6 +142,52 @@ public class ExperimentFactoryTest {
     assertThat(ExperimentFactory.SPECTRUM.createPanel(), instanceOf(SpectrumPanel.class));
   }
 
+  @Test
+  public void rollingNoise_createExperiment() {
+    assertThat(ExperimentFactory.NOISE_ROLLING.createExperiment(),
+        instanceOf(RollingNoiseExperiment.class));
+  }
+
+  @Test
+  public void rollingNoise_createPanel() {
+    assertThat(ExperimentFactory.NOISE_ROLLING.createPanel(),
+        instanceOf(RollingNoisePanel.class));
+  }
+
+  @Test
+  public void coherence_createExperiment() {
+    assertThat(ExperimentFactory.COHERENCE.createExperiment(),
+        instanceOf(CoherenceExperiment.class));
+  }
+
+  @Test
+  public void coherence_createPanel() {
+    assertThat(ExperimentFactory.COHERENCE.createPanel(), instanceOf(CoherencePanel.class));
+  }
+
+  @Test
+  public void psdDistribution_createExperiment() {
+    assertThat(ExperimentFactory.PSD_DISTRIBUTION.createExperiment(),
+        instanceOf(PSDDistributionExperiment.class));
+  }
+
+  @Test
+  public void psdDistribution_createPanel() {
+    assertThat(ExperimentFactory.PSD_DISTRIBUTION.createPanel(),
+        instanceOf(PSDDistributionPanel.class));
+  }
+
+  @Test
+  public void spectrogram_createExperiment() {
+    assertThat(ExperimentFactory.SPECTROGRAM.createExperiment(),
+        instanceOf(SpectrogramExperiment.class));
+  }
+
+  @Test
+  public void spectrogram_createPanel() {
+    assertThat(ExperimentFactory.SPECTROGRAM.createPanel(), instanceOf(SpectrogramPanel.class));
+  }
+
   @Test
   public void response_createExperiment() {
     assertThat(ExperimentFactory.RESPONSE.createExperiment(), instanceOf(ResponseExperiment.class));
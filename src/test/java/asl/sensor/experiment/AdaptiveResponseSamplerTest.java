@@ -0,0 +1,72 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.NumericUtils;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Test;
+
+public class AdaptiveResponseSamplerTest {
+
+  // magnitude (10 * log10) and unwrapped phase (degrees) as plotted by the response experiment
+  private static double[][] plotted(Complex[] response) {
+    double[][] curves = new double[2][response.length];
+    double phiPrev = 0.;
+    for (int i = 0; i < response.length; ++i) {
+      double phi = NumericUtils.unwrap(NumericUtils.atanc(response[i]), phiPrev);
+      phiPrev = phi;
+      curves[0][i] = 10 * Math.log10(response[i].abs());
+      curves[1][i] = Math.toDegrees(phi);
+    }
+    return curves;
+  }
+
+  @Test
+  public void sampledCurves_matchDenseEvaluation() throws IOException {
+    List<InstrumentResponse> responses = Arrays.asList(
+        InstrumentResponse.loadEmbeddedResponse("STS1T5_Q330HR"),
+        InstrumentResponse.loadEmbeddedResponse("STS2gen3_Q330HR"),
+        InstrumentResponse.loadEmbeddedResponse("TR360_Q330SR"));
+    double lowFreq = .0001;
+    double highFreq = 200;
+    AdaptiveResponseSampler sampler = new AdaptiveResponseSampler(responses, lowFreq, highFreq);
+    double[] freqs = sampler.getFrequencies();
+    assertTrue(freqs.length < 5000);
+    assertEquals(lowFreq, freqs[0], 1E-12);
+    assertEquals(highFreq, freqs[freqs.length - 1], 1E-9);
+
+    int denseCount = 20000;
+    double[] denseFreqs = new double[denseCount];
+    for (int i = 0; i < denseCount; ++i) {
+      denseFreqs[i] = lowFreq * Math.pow(highFreq / lowFreq, i / (denseCount - 1.));
+    }
+
+    for (int r = 0; r < responses.size(); ++r) {
+      Complex[] sampled = sampler.getResult(r);
+      assertArrayEquals(responses.get(r).applyResponseToInput(freqs), sampled);
+      double[][] sampledCurves = plotted(sampled);
+      double[][] denseCurves = plotted(responses.get(r).applyResponseToInput(denseFreqs));
+      int j = 0;
+      for (int i = 0; i < denseCount; ++i) {
+        // interpolate between the sampled points the way a line plot on log axes would
+        while (j < freqs.length - 2 && freqs[j + 1] < denseFreqs[i]) {
+          ++j;
+        }
+        double fraction =
+            Math.log10(denseFreqs[i] / freqs[j]) / Math.log10(freqs[j + 1] / freqs[j]);
+        for (int curve = 0; curve < 2; ++curve) {
+          double interpolated = sampledCurves[curve][j]
+              + fraction * (sampledCurves[curve][j + 1] - sampledCurves[curve][j]);
+          assertEquals(denseCurves[curve][i], interpolated, 0.1);
+        }
+      }
+    }
+  }
+
+}
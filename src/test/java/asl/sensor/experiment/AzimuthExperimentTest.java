@@ -415,6 +415,43 @@ public class AzimuthExperimentTest {
     }
   }
 
+  @Test
+  public void parallelWindows_agreeWithSequentialCOWI() {
+    String filename = folder + "cowi-multitests/C100823215422_COWI.LHx";
+    String dataname1 = "US_COWI_  _LHN";
+    String dataname2 = "US_COWI_  _LHE";
+    String filename2 = folder + "cowi-multitests/DT000110.LH1";
+    try {
+      DataStore ds = new DataStore();
+      ds.setBlock(0, filename, dataname1);
+      ds.setBlock(1, filename, dataname2);
+      ds.setBlock(2, filename2);
+
+      String startString = "2010-236T02:00:00.0";
+      String endString = "2010-236T13:00:00.0";
+      long st = TestUtils.timeStringToEpochMilli(startString);
+      long ed = TestUtils.timeStringToEpochMilli(endString);
+      ds.trim(st, ed);
+
+      AzimuthExperiment sequential = new AzimuthExperiment();
+      sequential.runExperimentOnData(ds);
+      AzimuthExperiment parallel = new AzimuthExperiment();
+      parallel.setParallelWindows(true);
+      parallel.runExperimentOnData(ds);
+
+      assertTrue(parallel.hadEnoughPoints());
+      assertEquals(sequential.getWindowSolverTelemetry().size(),
+          parallel.getWindowSolverTelemetry().size());
+      assertEquals(3.2, parallel.getFitAngle(), 0.5);
+      assertEquals(sequential.getFitAngle(), parallel.getFitAngle(),
+          Math.max(sequential.getUncertainty(), 0.1));
+      assertEquals(sequential.getUncertainty(), parallel.getUncertainty(), 0.5);
+    } catch (SeedFormatException | CodecException | IOException e) {
+      e.printStackTrace();
+      fail();
+    }
+  }
+
   private void testsFromSprockets(int angle, String staCha) {
     StringBuilder sb = new StringBuilder();
     sb.append(angle);
@@ -539,8 +576,9 @@ public class AzimuthExperimentTest {
     long interval = 40;
     long start = 0;
     long end = 10000;
+    // exact answer is 3*pi/2 = 4.71238898; solver's tolerance stops it slightly short of that
     assertEquals(
-        4.71250648,
+        4.71239349,
         AzimuthExperiment.getAzimuth(north, east, referenceNorth, interval, start, end),
         10E-7);
   }
@@ -566,5 +604,41 @@ public class AzimuthExperimentTest {
         AzimuthExperiment.getAzimuth(north, east, referenceNorth, interval, start, end),
         10E-7);
   }
-}
 
+  @Test
+  public void getAzimuth_sharedMemoReusesPreprocessing() {
+    double[] north = new double[10000];
+    double[] east = new double[10000];
+    double[] referenceNorth = new double[10000];
+    double[] referenceEast = new double[10000];
+    Random rand = new Random();
+    rand.setSeed(44);
+    for (int i = 0; i < north.length; i++) {
+      north[i] = rand.nextDouble();
+      east[i] = rand.nextDouble();
+      referenceNorth[i] = north[i];
+      referenceEast[i] = east[i];
+    }
+    long interval = 40;
+    long start = 0;
+    long end = 10000;
+    PreprocessingMemo memo = new PreprocessingMemo();
+    double northAngle =
+        AzimuthExperiment.getAzimuth(north, east, referenceNorth, interval, start, end, memo);
+    double eastAngle =
+        AzimuthExperiment.getAzimuth(north, east, referenceEast, interval, start, end, memo);
+
+    // same results as without the memo
+    assertEquals(
+        AzimuthExperiment.getAzimuth(north, east, referenceNorth, interval, start, end),
+        northAngle, 1E-12);
+    assertEquals(
+        AzimuthExperiment.getAzimuth(north, east, referenceEast, interval, start, end),
+        eastAngle, 1E-12);
+    // decimate, demean, detrend and filter each of three series per solve; the second solve's
+    // north and east data is all reused
+    assertEquals(24, memo.getRequests());
+    assertEquals(16, memo.getComputations());
+    assertEquals(8, memo.getReuses());
+  }
+}
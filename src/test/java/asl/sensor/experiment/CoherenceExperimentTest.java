@@ -0,0 +1,100 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import java.io.IOException;
+import java.util.Random;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.junit.Test;
+
+public class CoherenceExperimentTest {
+
+  private static final long INTERVAL = 100L; // 10 samples per second
+  private static final long START = 1514764800000L;
+
+  private static DataStore getTestData(boolean withResponses) throws IOException {
+    Random random = new Random(29);
+    int length = 20000;
+    double[][] data = new double[3][length];
+    for (int i = 0; i < length; ++i) {
+      double common = 1000. * random.nextGaussian();
+      // the first two sensors record the same signal; the third only records its own noise
+      data[0][i] = common + 50. * random.nextGaussian();
+      data[1][i] = common + 50. * random.nextGaussian();
+      data[2][i] = 1000. * random.nextGaussian();
+    }
+    DataStore dataStore = new DataStore();
+    for (int i = 0; i < data.length; ++i) {
+      dataStore.setBlock(i, new DataBlock(data[i], INTERVAL, "XX_TEST_0" + i + "_BHZ", START));
+      if (withResponses) {
+        dataStore.setResponse(i, InstrumentResponse.loadEmbeddedResponse("STS2gen3_Q330HR"));
+      }
+    }
+    return dataStore;
+  }
+
+  private static double getMean(XYSeries series) {
+    double sum = 0.;
+    for (int i = 0; i < series.getItemCount(); ++i) {
+      sum += series.getY(i).doubleValue();
+    }
+    return sum / series.getItemCount();
+  }
+
+  @Test
+  public void coherence_plotsEachPairOfInputs() throws IOException {
+    DataStore dataStore = getTestData(false);
+    CoherenceExperiment experiment = new CoherenceExperiment();
+    assertTrue(experiment.hasEnoughData(dataStore));
+    experiment.setFreqSpace(true);
+    experiment.runExperimentOnData(dataStore);
+
+    XYSeriesCollection coherence = experiment.getData().get(0);
+    assertEquals(3, coherence.getSeriesCount());
+    // pairs in order: 0 & 1, 0 & 2, 1 & 2
+    assertTrue(getMean(coherence.getSeries(0)) > 0.9);
+    assertTrue(getMean(coherence.getSeries(1)) < 0.2);
+    assertTrue(getMean(coherence.getSeries(2)) < 0.2);
+  }
+
+  @Test
+  public void hasEnoughData_needsTwoInputs() throws IOException {
+    DataStore dataStore = new DataStore();
+    dataStore.setBlock(0, getTestData(false).getBlock(0));
+    assertFalse(new CoherenceExperiment().hasEnoughData(dataStore));
+  }
+
+  @Test
+  public void noiseExperiment_coherencePlotMatchesCoherenceExperiment() throws IOException {
+    CoherenceExperiment coherenceExperiment = new CoherenceExperiment();
+    coherenceExperiment.runExperimentOnData(getTestData(false));
+    XYSeriesCollection expected = coherenceExperiment.getData().get(0);
+
+    NoiseExperiment noiseExperiment = new NoiseExperiment();
+    noiseExperiment.runExperimentOnData(getTestData(true));
+    assertEquals(1, noiseExperiment.getData().size());
+    noiseExperiment.setPlotCoherence(true);
+    noiseExperiment.runExperimentOnData(getTestData(true));
+    assertEquals(2, noiseExperiment.getData().size());
+    XYSeriesCollection fromNoise = noiseExperiment.getData().get(1);
+
+    // the responses cancel out, so the coherence is the same with or without them
+    assertEquals(expected.getSeriesCount(), fromNoise.getSeriesCount());
+    for (int i = 0; i < expected.getSeriesCount(); ++i) {
+      XYSeries expectedSeries = expected.getSeries(i);
+      XYSeries series = fromNoise.getSeries(i);
+      assertEquals(expectedSeries.getItemCount(), series.getItemCount());
+      for (int j = 0; j < series.getItemCount(); ++j) {
+        assertEquals(expectedSeries.getX(j).doubleValue(), series.getX(j).doubleValue(), 1E-9);
+        assertEquals(expectedSeries.getY(j).doubleValue(), series.getY(j).doubleValue(), 1E-6);
+      }
+    }
+  }
+
+}
@@ -6,11 +6,29 @@ import static asl.sensor.experiment.Experiment.DECIMAL_FORMAT;
 import static asl.sensor.utils.TimeSeriesUtils.ONE_HZ_INTERVAL;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
+import asl.sensor.utils.CancellationToken;
+import asl.sensor.utils.StageProfiler;
+import asl.sensor.utils.StageSpan;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.util.Pair;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
 import org.junit.Test;
 
 public class ExperimentTest {
@@ -102,6 +120,147 @@ public class ExperimentTest {
     }
   }
 
+  @Test
+  public void runConcurrently_returnsResultsInTaskOrder() {
+    MockExperiment experiment = new MockExperiment();
+    // the first task is the slowest, so (given more than one thread) it finishes last
+    List<Callable<Integer>> tasks = Arrays.asList(
+        () -> {
+          Thread.sleep(50);
+          return 1;
+        },
+        () -> 2,
+        () -> 3);
+    List<Integer> results =
+        experiment.runConcurrently(Arrays.asList("first", "second", "third"), tasks);
+
+    assertEquals(Arrays.asList(1, 2, 3), results);
+    // one status update as each task completes, all fired from the calling thread
+    assertEquals(3, experiment.numberOfChangesFired);
+    assertTrue(experiment.getStatus().endsWith("(3 of 3 done)"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void runConcurrently_rethrowsTaskException() {
+    MockExperiment experiment = new MockExperiment();
+    List<Callable<Integer>> tasks = Arrays.asList(
+        () -> 1,
+        () -> {
+          throw new IllegalStateException("Solve failed");
+        });
+    experiment.runConcurrently(Arrays.asList("first", "second"), tasks);
+  }
+
+  @Test
+  public void runExperimentOnData_cancelledTokenSkipsBackend() {
+    MockExperiment experiment = new MockExperiment();
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    try {
+      experiment.runExperimentOnData(null, token);
+      fail();
+    } catch (CancellationException e) {
+      assertFalse(experiment.backendCalled);
+    }
+  }
+
+  @Test
+  public void runConcurrently_tasksRunWithCallersToken() throws Exception {
+    MockExperiment experiment = new MockExperiment();
+    CancellationToken token = new CancellationToken();
+    List<Callable<CancellationToken>> tasks = Arrays.asList(
+        CancellationToken::current,
+        CancellationToken::current);
+    List<CancellationToken> results =
+        token.call(() -> experiment.runConcurrently(Arrays.asList("first", "second"), tasks));
+    // the tasks' token is cancelled along with the caller's
+    assertFalse(results.get(0).isCancelled());
+    assertSame(results.get(0), results.get(1));
+    token.cancel();
+    assertTrue(results.get(0).isCancelled());
+  }
+
+  @Test
+  public void runConcurrently_failedTaskStopsOthersBeforeReturning() {
+    MockExperiment experiment = new MockExperiment();
+    AtomicBoolean stillRunning = new AtomicBoolean(false);
+    List<Callable<Integer>> tasks = Arrays.asList(
+        () -> {
+          stillRunning.set(true);
+          try {
+            // runs until cancelled (or, if the pool has only one thread, for a little while)
+            long end = System.nanoTime() + 2000000000L;
+            while (System.nanoTime() < end) {
+              CancellationToken.checkCurrent();
+              Thread.sleep(1);
+            }
+            return 1;
+          } finally {
+            stillRunning.set(false);
+          }
+        },
+        () -> {
+          throw new IllegalStateException("Solve failed");
+        });
+    try {
+      experiment.runConcurrently(Arrays.asList("first", "second"), tasks);
+      fail();
+    } catch (IllegalStateException e) {
+      assertFalse(stillRunning.get());
+    }
+  }
+
+  @Test
+  public void runInGroups_splitsItemsIntoContiguousGroupsInOrder() {
+    MockExperiment experiment = new MockExperiment();
+    List<Integer> items = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+    List<List<Integer>> groups = experiment.runInGroups("items", items, 3, group -> group);
+    assertEquals(3, groups.size());
+    assertEquals(Arrays.asList(1, 2), groups.get(0));
+    assertEquals(Arrays.asList(3, 4), groups.get(1));
+    assertEquals(Arrays.asList(5, 6, 7), groups.get(2));
+    // never more groups than items
+    assertEquals(2, experiment.runInGroups("items", items.subList(0, 2), 3, group -> group).size());
+  }
+
+  @Test
+  public void overlapsGap_onlySpansCrossingAGap() {
+    List<Pair<Long, Long>> gaps = Arrays.asList(new Pair<>(100L, 200L), new Pair<>(500L, 600L));
+    assertTrue(Experiment.overlapsGap(gaps, 150L, 160L));
+    assertTrue(Experiment.overlapsGap(gaps, 0L, 1000L));
+    assertTrue(Experiment.overlapsGap(gaps, 550L, 700L));
+    // spans that only touch a gap's ends don't overlap it
+    assertFalse(Experiment.overlapsGap(gaps, 0L, 100L));
+    assertFalse(Experiment.overlapsGap(gaps, 200L, 500L));
+    assertFalse(Experiment.overlapsGap(Arrays.asList(), 0L, 1000L));
+  }
+
+  @Test
+  public void runExperimentOnData_recordsStageProfile() throws Exception {
+    MockExperiment experiment = new MockExperiment();
+    experiment.runExperimentOnData(null);
+    List<StageSpan> spans = experiment.getStageProfiler().getSpans();
+    assertEquals(1, spans.size());
+    assertEquals("MockExperiment backend", spans.get(0).getName());
+    assertTrue(experiment.getStageTimingReport().contains("MockExperiment backend: "));
+
+    ExperimentProfiles profiles = ExperimentProfiles.getInstance();
+    assertSame(experiment.getStageProfiler(), profiles.getLatestProfile("MockExperiment"));
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String[] profiled = (String[]) server.getAttribute(
+        new ObjectName(ExperimentProfiles.OBJECT_NAME), "ProfiledExperiments");
+    assertTrue(Arrays.asList(profiled).contains("MockExperiment"));
+  }
+
+  @Test
+  public void runExperimentOnData_nestedRunSharesParentProfile() {
+    MockExperiment experiment = new MockExperiment();
+    StageProfiler parentProfiler = new StageProfiler();
+    parentProfiler.run(() -> experiment.runExperimentOnData(null));
+    assertSame(parentProfiler, experiment.getStageProfiler());
+    assertEquals(1, parentProfiler.getSpans().size());
+  }
+
   @Test
   public void decimalFormatterTruncatesCorrectly() {
     double decimal = 0.1239456789;
@@ -135,5 +294,48 @@ public class ExperimentTest {
     assertEquals(expected, formattedDateString);
   }
 
+  @Test
+  public void runExperimentOnData_leavesInputDataUnchanged() {
+    double[] first = new double[100];
+    double[] second = new double[200];
+    DataStore dataStore = new DataStore();
+    dataStore.setBlock(0, new DataBlock(first, ONE_HZ_INTERVAL, "TEST1", 0));
+    dataStore.setBlock(1, new DataBlock(second, ONE_HZ_INTERVAL / 2, "TEST2", 0));
+    Experiment experiment = new MockExperimentThatNeedsBlocks();
+    experiment.runExperimentOnData(dataStore);
+
+    // the experiment's own copy is trimmed to the common time, but the input is left as it was
+    assertEquals(100000L, experiment.getEnd());
+    DataBlock secondBlock = dataStore.getBlock(1);
+    assertEquals(100000L, secondBlock.getEndTime());
+    assertEquals(ONE_HZ_INTERVAL / 2, secondBlock.getInterval());
+    assertSame(second, secondBlock.getData());
+  }
+
+
+  @Test
+  public void addToPlot_binnedPSDHasOnePointPerBand() {
+    int length = 50001;
+    double[] freqs = new double[length];
+    Complex[] psd = new Complex[length];
+    for (int i = 0; i < length; ++i) {
+      freqs[i] = i * 0.0004;
+      psd[i] = new Complex(1E-14);
+    }
+    XYSeriesCollection smoothed = new XYSeriesCollection();
+    Experiment.addToPlot(new XYSeries("PSD"), psd, freqs, true, 0, smoothed);
+    XYSeriesCollection binned = new XYSeriesCollection();
+    Experiment.addToPlot(new XYSeries("PSD"), psd, freqs, true, 8, binned);
+
+    XYSeries binnedSeries = binned.getSeries(0);
+    assertEquals(length - 1, smoothed.getSeries(0).getItemCount());
+    assertTrue(binnedSeries.getItemCount() < 200);
+    for (int i = 0; i < binnedSeries.getItemCount(); ++i) {
+      assertEquals(-140., binnedSeries.getY(i).doubleValue(), 1E-9);
+    }
+    // frequencies are band centers, which are powers of 2^(1/8)
+    double bands = Math.log(binnedSeries.getX(0).doubleValue()) / Math.log(2.) * 8;
+    assertEquals(Math.round(bands), bands, 1E-9);
+  }
 
 }
@@ -0,0 +1,97 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertEquals;
+
+import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.NumericUtils;
+import java.util.Random;
+import org.junit.Test;
+
+public class GainBandStatisticsTest {
+
+  private static FFTResult randomSpectrum(Random random, int length, double scale) {
+    double[] data = new double[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = scale * random.nextGaussian();
+    }
+    return FFTResult.singleSidedFFT(data, 40., false);
+  }
+
+  @Test
+  public void meanAndSigma_matchDirectCalculation() {
+    Random random = new Random(41);
+    FFTResult first = randomSpectrum(random, 4096, 1.);
+    FFTResult second = randomSpectrum(random, 4096, 3.);
+    GainBandStatistics statistics = new GainBandStatistics(first, second);
+    int length = first.getFreqs().length;
+    for (int trial = 0; trial < 200; ++trial) {
+      int lower = random.nextInt(length - 1);
+      int higher = lower + 1 + random.nextInt(length - lower - 1);
+      for (int numerator = 0; numerator < 2; ++numerator) {
+        FFTResult top = numerator == 0 ? first : second;
+        FFTResult bottom = numerator == 0 ? second : first;
+        double expectedMean = NumericUtils.getFFTMean(top, lower, higher);
+        double mean = statistics.mean(numerator, lower, higher);
+        assertEquals(expectedMean, mean, 1E-9 * expectedMean);
+        double ratio = mean / statistics.mean(1 - numerator, lower, higher);
+        double expectedSigma = NumericUtils.getFFTSDev(top, bottom, ratio, lower, higher);
+        double sigma = statistics.sigma(numerator, ratio, lower, higher);
+        assertEquals(expectedSigma, sigma, 1E-7 * expectedSigma);
+      }
+    }
+  }
+
+  @Test
+  public void meanAndSigma_narrowBandMatchesDirectCalculationDespiteLargeRatios() {
+    // the first sensor records a strong tone that the second doesn't, so their ratio is huge at
+    // that frequency but close to 1 (and varies little) everywhere else
+    Random random = new Random(47);
+    int length = 4096;
+    double[] firstData = new double[length];
+    double[] secondData = new double[length];
+    for (int i = 0; i < length; ++i) {
+      double signal = random.nextGaussian();
+      firstData[i] = signal + 1E6 * Math.sin(NumericUtils.TAU * 102 * i / length);
+      secondData[i] = signal + 1E-5 * random.nextGaussian();
+    }
+    FFTResult first = FFTResult.singleSidedFFT(firstData, 40., false);
+    FFTResult second = FFTResult.singleSidedFFT(secondData, 40., false);
+    GainBandStatistics statistics = new GainBandStatistics(first, second);
+
+    // a narrow band above the tone
+    int lower = 400;
+    int higher = 420;
+    double expectedMean = NumericUtils.getFFTMean(first, lower, higher);
+    double mean = statistics.mean(0, lower, higher);
+    assertEquals(expectedMean, mean, 1E-12 * expectedMean);
+    double ratio = mean / statistics.mean(1, lower, higher);
+    double expectedSigma = NumericUtils.getFFTSDev(first, second, ratio, lower, higher);
+    double sigma = statistics.sigma(0, ratio, lower, higher);
+    assertEquals(expectedSigma, sigma, 1E-6 * expectedSigma);
+  }
+
+  @Test
+  public void sigma_zeroDenominatorMatchesDirectCalculation() {
+    Random random = new Random(43);
+    FFTResult first = randomSpectrum(random, 1024, 1.);
+    FFTResult second = FFTResult.singleSidedFFT(new double[1024], 40., false);
+    GainBandStatistics statistics = new GainBandStatistics(first, second);
+    double expected = NumericUtils.getFFTSDev(first, second, 2., 10, 100);
+    assertEquals(expected, statistics.sigma(0, 2., 10, 100), 0.);
+  }
+
+  @Test
+  public void getPeakIndex_findsLargestComponent() {
+    int length = 2048;
+    double[] data = new double[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = Math.sin(NumericUtils.TAU * 2.5 * i / 40.);
+    }
+    FFTResult spectrum = FFTResult.singleSidedFFT(data, 40., false);
+    GainBandStatistics statistics = new GainBandStatistics(spectrum, spectrum);
+    double peakFrequency = spectrum.getFreqs()[statistics.getPeakIndex(0)];
+    assertEquals(2.5, peakFrequency, 40. / length);
+    assertEquals(statistics.getPeakIndex(0), statistics.getPeakIndex(1));
+  }
+
+}
@@ -0,0 +1,83 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import asl.sensor.utils.TimeSeriesUtils;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class GainSixExperimentTest {
+
+  private static DataStore rotatedPair(double degrees) throws IOException {
+    int length = 40 * 1800;
+    long interval = TimeSeriesUtils.ONE_HZ_INTERVAL / 40;
+    Random random = new Random(5);
+    double[][] ground = new double[3][length];
+    for (double[] component : ground) {
+      double value = 0.;
+      for (int i = 0; i < length; ++i) {
+        value = 0.95 * value + random.nextGaussian();
+        component[i] = value;
+      }
+    }
+    double angle = Math.toRadians(degrees);
+    double[][] data = new double[6][length];
+    for (int i = 0; i < length; ++i) {
+      data[0][i] = ground[0][i];
+      data[1][i] = ground[1][i];
+      data[2][i] = ground[2][i];
+      data[3][i] = 1.05 * (ground[0][i] * Math.cos(angle) + ground[1][i] * Math.sin(angle))
+          + 0.05 * random.nextGaussian();
+      data[4][i] = 0.97 * (ground[1][i] * Math.cos(angle) - ground[0][i] * Math.sin(angle))
+          + 0.05 * random.nextGaussian();
+      data[5][i] = 1.02 * ground[2][i] + 0.05 * random.nextGaussian();
+    }
+    String[] names = {"XX_A_00_BH1", "XX_A_00_BH2", "XX_A_00_BHZ",
+        "XX_B_10_BH1", "XX_B_10_BH2", "XX_B_10_BHZ"};
+    InstrumentResponse response = InstrumentResponse.loadEmbeddedResponse("STS2gen3_Q330HR");
+    DataStore dataStore = new DataStore();
+    for (int i = 0; i < names.length; ++i) {
+      dataStore.setBlock(i, new DataBlock(data[i], interval, names[i], 1514764800000L));
+      dataStore.setResponse(i, response);
+    }
+    return dataStore;
+  }
+
+  @Test
+  public void concurrentComponents_matchSeparateRuns() throws IOException {
+    DataStore dataStore = rotatedPair(12.);
+    GainSixExperiment experiment = new GainSixExperiment();
+    experiment.runExperimentOnData(dataStore);
+
+    double northAzimuth = (Math.toDegrees(experiment.getNorthAzimuth()) % 360 + 360) % 360;
+    assertEquals(12., northAzimuth, 0.5);
+
+    // vertical components are not rotated, so their result is the same as a gain run on them
+    DataStore vertical = new DataStore();
+    vertical.setBlock(0, dataStore.getBlock(2));
+    vertical.setResponse(0, dataStore.getResponse(2));
+    vertical.setBlock(1, dataStore.getBlock(5));
+    vertical.setResponse(1, dataStore.getResponse(5));
+    GainExperiment gain = new GainExperiment();
+    gain.runExperimentOnData(vertical);
+    assertEquals(gain.getResultString(), experiment.getDataStrings()[2]);
+
+    // the rotated north result is the same as a gain run on the data rotated by the found angle
+    DataStore north = new DataStore();
+    north.setBlock(0, dataStore.getBlock(0));
+    north.setResponse(0, dataStore.getResponse(0));
+    north.setBlock(1, TimeSeriesUtils.rotate(dataStore.getBlock(3), dataStore.getBlock(4),
+        experiment.getNorthAzimuth()));
+    north.setResponse(1, dataStore.getResponse(3));
+    gain = new GainExperiment();
+    gain.runExperimentOnData(north);
+    assertArrayEquals(gain.getData().get(0).getSeries(1).toArray(),
+        experiment.getData().get(0).getSeries(1).toArray());
+  }
+
+}
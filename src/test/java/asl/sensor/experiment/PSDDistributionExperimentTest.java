@@ -0,0 +1,113 @@
+package asl.sensor.experiment;
+
+import static asl.sensor.test.TestUtils.SYNTHETIC_HOUR;
+import static asl.sensor.test.TestUtils.SYNTHETIC_INTERVAL;
+import static asl.sensor.test.TestUtils.SYNTHETIC_START;
+import static asl.sensor.test.TestUtils.gaussianNoise;
+import static asl.sensor.test.TestUtils.syntheticDataStore;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.jfree.data.xy.XYSeries;
+import org.junit.Test;
+
+public class PSDDistributionExperimentTest {
+
+  private static PSDDistributionExperiment run(DataBlock block) throws IOException {
+    DataStore dataStore = syntheticDataStore(block);
+    PSDDistributionExperiment experiment = new PSDDistributionExperiment();
+    experiment.setFreqSpace(true);
+    experiment.runExperimentOnData(dataStore);
+    return experiment;
+  }
+
+  @Test
+  public void histogram_countsEachSegmentOncePerBand() throws IOException {
+    double[] data = gaussianNoise(new Random(7), 12 * SYNTHETIC_HOUR, 1000.);
+    PSDDistributionExperiment experiment =
+        run(new DataBlock(data, SYNTHETIC_INTERVAL, "XX_TEST_00_BHZ", SYNTHETIC_START));
+
+    // hour-long segments overlapping by half
+    assertEquals(23, experiment.getSegmentsUsed());
+    assertEquals(0, experiment.getSegmentsSkipped());
+    int[][] histogram = experiment.getHistogram();
+    double[] bandFrequencies = experiment.getBandFrequencies();
+    assertEquals(bandFrequencies.length, histogram.length);
+    assertEquals(experiment.getPowerBinCenters().length, histogram[0].length);
+    for (int[] band : histogram) {
+      int total = 0;
+      for (int count : band) {
+        total += count;
+      }
+      assertEquals(23, total);
+    }
+    double[][] probabilities = experiment.getProbabilities();
+    for (double[] band : probabilities) {
+      double sum = 0.;
+      for (double probability : band) {
+        sum += probability;
+      }
+      assertEquals(1., sum, 1E-9);
+    }
+
+    // the data is stationary, so the PSDs of all the segments are close to the median
+    XYSeries median = experiment.getData().get(0).getSeries("Median");
+    XYSeries lower = experiment.getData().get(0).getSeries("10th percentile");
+    XYSeries upper = experiment.getData().get(0).getSeries("90th percentile");
+    for (int i = 0; i < median.getItemCount(); ++i) {
+      double frequency = median.getX(i).doubleValue();
+      if (frequency < 0.1 || frequency > 4.) {
+        continue;
+      }
+      assertTrue(median.getY(i).doubleValue() - lower.getY(i).doubleValue() <= 2.);
+      assertTrue(upper.getY(i).doubleValue() - median.getY(i).doubleValue() <= 2.);
+    }
+  }
+
+  @Test
+  public void median_risesWithAmplitude() throws IOException {
+    double[] quiet = gaussianNoise(new Random(11), 4 * SYNTHETIC_HOUR, 1000.);
+    double[] loud = quiet.clone();
+    for (int i = 0; i < loud.length; ++i) {
+      loud[i] *= 10.;
+    }
+    XYSeries quietMedian =
+        run(new DataBlock(quiet, SYNTHETIC_INTERVAL, "XX_TEST_00_BHZ", SYNTHETIC_START))
+            .getData().get(0).getSeries("Median");
+    XYSeries loudMedian =
+        run(new DataBlock(loud, SYNTHETIC_INTERVAL, "XX_TEST_00_BHZ", SYNTHETIC_START))
+            .getData().get(0).getSeries("Median");
+    assertEquals(quietMedian.getItemCount(), loudMedian.getItemCount());
+    for (int i = 0; i < quietMedian.getItemCount(); ++i) {
+      double frequency = quietMedian.getX(i).doubleValue();
+      if (frequency < 0.1 || frequency > 4.) {
+        continue;
+      }
+      // ten times the amplitude is 20 dB more power, give or take a bin
+      double difference = loudMedian.getY(i).doubleValue() - quietMedian.getY(i).doubleValue();
+      assertEquals(20., difference, 1.);
+    }
+  }
+
+  @Test
+  public void segments_overlappingGapsAreSkipped() throws IOException {
+    Random random = new Random(13);
+    Map<Long, double[]> records = new HashMap<>();
+    // 3 hours of data, 2 hours missing, then 3 more hours
+    records.put(SYNTHETIC_START, gaussianNoise(random, 3 * SYNTHETIC_HOUR, 1000.));
+    records.put(SYNTHETIC_START + 5 * SYNTHETIC_HOUR * SYNTHETIC_INTERVAL,
+        gaussianNoise(random, 3 * SYNTHETIC_HOUR, 1000.));
+    PSDDistributionExperiment experiment =
+        run(new DataBlock(records, SYNTHETIC_INTERVAL, "XX_TEST_00_BHZ"));
+    // 15 half-hour steps over 8 hours; 5 in each block of data
+    assertEquals(10, experiment.getSegmentsUsed());
+    assertEquals(5, experiment.getSegmentsSkipped());
+  }
+
+}
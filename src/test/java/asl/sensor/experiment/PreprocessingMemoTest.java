@@ -0,0 +1,69 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import asl.sensor.utils.TimeSeriesUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class PreprocessingMemoTest {
+
+  @Test
+  public void derive_computesEachOperationOnce() {
+    PreprocessingMemo memo = new PreprocessingMemo();
+    double[] data = {1., 2., 4., 8.};
+    double[] demeaned = memo.derive(data, "demean", TimeSeriesUtils::demean);
+    assertSame(demeaned, memo.derive(data, "demean", TimeSeriesUtils::demean));
+    // chained operations resolve to the same arrays
+    double[] detrended = memo.derive(demeaned, "detrend", TimeSeriesUtils::detrend);
+    assertSame(detrended, memo.derive(
+        memo.derive(data, "demean", TimeSeriesUtils::demean), "detrend", TimeSeriesUtils::detrend));
+
+    assertEquals(5, memo.getRequests());
+    assertEquals(2, memo.getComputations());
+    assertEquals(3, memo.getReuses());
+  }
+
+  @Test
+  public void derive_keysOnSourceIdentityAndOperation() {
+    PreprocessingMemo memo = new PreprocessingMemo();
+    double[] data = {1., 2., 4., 8.};
+    double[] sameContents = data.clone();
+    double[] demeaned = memo.derive(data, "demean", TimeSeriesUtils::demean);
+    assertNotSame(demeaned, memo.derive(sameContents, "demean", TimeSeriesUtils::demean));
+    assertNotSame(demeaned, memo.derive(data, "detrend", TimeSeriesUtils::detrend));
+    assertEquals(3, memo.getComputations());
+  }
+
+  @Test
+  public void derive_concurrentRequestsComputeOnce() {
+    PreprocessingMemo memo = new PreprocessingMemo();
+    double[] data = new double[100000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = Math.sin(i / 100.);
+    }
+    AtomicInteger calls = new AtomicInteger();
+    List<Callable<double[]>> tasks = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 8; ++i) {
+      tasks.add(() -> memo.derive(data, "detrend", series -> {
+        calls.incrementAndGet();
+        return TimeSeriesUtils.detrend(series);
+      }));
+      names.add("detrend " + i);
+    }
+    List<double[]> results = new MockExperiment().runConcurrently(names, tasks);
+
+    assertEquals(1, calls.get());
+    for (double[] result : results) {
+      assertSame(results.get(0), result);
+    }
+    assertEquals(7, memo.getReuses());
+  }
+
+}
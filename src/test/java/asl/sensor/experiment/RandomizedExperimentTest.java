@@ -104,6 +104,84 @@ public class RandomizedExperimentTest {
     assertArrayEquals(testFirstJacobianAgainst, firstJacobian, 1E-3);
   }
 
+  @Test
+  public void logSpacedResample_boundsPointsAndAveragesWeight() {
+    // linear bins like those from a PSD of 200 sps data, from 0.2Hz up to 80Hz
+    double deltaFreq = 0.01;
+    int len = (int) ((80. - 0.2) / deltaFreq) + 1;
+    double[] freqs = new double[len];
+    double[] values = new double[2 * len];
+    double[] weights = new double[2 * len];
+    for (int i = 0; i < len; ++i) {
+      freqs[i] = 0.2 + i * deltaFreq;
+      values[i] = -20 * Math.log10(freqs[i]);
+      values[i + len] = 45.;
+      weights[i] = 1. / Math.max(1., freqs[i]);
+      weights[i + len] = 2. / Math.max(1., freqs[i]);
+    }
+
+    int pointsPerDecade = 20;
+    double[][] resampled =
+        RandomizedExperiment.logSpacedResample(freqs, values, weights, pointsPerDecade);
+    double[] resampledFreqs = resampled[0];
+    double[] resampledValues = resampled[1];
+    double[] resampledWeights = resampled[2];
+    int resampledLen = resampledFreqs.length;
+
+    // 0.2 to 80 Hz is a little over 2.6 decades
+    assertTrue(resampledLen <= 54);
+    assertTrue(resampledLen > 40);
+    assertEquals(2 * resampledLen, resampledValues.length);
+    assertEquals(2 * resampledLen, resampledWeights.length);
+
+    for (int i = 0; i < resampledLen; ++i) {
+      if (i > 0) {
+        assertTrue(resampledFreqs[i] > resampledFreqs[i - 1]);
+      }
+      // values are averages of points from a narrow frequency range
+      assertEquals(-20 * Math.log10(resampledFreqs[i]), resampledValues[i], 0.1);
+      assertEquals(45., resampledValues[i + resampledLen], 1E-10);
+      assertEquals(2 * resampledWeights[i], resampledWeights[i + resampledLen], 1E-10);
+      // weights are averages of the bins' weights too
+      double expectedWeight = 1. / Math.max(1., resampledFreqs[i]);
+      assertEquals(expectedWeight, resampledWeights[i], 0.06 * expectedWeight);
+    }
+  }
+
+  @Test
+  public void logSpacedResample_weightDoesNotGrowWithBinCount() {
+    // cells at 80Hz hold hundreds of these bins, while those at 0.2Hz hold only one or two
+    double deltaFreq = 0.01;
+    int len = (int) ((80. - 0.2) / deltaFreq) + 1;
+    double[] freqs = new double[len];
+    double[] values = new double[2 * len];
+    double[] weights = new double[2 * len];
+    for (int i = 0; i < len; ++i) {
+      freqs[i] = 0.2 + i * deltaFreq;
+    }
+    Arrays.fill(weights, 1.);
+
+    double[][] resampled = RandomizedExperiment.logSpacedResample(freqs, values, weights, 20);
+    double[] resampledWeights = resampled[2];
+    for (double weight : resampledWeights) {
+      assertEquals(1., weight, 1E-12);
+    }
+  }
+
+  @Test
+  public void logSpacedResample_skipsEmptyCells() {
+    // coarse bins leave most of the log-spaced cells at low frequency empty
+    double[] freqs = {0.001, 0.002, 0.003, 0.004, 0.005};
+    double[] values = {1., 2., 3., 4., 5., 6., 7., 8., 9., 10.};
+    double[] weights = new double[values.length];
+    Arrays.fill(weights, 1.);
+
+    double[][] resampled = RandomizedExperiment.logSpacedResample(freqs, values, weights, 100);
+    assertArrayEquals(freqs, resampled[0], 1E-15);
+    assertArrayEquals(values, resampled[1], 1E-15);
+    assertArrayEquals(weights, resampled[2], 1E-15);
+  }
+
   @Test
   public void responseCorrectConvertedToVectorHighFreq() throws Exception {
     String fname = folder + "resp-parse/TST5_response.txt";
@@ -0,0 +1,121 @@
+package asl.sensor.experiment;
+
+import static asl.sensor.test.TestUtils.SYNTHETIC_HOUR;
+import static asl.sensor.test.TestUtils.SYNTHETIC_INTERVAL;
+import static asl.sensor.test.TestUtils.SYNTHETIC_START;
+import static asl.sensor.test.TestUtils.syntheticDataStore;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.jfree.data.xy.XYSeries;
+import org.junit.Test;
+
+public class RollingNoiseExperimentTest {
+
+  private static final String[] NAMES = {"XX_TEST_00_BHZ", "XX_TEST_10_BHZ", "XX_TEST_60_BHZ"};
+
+  /**
+   * Get three series recording the same signal, each with its own independent noise, where the
+   * first series' noise is scaled up by the given factor in its second half
+   */
+  private static double[][] sensorData(Random random, int length, double loudFactor) {
+    double[][] data = new double[3][length];
+    for (int i = 0; i < length; ++i) {
+      double signal = 1000. * random.nextGaussian();
+      for (int sensor = 0; sensor < 3; ++sensor) {
+        double noise = 10. * random.nextGaussian();
+        if (sensor == 0 && i >= length / 2) {
+          noise *= loudFactor;
+        }
+        data[sensor][i] = signal + noise;
+      }
+    }
+    return data;
+  }
+
+  private static DataStore dataStore(double[][] data, long start) throws IOException {
+    DataBlock[] blocks = new DataBlock[3];
+    for (int i = 0; i < 3; ++i) {
+      blocks[i] = new DataBlock(data[i], SYNTHETIC_INTERVAL, NAMES[i], start);
+    }
+    return syntheticDataStore(blocks);
+  }
+
+  @Test
+  public void windowNoise_matchesNoiseOfEachWindowAlone() throws IOException {
+    double[][] data = sensorData(new Random(23), 3 * SYNTHETIC_HOUR, 1.);
+    RollingNoiseExperiment experiment = new RollingNoiseExperiment();
+    experiment.setWindowLength(3600L * 1000L);
+    experiment.runExperimentOnData(dataStore(data, SYNTHETIC_START));
+
+    // 1-hour windows stepping by half an hour
+    long[] windowStartTimes = experiment.getWindowStartTimes();
+    assertEquals(5, windowStartTimes.length);
+    assertEquals(5, experiment.getWindowsUsed());
+    assertEquals(0, experiment.getWindowsSkipped());
+    assertEquals(1800000L, experiment.getWindowStep());
+    // the 13 segments of each window overlap the next window's by 5, so those are reused
+    assertTrue(experiment.getSegmentsTransformed() < 5 * 13);
+
+    double[] bandFrequencies = experiment.getBandFrequencies();
+    for (int window : new int[]{0, 3}) {
+      int offset = (int) ((windowStartTimes[window] - SYNTHETIC_START) / SYNTHETIC_INTERVAL);
+      double[][] windowData = new double[3][];
+      for (int i = 0; i < 3; ++i) {
+        windowData[i] = Arrays.copyOfRange(data[i], offset, offset + SYNTHETIC_HOUR);
+      }
+      NoiseExperiment noiseExperiment = new NoiseExperiment();
+      noiseExperiment.setPSDBandsPerOctave(experiment.getBandsPerOctave());
+      noiseExperiment.runExperimentOnData(dataStore(windowData, windowStartTimes[window]));
+
+      for (int sensor = 0; sensor < 3; ++sensor) {
+        float[] windowNoise = experiment.getNoiseMatrix(sensor)[window];
+        XYSeries expected = noiseExperiment.getData().get(0)
+            .getSeries("Noise " + NAMES[sensor] + " [" + sensor + "]");
+        assertTrue(expected.getItemCount() > 0);
+        for (int item = 0; item < expected.getItemCount(); ++item) {
+          double period = expected.getX(item).doubleValue();
+          int band = 0;
+          while (Math.abs(1 / bandFrequencies[band] - period) > 1E-6 * period) {
+            ++band;
+          }
+          assertEquals(expected.getY(item).doubleValue(), windowNoise[band], 1E-3);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void percentiles_spanChangeInOneSensorsNoise() throws IOException {
+    double[][] data = sensorData(new Random(29), 6 * SYNTHETIC_HOUR, 10.);
+    RollingNoiseExperiment experiment = new RollingNoiseExperiment();
+    experiment.setWindowLength(3600L * 1000L);
+    experiment.runExperimentOnData(dataStore(data, SYNTHETIC_START));
+
+    double[] bandFrequencies = experiment.getBandFrequencies();
+    int band = 0;
+    for (int i = 0; i < bandFrequencies.length; ++i) {
+      if (Math.abs(bandFrequencies[i] - 1.) < Math.abs(bandFrequencies[band] - 1.)) {
+        band = i;
+      }
+    }
+    // the first sensor's noise is 20 dB louder in half the windows; at its quietest it is the
+    // same as the other sensors' (which are less accurate while the first sensor is loud)
+    double quiet = experiment.getNoisePercentile(0, 5.)[band];
+    double loud = experiment.getNoisePercentile(0, 95.)[band];
+    double median = experiment.getNoisePercentile(0, 50.)[band];
+    assertEquals(20., loud - quiet, 3.);
+    assertTrue(median > quiet && median < loud);
+    for (int sensor = 1; sensor < 3; ++sensor) {
+      assertEquals(quiet, experiment.getNoisePercentile(sensor, 5.)[band], 3.);
+    }
+    String medianName = RollingNoiseExperiment.getSeriesName(50., NAMES[0], 0);
+    assertTrue(experiment.getData().get(0).getSeries(medianName).getItemCount() > 0);
+  }
+
+}
@@ -0,0 +1,56 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertEquals;
+
+import asl.sensor.utils.TimeSeriesUtils;
+import java.util.Random;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.junit.Test;
+
+public class RotationCorrelationTest {
+
+  private static double[][] rotatedData() {
+    Random random = new Random(17);
+    int length = 2000;
+    double[] refNorth = new double[length];
+    double[] testNorth = new double[length];
+    double[] testEast = new double[length];
+    double angle = Math.toRadians(37.);
+    for (int i = 0; i < length; ++i) {
+      double north = random.nextGaussian();
+      double east = random.nextGaussian();
+      refNorth[i] = north + 5.;
+      testNorth[i] = north * Math.cos(angle) + east * Math.sin(angle) + 0.2 * random.nextGaussian();
+      testEast[i] = east * Math.cos(angle) - north * Math.sin(angle) + 0.2 * random.nextGaussian()
+          - 3.;
+    }
+    return new double[][]{refNorth, testNorth, testEast};
+  }
+
+  @Test
+  public void correlation_matchesPearsonsOfRotatedData() {
+    double[][] data = rotatedData();
+    RotationCorrelation rotationCorrelation = new RotationCorrelation(data[0], data[1], data[2]);
+    PearsonsCorrelation pearsonsCorrelation = new PearsonsCorrelation();
+    for (double degrees = 0.; degrees < 360.; degrees += 15.) {
+      double theta = Math.toRadians(degrees);
+      double[] rotated = TimeSeriesUtils.rotate(data[1], data[2], theta);
+      double expected = pearsonsCorrelation.correlation(data[0], rotated);
+      assertEquals(expected, rotationCorrelation.correlation(theta), 1E-12);
+    }
+  }
+
+  @Test
+  public void correlationDerivative_matchesCentralDifference() {
+    double[][] data = rotatedData();
+    RotationCorrelation rotationCorrelation = new RotationCorrelation(data[0], data[1], data[2]);
+    double step = 1E-6;
+    for (double degrees = 0.; degrees < 360.; degrees += 15.) {
+      double theta = Math.toRadians(degrees);
+      double expected = (rotationCorrelation.correlation(theta + step)
+          - rotationCorrelation.correlation(theta - step)) / (2 * step);
+      assertEquals(expected, rotationCorrelation.correlationDerivative(theta), 1E-8);
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertEquals;
+
+import asl.sensor.utils.TimeSeriesUtils;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class RotationMomentAccumulatorTest {
+
+  @Test
+  public void window_matchesMomentsOfDetrendedCopy() {
+    Random random = new Random(23);
+    int length = 20000;
+    double[] refNorth = new double[length];
+    double[] testNorth = new double[length];
+    double[] testEast = new double[length];
+    double angle = Math.toRadians(-64.);
+    for (int i = 0; i < length; ++i) {
+      double north = random.nextGaussian();
+      double east = random.nextGaussian();
+      // include offsets and trends, which each window should have removed
+      refNorth[i] = north + 2. + 1E-4 * i;
+      testNorth[i] = north * Math.cos(angle) + east * Math.sin(angle)
+          + 0.3 * random.nextGaussian() - 3E-4 * i;
+      testEast[i] = east * Math.cos(angle) - north * Math.sin(angle)
+          + 0.3 * random.nextGaussian() + 7.;
+    }
+
+    RotationMomentAccumulator accumulator =
+        new RotationMomentAccumulator(refNorth, testNorth, testEast);
+    int windowLength = 2000;
+    for (int startIdx = 0; startIdx + windowLength <= length; startIdx += 4500) {
+      int endIdx = startIdx + windowLength;
+      RotationCorrelation expected = new RotationCorrelation(
+          TimeSeriesUtils.detrend(Arrays.copyOfRange(refNorth, startIdx, endIdx)),
+          TimeSeriesUtils.detrend(Arrays.copyOfRange(testNorth, startIdx, endIdx)),
+          TimeSeriesUtils.detrend(Arrays.copyOfRange(testEast, startIdx, endIdx)));
+      RotationCorrelation result = accumulator.window(startIdx, endIdx);
+      for (double degrees = 0.; degrees < 360.; degrees += 30.) {
+        double theta = Math.toRadians(degrees);
+        assertEquals(expected.correlation(theta), result.correlation(theta), 1E-9);
+        assertEquals(expected.correlationDerivative(theta),
+            result.correlationDerivative(theta), 1E-9);
+      }
+    }
+  }
+
+}
@@ -1,9 +1,14 @@
 package asl.sensor.experiment;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.test.TestUtils;
+import asl.sensor.utils.NumericUtils;
+import java.util.Random;
+import org.jfree.data.xy.XYSeries;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,4 +49,37 @@ public class SineExperimentTest {
     assertEquals(250, freq, 2.);
   }
 
+  @Test
+  public void fitsAmplitudeFrequencyAndPhaseOfLongCal() {
+    // an hour of a 1 Hz sine at 200 samples per second, with the output lagging by 30 degrees
+    long interval = 5L;
+    int length = 720000;
+    Random random = new Random(37);
+    double[] cal = new double[length];
+    double[] out = new double[length];
+    for (int i = 0; i < length; ++i) {
+      double phase = NumericUtils.TAU * i * interval / 1000.;
+      cal[i] = 500. * Math.sin(phase) + 20. + random.nextGaussian();
+      out[i] = 20000. * Math.sin(phase - Math.toRadians(30.)) + 100. * random.nextGaussian();
+    }
+    DataStore sineStore = new DataStore();
+    long start = 1514764800000L;
+    sineStore.setBlock(0, new DataBlock(cal, interval, "XX_TEST_00_BC0", start));
+    sineStore.setBlock(1, new DataBlock(out, interval, "XX_TEST_00_BHZ", start));
+
+    SineExperiment sexp = new SineExperiment();
+    sexp.runExperimentOnData(sineStore);
+    assertEquals(500. / Math.sqrt(2.), sexp.getCalAmplitude(), 0.1);
+    assertEquals(500. / 20000., sexp.getCalAmplitude() / sexp.getOutAmplitude(), 1E-5);
+    assertEquals(1., sexp.getFittedFrequency(), 1E-6);
+    assertEquals(200., sexp.getEstSineFreq(), 1E-3);
+    assertEquals(-30., sexp.getPhaseDifference(), 0.1);
+
+    // the plots are reduced to an envelope and a subset of the samples
+    XYSeries calPlot = sexp.getData().get(0).getSeries(0);
+    assertTrue(calPlot.getItemCount() <= 4000);
+    assertEquals(500., calPlot.getMaxY(), 5.);
+    assertTrue(sexp.getData().get(1).getSeries(0).getItemCount() <= 10000);
+  }
+
 }
@@ -0,0 +1,231 @@
+package asl.sensor.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import asl.sensor.experiment.SolverTelemetry.ConvergenceReason;
+import asl.sensor.utils.CancellationToken;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import org.apache.commons.math3.exception.TooManyEvaluationsException;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
+import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunction;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.util.Pair;
+import org.junit.Test;
+
+public class SolverTelemetryTest {
+
+  private static final double[] X = {0.5, 1., 2., 3., 4., 5., 6., 8.};
+
+  // exponential decay a * exp(-b * x), nonlinear in b so the solver needs several iterations
+  private static MultivariateJacobianFunction decayModel() {
+    return point -> {
+      double a = point.getEntry(0);
+      double b = point.getEntry(1);
+      RealVector values = MatrixUtils.createRealVector(new double[X.length]);
+      RealMatrix jacobian = MatrixUtils.createRealMatrix(X.length, 2);
+      for (int i = 0; i < X.length; ++i) {
+        double decay = Math.exp(-b * X[i]);
+        values.setEntry(i, a * decay);
+        jacobian.setEntry(i, 0, decay);
+        jacobian.setEntry(i, 1, -a * X[i] * decay);
+      }
+      return new Pair<>(values, jacobian);
+    };
+  }
+
+  private static double[] decayTarget() {
+    double[] target = new double[X.length];
+    for (int i = 0; i < X.length; ++i) {
+      target[i] = 3. * Math.exp(-0.4 * X[i]);
+    }
+    return target;
+  }
+
+  private static LeastSquaresProblem buildProblem(SolverTelemetry telemetry, int maxEvaluations) {
+    return new LeastSquaresBuilder().
+        start(new double[]{1., 1.}).
+        target(decayTarget()).
+        model(telemetry.instrument(decayModel())).
+        checker(telemetry.getCostRecorder()).
+        lazyEvaluation(false).
+        maxEvaluations(maxEvaluations).
+        maxIterations(Integer.MAX_VALUE).
+        build();
+  }
+
+  @Test
+  public void optimize_recordsSolveWithoutChangingResult() {
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
+        withCostRelativeTolerance(1E-12).
+        withParameterRelativeTolerance(1E-12);
+
+    SolverTelemetry telemetry = new SolverTelemetry("Decay fit");
+    assertEquals(ConvergenceReason.NOT_RUN, telemetry.getConvergenceReason());
+    LeastSquaresOptimizer.Optimum optimum =
+        telemetry.optimize(optimizer, buildProblem(telemetry, Integer.MAX_VALUE));
+
+    // same problem without the telemetry wrappers should get the same answer
+    LeastSquaresProblem plain = new LeastSquaresBuilder().
+        start(new double[]{1., 1.}).
+        target(decayTarget()).
+        model(decayModel()).
+        lazyEvaluation(false).
+        maxEvaluations(Integer.MAX_VALUE).
+        maxIterations(Integer.MAX_VALUE).
+        build();
+    LeastSquaresOptimizer.Optimum expected = optimizer.optimize(plain);
+    assertEquals(expected.getPoint().getEntry(0), optimum.getPoint().getEntry(0), 0.);
+    assertEquals(expected.getPoint().getEntry(1), optimum.getPoint().getEntry(1), 0.);
+    assertEquals(expected.getIterations(), telemetry.getIterations());
+    assertEquals(expected.getEvaluations(), telemetry.getEvaluations());
+
+    assertEquals(3., optimum.getPoint().getEntry(0), 1E-8);
+    assertEquals(0.4, optimum.getPoint().getEntry(1), 1E-8);
+
+    List<Double> costs = telemetry.getCostPerIteration();
+    // an iteration ended by the orthogonality check at its start doesn't take a step
+    assertTrue(costs.size() >= telemetry.getIterations());
+    assertTrue(costs.size() <= telemetry.getIterations() + 1);
+    assertTrue(costs.get(0) > costs.get(costs.size() - 1));
+    assertEquals(optimum.getCost(), costs.get(costs.size() - 1), 1E-12);
+
+    assertTrue(telemetry.getTotalTimeMillis() >= telemetry.getModelTimeMillis());
+    assertTrue(telemetry.getLinearAlgebraTimeMillis() >= 0.);
+    assertTrue(telemetry.getConvergenceReason() != ConvergenceReason.NOT_RUN);
+    assertTrue(telemetry.getConvergenceReason() != ConvergenceReason.FAILED);
+  }
+
+  @Test
+  public void optimize_recordsEvaluationLimit() {
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
+        withCostRelativeTolerance(1E-12).
+        withParameterRelativeTolerance(1E-12);
+
+    SolverTelemetry telemetry = new SolverTelemetry("Decay fit");
+    try {
+      telemetry.optimize(optimizer, buildProblem(telemetry, 2));
+      fail("Solver should have run out of evaluations");
+    } catch (TooManyEvaluationsException e) {
+      assertEquals(ConvergenceReason.EVALUATION_LIMIT, telemetry.getConvergenceReason());
+      assertEquals(2, telemetry.getEvaluations());
+    }
+  }
+
+  @Test
+  public void optimize_cancelledTokenStopsSolve() throws Exception {
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer();
+    SolverTelemetry telemetry = new SolverTelemetry("Decay fit");
+    CancellationToken token = new CancellationToken();
+    // cancel partway through the solve, as if from another thread
+    MultivariateJacobianFunction model = decayModel();
+    int[] calls = {0};
+    MultivariateJacobianFunction cancellingModel = point -> {
+      if (++calls[0] == 3) {
+        token.cancel();
+      }
+      return model.value(point);
+    };
+    LeastSquaresProblem problem = new LeastSquaresBuilder().
+        start(new double[]{1., 1.}).
+        target(decayTarget()).
+        model(telemetry.instrument(cancellingModel)).
+        checker(telemetry.getCostRecorder()).
+        lazyEvaluation(false).
+        maxEvaluations(Integer.MAX_VALUE).
+        maxIterations(Integer.MAX_VALUE).
+        build();
+    try {
+      token.call(() -> telemetry.optimize(optimizer, problem));
+      fail();
+    } catch (CancellationException e) {
+      assertEquals(ConvergenceReason.CANCELLED, telemetry.getConvergenceReason());
+      assertEquals(3, calls[0]);
+    }
+  }
+
+  @Test
+  public void optimize_iterationBudgetReturnsBestSoFar() {
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
+        withCostRelativeTolerance(1E-12).
+        withParameterRelativeTolerance(1E-12);
+
+    SolverTelemetry telemetry = new SolverTelemetry("Decay fit");
+    telemetry.setBudget(new SolverBudget(0L, 2, 0));
+    LeastSquaresOptimizer.Optimum optimum =
+        telemetry.optimize(optimizer, buildProblem(telemetry, Integer.MAX_VALUE));
+
+    assertEquals(ConvergenceReason.BUDGET_EXHAUSTED, telemetry.getConvergenceReason());
+    assertTrue(telemetry.isBudgetExhausted());
+    assertEquals(2, telemetry.getIterations());
+    List<Double> costs = telemetry.getCostPerIteration();
+    assertEquals(3, costs.size());
+    assertEquals(costs.get(2), optimum.getCost(), 0.);
+    assertTrue(optimum.getCost() < costs.get(0));
+  }
+
+  @Test
+  public void optimize_evaluationBudgetReturnsBestSoFar() {
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
+        withCostRelativeTolerance(1E-12).
+        withParameterRelativeTolerance(1E-12);
+
+    // unbudgeted run to find where the solver would be after its first iterations
+    SolverTelemetry reference = new SolverTelemetry("Decay fit");
+    reference.optimize(optimizer, buildProblem(reference, Integer.MAX_VALUE));
+
+    SolverTelemetry telemetry = new SolverTelemetry("Decay fit");
+    int maxEvaluations = 3;
+    telemetry.setBudget(new SolverBudget(0L, 0, maxEvaluations));
+    LeastSquaresOptimizer.Optimum optimum =
+        telemetry.optimize(optimizer, buildProblem(telemetry, Integer.MAX_VALUE));
+
+    assertEquals(ConvergenceReason.BUDGET_EXHAUSTED, telemetry.getConvergenceReason());
+    assertEquals(maxEvaluations, telemetry.getEvaluations());
+    // result is the last point the solver accepted, matching the unbudgeted solver's progress
+    List<Double> costs = telemetry.getCostPerIteration();
+    assertEquals(costs.get(costs.size() - 1), optimum.getCost(), 1E-15);
+    assertEquals(reference.getCostPerIteration().get(costs.size() - 1), optimum.getCost(), 1E-15);
+    assertTrue(optimum.getCost() <= costs.get(0));
+  }
+
+  @Test
+  public void optimize_timeBudgetStopsSlowSolve() {
+    LevenbergMarquardtOptimizer optimizer = new LevenbergMarquardtOptimizer().
+        withCostRelativeTolerance(1E-12).
+        withParameterRelativeTolerance(1E-12);
+
+    SolverTelemetry telemetry = new SolverTelemetry("Slow decay fit");
+    MultivariateJacobianFunction slowModel = point -> {
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return decayModel().value(point);
+    };
+    LeastSquaresProblem problem = new LeastSquaresBuilder().
+        start(new double[]{1., 1.}).
+        target(decayTarget()).
+        model(telemetry.instrument(slowModel)).
+        checker(telemetry.getCostRecorder()).
+        lazyEvaluation(false).
+        maxEvaluations(Integer.MAX_VALUE).
+        maxIterations(Integer.MAX_VALUE).
+        build();
+    telemetry.setBudget(new SolverBudget(30L, 0, 0));
+    LeastSquaresOptimizer.Optimum optimum = telemetry.optimize(optimizer, problem);
+
+    assertEquals(ConvergenceReason.BUDGET_EXHAUSTED, telemetry.getConvergenceReason());
+    assertTrue(telemetry.getEvaluations() <= 2);
+    assertTrue(optimum.getCost() <= telemetry.getCostPerIteration().get(0));
+  }
+
+}
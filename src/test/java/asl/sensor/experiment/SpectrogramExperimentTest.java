@@ -0,0 +1,102 @@
+package asl.sensor.experiment;
+
+import static asl.sensor.test.TestUtils.SYNTHETIC_HOUR;
+import static asl.sensor.test.TestUtils.SYNTHETIC_INTERVAL;
+import static asl.sensor.test.TestUtils.SYNTHETIC_START;
+import static asl.sensor.test.TestUtils.gaussianNoise;
+import static asl.sensor.test.TestUtils.syntheticDataStore;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import asl.sensor.input.DataBlock;
+import asl.sensor.input.DataStore;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class SpectrogramExperimentTest {
+
+  private static SpectrogramExperiment run(DataBlock block) throws IOException {
+    DataStore dataStore = syntheticDataStore(block);
+    SpectrogramExperiment experiment = new SpectrogramExperiment();
+    experiment.runExperimentOnData(dataStore);
+    return experiment;
+  }
+
+  @Test
+  public void powerMatrix_showsWhenSineBurstHappens() throws IOException {
+    double[] data = gaussianNoise(new Random(17), 4 * SYNTHETIC_HOUR, 100.);
+    // a 1 Hz sine from 2 hours in to 2.5 hours in
+    for (int i = 2 * SYNTHETIC_HOUR; i < 5 * SYNTHETIC_HOUR / 2; ++i) {
+      data[i] += 10000. * Math.sin(2 * Math.PI * i * SYNTHETIC_INTERVAL / 1000.);
+    }
+    SpectrogramExperiment experiment =
+        run(new DataBlock(data, SYNTHETIC_INTERVAL, "XX_TEST_00_BHZ", SYNTHETIC_START));
+
+    // 10-minute frames stepping by 5 minutes
+    long[] frameStartTimes = experiment.getFrameStartTimes();
+    assertEquals(47, frameStartTimes.length);
+    assertEquals(47, experiment.getFramesUsed());
+    assertEquals(0, experiment.getFramesSkipped());
+    assertEquals(300000L, experiment.getFrameStep());
+    double[] bandFrequencies = experiment.getBandFrequencies();
+    float[][] power = experiment.getPowerMatrix();
+    assertEquals(frameStartTimes.length, power.length);
+    assertEquals(bandFrequencies.length, power[0].length);
+
+    int sineBand = 0;
+    for (int band = 0; band < bandFrequencies.length; ++band) {
+      if (Math.abs(bandFrequencies[band] - 1.) < Math.abs(bandFrequencies[sineBand] - 1.)) {
+        sineBand = band;
+      }
+    }
+    long burstStart = SYNTHETIC_START + 2 * SYNTHETIC_HOUR * SYNTHETIC_INTERVAL;
+    long burstEnd = SYNTHETIC_START + 5 * SYNTHETIC_HOUR * SYNTHETIC_INTERVAL / 2;
+    long frameLength = experiment.getFrameLength();
+    for (int frame = 0; frame < frameStartTimes.length; ++frame) {
+      long frameStart = frameStartTimes[frame];
+      long frameEnd = frameStart + frameLength;
+      boolean insideBurst = frameStart >= burstStart && frameEnd <= burstEnd;
+      boolean outsideBurst = frameEnd <= burstStart || frameStart >= burstEnd;
+      // the band of the sine is far louder during the burst than at any other time
+      if (insideBurst) {
+        assertTrue(power[frame][sineBand] - power[0][sineBand] > 30.);
+      } else if (outsideBurst) {
+        assertEquals(power[0][sineBand], power[frame][sineBand], 6.);
+      }
+    }
+  }
+
+  @Test
+  public void frames_overlappingGapsAreNaN() throws IOException {
+    Random random = new Random(19);
+    Map<Long, double[]> records = new HashMap<>();
+    // an hour of data, half an hour missing, then another hour
+    records.put(SYNTHETIC_START, gaussianNoise(random, SYNTHETIC_HOUR, 1000.));
+    records.put(SYNTHETIC_START + 3 * SYNTHETIC_HOUR * SYNTHETIC_INTERVAL / 2,
+        gaussianNoise(random, SYNTHETIC_HOUR, 1000.));
+    SpectrogramExperiment experiment =
+        run(new DataBlock(records, SYNTHETIC_INTERVAL, "XX_TEST_00_BHZ"));
+
+    // 29 frames over 2.5 hours; 11 fit in each hour of data
+    long[] frameStartTimes = experiment.getFrameStartTimes();
+    assertEquals(29, frameStartTimes.length);
+    assertEquals(22, experiment.getFramesUsed());
+    assertEquals(7, experiment.getFramesSkipped());
+    float[][] power = experiment.getPowerMatrix();
+    long gapStart = SYNTHETIC_START + SYNTHETIC_HOUR * SYNTHETIC_INTERVAL;
+    long gapEnd = SYNTHETIC_START + 3 * SYNTHETIC_HOUR * SYNTHETIC_INTERVAL / 2;
+    for (int frame = 0; frame < power.length; ++frame) {
+      long frameStart = frameStartTimes[frame];
+      boolean inGap = frameStart < gapEnd && frameStart + experiment.getFrameLength() > gapStart;
+      for (float value : power[frame]) {
+        assertEquals(inGap, Float.isNaN(value));
+      }
+    }
+    assertFalse(experiment.getData().get(0).getSeries(SpectrogramExperiment.MEAN_PSD).isEmpty());
+  }
+
+}
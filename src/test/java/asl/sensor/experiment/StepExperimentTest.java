@@ -2,14 +2,24 @@ package asl.sensor.experiment;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
 import asl.sensor.input.InstrumentResponse;
 import asl.sensor.test.TestUtils;
+import asl.sensor.utils.FFTResult;
+import asl.sensor.utils.NumericUtils;
+import asl.sensor.utils.TimeSeriesUtils;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.util.Pair;
 import org.junit.Test;
 
 public class StepExperimentTest {
@@ -105,6 +115,88 @@ public class StepExperimentTest {
     assertEquals(0.719, fitParams[1], 0.005);
   }
 
+  /**
+   * Make a step calibration by passing a step up and back down through a two-pole response
+   * whose poles are those of the STS-1 RESP (which is loaded with the output) scaled by a factor
+   *
+   * @param poleMultiplier Factor to scale the RESP's poles by to get the sensor's actual poles
+   * @return DataStore with the cal input and sensor output
+   */
+  private static DataStore syntheticStepCal(double poleMultiplier) throws Exception {
+    InstrumentResponse ir = InstrumentResponse.loadEmbeddedResponse("STS1T5_Q330HR");
+    Complex pole = ir.getPoles().get(0);
+    double sps = 10.;
+    int length = 24000;
+    long interval = (long) (TimeSeriesUtils.ONE_HZ_INTERVAL / sps);
+
+    double[] cal = new double[length];
+    for (int i = length / 8; i < length / 2; ++i) {
+      cal[i] = 1.;
+    }
+    FFTResult calFFT = FFTResult.singleSidedFFT(cal.clone(), sps, false);
+    double[] freqs = calFFT.getFreqs();
+    Complex[] calSpectrum = calFFT.getFFT();
+    Complex p1 = pole.multiply(poleMultiplier);
+    Complex p2 = p1.conjugate();
+    Complex[] outSpectrum = new Complex[calSpectrum.length];
+    outSpectrum[0] = Complex.ZERO;
+    for (int i = 1; i < calSpectrum.length; ++i) {
+      Complex s = new Complex(0., 2 * Math.PI * freqs[i]);
+      outSpectrum[i] = calSpectrum[i].multiply(s).divide(s.subtract(p1).multiply(s.subtract(p2)));
+    }
+    double[] out = FFTResult.singleSidedInverseFFT(outSpectrum, length);
+    Random random = new Random(1);
+    for (int i = 0; i < length; ++i) {
+      out[i] = 1E4 * out[i] + 1E-2 * random.nextGaussian();
+    }
+
+    DataStore ds = new DataStore();
+    ds.setBlock(0, new DataBlock(cal, interval, "XX_CAL_00_BC0", 0L));
+    ds.setBlock(1, new DataBlock(out, interval, "XX_OUT_00_BHZ", 0L));
+    ds.setResponse(1, ir);
+    return ds;
+  }
+
+  @Test
+  public void analyticJacobian_matchesForwardDifference() throws Exception {
+    DataStore ds = syntheticStepCal(1.03);
+    StepExperiment se = new StepExperiment();
+    se.runExperimentOnData(ds);
+
+    double[] init = se.getInitParams();
+    double[][] points = {{init[0], init[1]}, {init[0] * 1.1, init[1] * 0.9}};
+    for (double[] point : points) {
+      RealVector variables = MatrixUtils.createRealVector(point);
+      Pair<RealVector, RealMatrix> expected = se.forwardDifferenceJacobian(variables);
+      Pair<RealVector, RealMatrix> result = se.analyticJacobian(variables);
+      assertArrayEquals(expected.getFirst().toArray(), result.getFirst().toArray(), 0.);
+      for (int column = 0; column < 2; ++column) {
+        RealVector expectedColumn = expected.getSecond().getColumnVector(column);
+        RealVector resultColumn = result.getSecond().getColumnVector(column);
+        double scale = expectedColumn.getLInfNorm();
+        assertTrue(scale > 0.);
+        assertEquals(0., expectedColumn.subtract(resultColumn).getLInfNorm() / scale, 1E-4);
+      }
+    }
+  }
+
+  @Test
+  public void gridSearch_findsCornerFarFromResp() throws Exception {
+    // sensor's corner is three times that of the RESP it's loaded with
+    DataStore ds = syntheticStepCal(3.);
+    double trueCorner = 3. * ds.getResponse(1).getPoles().get(0).abs() / NumericUtils.TAU;
+    StepExperiment se = new StepExperiment();
+    se.setGridSearch(true);
+    se.runExperimentOnData(ds);
+
+    double[] seed = se.getGridSearchSeed();
+    assertNotNull(seed);
+    assertTrue(seed[0] > trueCorner / 1.5 && seed[0] < trueCorner * 1.5);
+    assertTrue(se.getGridSearchMillis() > 0.);
+    assertTrue(se.getDataStrings()[1].contains("Grid search initial guess"));
+    assertEquals(trueCorner, se.getFitParams()[0], trueCorner * 0.15);
+  }
+
   @Test
   public void testWaterLevelCalc() {
     // water level calc intended to invert value unless it is 0, then set it to 0 instead
@@ -10,6 +10,9 @@ import static org.junit.Assert.assertTrue;
 import asl.sensor.gui.InputPanel;
 import asl.sensor.test.TestUtils;
 import asl.sensor.utils.TimeSeriesUtils;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
 
 public class DataBlockTest {
@@ -249,7 +252,8 @@ public class DataBlockTest {
     DataBlock clonedBlock = new DataBlock(block);
     assertEquals(block.getName(), clonedBlock.getName());
     assertNotSame(block.getDataMap(), clonedBlock.getDataMap());
-    assertNotSame(block.getData(), clonedBlock.getData());
+    // the data itself is shared rather than copied
+    assertSame(block.getData(), clonedBlock.getData());
     assertArrayEquals(block.getData(), clonedBlock.getData(), 1E-10);
     assertEquals(block.getStartTime(), clonedBlock.getStartTime());
     assertEquals(block.getEndTime(), clonedBlock.getEndTime());
@@ -259,4 +263,53 @@ public class DataBlockTest {
     assertNotEquals(block.getInterval(), clonedBlock.getInterval());
   }
 
+  @Test
+  public void dataBlock_dataBlockIn_trimmingCopyLeavesOriginalUnchanged() {
+    long interval = TimeSeriesUtils.ONE_HZ_INTERVAL;
+    double[] data = new double[1000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = i;
+    }
+    DataBlock block = new DataBlock(data, interval, "shared", 0L);
+    DataBlock copy = new DataBlock(block);
+    assertSame(data, copy.getData());
+
+    copy.trim(100 * interval, 300 * interval);
+    assertArrayEquals(Arrays.copyOfRange(data, 100, 300), copy.getData(), 0.);
+    copy.resample(2 * interval);
+    assertEquals(100, copy.getData().length);
+
+    assertSame(data, block.getData());
+    assertEquals(0L, block.getStartTime());
+    assertEquals(1000 * interval, block.getEndTime());
+    assertEquals(interval, block.getInterval());
+    for (int i = 0; i < data.length; ++i) {
+      assertEquals(i, data[i], 0.);
+    }
+  }
+
+  @Test
+  public void getData_range_matchesFullTimeSeriesAcrossGap() {
+    long interval = TimeSeriesUtils.ONE_HZ_INTERVAL;
+    double[] first = new double[100];
+    double[] second = new double[100];
+    for (int i = 0; i < first.length; ++i) {
+      first[i] = i + 1;
+      second[i] = -(i + 1);
+    }
+    Map<Long, double[]> records = new HashMap<>();
+    records.put(0L, first);
+    // leaves a gap of 50 samples between the two records
+    records.put(150 * interval, second);
+    DataBlock block = new DataBlock(records, interval, "gapped");
+
+    double[] fullData = block.getData();
+    assertEquals(250, fullData.length);
+    double[] range = block.getData(80 * interval, 180 * interval);
+    assertArrayEquals(Arrays.copyOfRange(fullData, 80, 180), range, 0.);
+    // the cached time series and the time window are not affected
+    assertSame(fullData, block.getData());
+    assertEquals(0L, block.getStartTime());
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package asl.sensor.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import asl.sensor.output.FitResultStore.CalibrationType;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FitResultStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static Map<String, double[]> stepResult(double corner, double damping) {
+    Map<String, double[]> result = new HashMap<>();
+    result.put(FitResultStore.CORNER, new double[]{corner});
+    result.put(FitResultStore.DAMPING, new double[]{damping});
+    return result;
+  }
+
+  @Test
+  public void lookup_emptyLibraryHasNoResult() throws IOException {
+    FitResultStore store = new FitResultStore(folder.getRoot().toPath().resolve("fits.tsv"));
+    assertNull(store.lookup(CalibrationType.STEP, "RESP.XX.TST.00.BHZ", "XX_TST_00_BHZ"));
+  }
+
+  @Test
+  public void store_roundTripsPolesExactly() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("fits.tsv");
+    List<Complex> poles = Arrays.asList(
+        new Complex(-0.012725101823426397, -0.011495336794506263),
+        new Complex(-0.012725101823426397, 0.011495336794506263),
+        new Complex(-1.0 / 3.0, 0.));
+    Map<String, double[]> result = new HashMap<>();
+    result.put(FitResultStore.POLES, FitResultStore.complexListToArray(poles));
+    result.put(FitResultStore.ZEROS, new double[]{});
+
+    new FitResultStore(path).store(CalibrationType.RANDOM_LOW_FREQUENCY,
+        "RESP.IU.KIEV.00.BH1", "IU_KIEV_00_BH1", result);
+
+    // use a new handle to make sure data is read back from the file
+    Map<String, double[]> read = new FitResultStore(path).lookup(
+        CalibrationType.RANDOM_LOW_FREQUENCY, "RESP.IU.KIEV.00.BH1", "IU_KIEV_00_BH1");
+    assertNotNull(read);
+    List<Complex> readPoles = FitResultStore.arrayToComplexList(read.get(FitResultStore.POLES));
+    assertEquals(poles, readPoles);
+    assertEquals(0, read.get(FitResultStore.ZEROS).length);
+    // other calibration types are kept separately
+    assertNull(new FitResultStore(path).lookup(
+        CalibrationType.RANDOM_HIGH_FREQUENCY, "RESP.IU.KIEV.00.BH1", "IU_KIEV_00_BH1"));
+  }
+
+  @Test
+  public void store_replacesPreviousResultForSensor() throws IOException {
+    FitResultStore store = new FitResultStore(folder.getRoot().toPath().resolve("fits.tsv"));
+    store.store(CalibrationType.STEP, "STS1T5_Q330HR", "XX_TST_00_BHZ", stepResult(0.0027, 0.72));
+    store.store(CalibrationType.STEP, "STS1T5_Q330HR", "XX_TST_00_BHZ", stepResult(0.0028, 0.70));
+
+    Map<String, double[]> read =
+        store.lookup(CalibrationType.STEP, "STS1T5_Q330HR", "XX_TST_00_BHZ");
+    assertArrayEquals(new double[]{0.0028}, read.get(FitResultStore.CORNER), 0.);
+    assertArrayEquals(new double[]{0.70}, read.get(FitResultStore.DAMPING), 0.);
+    // header plus the single entry
+    assertEquals(2, Files.readAllLines(store.getPath()).size());
+  }
+
+  @Test
+  public void lookup_fallsBackToSameResponse() throws IOException {
+    FitResultStore store = new FitResultStore(folder.getRoot().toPath().resolve("fits.tsv"));
+    store.store(CalibrationType.STEP, "STS1T5_Q330HR", "XX_ONE_00_BHZ", stepResult(0.0027, 0.72));
+    store.store(CalibrationType.STEP, "KS54000_Q330HR", "XX_TWO_00_BHZ", stepResult(0.0030, 0.71));
+
+    Map<String, double[]> read =
+        store.lookup(CalibrationType.STEP, "STS1T5_Q330HR", "XX_NEW_00_BHZ");
+    assertArrayEquals(new double[]{0.0027}, read.get(FitResultStore.CORNER), 0.);
+    assertNull(store.lookup(CalibrationType.STEP, "STS2gen3_Q330HR", "XX_NEW_00_BHZ"));
+  }
+
+  @Test
+  public void lookup_skipsMalformedLines() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("fits.tsv");
+    List<String> lines = new ArrayList<>();
+    lines.add("# type\tresponse\tsncl\tupdated\tparameters...");
+    lines.add("NOT_A_TYPE\tSTS1T5_Q330HR\tXX_TST_00_BHZ\t2018-01-01T00:00:00Z\tcorner=1");
+    lines.add("STEP\tSTS1T5_Q330HR\tXX_TST_00_BHZ\tnot a date\tcorner=1");
+    lines.add("STEP\tSTS1T5_Q330HR\tXX_TST_00_BHZ\t2018-01-01T00:00:00Z\tcorner=abc");
+    lines.add("STEP\tSTS1T5_Q330HR\tXX_TST_00_BHZ\t2018-01-01T00:00:00Z\tcorner=0.5\tdamping=0.7");
+    Files.write(path, lines, StandardCharsets.UTF_8);
+
+    Map<String, double[]> read = new FitResultStore(path)
+        .lookup(CalibrationType.STEP, "STS1T5_Q330HR", "XX_TST_00_BHZ");
+    assertArrayEquals(new double[]{0.5}, read.get(FitResultStore.CORNER), 0.);
+    assertArrayEquals(new double[]{0.7}, read.get(FitResultStore.DAMPING), 0.);
+  }
+
+  @Test
+  public void store_concurrentWritesAreAllKept() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("fits.tsv");
+    int numWriters = 16;
+    List<Thread> threads = new ArrayList<>();
+    List<Exception> errors = new ArrayList<>();
+    for (int i = 0; i < numWriters; ++i) {
+      final String sncl = "XX_T" + i + "_00_BHZ";
+      final double corner = i;
+      // separate handles to the same file, as would be used by separate experiments
+      final FitResultStore store = new FitResultStore(path);
+      threads.add(new Thread(() -> {
+        try {
+          store.store(CalibrationType.STEP, "STS1T5_Q330HR", sncl, stepResult(corner, 0.7));
+        } catch (IOException e) {
+          synchronized (errors) {
+            errors.add(e);
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, errors.size());
+
+    FitResultStore store = new FitResultStore(path);
+    for (int i = 0; i < numWriters; ++i) {
+      Map<String, double[]> read =
+          store.lookup(CalibrationType.STEP, "STS1T5_Q330HR", "XX_T" + i + "_00_BHZ");
+      assertArrayEquals(new double[]{i}, read.get(FitResultStore.CORNER), 0.);
+    }
+  }
+
+}
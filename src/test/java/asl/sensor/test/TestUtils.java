@@ -1,11 +1,15 @@
 package asl.sensor.test;
 
+import asl.sensor.input.DataBlock;
 import asl.sensor.input.DataStore;
+import asl.sensor.input.InstrumentResponse;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Random;
 
 public class TestUtils {
 
@@ -14,6 +18,12 @@ public class TestUtils {
   public static final String TEST_DATA_LOCATION = "src/test/resources/seismic-test-data/";
   public static final String RESP_LOCATION = TEST_DATA_LOCATION + "RESPs/";
 
+  // synthetic records for tests of experiments over long stretches of data
+  public static final long SYNTHETIC_INTERVAL = 100L; // 10 samples per second
+  public static final long SYNTHETIC_START = 1514764800000L; // 2018-001
+  public static final int SYNTHETIC_HOUR = 36000; // samples at the synthetic interval
+  public static final String SYNTHETIC_RESPONSE = "STS2gen3_Q330HR";
+
   public static String getSeedFolder(String network, String station, String year,
       String dayOfYear) {
     return String
@@ -30,6 +40,39 @@ public class TestUtils {
     return OffsetDateTime.ofInstant(time, ZoneOffset.UTC);
   }
 
+  /**
+   * Get a series of white noise
+   *
+   * @param random Source of the noise
+   * @param length Number of samples
+   * @param scale Standard deviation of the noise
+   * @return Noise series
+   */
+  public static double[] gaussianNoise(Random random, int length, double scale) {
+    double[] data = new double[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = scale * random.nextGaussian();
+    }
+    return data;
+  }
+
+  /**
+   * Put the given data into a DataStore in order, each with the synthetic data's response
+   *
+   * @param blocks Data to load, i.e., from synthetic series
+   * @return DataStore with each block and a response set at its index
+   * @throws IOException If the embedded response can't be read
+   */
+  public static DataStore syntheticDataStore(DataBlock... blocks) throws IOException {
+    InstrumentResponse response = InstrumentResponse.loadEmbeddedResponse(SYNTHETIC_RESPONSE);
+    DataStore dataStore = new DataStore();
+    for (int i = 0; i < blocks.length; ++i) {
+      dataStore.setBlock(i, blocks[i]);
+      dataStore.setResponse(i, response);
+    }
+    return dataStore;
+  }
+
   public static long timeStringToEpochMilli(String time) {
     DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("uuuu-DDD'T'HH:mm:ss.S");
     return LocalDateTime.parse(time, DATE_TIME_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
@@ -0,0 +1,84 @@
+package asl.sensor.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import org.junit.Test;
+
+public class CancellationTokenTest {
+
+  @Test
+  public void cancel_makesTokenCancelled() {
+    CancellationToken token = new CancellationToken();
+    assertFalse(token.isCancelled());
+    token.throwIfCancelled();
+    token.cancel();
+    assertTrue(token.isCancelled());
+    try {
+      token.throwIfCancelled();
+      fail();
+    } catch (CancellationException expected) {
+      // cancelled tokens throw
+    }
+  }
+
+  @Test
+  public void withTimeout_cancelledOnceDeadlinePasses() {
+    assertTrue(CancellationToken.withTimeout(0L).isCancelled());
+    assertFalse(CancellationToken.withTimeout(60000L).isCancelled());
+  }
+
+  @Test
+  public void newChild_cancelledWithParentButNotParentWithIt() {
+    CancellationToken parent = new CancellationToken();
+    CancellationToken child = parent.newChild();
+    child.cancel();
+    assertTrue(child.isCancelled());
+    assertFalse(parent.isCancelled());
+
+    CancellationToken sibling = parent.newChild();
+    assertFalse(sibling.isCancelled());
+    parent.cancel();
+    assertTrue(sibling.isCancelled());
+  }
+
+  @Test
+  public void run_installsTokenAndRestoresPrevious() {
+    CancellationToken outer = new CancellationToken();
+    CancellationToken inner = new CancellationToken();
+    outer.run(() -> {
+      assertSame(outer, CancellationToken.current());
+      inner.run(() -> assertSame(inner, CancellationToken.current()));
+      assertSame(outer, CancellationToken.current());
+    });
+    // with no token installed, current is a token that is never cancelled
+    assertFalse(CancellationToken.current().isCancelled());
+    CancellationToken.checkCurrent();
+  }
+
+  @Test(expected = CancellationException.class)
+  public void checkCurrent_throwsIfInterrupted() {
+    Thread.currentThread().interrupt();
+    try {
+      CancellationToken.checkCurrent();
+    } finally {
+      // clear the flag so later tests in this thread aren't affected
+      Thread.interrupted();
+    }
+  }
+
+  @Test(expected = CancellationException.class)
+  public void spectralCalc_stopsWhenCancelled() {
+    double[] data = new double[100000];
+    CancellationToken token = new CancellationToken();
+    // cancel once installed, since run() doesn't start an already-cancelled calculation
+    token.run(() -> {
+      token.cancel();
+      FFTResult.spectralCalc(data, data, TimeSeriesUtils.ONE_HZ_INTERVAL);
+    });
+  }
+
+}
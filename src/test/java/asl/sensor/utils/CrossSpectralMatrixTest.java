@@ -0,0 +1,77 @@
+package asl.sensor.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Test;
+
+public class CrossSpectralMatrixTest {
+
+  private static final long INTERVAL = 100L; // 10 samples per second
+
+  private static double[][] getTestData() {
+    Random random = new Random(23);
+    int length = 8000;
+    double[][] data = new double[3][length];
+    for (int i = 0; i < length; ++i) {
+      double common = random.nextGaussian();
+      // the first two series share most of their signal; the third is unrelated
+      data[0][i] = common + 0.1 * random.nextGaussian();
+      data[1][i] = -2. * common + 0.1 * random.nextGaussian();
+      data[2][i] = random.nextGaussian();
+    }
+    return data;
+  }
+
+  @Test
+  public void crossPower_matchesSpectralCalcOfEachPair() {
+    double[][] data = getTestData();
+    CrossSpectralMatrix matrix = CrossSpectralMatrix.calculate(data, INTERVAL);
+    assertEquals(3, matrix.getSeriesCount());
+    for (int i = 0; i < data.length; ++i) {
+      for (int j = 0; j < data.length; ++j) {
+        // the same array must be passed twice to get a PSD from spectralCalc
+        FFTResult expected = FFTResult.spectralCalc(data[i], i == j ? data[i] : data[j], INTERVAL);
+        assertArrayEquals(expected.getFreqs(), matrix.getFreqs(), 1E-12);
+        Complex[] expectedPower = expected.getFFT();
+        Complex[] crossPower = matrix.getCrossPower(i, j);
+        for (int k = 0; k < expectedPower.length; ++k) {
+          double tolerance = 1E-9 * expectedPower[k].abs() + 1E-15;
+          assertEquals(expectedPower[k].getReal(), crossPower[k].getReal(), tolerance);
+          assertEquals(expectedPower[k].getImaginary(), crossPower[k].getImaginary(), tolerance);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void coherence_highForRelatedSeriesAndLowOtherwise() {
+    double[][] data = getTestData();
+    CrossSpectralMatrix matrix = CrossSpectralMatrix.calculate(data, INTERVAL);
+    double[] related = matrix.getCoherence(0, 1);
+    double[] unrelated = matrix.getCoherence(0, 2);
+    assertArrayEquals(related, matrix.getCoherence(1, 0), 1E-12);
+    double relatedSum = 0.;
+    double unrelatedSum = 0.;
+    for (int k = 1; k < related.length; ++k) {
+      assertTrue(related[k] <= 1. + 1E-9);
+      assertTrue(unrelated[k] >= 0.);
+      relatedSum += related[k];
+      unrelatedSum += unrelated[k];
+    }
+    assertTrue(relatedSum / (related.length - 1) > 0.95);
+    assertTrue(unrelatedSum / (unrelated.length - 1) < 0.2);
+
+    // the single-point version gives the same result from the matrix's spectra
+    Complex[] p01 = matrix.getCrossPower(0, 1);
+    Complex[] p00 = matrix.getCrossPower(0, 0);
+    Complex[] p11 = matrix.getCrossPower(1, 1);
+    for (int k = 1; k < related.length; ++k) {
+      assertEquals(related[k], CrossSpectralMatrix.coherence(p01[k], p00[k], p11[k]), 1E-9);
+    }
+  }
+
+}
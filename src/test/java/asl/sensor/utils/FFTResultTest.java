@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import javax.imageio.ImageIO;
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.transform.DftNormalization;
@@ -709,4 +710,67 @@ public class FFTResultTest {
     assertEquals(65536, FFTResult.findFFTPaddingLength(65535));
     assertEquals(65536, FFTResult.findFFTPaddingLength(65536));
   }
+
+  @Test
+  public void inverseFFTPlan_matchesSingleSidedInverseFFT() {
+    Random random = new Random(1234);
+    double[] data = new double[1000];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = random.nextGaussian() + Math.sin(i / 10.);
+    }
+    Complex[] spectrum = FFTResult.singleSidedFFT(data.clone(), 1., false).getFFT();
+    double[] real = new double[spectrum.length];
+    double[] imaginary = new double[spectrum.length];
+    for (int i = 0; i < spectrum.length; ++i) {
+      real[i] = spectrum[i].getReal();
+      imaginary[i] = spectrum[i].getImaginary();
+    }
+    // imaginary parts of zero and nyquist frequencies don't contribute to a real timeseries
+    imaginary[0] = 0.5;
+    spectrum[0] = new Complex(real[0], 0.5);
+    imaginary[spectrum.length - 1] = -0.25;
+    spectrum[spectrum.length - 1] = new Complex(real[spectrum.length - 1], -0.25);
+
+    double[] expected = FFTResult.singleSidedInverseFFT(spectrum, 1024);
+    InverseFFTPlan plan = new InverseFFTPlan(spectrum.length);
+    // odd offset and length to check both even and odd samples are unpacked correctly
+    int offset = 37;
+    double[] result = new double[901];
+    // run twice to make sure the plan's buffers are reset between uses
+    plan.inverse(real, imaginary, offset, result);
+    plan.inverse(real, imaginary, offset, result);
+    for (int i = 0; i < result.length; ++i) {
+      assertEquals(expected[offset + i], result[i], 1E-12);
+    }
+  }
+
+  @Test
+  public void inverseFFTPlan_pairMatchesSeparateInverses() {
+    Random random = new Random(4321);
+    int length = 257;
+    double[][] spectra = new double[4][length];
+    for (double[] spectrum : spectra) {
+      for (int i = 0; i < length; ++i) {
+        spectrum[i] = random.nextGaussian();
+      }
+    }
+    InverseFFTPlan plan = new InverseFFTPlan(length);
+    int offset = 11;
+    double[] expected1 = new double[477];
+    double[] expected2 = new double[477];
+    plan.inverse(spectra[0], spectra[1], offset, expected1);
+    plan.inverse(spectra[2], spectra[3], offset, expected2);
+    double[] result1 = new double[477];
+    double[] result2 = new double[477];
+    plan.inverse(spectra[0], spectra[1], spectra[2], spectra[3], offset, result1, result2);
+    for (int i = 0; i < result1.length; ++i) {
+      assertEquals(expected1[i], result1[i], 1E-12);
+      assertEquals(expected2[i], result2[i], 1E-12);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void inverseFFTPlan_rejectsUnpaddedLength() {
+    new InverseFFTPlan(1000);
+  }
 }
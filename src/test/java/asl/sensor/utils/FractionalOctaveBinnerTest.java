@@ -0,0 +1,73 @@
+package asl.sensor.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Test;
+
+public class FractionalOctaveBinnerTest {
+
+  private static double[] linearFrequencies(int count, double spacing) {
+    double[] frequencies = new double[count];
+    for (int i = 0; i < count; ++i) {
+      frequencies[i] = i * spacing;
+    }
+    return frequencies;
+  }
+
+  @Test
+  public void bands_areCenteredOnFractionalOctaves() {
+    double[] frequencies = linearFrequencies(100001, 0.0002);
+    int bandsPerOctave = 12;
+    FractionalOctaveBinner binner = new FractionalOctaveBinner(frequencies, bandsPerOctave);
+    double[] centers = binner.getCenterFrequencies();
+    assertTrue(binner.getBandCount() < 300);
+    for (int i = 0; i < centers.length; ++i) {
+      double bandNumber = Math.log(centers[i]) / Math.log(2.) * bandsPerOctave;
+      assertEquals(Math.round(bandNumber), bandNumber, 1E-9);
+      if (i > 0) {
+        assertTrue(centers[i] > centers[i - 1]);
+      }
+    }
+    // each input frequency is within half a band of the center of the band it is averaged into
+    double[] meanFrequencies = binner.bin(frequencies);
+    double halfBand = Math.pow(2., 1. / (2 * bandsPerOctave));
+    for (int i = 0; i < centers.length; ++i) {
+      assertTrue(meanFrequencies[i] >= centers[i] / halfBand);
+      assertTrue(meanFrequencies[i] <= centers[i] * halfBand);
+    }
+  }
+
+  @Test
+  public void bin_averagesLinearValues() {
+    double[] frequencies = {0., 1., 1.01, 1.02, 2., 2.05, 4.};
+    FractionalOctaveBinner binner = new FractionalOctaveBinner(frequencies, 3);
+    assertEquals(3, binner.getBandCount());
+    Complex[] spectrum = {new Complex(1E9), new Complex(1.), new Complex(2.), new Complex(6.),
+        new Complex(10.), new Complex(30.), new Complex(0., 7.)};
+    double[] binned = binner.bin(spectrum);
+    // the DC term is not in any band
+    assertEquals(3., binned[0], 1E-12);
+    assertEquals(20., binned[1], 1E-12);
+    assertEquals(7., binned[2], 1E-12);
+    assertEquals(1., binner.getCenterFrequencies()[0], 1E-12);
+    assertEquals(2., binner.getCenterFrequencies()[1], 1E-12);
+    assertEquals(4., binner.getCenterFrequencies()[2], 1E-12);
+  }
+
+  @Test
+  public void bin_skipsValuesThatAreNotFinite() {
+    double[] frequencies = {1., 1.01, 2.};
+    FractionalOctaveBinner binner = new FractionalOctaveBinner(frequencies, 8);
+    double[] binned = binner.bin(new double[]{Double.POSITIVE_INFINITY, 5., Double.NaN});
+    assertEquals(5., binned[0], 0.);
+    assertTrue(Double.isNaN(binned[1]));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsNonPositiveBandsPerOctave() {
+    new FractionalOctaveBinner(new double[]{1., 2.}, 0);
+  }
+
+}
@@ -0,0 +1,59 @@
+package asl.sensor.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class SinusoidFitTest {
+
+  private static final long INTERVAL = 5L; // 200 samples per second
+
+  private static double[] getSine(int length, double frequency, double amplitude, double phase,
+      double offset, double noise) {
+    Random random = new Random(31);
+    double[] data = new double[length];
+    for (int i = 0; i < length; ++i) {
+      double time = i * INTERVAL / 1000.;
+      data[i] = amplitude * Math.cos(NumericUtils.TAU * frequency * time + phase) + offset
+          + noise * random.nextGaussian();
+    }
+    return data;
+  }
+
+  @Test
+  public void estimateFrequency_closeToTrueFrequencyDespiteNoise() {
+    double[] data = getSine(60000, 1.03, 1000., 0.4, 50., 100.);
+    assertEquals(1.03, SinusoidFit.estimateFrequency(data, INTERVAL), 1E-3);
+  }
+
+  @Test
+  public void estimateFrequency_isNaNWithoutFullCycle() {
+    double[] data = getSine(100, 1., 1000., 0., 0., 0.);
+    assertTrue(Double.isNaN(SinusoidFit.estimateFrequency(data, INTERVAL)));
+  }
+
+  @Test
+  public void fitThreeParameter_recoversAmplitudePhaseAndOffset() {
+    double[] data = getSine(20000, 0.5, 2000., -1.2, -300., 0.);
+    SinusoidFit fit = SinusoidFit.fitThreeParameter(data, INTERVAL, 0.5);
+    assertEquals(2000., fit.getAmplitude(), 1E-6);
+    assertEquals(2000. / Math.sqrt(2.), fit.getRMSAmplitude(), 1E-6);
+    assertEquals(-1.2, fit.getPhase(), 1E-9);
+    assertEquals(-300., fit.getOffset(), 1E-6);
+    assertEquals(0.5, fit.getFrequency(), 0.);
+  }
+
+  @Test
+  public void fitFourParameter_refinesFrequencyOfNoisySine() {
+    // an hour of noisy data, starting from a frequency estimate that is off by a little
+    double[] data = getSine(720000, 1.0002, 1000., 2.5, 10., 200.);
+    SinusoidFit fit = SinusoidFit.fitFourParameter(data, INTERVAL, 1.00025);
+    assertEquals(1.0002, fit.getFrequency(), 3E-7);
+    assertEquals(1000., fit.getAmplitude(), 1.);
+    assertEquals(2.5, fit.getPhase(), 3E-3);
+    assertEquals(10., fit.getOffset(), 1.);
+  }
+
+}
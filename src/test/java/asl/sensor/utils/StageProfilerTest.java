@@ -0,0 +1,116 @@
+package asl.sensor.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class StageProfilerTest {
+
+  @Test
+  public void stage_recordsNestedSpansInStartOrder() {
+    StageProfiler profiler = new StageProfiler();
+    profiler.run(() -> {
+      StageProfiler.Span outer = StageProfiler.stage("Outer");
+      try {
+        StageProfiler.Span inner = StageProfiler.stage("Inner");
+        try {
+          double[] allocated = new double[100000];
+          assertEquals(100000, allocated.length);
+        } finally {
+          inner.close();
+        }
+      } finally {
+        outer.close();
+      }
+    });
+    List<StageSpan> spans = profiler.getSpans();
+    assertEquals(2, spans.size());
+    StageSpan outer = spans.get(0);
+    StageSpan inner = spans.get(1);
+    assertEquals("Outer", outer.getName());
+    assertEquals(0, outer.getDepth());
+    assertEquals("Inner", inner.getName());
+    assertEquals(1, inner.getDepth());
+    assertTrue(outer.getWallNanos() >= inner.getWallNanos());
+    assertEquals(Thread.currentThread().getName(), inner.getThreadName());
+    if (inner.getAllocatedBytes() >= 0) {
+      // ThreadMXBean allocation counts are approximate, but include the array allocated above
+      assertTrue(inner.getAllocatedBytes() >= 100000 * 8);
+    }
+  }
+
+  @Test
+  public void getStageTotals_sumsRepeatedStages() {
+    StageProfiler profiler = new StageProfiler();
+    profiler.run(() -> {
+      for (int i = 0; i < 3; ++i) {
+        StageProfiler.Span span = StageProfiler.stage("PSD");
+        try {
+          Math.sqrt(i);
+        } finally {
+          span.close();
+        }
+      }
+      StageProfiler.Span span = StageProfiler.stage("Fitting");
+      try {
+        Math.sqrt(2.);
+      } finally {
+        span.close();
+      }
+    });
+    Map<String, long[]> totals = profiler.getStageTotals();
+    assertEquals(2, totals.size());
+    assertEquals("PSD", totals.keySet().iterator().next());
+    assertEquals(3L, totals.get("PSD")[0]);
+    assertEquals(1L, totals.get("Fitting")[0]);
+    String report = profiler.toString();
+    assertTrue(report.startsWith("Stage timing"));
+    assertTrue(report.contains("PSD: "));
+    assertTrue(report.contains("(3 times)"));
+  }
+
+  @Test
+  public void stage_recordsNothingWithoutInstalledProfiler() {
+    StageProfiler current = StageProfiler.current();
+    assertFalse(current.isEnabled());
+    StageProfiler.Span span = StageProfiler.stage("Unprofiled");
+    try {
+      Math.sqrt(2.);
+    } finally {
+      span.close();
+    }
+    assertTrue(current.getSpans().isEmpty());
+    assertEquals("", current.toString());
+  }
+
+  @Test
+  public void run_installsProfilerAndRestoresPrevious() {
+    StageProfiler outer = new StageProfiler();
+    StageProfiler inner = new StageProfiler();
+    outer.run(() -> {
+      assertSame(outer, StageProfiler.current());
+      inner.run(() -> assertSame(inner, StageProfiler.current()));
+      assertSame(outer, StageProfiler.current());
+    });
+    assertFalse(StageProfiler.current().isEnabled());
+  }
+
+  @Test
+  public void spectralCalc_recordedAsPSDStage() {
+    double[] data = new double[4096];
+    for (int i = 0; i < data.length; ++i) {
+      data[i] = Math.sin(i / 10.);
+    }
+    StageProfiler profiler = new StageProfiler();
+    profiler.run(() -> FFTResult.spectralCalc(data, data, TimeSeriesUtils.ONE_HZ_INTERVAL));
+    List<StageSpan> spans = profiler.getSpans();
+    assertEquals(1, spans.size());
+    assertEquals("PSD", spans.get(0).getName());
+  }
+
+}